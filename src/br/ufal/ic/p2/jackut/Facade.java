@@ -1,19 +1,34 @@
 package br.ufal.ic.p2.jackut;
 
+import br.ufal.ic.p2.jackut.eventos.Retrato;
 import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.metricas.MetricasOperacao;
+import br.ufal.ic.p2.jackut.metricas.RegistroMetricas;
+import br.ufal.ic.p2.jackut.models.Notificacao;
 import java.io.*;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
 
 /**
  * Fachada do sistema Jackut, oferecendo interface de alto nvel para operaes
  * de gerenciamento de usurios, sesses, relacionamentos, recados e comunidades.
  * Cuida tambm da persistncia automtica de estado em disco.
+ * <p>
+ * Cada operao  medida: latncia, sucessos e falhas por tipo de exceo ficam
+ * em um {@link RegistroMetricas}, consultvel por {@link #getMetricas()} ou por
+ * JMX. As mtricas no so persistidas.
+ * </p>
  *
  * @author Iury
  * @version 1.0
  * @since 2025-05-04
  */
 public class Facade {
-    private Jackute sistema;
+    private volatile Jackute sistema; // lido sem travas pelas consultas feitas em retratos
+    private final RegistroMetricas metricas = new RegistroMetricas();
     private static final String ARQUIVO_DADOS = "dados_jackut.dat";
 
     /**
@@ -22,6 +37,7 @@ public class Facade {
      */
     public Facade() {
         carregarDados();
+        metricas.setMedidores(() -> sistema.getMedidores());
     }
 
     /**
@@ -35,7 +51,7 @@ public class Facade {
      * @throws UsuarioJaExisteException se login j em uso
      */
     public void criarUsuario(String login, String senha, String nome) {
-        sistema.criarUsuario(login, senha, nome);
+        metricas.medir("criarUsuario", () -> sistema.criarUsuario(login, senha, nome));
     }
 
     /**
@@ -47,7 +63,18 @@ public class Facade {
      * @throws LoginOuSenhaInvalidosException se credenciais invlidas
      */
     public String abrirSessao(String login, String senha) {
-        return sistema.abrirSessao(login, senha);
+        return metricas.medir("abrirSessao", () -> sistema.abrirSessao(login, senha));
+    }
+
+    /**
+     * Retorna o login do usurio de uma sesso.
+     *
+     * @param idSessao ID da sesso
+     * @return login do usurio
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     */
+    public String getLoginSessao(String idSessao) {
+        return metricas.medir("getLoginSessao", () -> sistema.getLoginSessao(idSessao));
     }
 
     /**
@@ -60,7 +87,7 @@ public class Facade {
      * @throws AtributoNaoPreenchidoException se atributo no definido
      */
     public String getAtributoUsuario(String login, String atributo) {
-        return sistema.getAtributoUsuario(login, atributo);
+        return metricas.medir("getAtributoUsuario", () -> sistema.getAtributoUsuario(login, atributo));
     }
 
     /**
@@ -72,7 +99,7 @@ public class Facade {
      * @throws UsuarioNaoEncontradoException se sesso invlida
      */
     public void editarPerfil(String idSessao, String atributo, String valor) {
-        sistema.editarPerfil(idSessao, atributo, valor);
+        metricas.medir("editarPerfil", () -> sistema.editarPerfil(idSessao, atributo, valor));
     }
 
     /**
@@ -85,7 +112,7 @@ public class Facade {
      * @throws AmigoJaAdicionadoException  se j houver amizade
      */
     public void adicionarAmigo(String idSessao, String amigoLogin) {
-        sistema.adicionarAmigo(idSessao, amigoLogin);
+        metricas.medir("adicionarAmigo", () -> sistema.adicionarAmigo(idSessao, amigoLogin));
     }
 
     /**
@@ -97,7 +124,7 @@ public class Facade {
      * @throws UsuarioNaoEncontradoException se algum usurio no existir
      */
     public boolean ehAmigo(String login1, String login2) {
-        return sistema.ehAmigo(login1, login2);
+        return metricas.medir("ehAmigo", () -> sistema.ehAmigo(login1, login2));
     }
 
     /**
@@ -107,7 +134,7 @@ public class Facade {
      * @return string "{amigo1,amigo2,...}"
      */
     public String getAmigos(String login) {
-        return sistema.getAmigos(login);
+        return metricas.medir("getAmigos", () -> sistema.getAmigos(login));
     }
 
     /**
@@ -120,7 +147,7 @@ public class Facade {
      * @throws UsuarioNaoEncontradoException se destinatrio no existir
      */
     public void enviarRecado(String idSessao, String destinatario, String mensagem) {
-        sistema.enviarRecado(idSessao, destinatario, mensagem);
+        metricas.medir("enviarRecado", () -> sistema.enviarRecado(idSessao, destinatario, mensagem));
     }
 
     /**
@@ -132,7 +159,116 @@ public class Facade {
      * @throws UsuarioNaoEncontradoException se sesso invlida
      */
     public String lerRecado(String idSessao) {
-        return sistema.lerRecado(idSessao);
+        return metricas.medir("lerRecado", () -> sistema.lerRecado(idSessao));
+    }
+
+    /**
+     * Lista recados pendentes recebidos a partir de um instante, sem consumi-los.
+     *
+     * @param idSessao ID da sesso do usurio
+     * @param instante instante ISO-8601
+     * @return string "{recado1,recado2,...}"
+     */
+    public String recadosDesde(String idSessao, String instante) {
+        return metricas.medir("recadosDesde", () -> sistema.recadosDesde(idSessao, instante));
+    }
+
+    /**
+     * Lista mensagens de comunidade publicadas em uma janela de tempo.
+     *
+     * @param nome nome da comunidade
+     * @param de   instante ISO-8601 inicial, inclusive
+     * @param ate  instante ISO-8601 final, exclusive
+     * @return string "{msg1,msg2,...}"
+     */
+    public String historicoComunidade(String nome, String de, String ate) {
+        return metricas.medir("historicoComunidade", () -> sistema.historicoComunidade(nome, de, ate));
+    }
+
+    /**
+     * Define a reteno de recados e mensagens.
+     *
+     * @param duracao durao ISO-8601; "PT0S" desativa
+     */
+    public void configurarRetencao(String duracao) {
+        metricas.medir("configurarRetencao", () -> sistema.configurarRetencao(duracao));
+    }
+
+    /**
+     * Para o relgio em um instante (para roteiros de teste).
+     *
+     * @param instante instante ISO-8601
+     */
+    public void fixarRelogio(String instante) {
+        metricas.medir("fixarRelogio", () -> sistema.fixarRelogio(instante));
+    }
+
+    /**
+     * Volta a usar o relgio do sistema aps {@link #fixarRelogio}.
+     */
+    public void liberarRelogio() {
+        metricas.medir("liberarRelogio", () -> sistema.liberarRelogio());
+    }
+
+    /**
+     * Limita quantos usurios ficam em memria; os demais ficam em disco. Os
+     * eventos, projees e ndices por login continuam em memria.
+     *
+     * @param limite nmero mximo de usurios em memria; zero mantm todos
+     */
+    public void configurarUsuariosEmMemoria(int limite) {
+        metricas.medir("configurarUsuariosEmMemoria", () -> sistema.configurarUsuariosEmMemoria(limite));
+    }
+
+    /**
+     * Retorna quantos usurios esto em memria no momento.
+     *
+     * @return quantidade de usurios em memria; todos, se no houver limite
+     */
+    public int contarUsuariosEmMemoria() {
+        return metricas.medir("contarUsuariosEmMemoria", () -> sistema.contarUsuariosEmMemoria());
+    }
+
+    /**
+     * Inscreve a sesso para receber recados e mensagens por push.
+     *
+     * @param idSessao ID da sesso do usurio
+     * @return publicador de notificaes
+     */
+    public Flow.Publisher<Notificacao> assinarNotificacoes(String idSessao) {
+        return metricas.medir("assinarNotificacoes", () -> sistema.assinarNotificacoes(idSessao));
+    }
+
+    /**
+     * L vrios recados de uma s vez.
+     *
+     * @param idSessao ID da sesso do usurio
+     * @param max      quantidade mxima de recados
+     * @return string "{recado1,recado2,...}"
+     */
+    public String lerRecados(String idSessao, int max) {
+        return metricas.medir("lerRecados", () -> sistema.lerRecados(idSessao, max));
+    }
+
+    /**
+     * Conta recados pendentes.
+     *
+     * @param idSessao ID da sesso do usurio
+     * @return quantidade de recados
+     */
+    public int contarRecados(String idSessao) {
+        return metricas.medir("contarRecados", () -> sistema.contarRecados(idSessao));
+    }
+
+    /**
+     * Configura limite e poltica de transbordo da caixa de recados.
+     *
+     * @param idSessao ID da sesso do usurio
+     * @param limite   nmero mximo de recados guardados
+     * @param politica DESCARTAR_ANTIGO ou REJEITAR
+     */
+    public void configurarCaixaRecados(String idSessao, int limite, String politica) {
+        metricas.medir("configurarCaixaRecados", () -> sistema.configurarCaixaRecados(idSessao, limite, politica));
     }
 
     /**
@@ -145,7 +281,7 @@ public class Facade {
      * @throws UsuarioNaoEncontradoException  se sesso invlida
      */
     public void criarComunidade(String sessao, String nome, String descricao) {
-        sistema.criarComunidade(sessao, nome, descricao);
+        metricas.medir("criarComunidade", () -> sistema.criarComunidade(sessao, nome, descricao));
     }
 
     /**
@@ -157,7 +293,7 @@ public class Facade {
      * @throws UsuarioJaMembroException        se j membro
      */
     public void adicionarComunidade(String sessao, String nome) {
-        sistema.adicionarComunidade(sessao, nome);
+        metricas.medir("adicionarComunidade", () -> sistema.adicionarComunidade(sessao, nome));
     }
 
     /**
@@ -167,7 +303,7 @@ public class Facade {
      * @return string "{comun1,comun2,...}"
      */
     public String getComunidades(String login) {
-        return sistema.getComunidades(login);
+        return metricas.medir("getComunidades", () -> sistema.getComunidades(login));
     }
 
     /**
@@ -177,7 +313,7 @@ public class Facade {
      * @return string "{membro1,membro2,...}"
      */
     public String getMembrosComunidade(String nome) {
-        return sistema.getMembrosComunidade(nome);
+        return metricas.medir("getMembrosComunidade", () -> sistema.getMembrosComunidade(nome));
     }
 
     /**
@@ -187,7 +323,7 @@ public class Facade {
      * @return texto descritivo
      */
     public String getDescricaoComunidade(String nome) {
-        return sistema.getDescricaoComunidade(nome);
+        return metricas.medir("getDescricaoComunidade", () -> sistema.getDescricaoComunidade(nome));
     }
 
     /**
@@ -197,7 +333,7 @@ public class Facade {
      * @return login do proprietrio
      */
     public String getDonoComunidade(String nome) {
-        return sistema.getDonoComunidade(nome);
+        return metricas.medir("getDonoComunidade", () -> sistema.getDonoComunidade(nome));
     }
 
     /**
@@ -208,7 +344,7 @@ public class Facade {
      * @param mensagem    texto da mensagem
      */
     public void enviarMensagem(String id, String comunidade, String mensagem) {
-        sistema.enviarMensagem(id, comunidade, mensagem);
+        metricas.medir("enviarMensagem", () -> sistema.enviarMensagem(id, comunidade, mensagem));
     }
 
     /**
@@ -218,7 +354,38 @@ public class Facade {
      * @return texto da mensagem
      */
     public String lerMensagem(String id) {
-        return sistema.lerMensagem(id);
+        return metricas.medir("lerMensagem", () -> sistema.lerMensagem(id));
+    }
+
+    /**
+     * L vrias mensagens de comunidade de uma s vez.
+     *
+     * @param id  ID da sesso do usurio
+     * @param max quantidade mxima de mensagens
+     * @return string "{msg1,msg2,...}"
+     */
+    public String lerMensagens(String id, int max) {
+        return metricas.medir("lerMensagens", () -> sistema.lerMensagens(id, max));
+    }
+
+    /**
+     * Conta mensagens de comunidade pendentes.
+     *
+     * @param id ID da sesso do usurio
+     * @return quantidade de mensagens
+     */
+    public long contarMensagens(String id) {
+        return metricas.medir("contarMensagens", () -> sistema.contarMensagens(id));
+    }
+
+    /**
+     * Obtm atraso de entrega de comunidade.
+     *
+     * @param nome nome da comunidade
+     * @return mensagens pendentes do membro mais atrasado
+     */
+    public long getAtrasoComunidade(String nome) {
+        return metricas.medir("getAtrasoComunidade", () -> sistema.getAtrasoComunidade(nome));
     }
 
     /**
@@ -228,7 +395,7 @@ public class Facade {
      * @param idolo  login do dolo
      */
     public void adicionarIdolo(String sessao, String idolo) {
-        sistema.adicionarIdolo(sessao, idolo);
+        metricas.medir("adicionarIdolo", () -> sistema.adicionarIdolo(sessao, idolo));
     }
 
     /**
@@ -238,7 +405,7 @@ public class Facade {
      * @param paquera login da paquera
      */
     public void adicionarPaquera(String sessao, String paquera) {
-        sistema.adicionarPaquera(sessao, paquera);
+        metricas.medir("adicionarPaquera", () -> sistema.adicionarPaquera(sessao, paquera));
     }
 
     /**
@@ -249,7 +416,7 @@ public class Facade {
      * @return true se for f
      */
     public boolean ehFa(String login, String idolo) {
-        return sistema.ehFa(login, idolo);
+        return metricas.medir("ehFa", () -> sistema.ehFa(login, idolo));
     }
 
     /**
@@ -259,7 +426,49 @@ public class Facade {
      * @return string "{fa1,fa2,...}"
      */
     public String getFas(String login) {
-        return sistema.getFas(login);
+        return metricas.medir("getFas", () -> sistema.getFas(login));
+    }
+
+    /**
+     * Retorna ranking dos usurios com mais fs.
+     *
+     * @param k quantidade mxima de dolos
+     * @return string "{idolo1,idolo2,...}"
+     */
+    public String getTopIdolos(int k) {
+        return metricas.medir("getTopIdolos", () -> sistema.getTopIdolos(k));
+    }
+
+    /**
+     * Retorna ranking das comunidades com mais membros.
+     *
+     * @param k quantidade mxima de comunidades
+     * @return string "{comun1,comun2,...}"
+     */
+    public String getTopComunidades(int k) {
+        return metricas.medir("getTopComunidades", () -> sistema.getTopComunidades(k));
+    }
+
+    /**
+     * Sugere comunidades pelo incio do nome.
+     *
+     * @param prefixo incio do nome
+     * @param k       quantidade mxima de sugestes
+     * @return string "{comun1,comun2,...}"
+     */
+    public String autocompletarComunidades(String prefixo, int k) {
+        return metricas.medir("autocompletarComunidades", () -> sistema.autocompletarComunidades(prefixo, k));
+    }
+
+    /**
+     * Sugere usurios pelo incio do login.
+     *
+     * @param prefixo incio do login
+     * @param k       quantidade mxima de sugestes
+     * @return string "{login1,login2,...}"
+     */
+    public String autocompletarUsuarios(String prefixo, int k) {
+        return metricas.medir("autocompletarUsuarios", () -> sistema.autocompletarUsuarios(prefixo, k));
     }
 
     /**
@@ -270,7 +479,7 @@ public class Facade {
      * @return true se existir relao
      */
     public boolean ehPaquera(String sessao, String paquera) {
-        return sistema.ehPaquera(sessao, paquera);
+        return metricas.medir("ehPaquera", () -> sistema.ehPaquera(sessao, paquera));
     }
 
     /**
@@ -280,7 +489,7 @@ public class Facade {
      * @return string "{p1,p2,...}"
      */
     public String getPaqueras(String sessao) {
-        return sistema.getPaqueras(sessao);
+        return metricas.medir("getPaqueras", () -> sistema.getPaqueras(sessao));
     }
 
     /**
@@ -290,7 +499,7 @@ public class Facade {
      * @param inimigo login do inimigo
      */
     public void adicionarInimigo(String sessao, String inimigo) {
-        sistema.adicionarInimigo(sessao, inimigo);
+        metricas.medir("adicionarInimigo", () -> sistema.adicionarInimigo(sessao, inimigo));
     }
 
     /**
@@ -299,21 +508,222 @@ public class Facade {
      * @param idSessao ID da sesso do usurio a remover
      */
     public void removerUsuario(String idSessao) {
-        sistema.removerUsuario(idSessao);
+        metricas.medir("removerUsuario", () -> sistema.removerUsuario(idSessao));
+    }
+
+    /**
+     * Retorna os amigos que dois usurios tm em comum.
+     *
+     * @param login1 login do primeiro usurio
+     * @param login2 login do segundo usurio
+     * @return lista formatada "{amigo1,amigo2,...}" em ordem alfabtica
+     */
+    public String getAmigosEmComum(String login1, String login2) {
+        return metricas.medir("getAmigosEmComum", () -> sistema.getAmigosEmComum(login1, login2));
+    }
+
+    /**
+     * Retorna quantos fs um usurio tem.
+     *
+     * @param login login do usurio
+     * @return nmero de fs
+     */
+    public int contarFas(String login) {
+        return metricas.medir("contarFas", () -> sistema.contarFas(login));
+    }
+
+    /**
+     * Retorna quantos membros uma comunidade tem.
+     *
+     * @param nome nome da comunidade
+     * @return nmero de membros, incluindo o dono
+     */
+    public int contarMembrosComunidade(String nome) {
+        return metricas.medir("contarMembrosComunidade", () -> sistema.contarMembrosComunidade(nome));
+    }
+
+    /**
+     * Abre um retrato consistente do estado, cujas consultas no travam as
+     * escritas nem enxergam as que vierem depois dele.
+     *
+     * @return retrato aberto, a fechar assim que no for mais usado
+     */
+    public Retrato abrirRetrato() {
+        return metricas.medir("abrirRetrato", () -> sistema.abrirRetrato());
+    }
+
+    /**
+     * Exporta de uma vez o estado pblico de um usurio, lido de um retrato.
+     *
+     * @param login login do usurio
+     * @return texto "login=...;perfil={...};amigos={...};idolos={...};fas={...};comunidades={...}"
+     */
+    public String exportarUsuario(String login) {
+        return metricas.medir("exportarUsuario", () -> sistema.exportarUsuario(login));
+    }
+
+    /**
+     * Retorna quantos eventos foram registrados desde o ltimo reincio.
+     *
+     * @return quantidade de eventos
+     */
+    public int contarEventos() {
+        return metricas.medir("contarEventos", () -> sistema.contarEventos());
+    }
+
+    /**
+     * Reconstri as projees de leitura a partir do fluxo de eventos.
+     *
+     * @param particoes nmero de threads da reconstruo
+     * @return quantidade de eventos reaplicados
+     */
+    public int reconstruirProjecoes(int particoes) {
+        return metricas.medir("reconstruirProjecoes", () -> sistema.reconstruirProjecoes(particoes));
     }
 
     /**
      * Reinicia todos os dados do sistema.
      */
     public void zerarSistema() {
-        sistema.zerar();
+        metricas.medir("zerarSistema", () -> sistema.zerar());
     }
 
     /**
      * Encerra o sistema, salvando o estado atual em disco.
      */
     public void encerrarSistema() {
-        salvarDados();
+        metricas.medir("encerrarSistema", this::salvarDados);
+    }
+
+    /**
+     * Define o relgio usado para datar recados e mensagens.
+     *
+     * @param relogio relgio do sistema
+     */
+    public void setRelogio(Clock relogio) {
+        sistema.setRelogio(relogio);
+    }
+
+    /**
+     * Define a fonte dos IDs de novas sesses.
+     *
+     * @param geradorIds fornecedor de IDs nicos, ou null para UUIDs aleatrios
+     */
+    public void setGeradorSessoes(Supplier<String> geradorIds) {
+        sistema.setGeradorSessoes(geradorIds);
+    }
+
+    /**
+     * Define quem executa o despejo dos usurios que excedem o limite em memria.
+     *
+     * @param agendador executor do despejo, ou null para despejar na hora
+     */
+    public void setAgendadorDespejo(Executor agendador) {
+        sistema.setAgendadorDespejo(agendador);
+    }
+
+    /**
+     * Exporta uma cpia do estado atual, sem grav-lo em disco.
+     *
+     * @param saida fluxo de destino
+     * @throws PersistenciaException se a serializao falhar
+     */
+    public void exportarEstado(OutputStream saida) {
+        metricas.medir("exportarEstado", () -> {
+            try {
+                sistema.salvarEstado(saida);
+            } catch (IOException e) {
+                throw new PersistenciaException();
+            }
+        });
+    }
+
+    /**
+     * Substitui o estado atual por um exportado com {@link #exportarEstado(OutputStream)}.
+     * Relgio, gerador de sesses e agendador do despejo voltam ao padro.
+     *
+     * @param entrada fluxo de origem
+     * @throws PersistenciaException se a desserializao falhar
+     */
+    public void importarEstado(InputStream entrada) {
+        metricas.medir("importarEstado", () -> {
+            try {
+                sistema = Jackute.carregarEstado(entrada);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new PersistenciaException();
+            }
+        });
+    }
+
+    /**
+     * Resumo em texto das mtricas: chamadas, falhas e percentis de latncia
+     * de cada operao j chamada, falhas por tipo de exceo e medidores do
+     * estado (usurios, comunidades, sesses, recados e mensagens pendentes).
+     *
+     * @return resumo das mtricas
+     */
+    public String getMetricas() {
+        return metricas.resumo();
+    }
+
+    /**
+     * Estima a ocupao de heap do estado, para planejamento de capacidade:
+     * bytes por subsistema (sesses, usurios, comunidades, eventos e
+     * projees), distribuies por usurio de bytes, relacionamentos, recados
+     * e atributos de perfil, e os usurios e comunidades mais pesados. Usurios
+     * em disco entram pelo tamanho dos seus registros.
+     *
+     * @param top quantos usurios e comunidades mais pesados listar
+     * @return relatrio em texto
+     */
+    public String analisarMemoria(int top) {
+        return metricas.medir("analisarMemoria", () -> sistema.analisarMemoria(top));
+    }
+
+    /**
+     * Conta as chamadas de uma operao desde o incio ou desde {@link #zerarMetricas()}.
+     *
+     * @param operacao nome do mtodo da fachada
+     * @return nmero de chamadas, com ou sem sucesso
+     */
+    public long contarChamadas(String operacao) {
+        MetricasOperacao m = metricas.getOperacao(operacao);
+        return (m == null) ? 0 : m.getLatencias().contagem();
+    }
+
+    /**
+     * Conta as chamadas de uma operao que lanaram exceo.
+     *
+     * @param operacao nome do mtodo da fachada
+     * @return nmero de falhas
+     */
+    public long contarFalhas(String operacao) {
+        MetricasOperacao m = metricas.getOperacao(operacao);
+        return (m == null) ? 0 : m.getFalhas();
+    }
+
+    /**
+     * Descarta as mtricas coletadas at agora.
+     */
+    public void zerarMetricas() {
+        metricas.zerar();
+    }
+
+    /**
+     * L os medidores do estado: usurios, comunidades, sesses abertas, recados
+     * guardados e mensagens de comunidade retidas.
+     *
+     * @return valores por nome do medidor
+     */
+    public Map<String, Long> getMedidores() {
+        return sistema.getMedidores();
+    }
+
+    /**
+     * @return registro das mtricas desta fachada, para publicao por JMX
+     */
+    public RegistroMetricas getRegistroMetricas() {
+        return metricas;
     }
 
     /**
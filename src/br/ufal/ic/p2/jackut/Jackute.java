@@ -1,13 +1,40 @@
 package br.ufal.ic.p2.jackut;
 
+import br.ufal.ic.p2.jackut.eventos.*;
 import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.metricas.PersistenciaJfr;
+import br.ufal.ic.p2.jackut.metricas.RelatorioMemoria;
+import br.ufal.ic.p2.jackut.metricas.RemocaoContaJfr;
+import br.ufal.ic.p2.jackut.metricas.ResolucaoSessaoJfr;
 import br.ufal.ic.p2.jackut.models.*;
 import br.ufal.ic.p2.jackut.services.*;
 import java.io.*;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
 
 /**
  * Implementa o ncleo de negcios do sistema Jackut, gerenciando usurios, sesses,
  * relacionamentos, recados e comunidades, alm de persistncia de estado.
+ * <p>
+ * Cada alterao bem-sucedida tambm  registrada como um {@link Evento} no
+ * {@link FluxoEventos}, persistido com o estado. As consultas derivadas (amigos
+ * em comum, contagem de fs e de membros) so atendidas por projees do fluxo,
+ * mantidas s em memria e reconstrudas em paralelo na carga. A
+ * {@link ProjecaoVersionada} guarda perfis, relacionamentos e comunidades por
+ * poca, responde por amigos em comum e fs e atende leituras consistentes sem
+ * travas por meio de {@link Retrato}s.
+ * </p>
  *
  * @author Iury
  * @version 1.0
@@ -19,6 +46,89 @@ public class Jackute implements Serializable {
     private final GerenciadorUsuarios usuarios = new GerenciadorUsuarios();
     private final GerenciadorSessoes sessoes = new GerenciadorSessoes();
     private GerenciadorComunidades comunidades = new GerenciadorComunidades(usuarios);
+    private transient GerenciadorAssinaturas assinaturas;
+    private FluxoEventos eventos = new FluxoEventos();
+    private transient ProjecaoMembros projecaoMembros;
+    private transient ProjecaoVersionada projecaoVersionada;
+    private transient Clock relogio;
+    private transient Clock relogioFixo;
+
+    /**
+     * Cria um sistema vazio.
+     */
+    public Jackute() {
+        conectarServicos();
+    }
+
+    /**
+     * Cria os servios mantidos apenas em memria (inscries de push, relgio e
+     * projees do fluxo de eventos) e os liga aos gerenciadores que entregam
+     * recados e mensagens. As projees so preenchidas a partir do fluxo.
+     */
+    private void conectarServicos() {
+        assinaturas = new GerenciadorAssinaturas();
+        usuarios.setAssinaturas(assinaturas);
+        comunidades.setAssinaturas(assinaturas);
+        setRelogio(Clock.systemUTC());
+        projecaoMembros = new ProjecaoMembros();
+        projecaoVersionada = new ProjecaoVersionada();
+        eventos.setProjecoes(List.of(projecaoMembros, projecaoVersionada));
+        PersistenciaJfr evento = new PersistenciaJfr();
+        evento.begin();
+        int reaplicados = eventos.reconstruir(Runtime.getRuntime().availableProcessors());
+        if (evento.shouldCommit()) {
+            evento.fase = PersistenciaJfr.PROJECOES;
+            evento.eventos = reaplicados;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Define o relgio usado para datar recados e mensagens.
+     *
+     * @param relogio relgio do sistema
+     */
+    public void setRelogio(Clock relogio) {
+        this.relogio = relogio;
+        if (relogioFixo == null) aplicarRelogio(relogio);
+    }
+
+    /**
+     * Para o relgio em um instante, para roteiros de teste que precisam datar
+     * recados e mensagens e verificar a reteno sem depender da hora real. O
+     * relgio parado no  gravado com o estado e continua valendo se outro
+     * relgio for definido por {@link #setRelogio}.
+     *
+     * @param instante instante ISO-8601
+     * @throws IllegalArgumentException se o instante for invlido
+     */
+    public void fixarRelogio(String instante) {
+        relogioFixo = Clock.fixed(Instant.ofEpochMilli(lerInstante(instante)), ZoneOffset.UTC);
+        aplicarRelogio(relogioFixo);
+    }
+
+    /**
+     * Volta a usar o relgio definido por {@link #setRelogio}, desfazendo
+     * {@link #fixarRelogio}.
+     */
+    public void liberarRelogio() {
+        relogioFixo = null;
+        aplicarRelogio(relogio);
+    }
+
+    private void aplicarRelogio(Clock relogio) {
+        usuarios.setRelogio(relogio);
+        comunidades.setRelogio(relogio);
+    }
+
+    /**
+     * Define a fonte dos IDs de novas sesses.
+     *
+     * @param geradorIds fornecedor de IDs nicos, ou null para UUIDs aleatrios
+     */
+    public void setGeradorSessoes(Supplier<String> geradorIds) {
+        sessoes.setGeradorIds(geradorIds);
+    }
 
     /**
      * Reseta completamente o sistema, removendo todos os usurios, sesses
@@ -28,6 +138,8 @@ public class Jackute implements Serializable {
         usuarios.zerar();
         sessoes.zerar();
         comunidades.zerar();
+        assinaturas.zerar();
+        eventos.zerar();
     }
 
     /**
@@ -43,6 +155,7 @@ public class Jackute implements Serializable {
     public void criarUsuario(String login, String senha, String nome) {
         validarCredenciais(login, senha);
         usuarios.criarUsuario(login, senha, nome);
+        registrar(TipoEvento.USUARIO_CRIADO, login, null, nome);
     }
 
     /**
@@ -54,15 +167,11 @@ public class Jackute implements Serializable {
      * @throws LoginOuSenhaInvalidosException se credenciais invlidas
      */
     public String abrirSessao(String login, String senha) {
-        try {
-            Usuario usuario = usuarios.getUsuario(login);
-            if (!usuario.getSenha().equals(senha)) {
-                throw new LoginOuSenhaInvalidosException();
-            }
-            return sessoes.criarSessao(login);
-        } catch (UsuarioNaoEncontradoException e) {
+        Usuario usuario = usuarios.buscarUsuario(login);
+        if (usuario == null || !usuario.getSenha().equals(senha)) {
             throw new LoginOuSenhaInvalidosException();
         }
+        return sessoes.criarSessao(usuario.getLogin());
     }
 
     /**
@@ -88,7 +197,8 @@ public class Jackute implements Serializable {
      */
     public void editarPerfil(String idSessao, String atributo, String valor) {
         Usuario usuario = getUsuarioPorSessao(idSessao);
-        usuario.getPerfil().setAtributo(atributo, valor);
+        usuario.editarAtributo(atributo, valor);
+        registrar(TipoEvento.PERFIL_EDITADO, usuario.getLogin(), atributo, valor);
     }
 
     /**
@@ -103,6 +213,9 @@ public class Jackute implements Serializable {
     public void adicionarAmigo(String idSessao, String amigoLogin) {
         Usuario usuario = getUsuarioPorSessao(idSessao);
         usuarios.adicionarAmigo(usuario.getLogin(), amigoLogin);
+        boolean confirmada = usuario.getAmigos().contains(amigoLogin);
+        registrar(confirmada ? TipoEvento.AMIZADE_CONFIRMADA : TipoEvento.AMIZADE_SOLICITADA,
+                usuario.getLogin(), amigoLogin, null);
     }
 
     /**
@@ -137,6 +250,7 @@ public class Jackute implements Serializable {
      * @throws AutoMensagemException       se enviar recado para si mesmo
      * @throws UsuarioNaoEncontradoException se destinatrio no existir
      * @throws InimigoException            se destinatrio for inimigo
+     * @throws CaixaRecadosCheiaException  se a caixa do destinatrio recusar o recado
      */
     public void enviarRecado(String idSessao, String destinatario, String mensagem) {
         Usuario remetente = getUsuarioPorSessao(idSessao);
@@ -148,7 +262,8 @@ public class Jackute implements Serializable {
         if (remetente.getLogin().equals(destinatario)) {
             throw new AutoMensagemException("Usurio no pode enviar recado para si mesmo.");
         }
-        dest.adicionarRecado(new Recado(remetente.getLogin(), mensagem));
+        usuarios.entregarRecado(dest, new Recado(remetente.getId(), remetente.getLogin(), mensagem, usuarios.agora()));
+        registrar(TipoEvento.RECADO_ENVIADO, remetente.getLogin(), destinatario, null);
     }
 
     /**
@@ -161,7 +276,164 @@ public class Jackute implements Serializable {
      */
     public String lerRecado(String idSessao) {
         Usuario usuario = getUsuarioPorSessao(idSessao);
-        return usuario.lerRecado();
+        return usuarios.lerRecado(usuario);
+    }
+
+    /**
+     * L de uma s vez at {@code max} recados do usurio da sesso.
+     *
+     * @param idSessao ID da sesso ativa
+     * @param max      quantidade mxima de recados
+     * @return string formatada "{recado1,recado2,...}", vazia se no houver recados
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     */
+    public String lerRecados(String idSessao, int max) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        return usuarios.lerRecados(usuario, max);
+    }
+
+    /**
+     * Conta os recados pendentes do usurio da sesso.
+     *
+     * @param idSessao ID da sesso ativa
+     * @return quantidade de recados pendentes
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     */
+    public int contarRecados(String idSessao) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        return usuarios.contarRecados(usuario);
+    }
+
+    /**
+     * Lista, sem consumir, os recados pendentes do usurio da sesso recebidos
+     * a partir de um instante.
+     *
+     * @param idSessao ID da sesso ativa
+     * @param instante instante ISO-8601, por exemplo "2025-05-04T10:15:30Z"
+     * @return string formatada "{recado1,recado2,...}"
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     * @throws IllegalArgumentException      se o instante for invlido
+     */
+    public String recadosDesde(String idSessao, String instante) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        return usuarios.recadosDesde(usuario, lerInstante(instante));
+    }
+
+    /**
+     * Lista as mensagens de uma comunidade publicadas na janela [de, ate).
+     *
+     * @param nome nome da comunidade
+     * @param de   instante inicial ISO-8601, inclusive
+     * @param ate  instante final ISO-8601, exclusive
+     * @return string formatada "{msg1,msg2,...}"
+     * @throws ComunidadeNaoEncontradaException se comunidade no existir
+     * @throws IllegalArgumentException         se algum instante for invlido
+     */
+    public String historicoComunidade(String nome, String de, String ate) {
+        return comunidades.getHistorico(nome, lerInstante(de), lerInstante(ate));
+    }
+
+    /**
+     * Define por quanto tempo recados e mensagens so guardados.
+     *
+     * @param duracao durao ISO-8601, por exemplo "P30D"; "PT0S" desativa a reteno
+     * @throws IllegalArgumentException se a durao for invlida ou negativa
+     */
+    public void configurarRetencao(String duracao) {
+        long retencao;
+        try {
+            retencao = Duration.parse(duracao).toMillis();
+        } catch (DateTimeException | ArithmeticException | NullPointerException e) {
+            throw new IllegalArgumentException("Durao invlida.");
+        }
+        if (retencao < 0) {
+            throw new IllegalArgumentException("Durao invlida.");
+        }
+        usuarios.setRetencao(retencao);
+        comunidades.setRetencao(retencao);
+    }
+
+    /**
+     * Limita quantos usurios ficam em memria; os usados h mais tempo vo para
+     * um arquivo temporrio em disco e voltam quando acessados. O limite 
+     * persistido com o estado. S os objetos dos usurios saem da memria: o
+     * fluxo de eventos, as projees e os ndices por login continuam com uma
+     * entrada por usurio.
+     *
+     * @param limite nmero mximo de usurios em memria, ou zero para manter todos
+     * @throws IllegalArgumentException se o limite for negativo ou menor que dois
+     * @throws PersistenciaException    se o armazm em disco falhar
+     */
+    public void configurarUsuariosEmMemoria(int limite) {
+        usuarios.setLimiteEmMemoria(limite);
+    }
+
+    /**
+     * @return quantidade de usurios em memria; todos, se no houver limite
+     */
+    public int contarUsuariosEmMemoria() {
+        return usuarios.contarUsuariosEmMemoria();
+    }
+
+    /**
+     * Define quem executa o despejo dos usurios que excedem o limite em memria.
+     *
+     * @param agendador executor do despejo, ou null para despejar na hora
+     * @see GerenciadorUsuarios#setAgendadorDespejo(Executor)
+     */
+    public void setAgendadorDespejo(Executor agendador) {
+        usuarios.setAgendadorDespejo(agendador);
+    }
+
+    /**
+     * Converte um instante ISO-8601 em milissegundos desde a poca Unix.
+     *
+     * @param instante texto do instante
+     * @return instante em milissegundos
+     * @throws IllegalArgumentException se o instante for invlido
+     */
+    private long lerInstante(String instante) {
+        try {
+            return Instant.parse(instante).toEpochMilli();
+        } catch (DateTimeException | ArithmeticException | NullPointerException e) {
+            throw new IllegalArgumentException("Instante invlido.");
+        }
+    }
+
+    /**
+     * Inscreve o usurio da sesso para receber por push os recados e mensagens
+     * de comunidade que chegarem a partir de agora, em vez de consult-los
+     * repetidamente. Os itens notificados continuam disponveis para leitura.
+     * O publicador  da sesso e  fechado quando seu ltimo assinante cancela
+     * ou quando a conta  removida.
+     *
+     * @param idSessao ID da sesso ativa
+     * @return publicador ao qual o cliente deve inscrever seu {@link Flow.Subscriber}
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     */
+    public Flow.Publisher<Notificacao> assinarNotificacoes(String idSessao) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        return assinaturas.assinar(usuario.getLogin(), idSessao);
+    }
+
+    /**
+     * Configura o limite da caixa de recados do usurio da sesso.
+     *
+     * @param idSessao ID da sesso ativa
+     * @param limite   nmero mximo de recados guardados
+     * @param politica poltica de transbordo: DESCARTAR_ANTIGO ou REJEITAR
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     * @throws IllegalArgumentException      se limite ou poltica invlidos
+     */
+    public void configurarCaixaRecados(String idSessao, int limite, String politica) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        CaixaPostal.PoliticaTransbordo p;
+        try {
+            p = CaixaPostal.PoliticaTransbordo.valueOf(politica);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Poltica de transbordo invlida.");
+        }
+        usuario.configurarCaixaRecados(limite, p);
     }
 
     /**
@@ -177,6 +449,7 @@ public class Jackute implements Serializable {
         Usuario usuario = getUsuarioPorSessao(idSessao);
         comunidades.criarComunidade(nome, descricao, usuario.getLogin());
         usuario.adicionarComunidade(nome);
+        registrar(TipoEvento.COMUNIDADE_CRIADA, usuario.getLogin(), nome, descricao);
     }
 
     /**
@@ -225,6 +498,7 @@ public class Jackute implements Serializable {
         Usuario usuario = getUsuarioPorSessao(idSessao);
         comunidades.adicionarMembro(nomeComunidade, usuario.getLogin());
         usuario.adicionarComunidade(nomeComunidade);
+        registrar(TipoEvento.MEMBRO_ADICIONADO, usuario.getLogin(), nomeComunidade, null);
     }
 
     /**
@@ -239,18 +513,36 @@ public class Jackute implements Serializable {
     }
 
     /**
-     * Obtm usurio associado  sesso.
+     * Retorna o login do usurio de uma sesso.
      *
      * @param idSessao ID da sesso
-     * @return objeto Usuario
+     * @return login do usurio
      * @throws UsuarioNaoEncontradoException se sesso invlida
      */
-    private Usuario getUsuarioPorSessao(String idSessao) {
+    public String getLoginSessao(String idSessao) {
+        ResolucaoSessaoJfr evento = new ResolucaoSessaoJfr();
+        evento.begin();
         String login = sessoes.getLogin(idSessao);
+        if (evento.shouldCommit()) {
+            evento.login = login;
+            evento.encontrada = (login != null);
+            evento.commit();
+        }
         if (login == null) {
             throw new UsuarioNaoEncontradoException();
         }
-        return usuarios.getUsuario(login);
+        return login;
+    }
+
+    /**
+     * Obtm usurio associado  sesso.
+     *
+     * @param idSessao ID da sesso
+     * @return objeto Usuario
+     * @throws UsuarioNaoEncontradoException se sesso invlida
+     */
+    private Usuario getUsuarioPorSessao(String idSessao) {
+        return usuarios.getUsuario(getLoginSessao(idSessao));
     }
 
     /**
@@ -262,6 +554,7 @@ public class Jackute implements Serializable {
     public void adicionarIdolo(String sessao, String idolo) {
         Usuario usuario = getUsuarioPorSessao(sessao);
         usuarios.adicionarIdolo(usuario.getLogin(), idolo);
+        registrar(TipoEvento.IDOLO_ADICIONADO, usuario.getLogin(), idolo, null);
     }
 
     /**
@@ -273,6 +566,7 @@ public class Jackute implements Serializable {
     public void adicionarPaquera(String sessao, String paquera) {
         Usuario usuario = getUsuarioPorSessao(sessao);
         usuarios.adicionarPaquera(usuario.getLogin(), paquera);
+        registrar(TipoEvento.PAQUERA_ADICIONADA, usuario.getLogin(), paquera, null);
     }
 
     /**
@@ -295,6 +589,7 @@ public class Jackute implements Serializable {
     public void adicionarInimigo(String sessao, String inimigo) {
         Usuario usuario = getUsuarioPorSessao(sessao);
         usuarios.adicionarInimigo(usuario.getLogin(), inimigo);
+        registrar(TipoEvento.INIMIGO_ADICIONADO, usuario.getLogin(), inimigo, null);
     }
 
     /**
@@ -308,6 +603,48 @@ public class Jackute implements Serializable {
         return "{" + String.join(",", usuario.getFas()) + "}";
     }
 
+    /**
+     * Retorna os usurios com mais fs.
+     *
+     * @param k quantidade mxima de dolos
+     * @return string formatada "{idolo1,idolo2,...}" em ordem decrescente de fs
+     */
+    public String getTopIdolos(int k) {
+        return usuarios.getTopIdolos(k);
+    }
+
+    /**
+     * Retorna as comunidades com mais membros.
+     *
+     * @param k quantidade mxima de comunidades
+     * @return string formatada "{comun1,comun2,...}" em ordem decrescente de membros
+     */
+    public String getTopComunidades(int k) {
+        return comunidades.getTopComunidades(k);
+    }
+
+    /**
+     * Sugere comunidades cujo nome comea com um prefixo.
+     *
+     * @param prefixo incio do nome, sem diferenciar maisculas
+     * @param k       quantidade mxima de sugestes
+     * @return string formatada "{comun1,comun2,...}" em ordem alfabtica
+     */
+    public String autocompletarComunidades(String prefixo, int k) {
+        return comunidades.autocompletar(prefixo, k);
+    }
+
+    /**
+     * Sugere usurios cujo login comea com um prefixo.
+     *
+     * @param prefixo incio do login, sem diferenciar maisculas
+     * @param k       quantidade mxima de sugestes
+     * @return string formatada "{login1,login2,...}" em ordem alfabtica
+     */
+    public String autocompletarUsuarios(String prefixo, int k) {
+        return usuarios.autocompletar(prefixo, k);
+    }
+
     /**
      * Verifica relao de paquera.
      *
@@ -342,10 +679,213 @@ public class Jackute implements Serializable {
         if (login == null) {
             throw new UsuarioNaoEncontradoException();
         }
-        comunidades.removerUsuarioDeTodasComunidades(login);
+        RemocaoContaJfr evento = new RemocaoContaJfr();
+        evento.begin();
+        int comunidadesAfetadas = comunidades.removerUsuarioDeTodasComunidades(login);
         sessoes.removerSessoesDoUsuario(login);
-        usuarios.removerUsuarioDeRelacionamentos(login);
+        assinaturas.encerrar(login);
+        int usuariosPercorridos = evento.isEnabled() ? usuarios.contarRelacionados(login) : 0;
+        int usuariosAfetados = usuarios.removerUsuarioDeRelacionamentos(login);
         usuarios.removerUsuario(login);
+        registrar(TipoEvento.USUARIO_REMOVIDO, login, null, null);
+        if (evento.shouldCommit()) {
+            evento.login = login;
+            evento.comunidades = comunidadesAfetadas;
+            evento.usuariosPercorridos = usuariosPercorridos;
+            evento.usuariosAfetados = usuariosAfetados;
+            evento.commit();
+        }
+    }
+
+    /**
+     * Retorna os amigos que dois usurios tm em comum, a partir da projeo versionada.
+     *
+     * @param login1 login do primeiro usurio
+     * @param login2 login do segundo usurio
+     * @return string formatada "{amigo1,amigo2,...}" em ordem alfabtica
+     * @throws UsuarioNaoEncontradoException se algum usurio no existir
+     */
+    public String getAmigosEmComum(String login1, String login2) {
+        usuarios.getUsuario(login1);
+        usuarios.getUsuario(login2);
+        return projecaoVersionada.getAmigosEmComum(login1, login2);
+    }
+
+    /**
+     * Retorna quantos fs um usurio tem, a partir da projeo versionada.
+     *
+     * @param login login do usurio
+     * @return nmero de fs
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public int contarFas(String login) {
+        usuarios.getUsuario(login);
+        return projecaoVersionada.contarFas(login);
+    }
+
+    /**
+     * Retorna quantos membros uma comunidade tem, a partir da projeo de membros.
+     *
+     * @param nome nome da comunidade
+     * @return nmero de membros, incluindo o dono
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public int contarMembrosComunidade(String nome) {
+        comunidades.getComunidade(nome);
+        return projecaoMembros.contarMembros(nome);
+    }
+
+    /**
+     * Abre um retrato do ltimo evento registrado. As consultas do retrato no
+     * travam o ncleo e no so afetadas pelas escritas seguintes.
+     *
+     * @return retrato aberto, a fechar assim que no for mais usado
+     */
+    public Retrato abrirRetrato() {
+        return projecaoVersionada.abrirRetrato();
+    }
+
+    /**
+     * Exporta o estado pblico de um usurio a partir de um retrato, sem travar
+     * as escritas feitas enquanto as listas so percorridas.
+     *
+     * @param login login do usurio
+     * @return texto no formato de {@link Retrato#exportarUsuario(String)}
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public String exportarUsuario(String login) {
+        try (Retrato retrato = abrirRetrato()) {
+            return retrato.exportarUsuario(login);
+        }
+    }
+
+    /**
+     * @return quantidade de eventos registrados no fluxo
+     */
+    public int contarEventos() {
+        return eventos.tamanho();
+    }
+
+    /**
+     * Estima a ocupao de heap do estado: bytes por subsistema, distribuies
+     * por usurio e os usurios e comunidades mais pesados. Os usurios em disco
+     * entram pelo tamanho dos seus registros, sem serem carregados. No altera o estado.
+     *
+     * @param top quantos usurios e comunidades mais pesados listar
+     * @return relatrio em texto
+     */
+    public String analisarMemoria(int top) {
+        Map<String, Object> subsistemas = new LinkedHashMap<>();
+        subsistemas.put("sessoes", sessoes);
+        subsistemas.put("assinaturas", assinaturas);
+        subsistemas.put("usuarios", usuarios);
+        subsistemas.put("comunidades", comunidades);
+        subsistemas.put("projecoes", List.of(projecaoMembros, projecaoVersionada));
+        subsistemas.put("eventos", eventos);
+        return RelatorioMemoria.gerar(subsistemas, usuarios.getUsuarios(), usuarios.getUsuariosEmDisco(),
+                comunidades.getComunidades(), top);
+    }
+
+    /**
+     * L os medidores do estado sem alter-lo: usurios, comunidades, sesses
+     * abertas, canais de notificao abertos, recados guardados nas caixas postais, mensagens de comunidade
+     * retidas aguardando leitura, usurios mantidos em memria e verses antigas
+     * da projeo versionada que ainda aguardam o fechamento de retratos.
+     *
+     * @return valores por nome do medidor, em ordem fixa
+     */
+    public Map<String, Long> getMedidores() {
+        long recados = usuarios.contarRecadosArmazenados();
+        long mensagens = 0;
+        for (Community c : comunidades.getComunidades()) {
+            mensagens += c.getMensagensRetidas();
+        }
+        Map<String, Long> medidores = new LinkedHashMap<>();
+        medidores.put("usuarios", (long) usuarios.contarUsuarios());
+        medidores.put("comunidades", (long) comunidades.getComunidades().size());
+        medidores.put("sessoes", (long) sessoes.contarSessoes());
+        medidores.put("canaisNotificacao", (long) assinaturas.contarCanais());
+        medidores.put("recadosPendentes", recados);
+        medidores.put("mensagensPendentes", mensagens);
+        medidores.put("usuariosEmMemoria", (long) usuarios.contarUsuariosEmMemoria());
+        medidores.put("versoesPendentes", (long) projecaoVersionada.contarPendencias());
+        return medidores;
+    }
+
+    /**
+     * Descarta as projees e as reconstri a partir do fluxo de eventos.
+     *
+     * @param particoes nmero de threads da reconstruo
+     * @return quantidade de eventos reaplicados
+     * @throws IllegalArgumentException se o nmero de parties no for positivo
+     */
+    public int reconstruirProjecoes(int particoes) {
+        return eventos.reconstruir(particoes);
+    }
+
+    /**
+     * Registra um evento no fluxo, datado pelo relgio do sistema.
+     */
+    private void registrar(TipoEvento tipo, String autor, String alvo, String valor) {
+        eventos.registrar(usuarios.agora(), tipo, usuarios.canonico(autor), usuarios.canonico(alvo), valor);
+    }
+
+    /**
+     * Registra eventos equivalentes ao estado atual, para estados gravados antes
+     * da existncia do fluxo: usurios com seus perfis, amizades, dolos, paqueras,
+     * inimigos e comunidades com seus membros, e por fim a ordem das listas de
+     * amigos, fs e comunidades de cada usurio, para que os retratos as
+     * devolvam na mesma ordem que o ncleo.
+     */
+    private void registrarEstadoInicial() {
+        List<Usuario> todos = new ArrayList<>(usuarios.getUsuarios());
+        for (Usuario u : todos) {
+            registrar(TipoEvento.USUARIO_CRIADO, u.getLogin(), null, u.getPerfil().getAtributo("nome"));
+            for (Map.Entry<String, String> atributo : u.getPerfil().getAtributos().entrySet()) {
+                if (!"nome".equals(atributo.getKey())) {
+                    registrar(TipoEvento.PERFIL_EDITADO, u.getLogin(), atributo.getKey(), atributo.getValue());
+                }
+            }
+        }
+        for (Usuario u : todos) {
+            for (String amigo : u.getAmigos()) {
+                if (u.getLogin().compareTo(amigo) < 0) {
+                    registrar(TipoEvento.AMIZADE_CONFIRMADA, u.getLogin(), amigo, null);
+                }
+            }
+            for (String idolo : u.getIdolos()) {
+                registrar(TipoEvento.IDOLO_ADICIONADO, u.getLogin(), idolo, null);
+            }
+            for (String paquera : u.getPaqueras()) {
+                registrar(TipoEvento.PAQUERA_ADICIONADA, u.getLogin(), paquera, null);
+            }
+            for (String inimigo : u.getInimigos()) {
+                registrar(TipoEvento.INIMIGO_ADICIONADO, u.getLogin(), inimigo, null);
+            }
+        }
+        for (Community c : comunidades.getComunidades()) {
+            registrar(TipoEvento.COMUNIDADE_CRIADA, c.getOwner(), c.getName(), c.getDescription());
+            for (String membro : c.getMembers()) {
+                if (!membro.equals(c.getOwner())) {
+                    registrar(TipoEvento.MEMBRO_ADICIONADO, membro, c.getName(), null);
+                }
+            }
+        }
+        for (Usuario u : todos) {
+            registrarOrdem(u.getLogin(), "amigos", u.getAmigos());
+            registrarOrdem(u.getLogin(), "fas", u.getFas());
+            registrarOrdem(u.getLogin(), "comunidades", u.getComunidades());
+        }
+    }
+
+    /**
+     * Registra a ordem de uma lista do usurio no estado carregado. Os eventos
+     * acima seguem a ordem dos usurios e das comunidades, no a de cada lista.
+     */
+    private void registrarOrdem(String login, String lista, Set<String> itens) {
+        if (itens.size() > 1) {
+            registrar(TipoEvento.LISTA_ORDENADA, login, lista, String.join(String.valueOf(TipoEvento.SEPARADOR), itens));
+        }
     }
 
     /**
@@ -366,14 +906,36 @@ public class Jackute implements Serializable {
     }
 
     /**
-     * Salva o estado do sistema em arquivo.
+     * Salva o estado do sistema em arquivo. As caixas de recados so compactadas
+     * antes, para que recados de usurios removidos no sejam persistidos.
      *
      * @param arquivo caminho do arquivo de destino
      * @throws IOException se falha de I/O ocorrer
      */
     public void salvarEstado(String arquivo) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(arquivo))) {
-            oos.writeObject(this);
+        usuarios.compactarRecados();
+        try (OutputStream saida = new FileOutputStream(arquivo)) {
+            salvarEstado(saida);
+        }
+    }
+
+    /**
+     * Serializa o estado do sistema em um fluxo, sem alter-lo.
+     *
+     * @param saida fluxo de destino; no  fechado
+     * @throws IOException se falha de I/O ocorrer
+     */
+    public void salvarEstado(OutputStream saida) throws IOException {
+        PersistenciaJfr evento = new PersistenciaJfr();
+        evento.begin();
+        SaidaContada contada = new SaidaContada(saida);
+        ObjectOutputStream oos = new ObjectOutputStream(contada);
+        oos.writeObject(this);
+        oos.flush();
+        if (evento.shouldCommit()) {
+            evento.fase = PersistenciaJfr.SALVAR;
+            evento.bytes = contada.bytes;
+            evento.commit();
         }
     }
 
@@ -386,11 +948,32 @@ public class Jackute implements Serializable {
      * @throws ClassNotFoundException se classe no for encontrada
      */
     public static Jackute carregarEstado(String arquivo) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(arquivo))) {
-            return (Jackute) ois.readObject();
+        try (InputStream entrada = new FileInputStream(arquivo)) {
+            return carregarEstado(entrada);
         }
     }
 
+    /**
+     * Carrega estado do sistema de um fluxo.
+     *
+     * @param entrada fluxo de origem; no  fechado
+     * @return instncia do sistema restaurada
+     * @throws IOException            se falha de I/O ocorrer
+     * @throws ClassNotFoundException se classe no for encontrada
+     */
+    public static Jackute carregarEstado(InputStream entrada) throws IOException, ClassNotFoundException {
+        PersistenciaJfr evento = new PersistenciaJfr();
+        evento.begin();
+        EntradaContada contada = new EntradaContada(entrada);
+        Jackute sistema = (Jackute) new ObjectInputStream(contada).readObject();
+        if (evento.shouldCommit()) {
+            evento.fase = PersistenciaJfr.CARREGAR;
+            evento.bytes = contada.bytes;
+            evento.commit();
+        }
+        return sistema;
+    }
+
     /**
      * Hook para garantir compatibilidade ao desserializar verses antigas.
      *
@@ -403,6 +986,28 @@ public class Jackute implements Serializable {
         if (this.comunidades == null) {
             this.comunidades = new GerenciadorComunidades(this.usuarios);
         }
+        boolean semFluxo = (this.eventos == null);
+        if (semFluxo) {
+            this.eventos = new FluxoEventos();
+        }
+        canonicalizarLogins();
+        conectarServicos();
+        if (semFluxo) {
+            registrarEstadoInicial();
+        }
+    }
+
+    /**
+     * Faz todas as estruturas apontarem para a instncia cannica de cada login
+     * (a do prprio usurio). A serializao preserva o compartilhamento, ento
+     * isso s muda algo em estados gravados antes da canonicalizao, em que cada
+     * ocorrncia de um login  uma String separada.
+     */
+    private void canonicalizarLogins() {
+        usuarios.canonicalizarLogins();
+        comunidades.canonicalizarLogins(usuarios::canonico);
+        sessoes.canonicalizarLogins(usuarios::canonico);
+        eventos.canonicalizarLogins(usuarios::canonico);
     }
 
     /**
@@ -415,6 +1020,18 @@ public class Jackute implements Serializable {
     public void enviarMensagem(String idSessao, String nomeComunidade, String mensagem) {
         Usuario remetente = getUsuarioPorSessao(idSessao);
         comunidades.enviarMensagem(nomeComunidade, mensagem);
+        registrar(TipoEvento.MENSAGEM_ENVIADA, remetente.getLogin(), nomeComunidade, null);
+    }
+
+    /**
+     * Retorna o atraso de entrega de uma comunidade.
+     *
+     * @param nome nome da comunidade
+     * @return nmero de mensagens ainda no lidas pelo membro mais atrasado
+     * @throws ComunidadeNaoEncontradaException se comunidade no existir
+     */
+    public long getAtrasoComunidade(String nome) {
+        return comunidades.getAtrasoEntrega(nome);
     }
 
     /**
@@ -425,6 +1042,84 @@ public class Jackute implements Serializable {
      */
     public String lerMensagem(String idSessao) {
         Usuario usuario = getUsuarioPorSessao(idSessao);
-        return usuario.lerMensagem();
+        return comunidades.lerMensagem(usuario);
+    }
+
+    /**
+     * L de uma s vez at {@code max} mensagens de comunidade do usurio da sesso.
+     *
+     * @param idSessao ID da sesso
+     * @param max      quantidade mxima de mensagens
+     * @return string formatada "{msg1,msg2,...}", vazia se no houver mensagens
+     */
+    public String lerMensagens(String idSessao, int max) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        return comunidades.lerMensagens(usuario, max);
+    }
+
+    /**
+     * Conta as mensagens de comunidade pendentes do usurio da sesso.
+     *
+     * @param idSessao ID da sesso
+     * @return quantidade de mensagens pendentes
+     */
+    public long contarMensagens(String idSessao) {
+        Usuario usuario = getUsuarioPorSessao(idSessao);
+        return comunidades.contarMensagens(usuario);
+    }
+
+    /**
+     * Fluxo de sada que conta os bytes gravados, para os eventos de persistncia.
+     */
+    private static final class SaidaContada extends FilterOutputStream {
+        private long bytes;
+
+        SaidaContada(OutputStream saida) {
+            super(saida);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int inicio, int tamanho) throws IOException {
+            out.write(b, inicio, tamanho);
+            bytes += tamanho;
+        }
+    }
+
+    /**
+     * Fluxo de entrada que conta os bytes lidos, para os eventos de persistncia.
+     */
+    private static final class EntradaContada extends FilterInputStream {
+        private long bytes;
+
+        EntradaContada(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) bytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int inicio, int tamanho) throws IOException {
+            int lidos = in.read(b, inicio, tamanho);
+            if (lidos > 0) bytes += lidos;
+            return lidos;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long pulados = in.skip(n);
+            bytes += pulados;
+            return pulados;
+        }
     }
 }
@@ -0,0 +1,29 @@
+package br.ufal.ic.p2.jackut.bench;
+
+/**
+ * Operao medida pelo {@link ExecutorBenchmarks}.
+ * <p>
+ * Cada iterao chama {@link #preparar(int)} fora da medio, para criar o que
+ * as prximas operaes consomem (usurios a remover, por exemplo), e ento
+ * {@link #executar(int)} uma vez por operao, dentro da medio.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public interface CasoBenchmark {
+    /**
+     * Prepara a prxima iterao, sem contar no tempo nem na alocao medidos.
+     *
+     * @param operacoes quantas operaes a iterao executar
+     */
+    default void preparar(int operacoes) {
+    }
+
+    /**
+     * Executa uma operao.
+     *
+     * @param i ndice da operao na iterao, a partir de zero
+     */
+    void executar(int i);
+}
@@ -0,0 +1,198 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import br.ufal.ic.p2.jackut.Facade;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Catlogo dos casos de medio, um por operao da fachada.
+ * <p>
+ * Cada caso recebe uma fachada com uma cpia nova do {@link Cenario}. Operaes
+ * que no podem se repetir com os mesmos argumentos (criar ou remover usurios,
+ * convidar amigos) usam contadores para que toda chamada siga o caminho de sucesso.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public final class Casos {
+    /** Operaes por iterao das operaes rpidas */
+    public static final int OPERACOES_PADRAO = 10_000;
+
+    private Casos() {
+    }
+
+    /**
+     * Definio de um caso: como cri-lo e quantas operaes por iterao.
+     */
+    public static final class Definicao {
+        private final Function<Cenario, CasoBenchmark> fabrica;
+        private final int operacoes;
+
+        private Definicao(Function<Cenario, CasoBenchmark> fabrica, int operacoes) {
+            this.fabrica = fabrica;
+            this.operacoes = operacoes;
+        }
+
+        /**
+         * @param cenario cenrio de onde copiar o estado
+         * @return caso pronto para medio
+         */
+        public CasoBenchmark criar(Cenario cenario) {
+            return fabrica.apply(cenario);
+        }
+
+        /**
+         * @return operaes por iterao
+         */
+        public int getOperacoes() {
+            return operacoes;
+        }
+    }
+
+    /**
+     * @return casos, por nome, na ordem em que so executados
+     */
+    public static Map<String, Definicao> todos() {
+        Map<String, Definicao> casos = new LinkedHashMap<>();
+        casos.put("criarUsuario", new Definicao(Casos::criarUsuario, OPERACOES_PADRAO));
+        casos.put("abrirSessao", new Definicao(Casos::abrirSessao, OPERACOES_PADRAO));
+        casos.put("adicionarAmigo", new Definicao(Casos::adicionarAmigo, OPERACOES_PADRAO));
+        casos.put("enviarRecado", new Definicao(Casos::enviarRecado, OPERACOES_PADRAO));
+        casos.put("enviarMensagem", new Definicao(Casos::enviarMensagem, OPERACOES_PADRAO));
+        casos.put("getAmigos", new Definicao(Casos::getAmigos, OPERACOES_PADRAO));
+        casos.put("getAmigosEmDisco", new Definicao(Casos::getAmigosEmDisco, OPERACOES_PADRAO));
+        casos.put("removerUsuario", new Definicao(Casos::removerUsuario, 200));
+        casos.put("salvarEstado", new Definicao(Casos::salvarEstado, 5));
+        casos.put("carregarEstado", new Definicao(Casos::carregarEstado, 5));
+        return casos;
+    }
+
+    private static CasoBenchmark criarUsuario(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        int[] proximo = {0};
+        return i -> facade.criarUsuario("novo" + proximo[0]++, "senha", "Novo");
+    }
+
+    private static CasoBenchmark abrirSessao(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        int n = cenario.getUsuarios();
+        return i -> facade.abrirSessao(Cenario.login(i % n), "senha");
+    }
+
+    /**
+     * Convida usurios alm dos vizinhos j amigos, cada par uma nica vez:
+     * o convite j vai de j % n para o usurio a uma distncia que cresce a cada
+     * volta completa.
+     */
+    private static CasoBenchmark adicionarAmigo(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        String[] sessoes = cenario.abrirSessoes(facade);
+        int n = cenario.getUsuarios();
+        int inicio = cenario.getGrau() / 2 + 1;
+        long[] proximo = {0};
+        return i -> {
+            long j = proximo[0]++;
+            int a = (int) (j % n);
+            int distancia = inicio + (int) ((j / n) % Math.max(1, n - 2 * inicio));
+            facade.adicionarAmigo(sessoes[a], Cenario.login((a + distancia) % n));
+        };
+    }
+
+    private static CasoBenchmark enviarRecado(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        String[] sessoes = cenario.abrirSessoes(facade);
+        int n = cenario.getUsuarios();
+        int limite = Math.max(1, cenario.getProfundidadeCaixa()) * 2;
+        for (String sessao : sessoes) {
+            facade.configurarCaixaRecados(sessao, limite, "DESCARTAR_ANTIGO");
+        }
+        return i -> facade.enviarRecado(sessoes[i % n], Cenario.login((i + 1) % n), "recado");
+    }
+
+    private static CasoBenchmark enviarMensagem(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        String[] sessoes = cenario.abrirSessoes(facade);
+        int comunidades = cenario.getComunidades();
+        int tamanho = cenario.getTamanhoComunidade();
+        return i -> {
+            int c = i % comunidades;
+            facade.enviarMensagem(sessoes[c * tamanho], Cenario.comunidade(c), "mensagem");
+        };
+    }
+
+    private static CasoBenchmark getAmigos(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        int n = cenario.getUsuarios();
+        return i -> facade.getAmigos(Cenario.login(i % n));
+    }
+
+    /**
+     * Consulta com s um dcimo dos usurios em memria e acessos concentrados
+     * em poucos usurios (Zipf com expoente 1): mede o custo mdio das faltas
+     * que trazem usurios do disco.
+     */
+    private static CasoBenchmark getAmigosEmDisco(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        int n = cenario.getUsuarios();
+        facade.configurarUsuariosEmMemoria(Math.max(2, n / 10));
+        Zipf zipf = new Zipf(n, 1.0);
+        Random aleatorio = new Random(n);
+        return i -> facade.getAmigos(Cenario.login(zipf.sortear(aleatorio)));
+    }
+
+    /**
+     * Cria, fora da medio, usurios com amigos, dolo e uma comunidade, e mede
+     * a remoo deles com a limpeza de todas as referncias.
+     */
+    private static CasoBenchmark removerUsuario(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        int n = cenario.getUsuarios();
+        int grau = cenario.getGrau();
+        return new CasoBenchmark() {
+            private String[] sessoes = new String[0];
+            private int criados;
+
+            @Override
+            public void preparar(int operacoes) {
+                sessoes = new String[operacoes];
+                for (int k = 0; k < operacoes; k++) {
+                    String login = "temp" + criados++;
+                    facade.criarUsuario(login, "senha", "Temporario");
+                    sessoes[k] = facade.abrirSessao(login, "senha");
+                    for (int a = 0; a < grau; a++) {
+                        String amigo = Cenario.login((criados * 31 + a) % n);
+                        facade.adicionarAmigo(sessoes[k], amigo);
+                        facade.adicionarAmigo(facade.abrirSessao(amigo, "senha"), login);
+                    }
+                    facade.adicionarIdolo(sessoes[k], Cenario.login(criados % n));
+                    facade.adicionarComunidade(sessoes[k], Cenario.comunidade(criados % cenario.getComunidades()));
+                }
+            }
+
+            @Override
+            public void executar(int i) {
+                facade.removerUsuario(sessoes[i]);
+            }
+        };
+    }
+
+    private static CasoBenchmark salvarEstado(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(cenario.getEstado().length);
+        return i -> {
+            saida.reset();
+            facade.exportarEstado(saida);
+        };
+    }
+
+    private static CasoBenchmark carregarEstado(Cenario cenario) {
+        Facade facade = cenario.novaFachada();
+        byte[] estado = cenario.getEstado();
+        return i -> facade.importarEstado(new ByteArrayInputStream(estado));
+    }
+}
@@ -0,0 +1,157 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import br.ufal.ic.p2.jackut.Facade;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Estado sinttico sobre o qual as operaes so medidas.
+ * <p>
+ * O cenrio  determinstico: o usurio {@code i}  amigo dos
+ * {@code grau / 2} usurios seguintes e dos anteriores (um anel), as
+ * comunidades agrupam blocos de {@code tamanhoComunidade} usurios
+ * consecutivos, com o primeiro como dono, e cada caixa de recados guarda
+ * {@code profundidadeCaixa} recados no lidos do vizinho anterior. O estado 
+ * montado uma vez e copiado para cada caso, para que um caso no afete o seguinte.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Cenario {
+    private final int usuarios;
+    private final int grau;
+    private final int tamanhoComunidade;
+    private final int profundidadeCaixa;
+    private final byte[] estado;
+
+    /**
+     * Monta o cenrio.
+     *
+     * @param usuarios          nmero de usurios (pelo menos 2)
+     * @param grau              nmero mdio de amigos por usurio
+     * @param tamanhoComunidade membros por comunidade, incluindo o dono
+     * @param profundidadeCaixa recados no lidos por usurio
+     */
+    public Cenario(int usuarios, int grau, int tamanhoComunidade, int profundidadeCaixa) {
+        if (usuarios < 2 || grau < 0 || tamanhoComunidade < 1 || profundidadeCaixa < 0) {
+            throw new IllegalArgumentException("Parmetros de cenrio invlidos.");
+        }
+        this.usuarios = usuarios;
+        this.grau = Math.min(grau, usuarios - 1);
+        this.tamanhoComunidade = Math.min(tamanhoComunidade, usuarios);
+        this.profundidadeCaixa = profundidadeCaixa;
+        this.estado = montar();
+    }
+
+    private byte[] montar() {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            facade.criarUsuario(login(i), "senha", "Usuario " + i);
+            sessoes[i] = facade.abrirSessao(login(i), "senha");
+        }
+        for (int i = 0; i < usuarios; i++) {
+            for (int k = 1; k <= grau / 2; k++) {
+                int j = (i + k) % usuarios;
+                facade.adicionarAmigo(sessoes[i], login(j));
+                facade.adicionarAmigo(sessoes[j], login(i));
+            }
+        }
+        for (int c = 0; c < getComunidades(); c++) {
+            int dono = c * tamanhoComunidade;
+            facade.criarComunidade(sessoes[dono], comunidade(c), "comunidade " + c);
+            for (int m = 1; m < tamanhoComunidade; m++) {
+                facade.adicionarComunidade(sessoes[dono + m], comunidade(c));
+            }
+        }
+        for (int i = 0; i < usuarios; i++) {
+            String remetente = sessoes[(i + usuarios - 1) % usuarios];
+            for (int r = 0; r < profundidadeCaixa; r++) {
+                facade.enviarRecado(remetente, login(i), "recado " + r);
+            }
+        }
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        facade.exportarEstado(saida);
+        return saida.toByteArray();
+    }
+
+    /**
+     * Cria uma fachada com uma cpia independente do estado do cenrio. As
+     * sesses usadas na montagem no so expostas; use {@link #abrirSessoes(Facade)}.
+     *
+     * @return fachada pronta para medio
+     */
+    public Facade novaFachada() {
+        Facade facade = new Facade();
+        facade.importarEstado(new ByteArrayInputStream(estado));
+        return facade;
+    }
+
+    /**
+     * Abre uma sesso para cada usurio do cenrio.
+     *
+     * @param facade fachada criada por {@link #novaFachada()}
+     * @return sesses, indexadas pelo nmero do usurio
+     */
+    public String[] abrirSessoes(Facade facade) {
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            sessoes[i] = facade.abrirSessao(login(i), "senha");
+        }
+        return sessoes;
+    }
+
+    /**
+     * @return estado serializado do cenrio
+     */
+    public byte[] getEstado() { return estado.clone(); }
+
+    /**
+     * @return nmero de usurios
+     */
+    public int getUsuarios() { return usuarios; }
+
+    /**
+     * @return nmero mdio de amigos por usurio
+     */
+    public int getGrau() { return grau; }
+
+    /**
+     * @return membros por comunidade
+     */
+    public int getTamanhoComunidade() { return tamanhoComunidade; }
+
+    /**
+     * @return recados no lidos por usurio
+     */
+    public int getProfundidadeCaixa() { return profundidadeCaixa; }
+
+    /**
+     * @return nmero de comunidades
+     */
+    public int getComunidades() { return usuarios / tamanhoComunidade; }
+
+    /**
+     * @param i nmero do usurio
+     * @return login do usurio
+     */
+    public static String login(int i) {
+        return "b" + i;
+    }
+
+    /**
+     * @param c nmero da comunidade
+     * @return nome da comunidade
+     */
+    public static String comunidade(int c) {
+        return "comunidade" + c;
+    }
+
+    @Override
+    public String toString() {
+        return "usuarios=" + usuarios + ",grau=" + grau + ",comunidade=" + tamanhoComunidade
+                + ",caixa=" + profundidadeCaixa;
+    }
+}
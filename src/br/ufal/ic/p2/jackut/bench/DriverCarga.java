@@ -0,0 +1,282 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.server.Despachante;
+import br.ufal.ic.p2.jackut.server.Resposta;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Driver de carga sobre um estado gerado pelo {@link GeradorGrafo}.
+ * <p>
+ * Os comandos passam pelo {@link Despachante}, o mesmo que atende o servidor de
+ * rede, que coordena o acesso concorrente ao ncleo, mas sem a rede, para medir
+ * apenas o ncleo. Cada cliente sorteia operaes segundo a mistura configurada
+ * e os usurios envolvidos segundo a popularidade do grafo, com um gerador
+ * semeado pelo nmero do cliente: a mesma semente reproduz a mesma sequncia
+ * de pedidos por cliente.
+ * </p>
+ * <ul>
+ *   <li>Lao fechado: cada cliente envia o prximo pedido assim que recebe a
+ *       resposta do anterior; mede a vazo mxima.</li>
+ *   <li>Lao aberto: os pedidos chegam em instantes sorteados (processo de
+ *       Poisson)  taxa total configurada, dividida entre os clientes. A latncia
+ *       conta a partir do instante previsto de chegada, e no do envio, para que
+ *       a espera de um cliente atrasado aparea nos percentis.</li>
+ * </ul>
+ * <p>
+ * Uso: <code>java br.ufal.ic.p2.jackut.bench.DriverCarga [--usuarios 10000]
+ * [--expoente 1.0] [--semente 42] [--modo fechado|aberto] [--clientes 8]
+ * [--taxa 20000] [--segundos 10] [--mistura getAmigos=30,getAtributoUsuario=25,...]</code>
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class DriverCarga {
+    /** Mistura usada quando nenhuma  informada: cerca de 80% de consultas */
+    public static final String MISTURA_PADRAO = "getAmigos=25,getAtributoUsuario=25,ehAmigo=10,getFas=5,"
+            + "getMembrosComunidade=10,getComunidades=5,enviarRecado=10,lerRecado=4,adicionarIdolo=3,"
+            + "enviarMensagem=3";
+
+    private final Despachante despachante;
+    private final GeradorGrafo grafo;
+    private final String[] operacoes;
+    private final int[] pesosAcumulados;
+    private final Zipf zipfUsuarios;
+    private final Zipf zipfComunidades;
+    private final String[] sessoes;
+
+    /**
+     * Prepara o driver sobre um grafo j gerado na fachada.
+     *
+     * @param facade  fachada com o estado gerado
+     * @param grafo   gerador usado para montar o estado
+     * @param mistura operaes e pesos, no formato "op=peso,op=peso"
+     */
+    public DriverCarga(Facade facade, GeradorGrafo grafo, String mistura) {
+        this.despachante = new Despachante(facade);
+        this.grafo = grafo;
+        String[] itens = mistura.split(",");
+        operacoes = new String[itens.length];
+        pesosAcumulados = new int[itens.length];
+        int soma = 0;
+        for (int i = 0; i < itens.length; i++) {
+            String[] par = itens[i].split("=");
+            operacoes[i] = par[0].trim();
+            soma += Integer.parseInt(par[1].trim());
+            pesosAcumulados[i] = soma;
+        }
+        zipfUsuarios = new Zipf(grafo.getUsuarios(), grafo.getExpoente());
+        zipfComunidades = new Zipf(Math.max(1, grafo.getComunidades()), grafo.getExpoente());
+        sessoes = new String[grafo.getUsuarios()];
+        for (int i = 0; i < sessoes.length; i++) {
+            sessoes[i] = facade.abrirSessao(GeradorGrafo.login(i), "senha");
+        }
+    }
+
+    /**
+     * Executa a carga e imprime os resultados.
+     *
+     * @param clientes nmero de clientes simultneos
+     * @param segundos durao
+     * @param taxa     pedidos por segundo no lao aberto, ou zero para lao fechado
+     * @param semente  semente dos sorteios dos clientes
+     * @throws InterruptedException se interrompido enquanto aguarda os clientes
+     */
+    public void executar(int clientes, int segundos, double taxa, long semente) throws InterruptedException {
+        Latencias[] porCliente = new Latencias[clientes];
+        Thread[] threads = new Thread[clientes];
+        CountDownLatch largada = new CountDownLatch(1);
+        long duracao = TimeUnit.SECONDS.toNanos(segundos);
+        for (int c = 0; c < clientes; c++) {
+            final int id = c;
+            porCliente[c] = new Latencias(operacoes.length);
+            threads[c] = new Thread(() -> {
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                rodarCliente(new Random(semente * 31 + id), porCliente[id], duracao, taxa / clientes);
+            }, "jackut-carga-" + c);
+            threads[c].start();
+        }
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Thread t : threads) t.join();
+        double decorrido = (System.nanoTime() - inicio) / 1e9;
+
+        Latencias total = new Latencias(operacoes.length);
+        for (Latencias l : porCliente) total.juntar(l);
+        System.out.printf("modo=%s clientes=%d duracao=%.1fs pedidos=%d vazao=%.0f op/s erros=%d%n",
+                (taxa > 0) ? "aberto(" + (long) taxa + " op/s)" : "fechado", clientes, decorrido,
+                total.quantidade(), total.quantidade() / decorrido, total.erros);
+        System.out.printf("%-22s %9s %9s %9s %9s %9s %9s%n", "operacao(us)", "pedidos", "p50", "p90", "p99",
+                "p99.9", "max");
+        for (int i = 0; i < operacoes.length; i++) {
+            imprimir(operacoes[i], total.ordenadas(i));
+        }
+        imprimir("total", total.ordenadas(-1));
+    }
+
+    private void rodarCliente(Random aleatorio, Latencias latencias, long duracao, double taxaCliente) {
+        long inicio = System.nanoTime();
+        long fim = inicio + duracao;
+        long previsto = inicio;
+        while (true) {
+            if (taxaCliente > 0) {
+                previsto += (long) (-Math.log(1 - aleatorio.nextDouble()) / taxaCliente * 1e9);
+                if (previsto >= fim) break;
+                long espera = previsto - System.nanoTime();
+                if (espera > 0) LockSupport.parkNanos(espera);
+            } else {
+                previsto = System.nanoTime();
+                if (previsto >= fim) break;
+            }
+            int operacao = sortearOperacao(aleatorio);
+            List<String> comando = montar(operacoes[operacao], aleatorio);
+            Resposta resposta = despachante.executar(comando);
+            latencias.registrar(operacao, System.nanoTime() - previsto, !resposta.isSucesso());
+        }
+    }
+
+    private int sortearOperacao(Random aleatorio) {
+        int sorteio = aleatorio.nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        for (int i = 0; i < pesosAcumulados.length; i++) {
+            if (sorteio < pesosAcumulados[i]) return i;
+        }
+        return pesosAcumulados.length - 1;
+    }
+
+    private List<String> montar(String operacao, Random aleatorio) {
+        int eu = grafo.usuarioPopular(zipfUsuarios, aleatorio);
+        int outro = grafo.usuarioPopular(zipfUsuarios, aleatorio);
+        String comunidade = GeradorGrafo.comunidade(grafo.comunidadePopular(zipfComunidades, aleatorio));
+        switch (operacao) {
+            case "getAmigos":
+            case "getFas":
+            case "getComunidades":
+                return List.of(operacao, GeradorGrafo.login(outro));
+            case "getAtributoUsuario":
+                return List.of(operacao, GeradorGrafo.login(outro), "nome");
+            case "ehAmigo":
+                return List.of(operacao, GeradorGrafo.login(eu), GeradorGrafo.login(outro));
+            case "getMembrosComunidade":
+                return List.of(operacao, comunidade);
+            case "enviarRecado":
+                return List.of(operacao, sessoes[eu], GeradorGrafo.login(outro), "oi");
+            case "lerRecado":
+                return List.of(operacao, sessoes[eu]);
+            case "adicionarIdolo":
+                return List.of(operacao, sessoes[eu], GeradorGrafo.login(outro));
+            case "enviarMensagem":
+                return List.of(operacao, sessoes[eu], comunidade, "ola");
+            default:
+                throw new IllegalArgumentException("Operao sem gerador de argumentos: " + operacao);
+        }
+    }
+
+    private static void imprimir(String nome, long[] ordenadas) {
+        System.out.printf("%-22s %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n", nome, ordenadas.length,
+                percentil(ordenadas, 0.50), percentil(ordenadas, 0.90), percentil(ordenadas, 0.99),
+                percentil(ordenadas, 0.999), percentil(ordenadas, 1.0));
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) return 0;
+        int i = (int) Math.min(ordenadas.length - 1, Math.ceil(p * ordenadas.length) - 1);
+        return ordenadas[Math.max(0, i)] / 1000.0;
+    }
+
+    /**
+     * Latncias de um cliente, por operao, em nanossegundos.
+     */
+    private static final class Latencias {
+        private final long[][] valores;
+        private final int[] tamanhos;
+        private long erros;
+
+        private Latencias(int operacoes) {
+            valores = new long[operacoes][1024];
+            tamanhos = new int[operacoes];
+        }
+
+        private void registrar(int operacao, long nanos, boolean erro) {
+            if (tamanhos[operacao] == valores[operacao].length) {
+                valores[operacao] = Arrays.copyOf(valores[operacao], tamanhos[operacao] * 2);
+            }
+            valores[operacao][tamanhos[operacao]++] = nanos;
+            if (erro) erros++;
+        }
+
+        private void juntar(Latencias outras) {
+            for (int i = 0; i < valores.length; i++) {
+                for (int k = 0; k < outras.tamanhos[i]; k++) {
+                    registrar(i, outras.valores[i][k], false);
+                }
+            }
+            erros += outras.erros;
+        }
+
+        private long quantidade() {
+            long total = 0;
+            for (int t : tamanhos) total += t;
+            return total;
+        }
+
+        /**
+         * @param operacao ndice da operao, ou -1 para todas
+         */
+        private long[] ordenadas(int operacao) {
+            long[] todas;
+            if (operacao >= 0) {
+                todas = Arrays.copyOf(valores[operacao], tamanhos[operacao]);
+            } else {
+                todas = new long[(int) quantidade()];
+                int n = 0;
+                for (int i = 0; i < valores.length; i++) {
+                    System.arraycopy(valores[i], 0, todas, n, tamanhos[i]);
+                    n += tamanhos[i];
+                }
+            }
+            Arrays.sort(todas);
+            return todas;
+        }
+    }
+
+    /**
+     * Gera o estado e executa a carga.
+     *
+     * @param args opes descritas na documentao da classe
+     * @throws InterruptedException se interrompido enquanto aguarda os clientes
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> opcoes = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Opo invlida: " + args[i]);
+            opcoes.put(args[i].substring(2), args[i + 1]);
+        }
+        int usuarios = Integer.parseInt(opcoes.getOrDefault("usuarios", "10000"));
+        long semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        GeradorGrafo grafo = new GeradorGrafo()
+                .usuarios(usuarios)
+                .comunidades(Math.max(1, usuarios / 50))
+                .expoente(Double.parseDouble(opcoes.getOrDefault("expoente", "1.0")))
+                .semente(semente);
+        Facade facade = new Facade();
+        long t0 = System.nanoTime();
+        grafo.gerar(facade);
+        System.out.printf("grafo: %s (%.0f ms, %d eventos)%n", grafo, (System.nanoTime() - t0) / 1e6,
+                facade.contarEventos());
+        System.out.printf("top fas: %s top comunidades: %s%n", facade.getTopIdolos(3), facade.getTopComunidades(3));
+
+        boolean aberto = opcoes.getOrDefault("modo", "fechado").equals("aberto");
+        DriverCarga driver = new DriverCarga(facade, grafo, opcoes.getOrDefault("mistura", MISTURA_PADRAO));
+        driver.executar(Integer.parseInt(opcoes.getOrDefault("clientes", "8")),
+                Integer.parseInt(opcoes.getOrDefault("segundos", "10")),
+                aberto ? Double.parseDouble(opcoes.getOrDefault("taxa", "20000")) : 0, semente);
+    }
+}
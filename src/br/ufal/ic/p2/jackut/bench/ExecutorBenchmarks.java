@@ -0,0 +1,204 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Executa os {@link Casos} de medio sobre cenrios parametrizados.
+ * <p>
+ * Para cada combinao de parmetros  montado um {@link Cenario}; cada caso
+ * roda iteraes de aquecimento, descartadas, e iteraes medidas. Por caso so
+ * informados a vazo (mediana, mnimo e mximo entre iteraes), os bytes
+ * alocados por operao na thread da medio, as coletas de lixo e o tempo
+ * gasto nelas durante as iteraes medidas, e quantas operaes lanaram exceo.
+ * </p>
+ * <p>
+ * Com <code>--salvar arquivo</code> os resultados viram uma linha de base; com
+ * <code>--base arquivo</code> so comparados a ela, e o programa termina com
+ * cdigo 1 se algum caso perder vazo ou alocar mais do que a tolerncia.
+ * </p>
+ * <p>
+ * Uso: <code>java br.ufal.ic.p2.jackut.bench.ExecutorBenchmarks [--usuarios 1000,10000]
+ * [--grau 10] [--comunidade 100] [--caixa 10] [--casos regex] [--aquecimento 3]
+ * [--iteracoes 5] [--base arquivo] [--salvar arquivo] [--tolerancia 0.2]</code>.
+ * Listas separadas por vrgula geram todas as combinaes.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class ExecutorBenchmarks {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Resultado de um caso em um cenrio.
+     */
+    private static final class Resultado {
+        private final String chave;
+        private final double vazao;
+        private final double bytesPorOperacao;
+
+        private Resultado(String chave, double vazao, double bytesPorOperacao) {
+            this.chave = chave;
+            this.vazao = vazao;
+            this.bytesPorOperacao = bytesPorOperacao;
+        }
+    }
+
+    /**
+     * Executa as medies.
+     *
+     * @param args opes descritas na documentao da classe
+     * @throws IOException se a linha de base no puder ser lida ou gravada
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opcoes = lerOpcoes(args);
+        Pattern filtro = Pattern.compile(opcoes.getOrDefault("casos", ".*"));
+        int aquecimento = Integer.parseInt(opcoes.getOrDefault("aquecimento", "3"));
+        int iteracoes = Integer.parseInt(opcoes.getOrDefault("iteracoes", "5"));
+        double tolerancia = Double.parseDouble(opcoes.getOrDefault("tolerancia", "0.2"));
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        List<Resultado> resultados = new ArrayList<>();
+        for (int usuarios : lerLista(opcoes.getOrDefault("usuarios", "1000,10000"))) {
+            for (int grau : lerLista(opcoes.getOrDefault("grau", "10"))) {
+                for (int comunidade : lerLista(opcoes.getOrDefault("comunidade", "100"))) {
+                    for (int caixa : lerLista(opcoes.getOrDefault("caixa", "10"))) {
+                        Cenario cenario = new Cenario(usuarios, grau, comunidade, caixa);
+                        System.out.printf("%n# %s (estado=%d KiB)%n", cenario, cenario.getEstado().length / 1024);
+                        System.out.printf("%-16s %14s %14s %14s %12s %6s %8s %6s%n", "caso", "op/s", "min",
+                                "max", "bytes/op", "gc", "gc(ms)", "erros");
+                        for (Map.Entry<String, Casos.Definicao> caso : Casos.todos().entrySet()) {
+                            if (!filtro.matcher(caso.getKey()).matches()) continue;
+                            resultados.add(medir(caso.getKey(), caso.getValue(), cenario, aquecimento, iteracoes));
+                        }
+                    }
+                }
+            }
+        }
+
+        if (opcoes.containsKey("salvar")) {
+            salvar(Path.of(opcoes.get("salvar")), resultados);
+        }
+        if (opcoes.containsKey("base") && !comparar(Path.of(opcoes.get("base")), resultados, tolerancia)) {
+            System.exit(1);
+        }
+    }
+
+    private static Resultado medir(String nome, Casos.Definicao definicao, Cenario cenario,
+                                   int aquecimento, int iteracoes) {
+        CasoBenchmark caso = definicao.criar(cenario);
+        int operacoes = definicao.getOperacoes();
+        long erros = 0;
+        for (int k = 0; k < aquecimento; k++) {
+            erros += iteracao(caso, operacoes, new long[2]);
+        }
+        erros = 0;
+        double[] vazoes = new double[iteracoes];
+        long bytes = 0;
+        long[] gcAntes = coletas();
+        for (int k = 0; k < iteracoes; k++) {
+            long[] medida = new long[2];
+            erros += iteracao(caso, operacoes, medida);
+            vazoes[k] = operacoes / (medida[0] / 1e9);
+            bytes += medida[1];
+        }
+        long[] gcDepois = coletas();
+        Arrays.sort(vazoes);
+        double mediana = vazoes[vazoes.length / 2];
+        double bytesPorOperacao = (double) bytes / ((long) operacoes * iteracoes);
+        System.out.printf("%-16s %14.0f %14.0f %14.0f %12.0f %6d %8d %6d%n", nome, mediana, vazoes[0],
+                vazoes[vazoes.length - 1], bytesPorOperacao, gcDepois[0] - gcAntes[0], gcDepois[1] - gcAntes[1], erros);
+        return new Resultado(nome + "@" + cenario, mediana, bytesPorOperacao);
+    }
+
+    /**
+     * Executa uma iterao.
+     *
+     * @param medida recebe o tempo em nanossegundos e os bytes alocados
+     * @return operaes que lanaram exceo
+     */
+    private static long iteracao(CasoBenchmark caso, int operacoes, long[] medida) {
+        caso.preparar(operacoes);
+        long thread = Thread.currentThread().getId();
+        long erros = 0;
+        long alocadoAntes = THREADS.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < operacoes; i++) {
+            try {
+                caso.executar(i);
+            } catch (RuntimeException e) {
+                erros++;
+            }
+        }
+        medida[0] = System.nanoTime() - inicio;
+        medida[1] = THREADS.getThreadAllocatedBytes(thread) - alocadoAntes;
+        return erros;
+    }
+
+    private static long[] coletas() {
+        long[] total = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total[0] += Math.max(0, gc.getCollectionCount());
+            total[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static void salvar(Path arquivo, List<Resultado> resultados) throws IOException {
+        List<String> linhas = new ArrayList<>();
+        for (Resultado r : resultados) {
+            linhas.add(r.chave + ";" + r.vazao + ";" + r.bytesPorOperacao);
+        }
+        Files.write(arquivo, linhas, StandardCharsets.UTF_8);
+        System.out.println("\nLinha de base salva em " + arquivo);
+    }
+
+    /**
+     * @return true se nenhum caso regrediu alm da tolerncia
+     */
+    private static boolean comparar(Path arquivo, List<Resultado> resultados, double tolerancia) throws IOException {
+        Map<String, double[]> base = new HashMap<>();
+        for (String linha : Files.readAllLines(arquivo, StandardCharsets.UTF_8)) {
+            String[] campos = linha.split(";");
+            if (campos.length != 3) continue;
+            base.put(campos[0], new double[]{Double.parseDouble(campos[1]), Double.parseDouble(campos[2])});
+        }
+        boolean ok = true;
+        System.out.printf("%nComparao com %s (tolerncia %.0f%%)%n", arquivo, tolerancia * 100);
+        for (Resultado r : resultados) {
+            double[] b = base.get(r.chave);
+            if (b == null) continue;
+            boolean lento = r.vazao < b[0] * (1 - tolerancia);
+            boolean aloca = r.bytesPorOperacao > b[1] * (1 + tolerancia) + 16;
+            ok &= !lento && !aloca;
+            System.out.printf("%-9s %s vazao %+.1f%% bytes/op %+.1f%%%n", (lento || aloca) ? "REGRESSAO" : "ok",
+                    r.chave, variacao(b[0], r.vazao), variacao(b[1], r.bytesPorOperacao));
+        }
+        return ok;
+    }
+
+    private static double variacao(double antes, double depois) {
+        return (antes == 0) ? 0 : (depois - antes) * 100 / antes;
+    }
+
+    private static Map<String, String> lerOpcoes(String[] args) {
+        Map<String, String> opcoes = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Opo invlida: " + args[i]);
+            opcoes.put(args[i].substring(2), args[i + 1]);
+        }
+        return opcoes;
+    }
+
+    private static int[] lerLista(String texto) {
+        return Arrays.stream(texto.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    }
+}
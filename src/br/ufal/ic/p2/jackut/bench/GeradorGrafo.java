@@ -0,0 +1,244 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import br.ufal.ic.p2.jackut.Facade;
+import java.util.Random;
+
+/**
+ * Gerador determinstico de estados com distribuio de cauda longa.
+ * <p>
+ * Os usurios recebem uma popularidade pela posio em uma permutao sorteada,
+ * e todo alvo de amizade, dolo, recado ou comunidade  sorteado com {@link Zipf}
+ * sobre essa ordem. Assim, poucos usurios concentram muitos amigos e fs e
+ * poucas comunidades concentram a maior parte dos membros, como em redes reais.
+ * Cada usurio faz, em mdia, o nmero de tentativas configurado; tentativas
+ * repetidas ou invlidas (amizade j existente, por exemplo) so ignoradas.
+ * </p>
+ * <p>
+ * O estado  montado pela {@link Facade}, em uma nica thread e com um nico
+ * {@link Random} semeado, de modo que a mesma semente e os mesmos parmetros
+ * produzem sempre o mesmo grafo.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class GeradorGrafo {
+    private int usuarios = 10_000;
+    private int amizades = 10;
+    private int idolos = 3;
+    private int comunidades = 200;
+    private int participacoes = 3;
+    private int recados = 5;
+    private double expoente = 1.0;
+    private long semente = 42;
+
+    private int[] popularidade; // posio de popularidade -> nmero do usurio
+    private int[] maisPopulares; // posio -> nmero da comunidade
+
+    /**
+     * @param usuarios nmero de usurios
+     * @return o prprio gerador
+     */
+    public GeradorGrafo usuarios(int usuarios) {
+        this.usuarios = usuarios;
+        return this;
+    }
+
+    /**
+     * @param amizades amizades que cada usurio tenta fazer, em mdia
+     * @return o prprio gerador
+     */
+    public GeradorGrafo amizades(int amizades) {
+        this.amizades = amizades;
+        return this;
+    }
+
+    /**
+     * @param idolos dolos que cada usurio tenta seguir, em mdia
+     * @return o prprio gerador
+     */
+    public GeradorGrafo idolos(int idolos) {
+        this.idolos = idolos;
+        return this;
+    }
+
+    /**
+     * @param comunidades nmero de comunidades
+     * @return o prprio gerador
+     */
+    public GeradorGrafo comunidades(int comunidades) {
+        this.comunidades = comunidades;
+        return this;
+    }
+
+    /**
+     * @param participacoes comunidades em que cada usurio tenta entrar, em mdia
+     * @return o prprio gerador
+     */
+    public GeradorGrafo participacoes(int participacoes) {
+        this.participacoes = participacoes;
+        return this;
+    }
+
+    /**
+     * @param recados recados no lidos que cada usurio envia, em mdia
+     * @return o prprio gerador
+     */
+    public GeradorGrafo recados(int recados) {
+        this.recados = recados;
+        return this;
+    }
+
+    /**
+     * @param expoente expoente de Zipf da popularidade
+     * @return o prprio gerador
+     */
+    public GeradorGrafo expoente(double expoente) {
+        this.expoente = expoente;
+        return this;
+    }
+
+    /**
+     * @param semente semente de todos os sorteios
+     * @return o prprio gerador
+     */
+    public GeradorGrafo semente(long semente) {
+        this.semente = semente;
+        return this;
+    }
+
+    /**
+     * Zera a fachada e monta nela o estado sinttico.
+     *
+     * @param facade fachada de destino
+     * @return a mesma fachada
+     */
+    public Facade gerar(Facade facade) {
+        Random aleatorio = new Random(semente);
+        popularidade = permutacao(usuarios, aleatorio);
+        maisPopulares = permutacao(comunidades, aleatorio);
+        Zipf zipfUsuarios = new Zipf(usuarios, expoente);
+        Zipf zipfComunidades = new Zipf(Math.max(1, comunidades), expoente);
+
+        facade.zerarSistema();
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            facade.criarUsuario(login(i), "senha", "Usuario " + i);
+            sessoes[i] = facade.abrirSessao(login(i), "senha");
+        }
+        for (int c = 0; c < comunidades; c++) {
+            facade.criarComunidade(sessoes[usuarioPopular(zipfUsuarios, aleatorio)], comunidade(c), "comunidade " + c);
+        }
+        for (int u = 0; u < usuarios; u++) {
+            final int i = u;
+            for (int k = sortearQuantidade(amizades, aleatorio); k > 0; k--) {
+                int j = usuarioPopular(zipfUsuarios, aleatorio);
+                if (tentar(() -> facade.adicionarAmigo(sessoes[i], login(j)))) {
+                    tentar(() -> facade.adicionarAmigo(sessoes[j], login(i)));
+                }
+            }
+            for (int k = sortearQuantidade(idolos, aleatorio); k > 0; k--) {
+                int j = usuarioPopular(zipfUsuarios, aleatorio);
+                tentar(() -> facade.adicionarIdolo(sessoes[i], login(j)));
+            }
+            for (int k = (comunidades == 0) ? 0 : sortearQuantidade(participacoes, aleatorio); k > 0; k--) {
+                int c = maisPopulares[zipfComunidades.sortear(aleatorio)];
+                tentar(() -> facade.adicionarComunidade(sessoes[i], comunidade(c)));
+            }
+            for (int k = sortearQuantidade(recados, aleatorio); k > 0; k--) {
+                int j = usuarioPopular(zipfUsuarios, aleatorio);
+                tentar(() -> facade.enviarRecado(sessoes[i], login(j), "recado de " + i));
+            }
+        }
+        return facade;
+    }
+
+    /**
+     * Sorteia um usurio segundo a popularidade do grafo gerado; usado pelo
+     * driver de carga para que as operaes tambm se concentrem nos populares.
+     *
+     * @param zipf      distribuio sobre os usurios
+     * @param aleatorio gerador de nmeros aleatrios
+     * @return nmero do usurio
+     */
+    public int usuarioPopular(Zipf zipf, Random aleatorio) {
+        return popularidade[zipf.sortear(aleatorio)];
+    }
+
+    /**
+     * Sorteia uma comunidade segundo a popularidade do grafo gerado.
+     *
+     * @param zipf      distribuio sobre as comunidades
+     * @param aleatorio gerador de nmeros aleatrios
+     * @return nmero da comunidade
+     */
+    public int comunidadePopular(Zipf zipf, Random aleatorio) {
+        return maisPopulares[zipf.sortear(aleatorio)];
+    }
+
+    /**
+     * @return nmero de usurios
+     */
+    public int getUsuarios() { return usuarios; }
+
+    /**
+     * @return nmero de comunidades
+     */
+    public int getComunidades() { return comunidades; }
+
+    /**
+     * @return expoente de Zipf da popularidade
+     */
+    public double getExpoente() { return expoente; }
+
+    /**
+     * @param i nmero do usurio
+     * @return login do usurio
+     */
+    public static String login(int i) {
+        return "g" + i;
+    }
+
+    /**
+     * @param c nmero da comunidade
+     * @return nome da comunidade
+     */
+    public static String comunidade(int c) {
+        return "grupo" + c;
+    }
+
+    @Override
+    public String toString() {
+        return "usuarios=" + usuarios + ",amizades=" + amizades + ",idolos=" + idolos + ",comunidades="
+                + comunidades + ",participacoes=" + participacoes + ",recados=" + recados + ",expoente="
+                + expoente + ",semente=" + semente;
+    }
+
+    /**
+     * Sorteia uma quantidade com mdia {@code media}, uniforme entre 0 e 2 * media.
+     */
+    private static int sortearQuantidade(int media, Random aleatorio) {
+        return (media <= 0) ? 0 : aleatorio.nextInt(2 * media + 1);
+    }
+
+    private static int[] permutacao(int n, Random aleatorio) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = aleatorio.nextInt(i + 1);
+            int t = p[i];
+            p[i] = p[j];
+            p[j] = t;
+        }
+        return p;
+    }
+
+    private static boolean tentar(Runnable acao) {
+        try {
+            acao.run();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Sorteio de posies 0..n-1 com distribuio de Zipf: a posio k tem
+ * probabilidade proporcional a 1 / (k + 1)^s.
+ * <p>
+ * A distribuio acumulada  calculada uma vez e cada sorteio  uma busca
+ * binria, em O(log n). Com o mesmo {@link Random} semeado, a sequncia de
+ * sorteios  sempre a mesma.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Zipf {
+    private final double[] acumulada;
+
+    /**
+     * Cria a distribuio.
+     *
+     * @param n        nmero de posies (positivo)
+     * @param expoente expoente s; zero d a distribuio uniforme, valores
+     *                 prximos de 1 do caudas longas como as de redes sociais
+     */
+    public Zipf(int n, double expoente) {
+        if (n <= 0 || expoente < 0) {
+            throw new IllegalArgumentException("Parmetros de Zipf invlidos.");
+        }
+        acumulada = new double[n];
+        double soma = 0;
+        for (int k = 0; k < n; k++) {
+            soma += 1 / Math.pow(k + 1, expoente);
+            acumulada[k] = soma;
+        }
+        for (int k = 0; k < n; k++) {
+            acumulada[k] /= soma;
+        }
+    }
+
+    /**
+     * Sorteia uma posio.
+     *
+     * @param aleatorio gerador de nmeros aleatrios
+     * @return posio entre 0 e n-1; posies menores so mais provveis
+     */
+    public int sortear(Random aleatorio) {
+        int i = Arrays.binarySearch(acumulada, aleatorio.nextDouble());
+        return Math.min((i >= 0) ? i : -i - 1, acumulada.length - 1);
+    }
+
+    /**
+     * @return nmero de posies
+     */
+    public int tamanho() {
+        return acumulada.length;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Medio de desempenho das operaes da {@link br.ufal.ic.p2.jackut.Facade}.
+ *
+ * <p>Cenrios sintticos parametrizados, casos de medio por operao e um
+ * executor que informa vazo, bytes alocados por operao e coletas de lixo,
+ * comparando com uma linha de base salva.</p>
+ */
+package br.ufal.ic.p2.jackut.bench;
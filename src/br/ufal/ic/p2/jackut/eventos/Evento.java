@@ -0,0 +1,78 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import java.io.Serializable;
+
+/**
+ * Fato ocorrido no sistema, registrado pelo ncleo aps cada alterao bem-sucedida.
+ * <p>
+ * Eventos so imutveis e guardam apenas textos: quem  o autor, sobre quem ou
+ * o qu o evento trata (alvo) e um valor livre, conforme o {@link TipoEvento}.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public final class Evento implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequencia;
+    private final long instante;
+    private final TipoEvento tipo;
+    private final String autor;
+    private final String alvo;
+    private final String valor;
+
+    /**
+     * Cria um evento.
+     *
+     * @param sequencia posio do evento no fluxo, a partir de 1
+     * @param instante  instante do evento, em milissegundos
+     * @param tipo      tipo do evento
+     * @param autor     login do usurio que originou o evento
+     * @param alvo      login ou comunidade afetada, ou null
+     * @param valor     valor associado, ou null
+     */
+    public Evento(long sequencia, long instante, TipoEvento tipo, String autor, String alvo, String valor) {
+        this.sequencia = sequencia;
+        this.instante = instante;
+        this.tipo = tipo;
+        this.autor = autor;
+        this.alvo = alvo;
+        this.valor = valor;
+    }
+
+    /**
+     * @return posio do evento no fluxo
+     */
+    public long getSequencia() { return sequencia; }
+
+    /**
+     * @return instante do evento, em milissegundos
+     */
+    public long getInstante() { return instante; }
+
+    /**
+     * @return tipo do evento
+     */
+    public TipoEvento getTipo() { return tipo; }
+
+    /**
+     * @return login do usurio que originou o evento
+     */
+    public String getAutor() { return autor; }
+
+    /**
+     * @return login ou comunidade afetada, ou null
+     */
+    public String getAlvo() { return alvo; }
+
+    /**
+     * @return valor associado, ou null
+     */
+    public String getValor() { return valor; }
+
+    @Override
+    public String toString() {
+        return sequencia + ":" + tipo + "(" + autor + "," + alvo + ")";
+    }
+}
@@ -0,0 +1,304 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Registro somente de acrscimo dos eventos de domnio, em ordem.
+ * <p>
+ * O fluxo  serializado com o estado do sistema; as projees inscritas no. Ao
+ * registrar um evento, o fluxo o aplica imediatamente s projees e, depois
+ * que todas o aplicaram, avisa cada uma com {@link Projecao#concluir(long)}. Uma
+ * projeo nova, ou qualquer uma aps a carga do estado,  preenchida com
+ * {@link #reconstruir(int)}, que reaplica o fluxo inteiro em paralelo, dividindo
+ * as chaves das projees em parties pelo hash.
+ * </p>
+ * <p>
+ * O registro  sincronizado: operaes que executam em paralelo sobre usurios
+ * diferentes entram no fluxo uma de cada vez. Operaes sobre os mesmos usurios
+ * j so serializadas por quem chama o ncleo, e por isso aparecem no fluxo na
+ * ordem em que executaram.
+ * </p>
+ * <p>
+ * O fluxo  compactado ao ser gravado e ao ser carregado (veja
+ * {@link #compactar(List)}): s ficam os eventos que ainda afetam as projees,
+ * renumerados em ordem. Em memria, entre uma carga e outra, o fluxo s cresce.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class FluxoEventos implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Predicate<String> TODAS = chave -> chave != null;
+
+    private List<Evento> eventos = new ArrayList<>(); // no final apenas para a compactao na carga
+    private transient List<Projecao> projecoes = Collections.emptyList();
+
+    /**
+     * Define as projees mantidas a partir do fluxo. Elas no so preenchidas
+     * com os eventos j registrados; para isso use {@link #reconstruir(int)}.
+     *
+     * @param projecoes projees a manter
+     */
+    public synchronized void setProjecoes(List<Projecao> projecoes) {
+        this.projecoes = List.copyOf(projecoes);
+    }
+
+    /**
+     * Acrescenta um evento ao fluxo e o aplica s projees.
+     *
+     * @param instante instante do evento, em milissegundos
+     * @param tipo     tipo do evento
+     * @param autor    login do usurio que originou o evento
+     * @param alvo     login ou comunidade afetada, ou null
+     * @param valor    valor associado, ou null
+     * @return evento registrado
+     */
+    public synchronized Evento registrar(long instante, TipoEvento tipo, String autor, String alvo, String valor) {
+        Evento evento = new Evento(eventos.size() + 1L, instante, tipo, autor, alvo, valor);
+        eventos.add(evento);
+        for (Projecao projecao : projecoes) {
+            projecao.aplicar(evento, TODAS);
+        }
+        for (Projecao projecao : projecoes) {
+            projecao.concluir(evento.getSequencia());
+        }
+        return evento;
+    }
+
+    /**
+     * Troca os logins de autor e alvo dos eventos pelas instncias cannicas.
+     * Eventos que j as usam so mantidos.
+     *
+     * @param canonico funo que devolve a instncia cannica de um login
+     */
+    public synchronized void canonicalizarLogins(UnaryOperator<String> canonico) {
+        eventos.replaceAll(e -> {
+            String autor = canonico.apply(e.getAutor());
+            String alvo = canonico.apply(e.getAlvo());
+            if (autor == e.getAutor() && alvo == e.getAlvo()) return e;
+            return new Evento(e.getSequencia(), e.getInstante(), e.getTipo(), autor, alvo, e.getValor());
+        });
+    }
+
+    /**
+     * @return quantidade de eventos registrados
+     */
+    public synchronized int tamanho() {
+        return eventos.size();
+    }
+
+    /**
+     * @return cpia dos eventos registrados, em ordem
+     */
+    public synchronized List<Evento> getEventos() {
+        return new ArrayList<>(eventos);
+    }
+
+    /**
+     * Descarta todos os eventos e o estado das projees.
+     */
+    public synchronized void zerar() {
+        eventos.clear();
+        for (Projecao projecao : projecoes) {
+            projecao.limpar();
+            projecao.concluir(0);
+        }
+    }
+
+    /**
+     * Limpa as projees e reaplica todo o fluxo, com uma thread por partio de
+     * chaves. As projees que no so particionveis recebem o fluxo inteiro na
+     * thread que chamou, ao mesmo tempo. Novos eventos aguardam o fim da reconstruo.
+     *
+     * @param particoes nmero de parties (e de threads)
+     * @return quantidade de eventos reaplicados
+     * @throws IllegalArgumentException se o nmero de parties no for positivo
+     */
+    public synchronized int reconstruir(int particoes) {
+        if (particoes <= 0) {
+            throw new IllegalArgumentException("Nmero de parties invlido.");
+        }
+        for (Projecao projecao : projecoes) {
+            projecao.limpar();
+        }
+        if (particoes == 1) {
+            reaplicar(projecoes, TODAS);
+            return concluir();
+        }
+        List<Projecao> particionaveis = new ArrayList<>();
+        List<Projecao> inteiras = new ArrayList<>();
+        for (Projecao projecao : projecoes) {
+            (projecao.isParticionavel() ? particionaveis : inteiras).add(projecao);
+        }
+        Thread[] threads = new Thread[particoes];
+        RuntimeException[] falha = new RuntimeException[1];
+        for (int p = 0; p < particoes; p++) {
+            final int particao = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    reaplicar(particionaveis, chave -> chave != null && particao(chave, particoes) == particao);
+                } catch (RuntimeException e) {
+                    synchronized (falha) {
+                        falha[0] = e;
+                    }
+                }
+            }, "jackut-projecoes-" + p);
+            threads[p].start();
+        }
+        try {
+            reaplicar(inteiras, TODAS);
+        } catch (RuntimeException e) {
+            synchronized (falha) {
+                falha[0] = e;
+            }
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (falha) {
+            if (falha[0] != null) throw falha[0];
+        }
+        return concluir();
+    }
+
+    private int concluir() {
+        for (Projecao projecao : projecoes) {
+            projecao.concluir(eventos.size());
+        }
+        return eventos.size();
+    }
+
+    /**
+     * Retorna a partio de uma chave.
+     *
+     * @param chave     login ou nome de comunidade
+     * @param particoes nmero de parties
+     * @return ndice da partio
+     */
+    public static int particao(String chave, int particoes) {
+        int h = chave.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), particoes);
+    }
+
+    private void reaplicar(List<Projecao> alvos, Predicate<String> chaves) {
+        for (Evento evento : eventos) {
+            for (Projecao projecao : alvos) {
+                projecao.aplicar(evento, chaves);
+            }
+        }
+    }
+
+    /**
+     * Devolve a forma compacta de um fluxo, que leva as projees ao mesmo estado:
+     * <ul>
+     * <li>recados e mensagens no alteram projees e so descartados;</li>
+     * <li>de vrias edies do mesmo atributo de um perfil fica uma s, na posio
+     * da primeira e com o valor da ltima;</li>
+     * <li>a remoo de um usurio descarta os eventos anteriores dele ou sobre ele,
+     * os das comunidades de que era dono e a prpria remoo.</li>
+     * </ul>
+     * Os eventos restantes mantm a ordem e so renumerados a partir de 1.
+     *
+     * @param eventos fluxo em ordem
+     * @return nova lista com o fluxo compactado
+     */
+    static List<Evento> compactar(List<Evento> eventos) {
+        List<Evento> mantidos = new ArrayList<>(eventos.size());
+        Map<String, List<Integer>> porUsuario = new HashMap<>();
+        Map<String, List<Integer>> porComunidade = new HashMap<>();
+        Map<String, String> donos = new HashMap<>();
+        Map<String, Integer> edicoes = new HashMap<>(); // login e atributo -> posio da edio mantida
+        for (Evento e : eventos) {
+            int posicao = mantidos.size();
+            switch (e.getTipo()) {
+                case RECADO_ENVIADO:
+                case MENSAGEM_ENVIADA:
+                    continue;
+                case PERFIL_EDITADO:
+                    Integer anterior = edicoes.putIfAbsent(e.getAutor() + '\0' + e.getAlvo(), posicao);
+                    if (anterior != null && mantidos.get(anterior) != null) {
+                        Evento primeira = mantidos.get(anterior);
+                        mantidos.set(anterior, new Evento(primeira.getSequencia(), e.getInstante(), e.getTipo(),
+                                e.getAutor(), e.getAlvo(), e.getValor()));
+                        continue;
+                    }
+                    edicoes.put(e.getAutor() + '\0' + e.getAlvo(), posicao);
+                    indexar(porUsuario, e.getAutor(), posicao);
+                    break;
+                case COMUNIDADE_CRIADA:
+                    donos.put(e.getAlvo(), e.getAutor());
+                    indexar(porComunidade, e.getAlvo(), posicao);
+                    break;
+                case MEMBRO_ADICIONADO:
+                    indexar(porUsuario, e.getAutor(), posicao);
+                    indexar(porComunidade, e.getAlvo(), posicao);
+                    break;
+                case USUARIO_REMOVIDO:
+                    String removido = e.getAutor();
+                    descartar(mantidos, porUsuario.remove(removido));
+                    donos.entrySet().removeIf(dono -> {
+                        if (!dono.getValue().equals(removido)) return false;
+                        descartar(mantidos, porComunidade.remove(dono.getKey()));
+                        return true;
+                    });
+                    continue;
+                case USUARIO_CRIADO:
+                case LISTA_ORDENADA:
+                    indexar(porUsuario, e.getAutor(), posicao);
+                    break;
+                default: // relaes entre o autor e o usurio alvo
+                    indexar(porUsuario, e.getAutor(), posicao);
+                    indexar(porUsuario, e.getAlvo(), posicao);
+                    break;
+            }
+            mantidos.add(e);
+        }
+        List<Evento> compactado = new ArrayList<>(mantidos.size());
+        for (Evento e : mantidos) {
+            if (e == null) continue;
+            long sequencia = compactado.size() + 1L;
+            compactado.add((e.getSequencia() == sequencia) ? e
+                    : new Evento(sequencia, e.getInstante(), e.getTipo(), e.getAutor(), e.getAlvo(), e.getValor()));
+        }
+        return compactado;
+    }
+
+    private static void indexar(Map<String, List<Integer>> indice, String chave, int posicao) {
+        indice.computeIfAbsent(chave, k -> new ArrayList<>()).add(posicao);
+    }
+
+    private static void descartar(List<Evento> mantidos, List<Integer> posicoes) {
+        if (posicoes == null) return;
+        for (int posicao : posicoes) {
+            mantidos.set(posicao, null);
+        }
+    }
+
+    private synchronized void writeObject(ObjectOutputStream oos) throws IOException {
+        ObjectOutputStream.PutField campos = oos.putFields();
+        campos.put("eventos", compactar(eventos));
+        oos.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = ois.readFields();
+        eventos = compactar((List<Evento>) campos.get("eventos", null));
+        projecoes = Collections.emptyList();
+    }
+}
@@ -0,0 +1,52 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import java.util.function.Predicate;
+
+/**
+ * Modelo de leitura derivado do {@link FluxoEventos}.
+ * <p>
+ * Uma projeo organiza seu estado por chave (login ou nome de comunidade) e
+ * cada evento altera apenas chaves aceitas pelo filtro recebido. Assim, na
+ * reconstruo paralela, cada thread aplica todos os eventos em ordem, mas s s
+ * chaves da sua partio, sem disputar dados com as demais. As estruturas
+ * internas devem tolerar inseres e remoes de chaves por vrias threads.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public interface Projecao {
+    /**
+     * Aplica um evento s chaves aceitas pelo filtro.
+     *
+     * @param evento evento a aplicar, na ordem do fluxo
+     * @param chaves filtro das chaves que esta chamada pode alterar
+     */
+    void aplicar(Evento evento, Predicate<String> chaves);
+
+    /**
+     * Descarta todo o estado da projeo.
+     */
+    void limpar();
+
+    /**
+     * Avisa que todos os eventos at a sequncia informada j foram aplicados
+     * por inteiro. Chamado aps cada registro, aps a reconstruo e ao zerar o fluxo.
+     *
+     * @param sequencia sequncia do ltimo evento aplicado, ou zero se o fluxo estiver vazio
+     */
+    default void concluir(long sequencia) {
+    }
+
+    /**
+     * Indica se a projeo pode ser reconstruda em parties de chaves. Uma
+     * projeo cujos eventos alteram chaves que dependem do prprio estado dela
+     * (como os membros de uma comunidade removida) deve ser reconstruda por
+     * inteiro, recebendo todos os eventos com um filtro que aceita qualquer chave.
+     *
+     * @return true se a reconstruo pode ser particionada
+     */
+    default boolean isParticionavel() {
+        return true;
+    }
+}
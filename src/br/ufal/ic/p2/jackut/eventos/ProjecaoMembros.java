@@ -0,0 +1,83 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Projeo dos membros de cada comunidade, em ordem de entrada.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class ProjecaoMembros implements Projecao {
+    private final Map<String, Rol> comunidades = new ConcurrentHashMap<>();
+
+    /**
+     * Dono e membros de uma comunidade.
+     */
+    private static final class Rol {
+        private final String dono;
+        private final Set<String> membros = new LinkedHashSet<>();
+
+        private Rol(String dono) {
+            this.dono = dono;
+            membros.add(dono);
+        }
+    }
+
+    @Override
+    public void aplicar(Evento evento, Predicate<String> chaves) {
+        switch (evento.getTipo()) {
+            case COMUNIDADE_CRIADA:
+                if (chaves.test(evento.getAlvo())) comunidades.put(evento.getAlvo(), new Rol(evento.getAutor()));
+                break;
+            case MEMBRO_ADICIONADO:
+                Rol quadro = chaves.test(evento.getAlvo()) ? comunidades.get(evento.getAlvo()) : null;
+                if (quadro != null) quadro.membros.add(evento.getAutor());
+                break;
+            case USUARIO_REMOVIDO:
+                String removido = evento.getAutor();
+                Iterator<Map.Entry<String, Rol>> it = comunidades.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Rol> entrada = it.next();
+                    if (!chaves.test(entrada.getKey())) continue;
+                    if (entrada.getValue().dono.equals(removido)) {
+                        it.remove();
+                    } else {
+                        entrada.getValue().membros.remove(removido);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void limpar() {
+        comunidades.clear();
+    }
+
+    /**
+     * Retorna quantos membros uma comunidade tem, incluindo o dono.
+     *
+     * @param nome nome da comunidade
+     * @return nmero de membros, zero se a comunidade no for conhecida
+     */
+    public int contarMembros(String nome) {
+        Rol quadro = comunidades.get(nome);
+        return (quadro == null) ? 0 : quadro.membros.size();
+    }
+
+    /**
+     * Retorna os membros de uma comunidade em ordem de entrada.
+     *
+     * @param nome nome da comunidade
+     * @return membros, ou lista vazia se a comunidade no for conhecida
+     */
+    public List<String> getMembros(String nome) {
+        Rol quadro = comunidades.get(nome);
+        return (quadro == null) ? Collections.emptyList() : new ArrayList<>(quadro.membros);
+    }
+}
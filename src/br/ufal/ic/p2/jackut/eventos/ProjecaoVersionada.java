@@ -0,0 +1,691 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Projeo versionada de perfis, relacionamentos e comunidades, lida sem travas
+ * por meio de {@link Retrato}s.
+ * <p>
+ * A poca de um evento  a sua sequncia no fluxo. Cada alterao cria uma nova
+ * verso marcada com a poca do evento, sem apagar a anterior: os registros de
+ * usurios e comunidades e os perfis formam cadeias de verses, da mais nova
+ * para a mais antiga, e cada item de uma lista de relacionamentos guarda a poca
+ * em que entrou e a poca em que saiu. A poca s  publicada em
+ * {@link #concluir(long)}, quando o evento inteiro j foi aplicado. Um retrato
+ * fixa a poca publicada e ignora o que for mais novo, por isso v os dois lados
+ * de uma amizade ou nenhum. O fluxo aplica um evento por vez, e quem escreve
+ * no espera pelas leituras.
+ * </p>
+ * <p>
+ * Verses substitudas e itens removidos entram em uma fila de recolhimento com
+ * a poca em que deixaram de valer, e so descartados quando nenhum retrato
+ * aberto fixa uma poca anterior a ela. O recolhimento roda a cada poca
+ * publicada e tambm ao fechar um retrato, para que as verses que s ele
+ * segurava no esperem a prxima escrita. Quem aplica eventos e quem recolhe
+ * disputam a gerao por uma troca atmica: um fechamento que no a obtm
+ * deixa o recolhimento para depois, e um fechamento que a obteve cede a vez,
+ * entre um descarte e outro, assim que quem escreve pede a gerao. Quem
+ * escreve espera, no mximo, um descarte. Zerar ou reconstruir a projeo cria uma
+ * nova gerao; os retratos abertos continuam lendo a antiga, que o coletor de
+ * lixo recolhe quando o ltimo  fechado. Enquanto a gerao nova  preenchida
+ * ningum a l, e por isso ela no guarda histrico at ser publicada.
+ * </p>
+ * <p>
+ * A remoo de um usurio altera as listas de outros usurios e de comunidades
+ * conforme o estado da prpria projeo, por isso ela no  reconstruda em parties.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ * @see Retrato
+ */
+public class ProjecaoVersionada implements Projecao {
+    private volatile Geracao publicada;
+    private Geracao construcao; // s quem aplica eventos
+
+    /**
+     * Cria a projeo vazia, j publicada na poca zero.
+     */
+    public ProjecaoVersionada() {
+        construcao = new Geracao();
+        concluir(0);
+    }
+
+    @Override
+    public void aplicar(Evento evento, Predicate<String> chaves) {
+        Geracao g = construcao;
+        g.ocupar();
+        try {
+            g.aplicar(evento);
+        } finally {
+            g.desocupar();
+        }
+    }
+
+    @Override
+    public void limpar() {
+        construcao = new Geracao();
+    }
+
+    @Override
+    public void concluir(long sequencia) {
+        Geracao g = construcao;
+        g.ocupar();
+        try {
+            g.historico = true;
+            g.epoca = sequencia;
+            publicada = g;
+            g.recolher(false);
+        } finally {
+            g.desocupar();
+        }
+    }
+
+    @Override
+    public boolean isParticionavel() {
+        return false;
+    }
+
+    /**
+     * Abre um retrato da ltima poca publicada. O retrato deve ser fechado,
+     * pois enquanto estiver aberto as verses que ele enxerga no so descartadas.
+     *
+     * @return retrato aberto
+     */
+    public Retrato abrirRetrato() {
+        return publicada.abrirRetrato();
+    }
+
+    /**
+     * Retorna os amigos que dois usurios tm em comum na ltima poca publicada.
+     *
+     * @param login1 login do primeiro usurio
+     * @param login2 login do segundo usurio
+     * @return amigos em comum no formato "{amigo1,amigo2,...}", em ordem alfabtica
+     * @throws br.ufal.ic.p2.jackut.exceptions.UsuarioNaoEncontradoException se algum usurio no existir
+     */
+    public String getAmigosEmComum(String login1, String login2) {
+        try (Retrato retrato = abrirRetrato()) {
+            return retrato.getAmigosEmComum(login1, login2);
+        }
+    }
+
+    /**
+     * Retorna quantos fs um usurio tem na ltima poca publicada.
+     *
+     * @param login login do dolo
+     * @return nmero de fs
+     * @throws br.ufal.ic.p2.jackut.exceptions.UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public int contarFas(String login) {
+        try (Retrato retrato = abrirRetrato()) {
+            return retrato.contarFas(login);
+        }
+    }
+
+    /**
+     * @return quantas verses substitudas e listas com itens removidos aguardam recolhimento
+     */
+    public int contarPendencias() {
+        return publicada.pendentes;
+    }
+
+    /**
+     * @return quantos retratos esto abertos sobre a gerao publicada
+     */
+    public int contarRetratosAbertos() {
+        int abertos = 0;
+        for (int n : publicada.fixadas.values()) {
+            abertos += n;
+        }
+        return abertos;
+    }
+
+    /**
+     * Verso de um valor vlida a partir de uma poca, ligada  verso anterior.
+     * Um valor nulo marca a remoo.
+     */
+    static final class Versao<T> {
+        private final long epoca;
+        private final T valor;
+        private volatile Versao<T> anterior;
+
+        private Versao(long epoca, T valor, Versao<T> anterior) {
+            this.epoca = epoca;
+            this.valor = valor;
+            this.anterior = anterior;
+        }
+
+        /**
+         * @return valor visvel na poca, ou null se no existia ou estava removido
+         */
+        static <T> T ler(Versao<T> versao, long epoca) {
+            Versao<T> v = versao;
+            while (v != null && v.epoca > epoca) {
+                v = v.anterior;
+            }
+            return (v == null) ? null : v.valor;
+        }
+
+        /**
+         * Corta as verses que nenhuma leitura a partir do horizonte enxerga.
+         */
+        private void podar(long horizonte) {
+            Versao<T> v = this;
+            while (v != null && v.epoca > horizonte) {
+                v = v.anterior;
+            }
+            if (v != null) v.anterior = null;
+        }
+    }
+
+    /**
+     * Lista de relacionamentos em ordem de entrada em que cada item guarda as
+     * pocas de entrada e de sada. S quem aplica eventos altera a lista; os
+     * leitores percorrem o vetor publicado e filtram pela poca.
+     */
+    static final class Lista {
+        private static final Item[] VAZIA = {};
+        private static final int INDEXAR_ACIMA_DE = 16;
+
+        private volatile Item[] itens = VAZIA;
+        private volatile Map<String, Item> indice; // ltimo item de cada valor, nas listas grandes
+        private int tamanho;
+        private int removidos;
+        private long proximaSaida; // menor sada entre os removidos que ficaram na ltima compactao
+        private boolean agendada;
+
+        private static final class Item {
+            private final String valor;
+            private final long entrada;
+            private volatile long saida = Long.MAX_VALUE;
+
+            private Item(String valor, long entrada) {
+                this.valor = valor;
+                this.entrada = entrada;
+            }
+        }
+
+        private boolean adicionar(String valor, long epoca) {
+            if (buscarVivo(valor) != null) return false;
+            Item item = new Item(valor, epoca);
+            Item[] atual = itens;
+            if (tamanho == atual.length) {
+                atual = Arrays.copyOf(atual, Math.max(4, tamanho * 2));
+                atual[tamanho++] = item;
+                itens = atual;
+            } else {
+                atual[tamanho++] = item;
+            }
+            Map<String, Item> mapa = indice;
+            if (mapa != null) {
+                mapa.put(valor, item);
+            } else if (tamanho > INDEXAR_ACIMA_DE) {
+                mapa = new ConcurrentHashMap<>();
+                for (int i = 0; i < tamanho; i++) {
+                    mapa.put(atual[i].valor, atual[i]);
+                }
+                indice = mapa;
+            }
+            return true;
+        }
+
+        private boolean remover(String valor, long epoca) {
+            Item item = buscarVivo(valor);
+            if (item == null) return false;
+            item.saida = epoca;
+            removidos++;
+            return true;
+        }
+
+        private Item buscarVivo(String valor) {
+            Map<String, Item> mapa = indice;
+            if (mapa != null) {
+                Item item = mapa.get(valor);
+                return (item != null && item.saida == Long.MAX_VALUE) ? item : null;
+            }
+            Item[] atual = itens;
+            for (int i = tamanho - 1; i >= 0; i--) {
+                if (atual[i].saida == Long.MAX_VALUE && atual[i].valor.equals(valor)) return atual[i];
+            }
+            return null;
+        }
+
+        /**
+         * Descarta os itens que saram at o horizonte, publicando um vetor novo,
+         * e guarda a menor sada dos removidos que ficaram.
+         */
+        private void compactar(long horizonte) {
+            Item[] atual = itens;
+            int vivos = 0;
+            proximaSaida = Long.MAX_VALUE;
+            for (int i = 0; i < tamanho; i++) {
+                long saida = atual[i].saida;
+                if (saida > horizonte) {
+                    vivos++;
+                    if (saida != Long.MAX_VALUE) proximaSaida = Math.min(proximaSaida, saida);
+                }
+            }
+            if (vivos == tamanho) return;
+            Item[] novos = (vivos == 0) ? VAZIA : new Item[Math.max(4, vivos)];
+            Map<String, Item> mapa = indice;
+            int n = 0;
+            removidos = 0;
+            for (int i = 0; i < tamanho; i++) {
+                Item item = atual[i];
+                if (item.saida > horizonte) {
+                    novos[n++] = item;
+                    if (item.saida != Long.MAX_VALUE) removidos++;
+                } else if (mapa != null) {
+                    mapa.remove(item.valor, item);
+                }
+            }
+            tamanho = n;
+            itens = novos;
+        }
+
+        /**
+         * @return valores presentes na poca, em ordem de entrada
+         */
+        List<String> ler(long epoca) {
+            Item[] atual = itens;
+            List<String> valores = new ArrayList<>();
+            for (Item item : atual) {
+                if (item == null || item.entrada > epoca) break;
+                if (item.saida > epoca) valores.add(item.valor);
+            }
+            return valores;
+        }
+
+        /**
+         * @return quantos valores estavam presentes na poca
+         */
+        int contar(long epoca) {
+            Item[] atual = itens;
+            int n = 0;
+            for (Item item : atual) {
+                if (item == null || item.entrada > epoca) break;
+                if (item.saida > epoca) n++;
+            }
+            return n;
+        }
+
+        /**
+         * @return true se o valor estava presente na poca
+         */
+        boolean contem(String valor, long epoca) {
+            if (valor == null) return false;
+            Map<String, Item> mapa = indice;
+            if (mapa != null) {
+                Item item = mapa.get(valor);
+                if (item == null) return false;
+                // um item mais novo que a poca pode esconder uma entrada anterior do mesmo valor
+                if (item.entrada <= epoca) return item.saida > epoca;
+            }
+            for (Item item : itens) {
+                if (item == null || item.entrada > epoca) break;
+                if (item.saida > epoca && item.valor.equals(valor)) return true;
+            }
+            return false;
+        }
+
+        private List<String> vivos() {
+            return ler(Long.MAX_VALUE - 1);
+        }
+    }
+
+    /**
+     * Um usurio entre a criao e a remoo. Um login recriado ganha um registro novo.
+     */
+    static final class RegistroUsuario {
+        final String login;
+        volatile Versao<Map<String, String>> perfil;
+        final Lista amigos = new Lista();
+        final Lista idolos = new Lista();
+        final Lista fas = new Lista();
+        final Lista paqueras = new Lista();
+        final Lista inimigos = new Lista();
+        final Lista comunidades = new Lista();
+
+        private RegistroUsuario(String login, String nome, long epoca) {
+            this.login = login;
+            Map<String, String> atributos = new HashMap<>();
+            atributos.put("nome", nome);
+            perfil = new Versao<>(epoca, atributos, null);
+        }
+
+        /**
+         * @return a lista de nome {@code amigos}, {@code fas} ou {@code comunidades}, ou null
+         */
+        private Lista lista(String nome) {
+            switch (nome) {
+                case "amigos":
+                    return amigos;
+                case "fas":
+                    return fas;
+                case "comunidades":
+                    return comunidades;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Uma comunidade entre a criao e a remoo do dono.
+     */
+    static final class RegistroComunidade {
+        final String nome;
+        final String dono;
+        final String descricao;
+        final Lista membros = new Lista();
+
+        private RegistroComunidade(String nome, String dono, String descricao, long epoca) {
+            this.nome = nome;
+            this.dono = dono;
+            this.descricao = descricao;
+            membros.adicionar(dono, epoca);
+        }
+    }
+
+    /**
+     * Descarte adiado para quando nenhum retrato fixar poca anterior  indicada.
+     */
+    private static final class Pendencia {
+        private final long epoca;
+        private final LongConsumer acao;
+
+        private Pendencia(long epoca, LongConsumer acao) {
+            this.epoca = epoca;
+            this.acao = acao;
+        }
+    }
+
+    /**
+     * Estado completo da projeo desde a ltima limpeza, com as pocas fixadas
+     * pelos seus retratos.
+     */
+    static final class Geracao {
+        final Map<String, Versao<RegistroUsuario>> usuarios = new ConcurrentHashMap<>();
+        final Map<String, Versao<RegistroComunidade>> comunidades = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<Long, Integer> fixadas = new ConcurrentSkipListMap<>();
+        private final Deque<Pendencia> pendencias = new ArrayDeque<>(); // s com a gerao ocupada
+        private final AtomicBoolean ocupada = new AtomicBoolean();
+        private volatile boolean escritorAguardando;
+        private volatile long epoca;
+        private volatile long recolhidoAte;
+        private volatile int pendentes;
+        private boolean historico;
+
+        private Retrato abrirRetrato() {
+            while (true) {
+                long e = epoca;
+                fixadas.merge(e, 1, Integer::sum);
+                // se um recolhimento passou da poca antes de a fixarmos, ela pode estar incompleta
+                if (recolhidoAte <= e) return new Retrato(this, e);
+                soltar(e);
+            }
+        }
+
+        private void soltar(long e) {
+            fixadas.computeIfPresent(e, (k, n) -> (n == 1) ? null : n - 1);
+        }
+
+        /**
+         * Solta a poca de um retrato fechado e, se ningum estiver usando a
+         * gerao, executa os descartes que ela segurava.
+         */
+        void fechar(long e) {
+            soltar(e);
+            if (escritorAguardando || !ocupada.compareAndSet(false, true)) return;
+            try {
+                recolher(true);
+            } finally {
+                ocupada.set(false);
+            }
+        }
+
+        /**
+         * Toma a gerao para aplicar eventos, pedindo a vez a um recolhimento em andamento.
+         */
+        private void ocupar() {
+            if (ocupada.compareAndSet(false, true)) return;
+            escritorAguardando = true;
+            while (!ocupada.compareAndSet(false, true)) {
+                Thread.onSpinWait();
+            }
+            escritorAguardando = false;
+        }
+
+        private void desocupar() {
+            ocupada.set(false);
+        }
+
+        /**
+         * Executa os descartes que nenhum retrato aberto pode mais enxergar.
+         * Deve ser chamado com a gerao ocupada.
+         *
+         * @param cederAoEscritor se deve parar entre dois descartes quando quem escreve pedir a gerao
+         */
+        private void recolher(boolean cederAoEscritor) {
+            Pendencia primeira = pendencias.peek();
+            if (primeira == null || primeira.epoca > epoca) return;
+            recolhidoAte = horizonte();
+            long horizonte = Math.min(recolhidoAte, horizonte());
+            while (!pendencias.isEmpty() && pendencias.peek().epoca <= horizonte) {
+                if (cederAoEscritor && escritorAguardando) break;
+                pendencias.poll().acao.accept(horizonte);
+            }
+            pendentes = pendencias.size();
+        }
+
+        private long horizonte() {
+            Map.Entry<Long, Integer> maisAntiga = fixadas.firstEntry();
+            return (maisAntiga == null) ? epoca : Math.min(maisAntiga.getKey(), epoca);
+        }
+
+        private void adiar(long e, LongConsumer acao) {
+            pendencias.add(new Pendencia(e, acao));
+            pendentes = pendencias.size();
+        }
+
+        RegistroUsuario usuario(String login, long e) {
+            return (login == null) ? null : Versao.ler(usuarios.get(login), e);
+        }
+
+        RegistroComunidade comunidade(String nome, long e) {
+            return (nome == null) ? null : Versao.ler(comunidades.get(nome), e);
+        }
+
+        private RegistroUsuario atual(String login) {
+            return usuario(login, Long.MAX_VALUE);
+        }
+
+        private RegistroComunidade atualComunidade(String nome) {
+            return comunidade(nome, Long.MAX_VALUE);
+        }
+
+        private void aplicar(Evento evento) {
+            long e = evento.getSequencia();
+            String autor = evento.getAutor();
+            String alvo = evento.getAlvo();
+            RegistroUsuario u;
+            switch (evento.getTipo()) {
+                case USUARIO_CRIADO:
+                    substituir(usuarios, autor, new RegistroUsuario(autor, evento.getValor(), e), e);
+                    break;
+                case PERFIL_EDITADO:
+                    u = atual(autor);
+                    if (u != null) editarPerfil(u, alvo, evento.getValor(), e);
+                    break;
+                case AMIZADE_CONFIRMADA:
+                    u = atual(autor);
+                    RegistroUsuario amigo = atual(alvo);
+                    if (u != null && amigo != null) {
+                        adicionar(u.amigos, alvo, e);
+                        adicionar(amigo.amigos, autor, e);
+                    }
+                    break;
+                case COMUNIDADE_CRIADA:
+                    substituir(comunidades, alvo, new RegistroComunidade(alvo, autor, evento.getValor(), e), e);
+                    u = atual(autor);
+                    if (u != null) adicionar(u.comunidades, alvo, e);
+                    break;
+                case MEMBRO_ADICIONADO:
+                    RegistroComunidade c = atualComunidade(alvo);
+                    u = atual(autor);
+                    if (c != null && u != null) {
+                        adicionar(c.membros, autor, e);
+                        adicionar(u.comunidades, alvo, e);
+                    }
+                    break;
+                case IDOLO_ADICIONADO:
+                    u = atual(autor);
+                    RegistroUsuario idolo = atual(alvo);
+                    if (u != null && idolo != null) {
+                        adicionar(u.idolos, alvo, e);
+                        adicionar(idolo.fas, autor, e);
+                    }
+                    break;
+                case PAQUERA_ADICIONADA:
+                    u = atual(autor);
+                    if (u != null) adicionar(u.paqueras, alvo, e);
+                    break;
+                case INIMIGO_ADICIONADO:
+                    u = atual(autor);
+                    if (u != null) adicionar(u.inimigos, alvo, e);
+                    break;
+                case USUARIO_REMOVIDO:
+                    removerUsuario(autor, e);
+                    break;
+                case LISTA_ORDENADA:
+                    u = atual(autor);
+                    Lista lista = (u == null) ? null : u.lista(alvo);
+                    if (lista != null) ordenar(lista, evento.getValor(), e);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Remove o usurio, as comunidades de que era dono (tambm das listas dos
+         * membros) e todas as referncias a ele, tudo na mesma poca.
+         */
+        private void removerUsuario(String login, long e) {
+            RegistroUsuario removido = atual(login);
+            if (removido == null) return;
+            for (String nome : removido.comunidades.vivos()) {
+                RegistroComunidade c = atualComunidade(nome);
+                if (c == null) continue;
+                if (!c.dono.equals(login)) {
+                    remover(c.membros, login, e);
+                    continue;
+                }
+                for (String membro : c.membros.vivos()) {
+                    RegistroUsuario m = atual(membro);
+                    if (m != null && m != removido) remover(m.comunidades, nome, e);
+                }
+                substituir(comunidades, nome, null, e);
+            }
+            for (Versao<RegistroUsuario> versao : usuarios.values()) {
+                RegistroUsuario u = Versao.ler(versao, Long.MAX_VALUE);
+                if (u == null || u == removido) continue;
+                remover(u.amigos, login, e);
+                remover(u.fas, login, e);
+                remover(u.idolos, login, e);
+                remover(u.paqueras, login, e);
+                remover(u.inimigos, login, e);
+            }
+            substituir(usuarios, login, null, e);
+        }
+
+        private void editarPerfil(RegistroUsuario u, String atributo, String valor, long e) {
+            Versao<Map<String, String>> anterior = u.perfil;
+            Map<String, String> atributos = new HashMap<>(anterior.valor);
+            atributos.put(atributo, valor);
+            if (!historico) {
+                u.perfil = new Versao<>(e, atributos, null);
+                return;
+            }
+            Versao<Map<String, String>> nova = new Versao<>(e, atributos, anterior);
+            u.perfil = nova;
+            adiar(e, nova::podar);
+        }
+
+        private <T> void substituir(Map<String, Versao<T>> mapa, String chave, T valor, long e) {
+            Versao<T> anterior = mapa.get(chave);
+            if (valor == null && (anterior == null || anterior.valor == null)) return;
+            if (!historico) {
+                if (valor == null) {
+                    mapa.remove(chave);
+                } else {
+                    mapa.put(chave, new Versao<>(e, valor, null));
+                }
+                return;
+            }
+            Versao<T> nova = new Versao<>(e, valor, anterior);
+            mapa.put(chave, nova);
+            if (anterior == null) return;
+            adiar(e, horizonte -> {
+                nova.podar(horizonte);
+                if (valor == null) mapa.remove(chave, nova);
+            });
+        }
+
+        /**
+         * Pe os itens vivos da lista na ordem dada; os que no aparecem nela
+         * ficam no fim, na ordem atual. Como os itens so lidos em ordem de
+         * entrada, os reordenados saem e voltam na mesma poca.
+         */
+        private void ordenar(Lista lista, String ordem, long e) {
+            List<String> vivos = lista.vivos();
+            Set<String> restantes = new LinkedHashSet<>(vivos);
+            List<String> ordenados = new ArrayList<>(vivos.size());
+            for (String valor : ordem.split(String.valueOf(TipoEvento.SEPARADOR))) {
+                if (restantes.remove(valor)) ordenados.add(valor);
+            }
+            ordenados.addAll(restantes);
+            if (ordenados.equals(vivos)) return;
+            for (String valor : vivos) {
+                remover(lista, valor, e);
+            }
+            for (String valor : ordenados) {
+                adicionar(lista, valor, e);
+            }
+        }
+
+        private void adicionar(Lista lista, String valor, long e) {
+            lista.adicionar(valor, e);
+        }
+
+        private void remover(Lista lista, String valor, long e) {
+            if (!lista.remover(valor, e)) return;
+            if (!historico) {
+                lista.compactar(e);
+            } else if (!lista.agendada) {
+                agendarCompactacao(lista, e);
+            }
+        }
+
+        /**
+         * Agenda uma compactao da lista; os itens que saram depois do
+         * horizonte usado ficam para a compactao seguinte, agendada na menor
+         * dessas sadas, que  posterior ao horizonte. Assim o mesmo
+         * recolhimento no volta a compactar a lista sem nada a descartar.
+         */
+        private void agendarCompactacao(Lista lista, long e) {
+            lista.agendada = true;
+            adiar(e, horizonte -> {
+                lista.agendada = false;
+                lista.compactar(horizonte);
+                if (lista.removidos > 0) agendarCompactacao(lista, lista.proximaSaida);
+            });
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import br.ufal.ic.p2.jackut.eventos.ProjecaoVersionada.Geracao;
+import br.ufal.ic.p2.jackut.eventos.ProjecaoVersionada.RegistroComunidade;
+import br.ufal.ic.p2.jackut.eventos.ProjecaoVersionada.RegistroUsuario;
+import br.ufal.ic.p2.jackut.exceptions.AtributoNaoPreenchidoException;
+import br.ufal.ic.p2.jackut.exceptions.ComunidadeNaoEncontradaException;
+import br.ufal.ic.p2.jackut.exceptions.UsuarioNaoEncontradoException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Viso somente leitura da {@link ProjecaoVersionada} fixada em uma poca.
+ * <p>
+ * Todas as consultas de um retrato enxergam o estado logo aps o mesmo evento,
+ * por mais que o sistema mude enquanto ele est aberto, e nenhuma delas trava
+ * quem escreve. As consultas tm os mesmos nomes, formatos e excees das
+ * consultas da fachada. O retrato deve ser fechado assim que no for mais
+ * usado, para que as verses antigas possam ser descartadas.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public final class Retrato implements AutoCloseable {
+    private final Geracao geracao;
+    private final long epoca;
+    private final AtomicBoolean aberto = new AtomicBoolean(true);
+
+    Retrato(Geracao geracao, long epoca) {
+        this.geracao = geracao;
+        this.epoca = epoca;
+    }
+
+    /**
+     * @return sequncia do ltimo evento visvel neste retrato
+     */
+    public long getEpoca() {
+        return epoca;
+    }
+
+    /**
+     * Retorna o valor de um atributo de perfil.
+     *
+     * @param login    login do usurio
+     * @param atributo nome do atributo
+     * @return valor do atributo
+     * @throws UsuarioNaoEncontradoException  se o usurio no existir
+     * @throws AtributoNaoPreenchidoException se o atributo no estiver definido
+     */
+    public String getAtributoUsuario(String login, String atributo) {
+        String valor = perfil(usuario(login)).get(atributo);
+        if (valor == null) throw new AtributoNaoPreenchidoException();
+        return valor;
+    }
+
+    /**
+     * @param login login do usurio
+     * @return amigos no formato "{amigo1,amigo2,...}", em ordem de amizade
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public String getAmigos(String login) {
+        return formatar(usuario(login).amigos.ler(epoca));
+    }
+
+    /**
+     * @param login1 login do primeiro usurio
+     * @param login2 login do segundo usurio
+     * @return true se forem amigos
+     * @throws UsuarioNaoEncontradoException se algum usurio no existir
+     */
+    public boolean ehAmigo(String login1, String login2) {
+        RegistroUsuario u1 = usuario(login1);
+        RegistroUsuario u2 = usuario(login2);
+        return u1.amigos.contem(login2, epoca) && u2.amigos.contem(login1, epoca);
+    }
+
+    /**
+     * @param login1 login do primeiro usurio
+     * @param login2 login do segundo usurio
+     * @return amigos em comum no formato "{amigo1,amigo2,...}", em ordem alfabtica
+     * @throws UsuarioNaoEncontradoException se algum usurio no existir
+     */
+    public String getAmigosEmComum(String login1, String login2) {
+        Set<String> comuns = new TreeSet<>(usuario(login1).amigos.ler(epoca));
+        comuns.retainAll(new HashSet<>(usuario(login2).amigos.ler(epoca)));
+        return formatar(comuns);
+    }
+
+    /**
+     * @param login login do usurio
+     * @return comunidades no formato "{comunidade1,comunidade2,...}", em ordem de entrada
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public String getComunidades(String login) {
+        return formatar(usuario(login).comunidades.ler(epoca));
+    }
+
+    /**
+     * @param login login do f
+     * @param idolo login do dolo
+     * @return true se o usurio for f do dolo
+     * @throws UsuarioNaoEncontradoException se o f no existir
+     */
+    public boolean ehFa(String login, String idolo) {
+        return usuario(login).idolos.contem(idolo, epoca);
+    }
+
+    /**
+     * @param login login do dolo
+     * @return fs no formato "{fa1,fa2,...}"
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public String getFas(String login) {
+        return formatar(usuario(login).fas.ler(epoca));
+    }
+
+    /**
+     * @param login login do dolo
+     * @return quantidade de fs
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public int contarFas(String login) {
+        return usuario(login).fas.contar(epoca);
+    }
+
+    /**
+     * @param nome nome da comunidade
+     * @return membros no formato "{membro1,membro2,...}", a comear pelo dono
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public String getMembrosComunidade(String nome) {
+        return formatar(comunidade(nome).membros.ler(epoca));
+    }
+
+    /**
+     * @param nome nome da comunidade
+     * @return quantidade de membros, incluindo o dono
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public int contarMembrosComunidade(String nome) {
+        return comunidade(nome).membros.contar(epoca);
+    }
+
+    /**
+     * @param nome nome da comunidade
+     * @return login do dono
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public String getDonoComunidade(String nome) {
+        return comunidade(nome).dono;
+    }
+
+    /**
+     * @param nome nome da comunidade
+     * @return descrio da comunidade
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public String getDescricaoComunidade(String nome) {
+        return comunidade(nome).descricao;
+    }
+
+    /**
+     * Exporta de uma vez o estado pblico de um usurio: perfil, em ordem de
+     * atributo, amigos, dolos, fs e comunidades.
+     *
+     * @param login login do usurio
+     * @return texto no formato
+     *         "login=...;perfil={atributo=valor,...};amigos={...};idolos={...};fas={...};comunidades={...}"
+     * @throws UsuarioNaoEncontradoException se o usurio no existir
+     */
+    public String exportarUsuario(String login) {
+        RegistroUsuario u = usuario(login);
+        Map<String, String> atributos = new TreeMap<>(Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        atributos.putAll(perfil(u));
+        List<String> perfil = new ArrayList<>(atributos.size());
+        for (Map.Entry<String, String> atributo : atributos.entrySet()) {
+            perfil.add(atributo.getKey() + "=" + atributo.getValue());
+        }
+        return "login=" + u.login
+                + ";perfil=" + formatar(perfil)
+                + ";amigos=" + formatar(u.amigos.ler(epoca))
+                + ";idolos=" + formatar(u.idolos.ler(epoca))
+                + ";fas=" + formatar(u.fas.ler(epoca))
+                + ";comunidades=" + formatar(u.comunidades.ler(epoca));
+    }
+
+    /**
+     * Libera a poca fixada e descarta as verses que s este retrato ainda
+     * segurava. Fechar de novo no tem efeito.
+     */
+    @Override
+    public void close() {
+        if (aberto.compareAndSet(true, false)) geracao.fechar(epoca);
+    }
+
+    private RegistroUsuario usuario(String login) {
+        verificarAberto();
+        RegistroUsuario u = geracao.usuario(login, epoca);
+        if (u == null) throw new UsuarioNaoEncontradoException();
+        return u;
+    }
+
+    private RegistroComunidade comunidade(String nome) {
+        verificarAberto();
+        RegistroComunidade c = geracao.comunidade(nome, epoca);
+        if (c == null) throw new ComunidadeNaoEncontradaException();
+        return c;
+    }
+
+    private Map<String, String> perfil(RegistroUsuario u) {
+        return ProjecaoVersionada.Versao.ler(u.perfil, epoca);
+    }
+
+    private void verificarAberto() {
+        if (!aberto.get()) throw new IllegalStateException("Retrato fechado.");
+    }
+
+    private static String formatar(Collection<String> valores) {
+        return "{" + String.join(",", valores) + "}";
+    }
+}
@@ -0,0 +1,45 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+/**
+ * Tipos de evento de domnio registrados pelo ncleo, com o significado dos
+ * campos {@link Evento#getAutor() autor}, {@link Evento#getAlvo() alvo} e
+ * {@link Evento#getValor() valor} de cada um.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public enum TipoEvento {
+    /** Usurio criado; autor  o login e valor, o nome */
+    USUARIO_CRIADO,
+    /** Atributo de perfil alterado; alvo  o atributo e valor, o novo valor */
+    PERFIL_EDITADO,
+    /** Convite de amizade enviado do autor ao alvo */
+    AMIZADE_SOLICITADA,
+    /** Convite do alvo aceito pelo autor; os dois passam a ser amigos */
+    AMIZADE_CONFIRMADA,
+    /** Recado do autor ao alvo; o texto fica s na caixa de recados, sujeito ao limite e  reteno */
+    RECADO_ENVIADO,
+    /** Comunidade criada; autor  o dono, alvo  o nome e valor, a descrio */
+    COMUNIDADE_CRIADA,
+    /** Autor passou a ser membro da comunidade alvo */
+    MEMBRO_ADICIONADO,
+    /** Mensagem do autor  comunidade alvo; o texto fica s no registro da comunidade */
+    MENSAGEM_ENVIADA,
+    /** Autor passou a ser f do alvo */
+    IDOLO_ADICIONADO,
+    /** Autor adicionou o alvo como paquera */
+    PAQUERA_ADICIONADA,
+    /** Autor adicionou o alvo como inimigo */
+    INIMIGO_ADICIONADO,
+    /** Usurio autor removido, com suas relaes e as comunidades de que era dono */
+    USUARIO_REMOVIDO,
+    /**
+     * Ordem de uma lista do autor em um estado gravado pela verso original;
+     * alvo  a lista ({@code amigos}, {@code fas} ou {@code comunidades}) e
+     * valor, os itens na ordem do ncleo, separados por {@link #SEPARADOR}
+     */
+    LISTA_ORDENADA;
+
+    /** Separa os itens no valor de {@link #LISTA_ORDENADA} */
+    public static final char SEPARADOR = '\0';
+}
@@ -0,0 +1,9 @@
+/**
+ * Eventos de domnio emitidos pelo ncleo e projees derivadas deles.
+ *
+ * <p>O fluxo de eventos  persistido com o estado; as projees (a versionada,
+ * que guarda perfis, relacionamentos e comunidades, e a de membros de
+ * comunidades) ficam apenas em memria e so reconstrudas a partir do fluxo ao
+ * carregar o sistema.</p>
+ */
+package br.ufal.ic.p2.jackut.eventos;
@@ -13,6 +13,6 @@ public class AmigoJaAdicionadoException extends RuntimeException {
      * @param mensagem Descrio detalhada do erro (exata dos requisitos de teste)
      */
     public AmigoJaAdicionadoException(String mensagem) {
-        super(mensagem);
+        super(mensagem, null, false, false);
     }
 }
\ No newline at end of file
@@ -10,6 +10,6 @@ public class AtributoNaoPreenchidoException extends RuntimeException {
      * Constri a exceo com mensagem padro indicando atributo no preenchido
      */
     public AtributoNaoPreenchidoException() {
-        super("Atributo no preenchido.");
+        super("Atributo no preenchido.", null, false, false);
     }
 }
\ No newline at end of file
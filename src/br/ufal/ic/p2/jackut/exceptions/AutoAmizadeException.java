@@ -10,6 +10,6 @@ public class AutoAmizadeException extends RuntimeException {
      * Constri uma nova exceo com a mensagem padro sobre autoamizade.
      */
     public AutoAmizadeException() {
-        super("Usurio no pode adicionar a si mesmo como amigo.");
+        super("Usurio no pode adicionar a si mesmo como amigo.", null, false, false);
     }
 }
\ No newline at end of file
@@ -12,6 +12,6 @@ public class AutoMensagemException extends RuntimeException {
      * @param mensagem Descrio detalhada do erro (ex: "Usurio no pode enviar recado para si mesmo")
      */
     public AutoMensagemException(String mensagem) {
-        super(mensagem);
+        super(mensagem, null, false, false);
     }
 }
\ No newline at end of file
@@ -18,6 +18,6 @@ public class AutoRelacaoException extends RuntimeException {
    *                pelo mtodo {@link #getMessage()})
    */
   public AutoRelacaoException(String mensagem) {
-    super(mensagem);
+    super(mensagem, null, false, false);
   }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package br.ufal.ic.p2.jackut.exceptions;
+
+/**
+ * Exceo lanada quando um recado  recusado porque a caixa do destinatrio
+ * atingiu o limite configurado e sua poltica de transbordo  rejeitar.
+ *
+ * @author IuryNogueira
+ */
+public class CaixaRecadosCheiaException extends RuntimeException {
+    /**
+     * Constri a exceo com a mensagem padro de caixa de recados cheia
+     */
+    public CaixaRecadosCheiaException() {
+        super("Caixa de recados cheia.", null, false, false);
+    }
+}
@@ -17,6 +17,6 @@ public class ComunidadeJaExisteException extends RuntimeException {
    * j existe uma comunidade com o nome especificado.
    */
   public ComunidadeJaExisteException() {
-    super("Comunidade com esse nome j existe.");
+    super("Comunidade com esse nome j existe.", null, false, false);
   }
 }
\ No newline at end of file
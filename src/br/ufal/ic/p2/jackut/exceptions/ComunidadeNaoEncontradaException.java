@@ -18,6 +18,6 @@ public class ComunidadeNaoEncontradaException extends RuntimeException {
      * indicando que a comunidade no existe.
      */
     public ComunidadeNaoEncontradaException() {
-        super("Comunidade no existe.");
+        super("Comunidade no existe.", null, false, false);
     }
 }
\ No newline at end of file
@@ -10,6 +10,6 @@ public class ConviteNaoEncontradoException extends RuntimeException {
      * Constri uma nova exceo com a mensagem padro de convite no encontrado.
      */
     public ConviteNaoEncontradoException() {
-        super("Convite no encontrado.");
+        super("Convite no encontrado.", null, false, false);
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package br.ufal.ic.p2.jackut.exceptions;
+
+/**
+ * Exceo lanada no cliente de rede quando o servidor Jackut responde a uma
+ * operao com erro. A mensagem  a mesma da exceo lanada no servidor.
+ *
+ * @author IuryNogueira
+ */
+public class ErroRemotoException extends RuntimeException {
+    /**
+     * Constri a exceo com a mensagem de erro recebida do servidor
+     *
+     * @param mensagem Mensagem da exceo original
+     */
+    public ErroRemotoException(String mensagem) {
+        super(mensagem, null, false, false);
+    }
+}
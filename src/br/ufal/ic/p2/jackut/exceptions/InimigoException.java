@@ -22,6 +22,6 @@ public class InimigoException extends RuntimeException {
      *                    e que causou a exceo
      */
     public InimigoException(String nomeInimigo) {
-        super("Funo invlida: " + nomeInimigo + "  seu inimigo.");
+        super("Funo invlida: " + nomeInimigo + "  seu inimigo.", null, false, false);
     }
 }
\ No newline at end of file
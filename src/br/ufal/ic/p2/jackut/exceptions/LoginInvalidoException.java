@@ -14,6 +14,6 @@ public class LoginInvalidoException extends RuntimeException {
      * Constri a exceo com mensagem padro indicando problema no login
      */
     public LoginInvalidoException() {
-        super("Login invlido.");
+        super("Login invlido.", null, false, false);
     }
 }
\ No newline at end of file
@@ -13,6 +13,6 @@ public class LoginOuSenhaInvalidosException extends RuntimeException {
      * Constri a exceo com mensagem padro de credenciais invlidas
      */
     public LoginOuSenhaInvalidosException() {
-        super("Login ou senha invlidos.");
+        super("Login ou senha invlidos.", null, false, false);
     }
 }
\ No newline at end of file
@@ -19,6 +19,6 @@ public class PaqueraExistenteException extends RuntimeException {
      * indicando que o usurio j est na lista de paqueras.
      */
     public PaqueraExistenteException() {
-        super("Usurio j est adicionado como paquera.");
+        super("Usurio j est adicionado como paquera.", null, false, false);
     }
 }
\ No newline at end of file
@@ -23,6 +23,6 @@ public class RelacaoExistenteException extends RuntimeException {
      *                 A mensagem  salva para posterior recuperao pelo mtodo {@link #getMessage()}.
      */
     public RelacaoExistenteException(String mensagem) {
-        super(mensagem);
+        super(mensagem, null, false, false);
     }
 }
\ No newline at end of file
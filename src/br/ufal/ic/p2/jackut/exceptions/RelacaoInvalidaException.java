@@ -2,6 +2,6 @@ package br.ufal.ic.p2.jackut.exceptions;
 
 public class RelacaoInvalidaException extends RuntimeException {
     public RelacaoInvalidaException(String mensagem) {
-        super(mensagem);
+        super(mensagem, null, false, false);
     }
 }
@@ -19,6 +19,6 @@ public class SemMensagensException extends RuntimeException {
    * indicando que no h mensagens disponveis.
    */
   public SemMensagensException() {
-    super("No h mensagens.");
+    super("No h mensagens.", null, false, false);
   }
 }
\ No newline at end of file
@@ -10,6 +10,6 @@ public class SemRecadosException extends RuntimeException {
      * Constri a exceo com a mensagem padro indicando ausncia de recados
      */
     public SemRecadosException() {
-        super("No h recados.");
+        super("No h recados.", null, false, false);
     }
 }
\ No newline at end of file
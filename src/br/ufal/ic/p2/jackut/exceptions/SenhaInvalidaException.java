@@ -14,6 +14,6 @@ public class SenhaInvalidaException extends RuntimeException {
      * Constri a exceo com mensagem padro indicando problema na senha
      */
     public SenhaInvalidaException() {
-        super("Senha invlida.");
+        super("Senha invlida.", null, false, false);
     }
 }
\ No newline at end of file
@@ -10,6 +10,6 @@ public class UsuarioJaExisteException extends RuntimeException {
      * Constri uma nova exceo com a mensagem padro de usurio j existente.
      */
     public UsuarioJaExisteException() {
-        super("Conta com esse nome j existe.");
+        super("Conta com esse nome j existe.", null, false, false);
     }
 }
\ No newline at end of file
@@ -19,6 +19,6 @@ public class UsuarioJaMembroException extends RuntimeException {
    * indicando que o usurio j pertence  comunidade.
    */
   public UsuarioJaMembroException() {
-    super("Usuario j faz parte dessa comunidade.");
+    super("Usuario j faz parte dessa comunidade.", null, false, false);
   }
 }
\ No newline at end of file
@@ -10,6 +10,6 @@ public class UsuarioNaoEncontradoException extends RuntimeException {
      * Constri uma nova exceo com a mensagem padro de usurio no encontrado.
      */
     public UsuarioNaoEncontradoException() {
-        super("Usurio no cadastrado.");
+        super("Usurio no cadastrado.", null, false, false);
     }
 }
\ No newline at end of file
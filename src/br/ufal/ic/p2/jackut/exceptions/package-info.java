@@ -2,5 +2,11 @@
  * Contm excees customizadas para tratamento de erros especficos do sistema Jackut.
  *
  * <p>Inclui erros de validao, persistncia e regras de negcio.</p>
+ *
+ * <p>As excees de regra de negcio no capturam a pilha de chamadas nem
+ * aceitam excees suprimidas: elas so respostas esperadas a entradas
+ * invlidas (como um login recusado) e s a mensagem chega ao cliente. A
+ * {@link br.ufal.ic.p2.jackut.exceptions.PersistenciaException} mantm a pilha,
+ * pois indica uma falha de ambiente que precisa ser diagnosticada.</p>
  */
 package br.ufal.ic.p2.jackut.exceptions;
\ No newline at end of file
@@ -0,0 +1,211 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estima quantos bytes de heap um grafo de objetos ocupa.
+ * <p>
+ * Percorre o grafo a partir de uma raiz e soma o tamanho raso de cada objeto
+ * ainda no visitado por este analisador, supondo uma JVM de 64 bits com
+ * referncias comprimidas (cabealho de 12 bytes, referncias de 4 bytes e
+ * alinhamento de 8). Objetos do Jackut so percorridos campo a campo por
+ * reflexo. Os internos das colees do JDK no podem ser lidos, ento tabelas
+ * e ns de mapas, conjuntos e listas so estimados pelo tamanho da coleo, e
+ * s os elementos so percorridos. Outros objetos do JDK (relgios,
+ * publicadores, travas) contam apenas o tamanho raso.
+ * </p>
+ * <p>
+ * Como cada objeto  contado uma nica vez, medir vrias razes com o mesmo
+ * analisador atribui os objetos compartilhados  primeira raiz que os alcana,
+ * o que aproxima a memria retida por cada uma.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class AnalisadorMemoria {
+    private static final int CABECALHO = 12;
+    private static final int CABECALHO_ARRAY = 16;
+    private static final int REFERENCIA = 4;
+    private static final int NO_HASH = 32;
+    private static final int NO_ENCADEADO = 40; // ns de LinkedHashMap e TreeMap
+    private static final String PACOTE = "br.ufal.ic.p2.jackut.";
+
+    private static final Map<Class<?>, Long> TAMANHOS_RASOS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Field[]> REFERENCIAS = new ConcurrentHashMap<>();
+
+    private final Set<Object> visitados = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Mede uma raiz isoladamente, sem descontar objetos vistos antes.
+     *
+     * @param raiz objeto a medir
+     * @return bytes estimados de todo o grafo alcanvel a partir da raiz
+     */
+    public static long medirIsolado(Object raiz) {
+        return new AnalisadorMemoria().medir(raiz);
+    }
+
+    /**
+     * Mede os objetos alcanveis a partir de uma raiz que ainda no foram
+     * contados por este analisador.
+     *
+     * @param raiz objeto a medir
+     * @return bytes estimados
+     */
+    public long medir(Object raiz) {
+        long total = 0;
+        Deque<Object> pendentes = new ArrayDeque<>();
+        empilhar(pendentes, raiz);
+        while (!pendentes.isEmpty()) {
+            Object o = pendentes.pop();
+            if (o instanceof Enum || o instanceof Class || !visitados.add(o)) continue;
+            total += visitar(o, pendentes);
+        }
+        return total;
+    }
+
+    private long visitar(Object o, Deque<Object> pendentes) {
+        Class<?> c = o.getClass();
+        if (c.isArray()) {
+            return medirArray(o, pendentes);
+        }
+        if (o instanceof String) {
+            return tamanhoRaso(c) + alinhar(CABECALHO_ARRAY + bytesTexto((String) o));
+        }
+        if (c.getName().startsWith(PACOTE) && !c.isSynthetic() && !c.isHidden()) {
+            for (Field f : referencias(c)) {
+                try {
+                    empilhar(pendentes, f.get(o));
+                } catch (IllegalAccessException e) {
+                    // campo inacessvel: conta s o tamanho raso
+                }
+            }
+            return tamanhoRaso(c);
+        }
+        if (o instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                empilhar(pendentes, e.getKey());
+                empilhar(pendentes, e.getValue());
+            }
+            return tamanhoRaso(c) + estruturaMapa(c, m.size());
+        }
+        if (o instanceof Collection) {
+            Collection<?> colecao = (Collection<?>) o;
+            for (Object elemento : colecao) {
+                empilhar(pendentes, elemento);
+            }
+            return tamanhoRaso(c) + estruturaColecao(o, colecao.size());
+        }
+        return tamanhoRaso(c);
+    }
+
+    private static void empilhar(Deque<Object> pendentes, Object o) {
+        if (o != null) pendentes.push(o);
+    }
+
+    /** Strings compactas guardam um byte por caractere se todos couberem em Latin-1. */
+    private static long bytesTexto(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 255) return 2L * s.length();
+        }
+        return s.length();
+    }
+
+    private static long medirArray(Object array, Deque<Object> pendentes) {
+        Class<?> tipo = array.getClass().getComponentType();
+        int tamanho = java.lang.reflect.Array.getLength(array);
+        if (!tipo.isPrimitive()) {
+            for (Object elemento : (Object[]) array) {
+                empilhar(pendentes, elemento);
+            }
+            return alinhar(CABECALHO_ARRAY + (long) tamanho * REFERENCIA);
+        }
+        return alinhar(CABECALHO_ARRAY + (long) tamanho * tamanhoPrimitivo(tipo));
+    }
+
+    /** Tabela e ns de um mapa do JDK com a quantidade de entradas dada. */
+    private static long estruturaMapa(Class<?> c, int entradas) {
+        if (c == TreeMap.class) return (long) entradas * NO_ENCADEADO;
+        if (!(HashMap.class.isAssignableFrom(c) || c == ConcurrentHashMap.class || c == Hashtable.class)) {
+            return (long) entradas * NO_HASH;
+        }
+        int no = LinkedHashMap.class.isAssignableFrom(c) ? NO_ENCADEADO : NO_HASH;
+        return tabelaHash(entradas) + (long) entradas * no;
+    }
+
+    /** Estrutura interna de uma coleo do JDK: mapa de apoio, array ou ns. */
+    private static long estruturaColecao(Object colecao, int tamanho) {
+        if (colecao instanceof LinkedHashSet) {
+            return tamanhoRaso(LinkedHashMap.class) + estruturaMapa(LinkedHashMap.class, tamanho);
+        }
+        if (colecao instanceof HashSet) {
+            return tamanhoRaso(HashMap.class) + estruturaMapa(HashMap.class, tamanho);
+        }
+        if (colecao instanceof TreeSet) {
+            return tamanhoRaso(TreeMap.class) + estruturaMapa(TreeMap.class, tamanho);
+        }
+        if (colecao instanceof LinkedList) {
+            return (long) tamanho * 24;
+        }
+        if (colecao instanceof ArrayList || colecao instanceof ArrayDeque || colecao instanceof Vector) {
+            return alinhar(CABECALHO_ARRAY + (long) Math.max(tamanho, 10) * REFERENCIA);
+        }
+        return 0; // vises e colees imutveis: s os elementos
+    }
+
+    private static long tabelaHash(int entradas) {
+        if (entradas == 0) return 0;
+        int capacidade = 16;
+        while (capacidade * 3L / 4 < entradas) capacidade <<= 1;
+        return alinhar(CABECALHO_ARRAY + (long) capacidade * REFERENCIA);
+    }
+
+    private static long tamanhoRaso(Class<?> c) {
+        Long tamanho = TAMANHOS_RASOS.get(c);
+        if (tamanho == null) {
+            long campos = CABECALHO;
+            for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+                for (Field f : k.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) continue;
+                    campos += f.getType().isPrimitive() ? tamanhoPrimitivo(f.getType()) : REFERENCIA;
+                }
+            }
+            tamanho = alinhar(campos);
+            TAMANHOS_RASOS.put(c, tamanho);
+        }
+        return tamanho;
+    }
+
+    private static Field[] referencias(Class<?> c) {
+        Field[] campos = REFERENCIAS.get(c);
+        if (campos == null) {
+            List<Field> lista = new ArrayList<>();
+            for (Class<?> k = c; k != null && k.getName().startsWith(PACOTE); k = k.getSuperclass()) {
+                for (Field f : k.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) continue;
+                    f.setAccessible(true);
+                    lista.add(f);
+                }
+            }
+            campos = lista.toArray(new Field[0]);
+            REFERENCIAS.put(c, campos);
+        }
+        return campos;
+    }
+
+    private static int tamanhoPrimitivo(Class<?> tipo) {
+        if (tipo == long.class || tipo == double.class) return 8;
+        if (tipo == int.class || tipo == float.class) return 4;
+        if (tipo == short.class || tipo == char.class) return 2;
+        return 1;
+    }
+
+    private static long alinhar(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
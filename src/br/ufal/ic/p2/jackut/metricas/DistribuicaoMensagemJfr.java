@@ -0,0 +1,38 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento do Java Flight Recorder para a publicao de uma mensagem de
+ * comunidade: reteno, registro da mensagem para todos os membros e
+ * notificao dos membros inscritos.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+@Name("br.ufal.ic.p2.jackut.DistribuicaoMensagem")
+@Label("Distribuio de Mensagem")
+@Category({"Jackut", "Comunidades"})
+@Description("Publicao de uma mensagem para os membros de uma comunidade")
+@StackTrace(false)
+public class DistribuicaoMensagemJfr extends jdk.jfr.Event {
+    /** Nome da comunidade */
+    @Label("Comunidade")
+    public String comunidade;
+
+    /** Membros que passam a ter a mensagem pendente */
+    @Label("Membros")
+    public int membros;
+
+    /** Membros inscritos notificados na hora */
+    @Label("Notificados")
+    public int notificados;
+
+    /** Mensagens retidas pela comunidade aps a publicao */
+    @Label("Mensagens Retidas")
+    public int retidas;
+}
@@ -0,0 +1,115 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latncias com baldes logartmicos, no estilo do HdrHistogram.
+ * <p>
+ * Valores menores que {@value #SUBBALDES} tm um balde cada. Acima disso, cada
+ * potncia de dois  dividida em {@value #SUBBALDES} baldes iguais, o que d um
+ * erro relativo de no mximo 1/16 (cerca de 6%) em qualquer escala, de
+ * nanossegundos a horas, com menos de mil baldes. Registrar  um incremento
+ * atmico, sem travas nem alocao, e pode ser feito por vrias threads ao
+ * mesmo tempo.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Histograma {
+    private static final int BITS_SUBBALDE = 4;
+    private static final int SUBBALDES = 1 << BITS_SUBBALDE;
+    private static final int BALDES = (64 - BITS_SUBBALDE) * SUBBALDES;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(BALDES);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra um valor.
+     *
+     * @param valor valor a registrar, normalmente em nanossegundos; negativos contam como zero
+     */
+    public void registrar(long valor) {
+        long v = Math.max(0, valor);
+        contagens.incrementAndGet(balde(v));
+        total.increment();
+        soma.add(v);
+        if (v > maximo.get()) maximo.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * @return quantidade de valores registrados
+     */
+    public long contagem() {
+        return total.sum();
+    }
+
+    /**
+     * @return mdia dos valores registrados, ou zero se nenhum
+     */
+    public double media() {
+        long n = total.sum();
+        return (n == 0) ? 0 : (double) soma.sum() / n;
+    }
+
+    /**
+     * @return maior valor registrado
+     */
+    public long maximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Estima um percentil pelo limite superior do balde que o contm.
+     *
+     * @param p frao entre 0 e 1 (0.99 para o p99)
+     * @return valor estimado, nunca maior que o mximo registrado
+     */
+    public long percentil(double p) {
+        long n = 0;
+        long[] copia = new long[BALDES];
+        for (int i = 0; i < BALDES; i++) {
+            copia[i] = contagens.get(i);
+            n += copia[i];
+        }
+        if (n == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(p * n));
+        long acumulado = 0;
+        for (int i = 0; i < BALDES; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) return Math.min(limiteSuperior(i), maximo.get());
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Descarta todos os valores registrados.
+     */
+    public void zerar() {
+        for (int i = 0; i < BALDES; i++) {
+            contagens.set(i, 0);
+        }
+        total.reset();
+        soma.reset();
+        maximo.set(0);
+    }
+
+    static int balde(long v) {
+        if (v < SUBBALDES) return (int) v;
+        int expoente = 63 - Long.numberOfLeadingZeros(v);
+        int mantissa = (int) (v >>> (expoente - BITS_SUBBALDE)) & (SUBBALDES - 1);
+        return (expoente - BITS_SUBBALDE + 1) * SUBBALDES + mantissa;
+    }
+
+    static long limiteSuperior(int balde) {
+        if (balde < SUBBALDES) return balde;
+        int expoente = balde / SUBBALDES + BITS_SUBBALDE - 1;
+        long mantissa = balde % SUBBALDES;
+        long largura = 1L << (expoente - BITS_SUBBALDE);
+        return ((SUBBALDES + mantissa) << (expoente - BITS_SUBBALDE)) + largura - 1;
+    }
+}
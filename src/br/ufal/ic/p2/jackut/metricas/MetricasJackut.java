@@ -0,0 +1,81 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+/**
+ * MBean que expe um {@link RegistroMetricas} por JMX (jconsole, VisualVM etc.).
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class MetricasJackut implements MetricasJackutMBean {
+    private final RegistroMetricas registro;
+
+    /**
+     * @param registro mtricas a expor
+     */
+    public MetricasJackut(RegistroMetricas registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public long getUsuarios() {
+        return medidor("usuarios");
+    }
+
+    @Override
+    public long getComunidades() {
+        return medidor("comunidades");
+    }
+
+    @Override
+    public long getSessoes() {
+        return medidor("sessoes");
+    }
+
+    @Override
+    public long getRecadosPendentes() {
+        return medidor("recadosPendentes");
+    }
+
+    @Override
+    public long getMensagensPendentes() {
+        return medidor("mensagensPendentes");
+    }
+
+    @Override
+    public String[] getOperacoes() {
+        return registro.getOperacoes().toArray(new String[0]);
+    }
+
+    @Override
+    public long chamadas(String operacao) {
+        MetricasOperacao m = registro.getOperacao(operacao);
+        return (m == null) ? 0 : m.getLatencias().contagem();
+    }
+
+    @Override
+    public long falhas(String operacao) {
+        MetricasOperacao m = registro.getOperacao(operacao);
+        return (m == null) ? 0 : m.getFalhas();
+    }
+
+    @Override
+    public double percentilMicros(String operacao, double percentil) {
+        MetricasOperacao m = registro.getOperacao(operacao);
+        return (m == null) ? 0 : m.getLatencias().percentil(percentil / 100) / 1e3;
+    }
+
+    @Override
+    public String resumo() {
+        return registro.resumo();
+    }
+
+    @Override
+    public void zerar() {
+        registro.zerar();
+    }
+
+    private long medidor(String nome) {
+        Long valor = registro.getMedidores().get(nome);
+        return (valor == null) ? 0 : valor;
+    }
+}
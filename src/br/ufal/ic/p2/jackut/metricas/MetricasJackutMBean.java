@@ -0,0 +1,72 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+/**
+ * Interface de gerenciamento (JMX) das mtricas do Jackut.
+ * <p>
+ * Os atributos so os medidores do estado; as operaes consultam os
+ * contadores e percentis de cada operao da fachada.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public interface MetricasJackutMBean {
+    /**
+     * @return nmero de usurios cadastrados
+     */
+    long getUsuarios();
+
+    /**
+     * @return nmero de comunidades
+     */
+    long getComunidades();
+
+    /**
+     * @return nmero de sesses abertas
+     */
+    long getSessoes();
+
+    /**
+     * @return recados guardados nas caixas postais
+     */
+    long getRecadosPendentes();
+
+    /**
+     * @return mensagens de comunidade retidas aguardando leitura
+     */
+    long getMensagensPendentes();
+
+    /**
+     * @return nomes das operaes j chamadas, em ordem alfabtica
+     */
+    String[] getOperacoes();
+
+    /**
+     * @param operacao nome do mtodo da fachada
+     * @return nmero de chamadas da operao
+     */
+    long chamadas(String operacao);
+
+    /**
+     * @param operacao nome do mtodo da fachada
+     * @return nmero de chamadas da operao que lanaram exceo
+     */
+    long falhas(String operacao);
+
+    /**
+     * @param operacao nome do mtodo da fachada
+     * @param percentil percentil entre 0 e 100
+     * @return latncia estimada do percentil, em microssegundos
+     */
+    double percentilMicros(String operacao, double percentil);
+
+    /**
+     * @return resumo em texto de todas as mtricas
+     */
+    String resumo();
+
+    /**
+     * Descarta todas as medies.
+     */
+    void zerar();
+}
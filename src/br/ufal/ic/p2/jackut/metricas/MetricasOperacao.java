@@ -0,0 +1,83 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mtricas de uma operao: latncia de todas as chamadas, sucessos e falhas
+ * por tipo de exceo.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class MetricasOperacao {
+    private final Histograma latencias = new Histograma();
+    private final LongAdder sucessos = new LongAdder();
+    private final Map<String, LongAdder> falhas = new ConcurrentHashMap<>();
+
+    /**
+     * Registra uma chamada que terminou normalmente.
+     *
+     * @param nanos durao da chamada
+     */
+    public void registrarSucesso(long nanos) {
+        latencias.registrar(nanos);
+        sucessos.increment();
+    }
+
+    /**
+     * Registra uma chamada que lanou uma exceo.
+     *
+     * @param nanos durao da chamada
+     * @param erro  exceo lanada
+     */
+    public void registrarFalha(long nanos, Throwable erro) {
+        latencias.registrar(nanos);
+        falhas.computeIfAbsent(erro.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return histograma das latncias, em nanossegundos
+     */
+    public Histograma getLatencias() {
+        return latencias;
+    }
+
+    /**
+     * @return nmero de chamadas que terminaram normalmente
+     */
+    public long getSucessos() {
+        return sucessos.sum();
+    }
+
+    /**
+     * @return nmero de chamadas que lanaram exceo
+     */
+    public long getFalhas() {
+        long total = 0;
+        for (LongAdder f : falhas.values()) {
+            total += f.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return falhas por nome simples da exceo, em ordem alfabtica
+     */
+    public Map<String, Long> getFalhasPorTipo() {
+        Map<String, Long> copia = new TreeMap<>();
+        falhas.forEach((tipo, n) -> copia.put(tipo, n.sum()));
+        return copia;
+    }
+
+    /**
+     * Descarta as medies desta operao.
+     */
+    public void zerar() {
+        latencias.zerar();
+        sucessos.reset();
+        falhas.clear();
+    }
+}
@@ -0,0 +1,41 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do Java Flight Recorder para uma fase da gravao ou da carga do
+ * estado: {@link #SALVAR}, {@link #CARREGAR} e, dentro da carga,
+ * {@link #PROJECOES} (reconstruo das projees a partir do fluxo de eventos).
+ *
+ * @author Iury
+ * @version 1.0
+ */
+@Name("br.ufal.ic.p2.jackut.Persistencia")
+@Label("Persistncia do Estado")
+@Category({"Jackut", "Persistncia"})
+@Description("Gravao ou carga do estado serializado")
+public class PersistenciaJfr extends jdk.jfr.Event {
+    /** Fase de gravao do estado */
+    public static final String SALVAR = "salvar";
+    /** Fase de carga do estado */
+    public static final String CARREGAR = "carregar";
+    /** Fase de reconstruo das projees, durante a carga */
+    public static final String PROJECOES = "projecoes";
+
+    /** Fase medida */
+    @Label("Fase")
+    public String fase;
+
+    /** Bytes gravados ou lidos; zero na reconstruo das projees */
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    /** Eventos reaplicados na reconstruo das projees */
+    @Label("Eventos")
+    public long eventos;
+}
@@ -0,0 +1,151 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro das mtricas de todas as operaes de uma fachada.
+ * <p>
+ * Cada chamada passa por {@link #medir(String, Supplier)}, que mede a durao
+ * e conta o resultado na {@link MetricasOperacao} do nome informado. Os
+ * medidores do estado (usurios, sesses, recados etc.) so lidos sob demanda
+ * de um fornecedor definido pelo dono do registro. As mtricas ficam apenas em
+ * memria e recomeam a cada execuo.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class RegistroMetricas {
+    /**
+     * Nome JMX padro do MBean de mtricas.
+     */
+    public static final String NOME_JMX = "br.ufal.ic.p2.jackut:type=Metricas";
+
+    private final Map<String, MetricasOperacao> operacoes = new ConcurrentHashMap<>();
+    private volatile Supplier<Map<String, Long>> medidores = Collections::emptyMap;
+
+    /**
+     * Executa uma operao medindo sua latncia e resultado.
+     *
+     * @param <T>      tipo do retorno
+     * @param nome     nome da operao
+     * @param operacao operao a executar
+     * @return o retorno da operao
+     */
+    public <T> T medir(String nome, Supplier<T> operacao) {
+        MetricasOperacao m = operacao(nome);
+        long inicio = System.nanoTime();
+        try {
+            T resultado = operacao.get();
+            m.registrarSucesso(System.nanoTime() - inicio);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            m.registrarFalha(System.nanoTime() - inicio, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Executa uma operao sem retorno medindo sua latncia e resultado.
+     *
+     * @param nome     nome da operao
+     * @param operacao operao a executar
+     */
+    public void medir(String nome, Runnable operacao) {
+        medir(nome, () -> {
+            operacao.run();
+            return null;
+        });
+    }
+
+    /**
+     * Obtm as mtricas de uma operao, criando-as na primeira chamada.
+     *
+     * @param nome nome da operao
+     * @return mtricas da operao
+     */
+    public MetricasOperacao operacao(String nome) {
+        MetricasOperacao m = operacoes.get(nome);
+        return (m != null) ? m : operacoes.computeIfAbsent(nome, k -> new MetricasOperacao());
+    }
+
+    /**
+     * @param nome nome da operao
+     * @return mtricas da operao, ou null se ela nunca foi chamada
+     */
+    public MetricasOperacao getOperacao(String nome) {
+        return operacoes.get(nome);
+    }
+
+    /**
+     * @return nomes das operaes j chamadas, em ordem alfabtica
+     */
+    public TreeSet<String> getOperacoes() {
+        return new TreeSet<>(operacoes.keySet());
+    }
+
+    /**
+     * Define de onde vm os medidores do estado.
+     *
+     * @param medidores fornecedor de valores por nome do medidor
+     */
+    public void setMedidores(Supplier<Map<String, Long>> medidores) {
+        this.medidores = medidores;
+    }
+
+    /**
+     * @return valores atuais dos medidores do estado
+     */
+    public Map<String, Long> getMedidores() {
+        return medidores.get();
+    }
+
+    /**
+     * Descarta as medies de todas as operaes.
+     */
+    public void zerar() {
+        operacoes.clear();
+    }
+
+    /**
+     * Monta um resumo em texto: uma linha por operao com chamadas, falhas e
+     * percentis de latncia em microssegundos, as falhas por tipo de exceo e,
+     * ao final, os medidores do estado.
+     *
+     * @return resumo das mtricas
+     */
+    public String resumo() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-26s %9s %7s %9s %9s %9s %9s %9s%n",
+                "operacao", "chamadas", "falhas", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+        for (String nome : getOperacoes()) {
+            MetricasOperacao m = operacoes.get(nome);
+            Histograma h = m.getLatencias();
+            sb.append(String.format("%-26s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", nome, h.contagem(),
+                    m.getFalhas(), h.percentil(0.50) / 1e3, h.percentil(0.90) / 1e3,
+                    h.percentil(0.99) / 1e3, h.percentil(0.999) / 1e3, h.maximo() / 1e3));
+            m.getFalhasPorTipo().forEach((tipo, n) -> sb.append(String.format("  %s=%d%n", tipo, n)));
+        }
+        getMedidores().forEach((nome, valor) -> sb.append(nome).append('=').append(valor).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Publica estas mtricas no servidor de MBeans da plataforma.
+     *
+     * @param nome nome JMX, por exemplo {@link #NOME_JMX}
+     * @throws JMException se o nome for invlido ou j estiver em uso
+     */
+    public void registrarJmx(String nome) throws JMException {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        servidor.registerMBean(new MetricasJackut(this), new ObjectName(nome));
+    }
+}
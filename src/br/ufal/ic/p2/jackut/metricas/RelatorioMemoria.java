@@ -0,0 +1,163 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import br.ufal.ic.p2.jackut.models.Community;
+import br.ufal.ic.p2.jackut.models.Usuario;
+import java.util.*;
+
+/**
+ * Relatrio de ocupao de heap do Jackut, para planejamento de capacidade.
+ * <p>
+ * Mostra os bytes estimados por {@link AnalisadorMemoria} para cada
+ * subsistema, na ordem em que foram informados (objetos compartilhados ficam
+ * com o primeiro que os alcana), a distribuio por usurio de bytes,
+ * relacionamentos, recados guardados e atributos de perfil, e os usurios e as
+ * comunidades mais pesados. O custo  proporcional ao tamanho do estado.
+ * </p>
+ * <p>
+ * Usurios guardados em disco no ocupam heap com seus objetos e no so
+ * carregados para a medio: aparecem em sees prprias, pelo tamanho do
+ * registro serializado e pelos recados que guardavam ao ser gravados.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class RelatorioMemoria {
+    private RelatorioMemoria() {
+    }
+
+    /**
+     * Monta o relatrio.
+     *
+     * @param subsistemas razes a medir por nome, em ordem de atribuio
+     * @param usuarios    usurios em memria
+     * @param emDisco     usurios guardados apenas em disco
+     * @param comunidades comunidades existentes
+     * @param top         quantos usurios e comunidades mais pesados listar
+     * @return relatrio em texto
+     */
+    public static String gerar(Map<String, Object> subsistemas, Collection<Usuario> usuarios,
+                               Collection<UsuarioEmDisco> emDisco, Collection<Community> comunidades, int top) {
+        StringBuilder sb = new StringBuilder();
+        AnalisadorMemoria analisador = new AnalisadorMemoria();
+        long total = 0;
+        sb.append(String.format("%-22s %14s%n", "subsistema", "bytes"));
+        for (Map.Entry<String, Object> e : subsistemas.entrySet()) {
+            long bytes = analisador.medir(e.getValue());
+            total += bytes;
+            sb.append(String.format("%-22s %14d%n", e.getKey(), bytes));
+        }
+        sb.append(String.format("%-22s %14d%n", "total", total));
+        long[][] disco = new long[2][emDisco.size()];
+        List<Item> pesosDisco = new ArrayList<>(emDisco.size());
+        int d = 0;
+        for (UsuarioEmDisco u : emDisco) {
+            disco[0][d] = u.bytes;
+            disco[1][d] = u.recados;
+            pesosDisco.add(new Item(u.login, u.bytes, u.recados + " recados"));
+            d++;
+        }
+        if (d > 0) {
+            sb.append(String.format("%-22s %14d  (arquivo, fora do total)%n", "usuarios em disco",
+                    Arrays.stream(disco[0]).sum()));
+        }
+
+        int n = usuarios.size();
+        long[][] colunas = new long[4][n];
+        List<Item> pesosUsuarios = new ArrayList<>(n);
+        int i = 0;
+        for (Usuario u : usuarios) {
+            long bytes = AnalisadorMemoria.medirIsolado(u);
+            colunas[0][i] = bytes;
+            colunas[1][i] = u.contarRelacionamentos();
+            colunas[2][i] = u.getRecadosArmazenados();
+            colunas[3][i] = u.getPerfil().contarAtributos();
+            pesosUsuarios.add(new Item(u.getLogin(), bytes,
+                    colunas[1][i] + " relacionamentos, " + colunas[2][i] + " recados, "
+                            + colunas[3][i] + " atributos"));
+            i++;
+        }
+        sb.append(String.format("%npor usuario (%d) %13s %10s %10s %10s %10s %12s%n",
+                n, "min", "p50", "p90", "p99", "max", "media"));
+        String[] nomes = {"bytes", "relacionamentos", "recados", "atributos"};
+        for (int c = 0; c < nomes.length; c++) {
+            sb.append(distribuicao(nomes[c], colunas[c]));
+        }
+        if (d > 0) {
+            sb.append(String.format("%n%-16s%13s %10s %10s %10s %10s %12s%n",
+                    "em disco (" + d + ")", "min", "p50", "p90", "p99", "max", "media"));
+            sb.append(distribuicao("bytes no arquivo", disco[0]));
+            sb.append(distribuicao("recados", disco[1]));
+        }
+
+        List<Item> pesosComunidades = new ArrayList<>(comunidades.size());
+        for (Community c : comunidades) {
+            pesosComunidades.add(new Item(c.getName(), AnalisadorMemoria.medirIsolado(c),
+                    c.getMembros().size() + " membros, " + c.getMensagensRetidas() + " mensagens"));
+        }
+        sb.append(String.format("%nusuarios mais pesados%n"));
+        listarMaiores(sb, pesosUsuarios, top);
+        if (d > 0) {
+            sb.append(String.format("%nusuarios em disco mais pesados (bytes no arquivo)%n"));
+            listarMaiores(sb, pesosDisco, top);
+        }
+        sb.append(String.format("%ncomunidades mais pesadas%n"));
+        listarMaiores(sb, pesosComunidades, top);
+        return sb.toString();
+    }
+
+    private static String distribuicao(String nome, long[] valores) {
+        if (valores.length == 0) return String.format("%-18s %10s%n", nome, "-");
+        long[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        long soma = 0;
+        for (long v : ordenados) soma += v;
+        return String.format("%-18s %10d %10d %10d %10d %10d %12.1f%n", nome, ordenados[0],
+                percentil(ordenados, 0.50), percentil(ordenados, 0.90), percentil(ordenados, 0.99),
+                ordenados[ordenados.length - 1], (double) soma / ordenados.length);
+    }
+
+    private static long percentil(long[] ordenados, double p) {
+        int i = (int) Math.ceil(p * ordenados.length) - 1;
+        return ordenados[Math.max(0, Math.min(ordenados.length - 1, i))];
+    }
+
+    private static void listarMaiores(StringBuilder sb, List<Item> itens, int top) {
+        itens.sort(Comparator.comparingLong((Item it) -> it.bytes).reversed().thenComparing(it -> it.nome));
+        for (Item it : itens.subList(0, Math.max(0, Math.min(top, itens.size())))) {
+            sb.append(String.format("  %-20s %12d  %s%n", it.nome, it.bytes, it.detalhes));
+        }
+    }
+
+    /**
+     * Usurio guardado apenas em disco, descrito sem ser carregado
+     */
+    public static final class UsuarioEmDisco {
+        private final String login;
+        private final long bytes;
+        private final int recados;
+
+        /**
+         * @param login   login do usurio
+         * @param bytes   tamanho do registro serializado
+         * @param recados recados guardados quando o registro foi gravado
+         */
+        public UsuarioEmDisco(String login, long bytes, int recados) {
+            this.login = login;
+            this.bytes = bytes;
+            this.recados = recados;
+        }
+    }
+
+    private static final class Item {
+        private final String nome;
+        private final long bytes;
+        private final String detalhes;
+
+        private Item(String nome, long bytes, String detalhes) {
+            this.nome = nome;
+            this.bytes = bytes;
+            this.detalhes = detalhes;
+        }
+    }
+}
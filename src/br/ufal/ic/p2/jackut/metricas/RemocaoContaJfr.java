@@ -0,0 +1,36 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do Java Flight Recorder para a remoo de uma conta e a cascata que
+ * ela dispara: comunidades apagadas ou deixadas, sesses encerradas e
+ * relacionamentos desfeitos nos demais usurios.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+@Name("br.ufal.ic.p2.jackut.RemocaoConta")
+@Label("Remoo de Conta")
+@Category({"Jackut", "Usurios"})
+@Description("Remoo de um usurio e de todas as suas referncias")
+public class RemocaoContaJfr extends jdk.jfr.Event {
+    /** Login removido */
+    @Label("Login")
+    public String login;
+
+    /** Comunidades apagadas (das quais era dono) ou deixadas (das quais era membro) */
+    @Label("Comunidades Afetadas")
+    public int comunidades;
+
+    /** Usurios percorridos para desfazer relacionamentos */
+    @Label("Usurios Percorridos")
+    public int usuariosPercorridos;
+
+    /** Usurios que tinham algum relacionamento com o removido */
+    @Label("Usurios Afetados")
+    public int usuariosAfetados;
+}
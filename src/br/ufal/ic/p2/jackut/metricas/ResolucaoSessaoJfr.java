@@ -0,0 +1,36 @@
+package br.ufal.ic.p2.jackut.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento do Java Flight Recorder para a traduo de um ID de sesso no login do
+ * usurio, feita por quase todas as operaes.
+ * <p>
+ * Por ser o caminho mais frequente, s entram na gravao as resolues que
+ * passam do limite padro de 1 ms (o que aponta pausas e disputa por travas); o
+ * limite pode ser mudado nas configuraes da gravao.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+@Name("br.ufal.ic.p2.jackut.ResolucaoSessao")
+@Label("Resoluo de Sesso")
+@Category({"Jackut", "Sesses"})
+@Description("Traduo de um ID de sesso no login do usurio")
+@Threshold("1 ms")
+@StackTrace(false)
+public class ResolucaoSessaoJfr extends jdk.jfr.Event {
+    /** Login do usurio da sesso, ou null se a sesso no existir */
+    @Label("Login")
+    public String login;
+
+    /** Se a sesso existia */
+    @Label("Encontrada")
+    public boolean encontrada;
+}
@@ -0,0 +1,13 @@
+/**
+ * Mtricas de execuo das operaes da {@link br.ufal.ic.p2.jackut.Facade}.
+ *
+ * <p>Histogramas de latncia sem travas, contadores de sucesso e de falha por
+ * tipo de exceo e medidores do estado, publicados por um MBean e por um
+ * resumo em texto.</p>
+ *
+ * <p>Tambm define os eventos do Java Flight Recorder emitidos nos caminhos
+ * mais sensveis (resoluo de sesso, distribuio de mensagens, remoo de
+ * conta e persistncia do estado). Sem gravao ativa, criar e descartar esses
+ * eventos praticamente no custa nada.</p>
+ */
+package br.ufal.ic.p2.jackut.metricas;
@@ -0,0 +1,160 @@
+package br.ufal.ic.p2.jackut.models;
+
+import br.ufal.ic.p2.jackut.exceptions.CaixaRecadosCheiaException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Fila FIFO de itens datados de uma caixa postal.
+ * <p>
+ * Os itens ficam em um {@link RegistroTemporal}: arrays compactos agrupados por
+ * balde de tempo, liberados assim que todos os seus itens so lidos ou expiram.
+ * Isso permite consultar os itens a partir de um instante sem consumi-los e
+ * descartar baldes inteiros por reteno.
+ * Opcionalmente a caixa tem um limite de itens, com uma {@link PoliticaTransbordo}
+ * que decide o que acontece quando o limite  atingido.
+ * </p>
+ *
+ * @param <T> tipo dos itens armazenados
+ * @author IuryNogueira
+ * @version 1.1
+ */
+public class CaixaPostal<T extends Datado> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Comportamento da caixa quando o limite de itens  atingido
+     */
+    public enum PoliticaTransbordo {
+        /** Descarta o item mais antigo para abrir espao ao novo */
+        DESCARTAR_ANTIGO,
+        /** Recusa o novo item lanando {@link CaixaRecadosCheiaException} */
+        REJEITAR
+    }
+
+    private final RegistroTemporal<T> itens = new RegistroTemporal<>();
+    private int limite = Integer.MAX_VALUE;
+    private PoliticaTransbordo politica = PoliticaTransbordo.DESCARTAR_ANTIGO;
+
+    /**
+     * Define o limite de itens e a poltica aplicada ao atingi-lo. Se a caixa j
+     * tiver mais itens que o novo limite, os mais antigos so descartados.
+     *
+     * @param limite Nmero mximo de itens (maior que zero)
+     * @param politica Poltica de transbordo
+     * @throws IllegalArgumentException se o limite no for positivo
+     */
+    public void configurar(int limite, PoliticaTransbordo politica) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite da caixa postal deve ser positivo.");
+        }
+        this.limite = limite;
+        this.politica = politica;
+        while (itens.tamanho() > limite) {
+            itens.removerPrimeiro();
+        }
+    }
+
+    /**
+     * Acrescenta um item ao fim da fila, respeitando o limite configurado
+     *
+     * @param item Item a ser armazenado
+     * @throws CaixaRecadosCheiaException se a caixa estiver cheia e a poltica for rejeitar
+     */
+    public void adicionar(T item) {
+        if (itens.tamanho() >= limite) {
+            if (politica == PoliticaTransbordo.REJEITAR) {
+                throw new CaixaRecadosCheiaException();
+            }
+            itens.removerPrimeiro();
+        }
+        itens.adicionar(item);
+    }
+
+    /**
+     * Informa se {@link #adicionar(Object)} aceitaria um item agora
+     *
+     * @return false se a caixa estiver cheia e a poltica for rejeitar
+     */
+    public boolean aceita() {
+        return itens.tamanho() < limite || politica != PoliticaTransbordo.REJEITAR;
+    }
+
+    /**
+     * Remove e retorna o item mais antigo da fila
+     *
+     * @return Item removido, ou null se a caixa estiver vazia
+     */
+    public T remover() {
+        return itens.removerPrimeiro();
+    }
+
+    /**
+     * Lista, sem remover, os itens criados no instante informado ou depois dele
+     *
+     * @param instante Instante inicial, em milissegundos
+     * @return Itens encontrados, em ordem de chegada
+     */
+    public List<T> desde(long instante) {
+        return itens.entre(instante, Long.MAX_VALUE);
+    }
+
+    /**
+     * Descarta os baldes de tempo inteiramente anteriores ao instante de corte
+     *
+     * @param corte Instante de corte, em milissegundos
+     */
+    public void descartarAnteriores(long corte) {
+        itens.descartarAnteriores(corte);
+    }
+
+    /**
+     * Remove da fila todos os itens que satisfazem o predicado, preservando a ordem dos demais
+     *
+     * @param filtro Critrio de remoo
+     */
+    public void removerSe(Predicate<? super T> filtro) {
+        List<T> mantidos = new ArrayList<>(itens.tamanho());
+        for (T item = itens.removerPrimeiro(); item != null; item = itens.removerPrimeiro()) {
+            if (!filtro.test(item)) mantidos.add(item);
+        }
+        for (T item : mantidos) {
+            itens.adicionar(item);
+        }
+    }
+
+    /**
+     * Substitui cada item da fila pelo resultado da funo, preservando a ordem
+     *
+     * @param funcao Funo aplicada a cada item; no deve alterar a ordem dos instantes
+     */
+    public void substituir(UnaryOperator<T> funcao) {
+        List<T> novos = new ArrayList<>(itens.tamanho());
+        for (T item = itens.removerPrimeiro(); item != null; item = itens.removerPrimeiro()) {
+            novos.add(funcao.apply(item));
+        }
+        for (T item : novos) {
+            itens.adicionar(item);
+        }
+    }
+
+    /**
+     * @return Quantidade de itens na fila
+     */
+    public int tamanho() { return itens.tamanho(); }
+
+    /**
+     * @return true se no houver itens na fila
+     */
+    public boolean vazia() { return itens.tamanho() == 0; }
+
+    /**
+     * @return true se a caixa ainda usa o limite e a poltica padro
+     */
+    public boolean padrao() {
+        return limite == Integer.MAX_VALUE && politica == PoliticaTransbordo.DESCARTAR_ANTIGO;
+    }
+}
@@ -1,8 +1,11 @@
 package br.ufal.ic.p2.jackut.models;
 
 import br.ufal.ic.p2.jackut.exceptions.UsuarioJaMembroException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 /**
  * Representa uma comunidade no sistema Jackut, contendo informaes bsicas,
@@ -10,17 +13,30 @@ import java.util.*;
  *
  * <p>Esta classe implementa {@link Serializable} para permitir persistncia dos dados.</p>
  *
- * <p>Mantm a ordem de insero dos membros atravs de {@link LinkedHashSet}.</p>
+ * <p>Mantm a ordem de insero dos membros em uma {@link ListaMembros}, que entrega
+ * instantneas imutveis da lista sem copi-la. A pertinncia  consultada no mapa
+ * de cursores, que tem uma entrada por membro e guarda tambm a posio do membro
+ * na lista, o que torna a sada de um membro O(1) amortizado.</p>
+ *
+ * <p>As mensagens enviadas  comunidade ficam em um nico {@link RegistroTemporal},
+ * apenas com acrscimos e segmentado por balde de tempo, e cada membro guarda
+ * somente a posio (cursor) da prxima mensagem que ainda no leu. Publicar custa
+ * O(1) independentemente do nmero de membros. Os baldes so descartados quando
+ * expiram pela reteno ou, sem reteno, quando j foram lidos por todos.</p>
  *
  * @author [Seu Nome ou IuryNogueira]
  * @version 1.0
  */
 public class Community implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final String name;
+    // no finais apenas para a leitura campo a campo de estados antigos
+    private String name;
     private String description;
-    private final String owner;
-    private final LinkedHashSet<String> members = new LinkedHashSet<>(); // Mantm ordem de insero
+    private String owner; // tambm trocado pela canonicalizao do login
+    private ListaMembros members = new ListaMembros(); // Mantm ordem de insero
+    private RegistroTemporal<Mensagem> mensagens = new RegistroTemporal<>();
+    private Map<String, Cursor> cursores = new HashMap<>(); // membro -> cursor de leitura e posio na lista
+    private int leiturasDesdeCompactacao;
 
     /**
      * Constri uma nova comunidade com informaes bsicas
@@ -33,7 +49,7 @@ public class Community implements Serializable {
         this.name = name;
         this.description = description;
         this.owner = owner;
-        this.members.add(owner);
+        this.cursores.put(owner, new Cursor(0L, members.adicionar(owner)));
     }
 
     /**
@@ -59,9 +75,141 @@ public class Community implements Serializable {
      * @throws UsuarioJaMembroException Se o usurio j for membro da comunidade
      */
     public void addMember(String login) {
-        if (!members.add(login)) {
+        if (cursores.containsKey(login)) {
             throw new UsuarioJaMembroException();
         }
+        cursores.put(login, new Cursor(mensagens.fim(), members.adicionar(login)));
+    }
+
+    /**
+     * Verifica se um usurio  membro da comunidade
+     *
+     * @param login Login do usurio
+     * @return true se for membro
+     */
+    public boolean hasMember(String login) {
+        return cursores.containsKey(login);
+    }
+
+    /**
+     * Remove um membro da comunidade
+     *
+     * @param login Login do usurio a ser removido
+     * @return true se o usurio era membro da comunidade
+     */
+    public boolean removeMember(String login) {
+        Cursor cursor = cursores.remove(login);
+        if (cursor == null) return false;
+        members.remover(cursor.indice, (membro, indice) -> cursores.get(membro).indice = indice);
+        return true;
+    }
+
+    /**
+     * Acrescenta uma mensagem ao registro da comunidade. Apenas os membros atuais
+     * a recebero, pois os futuros membros comeam a ler a partir do fim do registro.
+     *
+     * @param mensagem Mensagem a ser publicada
+     */
+    public void publicar(Mensagem mensagem) {
+        mensagens.adicionar(mensagem);
+    }
+
+    /**
+     * Consulta, sem consumir, a prxima mensagem no lida de um membro
+     *
+     * @param login Login do membro
+     * @return Prxima mensagem ou null se no houver mensagens pendentes
+     */
+    public Mensagem proximaMensagem(String login) {
+        Cursor cursor = cursores.get(login);
+        if (cursor == null) return null;
+        long posicao = Math.max(cursor.posicao, mensagens.inicio()); // mensagens expiradas so puladas
+        return (posicao == mensagens.fim()) ? null : mensagens.get(posicao);
+    }
+
+    /**
+     * Conta as mensagens ainda no lidas por um membro
+     *
+     * @param login Login do membro
+     * @return Quantidade de mensagens pendentes, ou zero se no for membro
+     */
+    public long contarPendentes(String login) {
+        Cursor cursor = cursores.get(login);
+        return (cursor == null) ? 0 : mensagens.fim() - Math.max(cursor.posicao, mensagens.inicio());
+    }
+
+    /**
+     * Marca como lida a prxima mensagem de um membro
+     *
+     * @param login Login do membro
+     * @param compactar true para descartar periodicamente os baldes j lidos por todos;
+     *                  false quando o histrico deve ser mantido at expirar
+     */
+    public void avancarCursor(String login, boolean compactar) {
+        Cursor cursor = cursores.get(login);
+        if (cursor != null) {
+            cursor.posicao = Math.max(cursor.posicao, mensagens.inicio()) + 1;
+        }
+        if (compactar && ++leiturasDesdeCompactacao >= cursores.size()) {
+            compactarRegistro();
+        }
+    }
+
+    /**
+     * Retorna o atraso de entrega da comunidade: quantas mensagens o membro
+     * mais atrasado ainda no leu.
+     *
+     * @return Maior nmero de mensagens pendentes entre os membros
+     */
+    public long getAtrasoMaximo() {
+        return mensagens.fim() - Math.max(menorCursor(), mensagens.inicio());
+    }
+
+    /**
+     * Retorna quantas mensagens o registro mantm em memria no momento
+     *
+     * @return Tamanho atual do registro, incluindo baldes ainda no descartados
+     */
+    public int getMensagensRetidas() {
+        return mensagens.tamanho();
+    }
+
+    /**
+     * Lista as mensagens ainda guardadas publicadas no intervalo [de, ate)
+     *
+     * @param de Instante inicial, inclusive, em milissegundos
+     * @param ate Instante final, exclusive, em milissegundos
+     * @return Mensagens do intervalo, em ordem de publicao
+     */
+    public List<Mensagem> getHistorico(long de, long ate) {
+        return mensagens.entre(de, ate);
+    }
+
+    /**
+     * Descarta os baldes de mensagens inteiramente anteriores ao instante de corte
+     *
+     * @param corte Instante de corte, em milissegundos
+     */
+    public void aplicarRetencao(long corte) {
+        mensagens.descartarAnteriores(corte);
+    }
+
+    /**
+     * Descarta os baldes do registro que j foram lidos por todos os membros.
+     * S  chamada aps tantas leituras quanto membros, o que mantm o custo
+     * amortizado de cada leitura constante.
+     */
+    private void compactarRegistro() {
+        leiturasDesdeCompactacao = 0;
+        mensagens.descartarAte(menorCursor());
+    }
+
+    private long menorCursor() {
+        long menor = mensagens.fim();
+        for (Cursor cursor : cursores.values()) {
+            menor = Math.min(menor, cursor.posicao);
+        }
+        return menor;
     }
 
     /**
@@ -85,19 +233,87 @@ public class Community implements Serializable {
     /**
      * Retorna a lista de membros da comunidade em ordem de insero
      *
-     * @return Lista de logins dos membros
+     * @return Instantnea imutvel dos logins dos membros, obtida sem cpia
      */
     public List<String> getMembers() {
-        return new ArrayList<>(this.members);
+        return members.instantanea();
+    }
+
+    /**
+     * Troca os logins do dono, dos membros e dos cursores pelas instncias cannicas
+     *
+     * @param canonico Funo que devolve a instncia cannica de um login
+     */
+    public void canonicalizarLogins(UnaryOperator<String> canonico) {
+        owner = canonico.apply(owner);
+        members.canonicalizar(canonico);
+        Map<String, Cursor> copia = new HashMap<>(cursores);
+        cursores.clear();
+        copia.forEach((login, cursor) -> cursores.put(canonico.apply(login), cursor));
     }
 
     /**
      * Retorna a lista de membros da comunidade em ordem de insero
      * (Mtodo alternativo em portugus - considerar padronizao)
      *
-     * @return Lista de logins dos membros
+     * @return Instantnea imutvel dos logins dos membros, obtida sem cpia
      */
     public List<String> getMembros() {
-        return new ArrayList<>(members);
+        return members.instantanea();
+    }
+
+    /**
+     * L os campos um a um para completar estados antigos: os membros gravados
+     * como conjunto passam para uma {@link ListaMembros}, na mesma ordem, e,
+     * se o estado  anterior ao registro de mensagens, cada membro existente
+     * recebe um cursor no fim do registro, como um membro recm-chegado. Os
+     * cursores gravados s com a posio de leitura ganham a posio do membro
+     * na lista, que nesses estados no tem remoes pendentes.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = ois.readFields();
+        name = (String) campos.get("name", null);
+        description = (String) campos.get("description", null);
+        owner = (String) campos.get("owner", null);
+        Object membros = campos.get("members", null);
+        if (membros instanceof ListaMembros) {
+            members = (ListaMembros) membros;
+        } else {
+            members = new ListaMembros();
+            for (String membro : (Collection<String>) membros) {
+                members.adicionar(membro);
+            }
+        }
+        mensagens = (RegistroTemporal<Mensagem>) campos.get("mensagens", null);
+        Map<String, ?> gravados = (Map<String, ?>) campos.get("cursores", null);
+        leiturasDesdeCompactacao = campos.get("leiturasDesdeCompactacao", 0);
+        if (mensagens == null) {
+            mensagens = new RegistroTemporal<>();
+        }
+        if (gravados != null && !gravados.isEmpty() && gravados.values().iterator().next() instanceof Cursor) {
+            cursores = (Map<String, Cursor>) gravados;
+            return;
+        }
+        cursores = new HashMap<>();
+        List<String> lista = members.instantanea();
+        for (int i = 0; i < lista.size(); i++) {
+            Long posicao = (gravados == null) ? null : (Long) gravados.get(lista.get(i));
+            cursores.put(lista.get(i), new Cursor((posicao == null) ? mensagens.fim() : posicao, i));
+        }
+    }
+
+    /**
+     * Posio da prxima mensagem a ler e posio do membro na {@link ListaMembros}
+     */
+    private static final class Cursor implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private long posicao;
+        private int indice;
+
+        private Cursor(long posicao, int indice) {
+            this.posicao = posicao;
+            this.indice = indice;
+        }
     }
 }
\ No newline at end of file
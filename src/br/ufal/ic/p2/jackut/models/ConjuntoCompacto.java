@@ -0,0 +1,174 @@
+package br.ufal.ic.p2.jackut.models;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Conjunto de logins (ou nomes) que ocupa memria proporcional ao uso.
+ *
+ * <p>Vazio,  o sentinela compartilhado {@link #VAZIO}, sem custo por usurio.
+ * Com at {@value #LIMITE_LINEAR} elementos, guarda-os em um array pequeno com
+ * busca linear; acima disso, passa a um {@link LinkedHashSet}. Em todas as
+ * fases a iterao segue a ordem de insero.</p>
+ *
+ * <p>Como viso {@link Set},  somente leitura. As alteraes so feitas por
+ * {@link #com(Set, String)} e {@link #sem(Set, String)}, que devolvem o conjunto
+ * a guardar no lugar do anterior: o sentinela nunca  alterado e um conjunto que
+ * fica vazio volta a ser o sentinela. Na serializao grava apenas o tamanho e
+ * os elementos; o sentinela  gravado uma vez por fluxo e volta como o mesmo objeto.</p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public final class ConjuntoCompacto extends AbstractSet<String> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int LIMITE_LINEAR = 8;
+    private static final int CAPACIDADE_INICIAL = 2;
+
+    /** Conjunto vazio compartilhado */
+    public static final ConjuntoCompacto VAZIO = new ConjuntoCompacto();
+
+    private transient String[] pequenos; // usado at LIMITE_LINEAR elementos
+    private transient int tamanho;
+    private transient LinkedHashSet<String> grande; // usado depois disso
+
+    private ConjuntoCompacto() {
+    }
+
+    /**
+     * Converte qualquer conjunto para a forma compacta, por exemplo ao carregar
+     * um estado gravado com colees comuns.
+     *
+     * @param elementos Elementos do conjunto, ou null para vazio
+     * @return O prprio conjunto, se j for compacto, ou um novo com os mesmos elementos na mesma ordem
+     */
+    public static Set<String> de(Collection<String> elementos) {
+        if (elementos instanceof ConjuntoCompacto) return (ConjuntoCompacto) elementos;
+        Set<String> conjunto = VAZIO;
+        if (elementos != null) {
+            for (String e : elementos) {
+                conjunto = com(conjunto, e);
+            }
+        }
+        return conjunto;
+    }
+
+    /**
+     * Acrescenta um elemento.
+     *
+     * @param conjunto Conjunto atual
+     * @param elemento Elemento a acrescentar
+     * @return Conjunto a guardar no lugar do atual
+     */
+    public static Set<String> com(Set<String> conjunto, String elemento) {
+        ConjuntoCompacto c = (ConjuntoCompacto) de(conjunto);
+        if (c.contains(elemento)) return c;
+        if (c == VAZIO) c = new ConjuntoCompacto();
+        c.adicionar(elemento);
+        return c;
+    }
+
+    /**
+     * Retira um elemento.
+     *
+     * @param conjunto Conjunto atual
+     * @param elemento Elemento a retirar
+     * @return Conjunto a guardar no lugar do atual; {@link #VAZIO} se ficar vazio
+     */
+    public static Set<String> sem(Set<String> conjunto, String elemento) {
+        ConjuntoCompacto c = (ConjuntoCompacto) de(conjunto);
+        if (!c.contains(elemento)) return c;
+        c.retirar(elemento);
+        return c.isEmpty() ? VAZIO : c;
+    }
+
+    private void adicionar(String elemento) {
+        if (grande != null) {
+            grande.add(elemento);
+            return;
+        }
+        if (pequenos == null) {
+            pequenos = new String[CAPACIDADE_INICIAL];
+        } else if (tamanho == pequenos.length) {
+            if (tamanho == LIMITE_LINEAR) {
+                grande = new LinkedHashSet<>(Arrays.asList(pequenos));
+                grande.add(elemento);
+                pequenos = null;
+                tamanho = 0;
+                return;
+            }
+            pequenos = Arrays.copyOf(pequenos, Math.min(tamanho * 2, LIMITE_LINEAR));
+        }
+        pequenos[tamanho++] = elemento;
+    }
+
+    private void retirar(String elemento) {
+        if (grande != null) {
+            grande.remove(elemento);
+            return;
+        }
+        for (int i = 0; i < tamanho; i++) {
+            if (pequenos[i].equals(elemento)) {
+                System.arraycopy(pequenos, i + 1, pequenos, i, tamanho - i - 1);
+                pequenos[--tamanho] = null;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (grande != null) return grande.contains(o);
+        for (int i = 0; i < tamanho; i++) {
+            if (pequenos[i].equals(o)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return (grande != null) ? grande.size() : tamanho;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        if (grande != null) return Collections.unmodifiableSet(grande).iterator();
+        return new Iterator<>() {
+            private int proximo;
+
+            @Override
+            public boolean hasNext() {
+                return proximo < tamanho;
+            }
+
+            @Override
+            public String next() {
+                if (proximo >= tamanho) throw new NoSuchElementException();
+                return pequenos[proximo++];
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeInt(size());
+        for (String e : this) {
+            oos.writeObject(e);
+        }
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        int n = ois.readInt();
+        for (int i = 0; i < n; i++) {
+            adicionar((String) ois.readObject());
+        }
+    }
+
+    private Object readResolve() {
+        return isEmpty() ? VAZIO : this;
+    }
+}
@@ -0,0 +1,15 @@
+package br.ufal.ic.p2.jackut.models;
+
+/**
+ * Item que registra o instante em que foi criado, permitindo armazen-lo em
+ * um {@link RegistroTemporal}.
+ *
+ * @author IuryNogueira
+ * @version 1.0
+ */
+public interface Datado {
+    /**
+     * @return Instante de criao, em milissegundos desde a poca Unix
+     */
+    long getInstante();
+}
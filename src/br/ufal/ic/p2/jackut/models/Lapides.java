@@ -0,0 +1,58 @@
+package br.ufal.ic.p2.jackut.models;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Registra os identificadores de usurios removidos do sistema (lpides).
+ * <p>
+ * Em vez de percorrer todas as caixas de recados ao remover uma conta, o
+ * identificador do usurio  marcado aqui e os recados enviados por ele so
+ * descartados quando cada caixa  lida ou compactada. Os identificadores so
+ * sequenciais, por isso um {@link BitSet} os guarda de forma compacta. A verso
+ * avana a cada remoo e permite a uma caixa saber se j foi compactada
+ * contra todas as lpides existentes.
+ * </p>
+ *
+ * @author IuryNogueira
+ * @version 1.0
+ * @see Usuario
+ */
+public class Lapides implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final BitSet removidos = new BitSet();
+    private int versao;
+
+    /**
+     * Marca um usurio como removido
+     *
+     * @param id Identificador do usurio removido
+     */
+    public void marcar(int id) {
+        removidos.set(id);
+        versao++;
+    }
+
+    /**
+     * Verifica se um identificador pertence a um usurio removido
+     *
+     * @param id Identificador consultado
+     * @return true se o usurio foi removido
+     */
+    public boolean contem(int id) {
+        return removidos.get(id);
+    }
+
+    /**
+     * @return Verso atual, incrementada a cada remoo
+     */
+    public int getVersao() { return versao; }
+
+    /**
+     * Remove todas as lpides
+     */
+    public void zerar() {
+        removidos.clear();
+        versao = 0;
+    }
+}
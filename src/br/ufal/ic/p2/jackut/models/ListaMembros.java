@@ -0,0 +1,252 @@
+package br.ufal.ic.p2.jackut.models;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractSequentialList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.ObjIntConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lista de logins de membros em ordem de insero, da qual podem ser obtidas
+ * cpias instantneas imutveis sem copiar os elementos.
+ * <p>
+ * Os logins ficam em um array que s recebe acrscimos aps a ltima posio
+ * ocupada. Uma instantnea guarda apenas a referncia ao array e o tamanho no
+ * momento em que foi obtida: acrscimos posteriores escrevem alm desse
+ * tamanho e no a alteram. Quando o array precisa crescer, o array antigo
+ * continua vlido para as instantneas que o referenciam.
+ * </p>
+ * <p>
+ * A remoo recebe a posio do membro, guardada por quem usa a lista, e custa
+ * O(1): a posio no  apagada, e sim marcada com o nmero de ordem da remoo.
+ * Uma instantnea guarda quantas remoes j havia e ignora s as posies
+ * marcadas at ali, de modo que remoes posteriores no a alteram. Quando as
+ * posies removidas passam da metade, os membros restantes vo para um array
+ * novo, do tamanho necessrio, e quem usa a lista  avisado das novas posies;
+ * o custo dessa compactao  amortizado pelas remoes que a provocaram.
+ * </p>
+ * <p>
+ * A lista no verifica duplicatas; quem a usa mantm o prprio ndice de
+ * pertinncia.
+ * </p>
+ *
+ * @author IuryNogueira
+ * @version 1.0
+ * @see Community
+ */
+public class ListaMembros implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int CAPACIDADE_INICIAL = 4;
+
+    private String[] membros = new String[CAPACIDADE_INICIAL];
+    private int tamanho; // posies ocupadas, inclusive as removidas
+    private int[] remocoes; // posio -> ordem da remoo, ou zero; criado na primeira remoo
+    private int removidos;
+
+    /**
+     * Acrescenta um login ao fim da lista, em tempo constante amortizado
+     *
+     * @param login Login do membro
+     * @return Posio do membro, exigida por {@link #remover(int, ObjIntConsumer)}
+     */
+    public int adicionar(String login) {
+        if (tamanho == membros.length) {
+            membros = Arrays.copyOf(membros, tamanho * 2);
+            if (remocoes != null) remocoes = Arrays.copyOf(remocoes, tamanho * 2);
+        }
+        membros[tamanho] = login;
+        return tamanho++;
+    }
+
+    /**
+     * Remove o membro de uma posio, em tempo constante amortizado. Se a remoo
+     * provocar a compactao, informa a nova posio de cada membro restante.
+     *
+     * @param posicao Posio devolvida por {@link #adicionar(String)} ou pela ltima realocao
+     * @param realocado Recebe o login e a nova posio de cada membro movido
+     */
+    public void remover(int posicao, ObjIntConsumer<String> realocado) {
+        if (remocoes == null) remocoes = new int[membros.length];
+        remocoes[posicao] = ++removidos;
+        if (removidos * 2 > tamanho) {
+            compactar(realocado);
+        }
+    }
+
+    private void compactar(ObjIntConsumer<String> realocado) {
+        int vivos = tamanho - removidos;
+        String[] novos = new String[Math.max(CAPACIDADE_INICIAL, Integer.highestOneBit(Math.max(1, vivos)) * 2)];
+        int j = 0;
+        for (int i = 0; i < tamanho; i++) {
+            if (remocoes[i] == 0) {
+                novos[j] = membros[i];
+                realocado.accept(membros[i], j++);
+            }
+        }
+        membros = novos;
+        tamanho = vivos;
+        remocoes = null;
+        removidos = 0;
+    }
+
+    /**
+     * Troca os logins pelas instncias cannicas, sem mudar as posies. Usa um
+     * novo array, para no alterar vises j entregues por {@link #instantanea()}
+     *
+     * @param canonico Funo que devolve a instncia cannica de um login
+     */
+    public void canonicalizar(UnaryOperator<String> canonico) {
+        String[] novos = new String[membros.length];
+        for (int i = 0; i < tamanho; i++) {
+            novos[i] = canonico.apply(membros[i]);
+        }
+        membros = novos;
+        if (remocoes != null) remocoes = remocoes.clone();
+    }
+
+    /**
+     * @return Quantidade de membros
+     */
+    public int tamanho() { return tamanho - removidos; }
+
+    /**
+     * Retorna uma viso imutvel dos membros atuais. A viso no  afetada por
+     * alteraes posteriores da lista e  obtida em tempo constante.
+     *
+     * @return Logins dos membros em ordem de insero
+     */
+    public List<String> instantanea() {
+        if (removidos == 0) {
+            return new Instantanea(membros, tamanho);
+        }
+        return new InstantaneaEsparsa(membros, remocoes, tamanho, removidos);
+    }
+
+    /**
+     * Viso imutvel de um prefixo do array de membros
+     */
+    private static final class Instantanea extends AbstractList<String> implements RandomAccess {
+        private final String[] membros;
+        private final int tamanho;
+
+        private Instantanea(String[] membros, int tamanho) {
+            this.membros = membros;
+            this.tamanho = tamanho;
+        }
+
+        @Override
+        public String get(int indice) {
+            if (indice < 0 || indice >= tamanho) {
+                throw new IndexOutOfBoundsException("ndice fora da lista: " + indice);
+            }
+            return membros[indice];
+        }
+
+        @Override
+        public int size() {
+            return tamanho;
+        }
+    }
+
+    /**
+     * Viso imutvel de um prefixo do array de membros que pula as posies
+     * removidas at a obteno da viso. S  percorrida em sequncia.
+     */
+    private static final class InstantaneaEsparsa extends AbstractSequentialList<String> {
+        private final String[] membros;
+        private final int[] remocoes;
+        private final int ocupadas;
+        private final int removidos;
+
+        private InstantaneaEsparsa(String[] membros, int[] remocoes, int ocupadas, int removidos) {
+            this.membros = membros;
+            this.remocoes = remocoes;
+            this.ocupadas = ocupadas;
+            this.removidos = removidos;
+        }
+
+        private boolean removida(int posicao) {
+            int ordem = remocoes[posicao];
+            return ordem != 0 && ordem <= removidos;
+        }
+
+        @Override
+        public int size() {
+            return ocupadas - removidos;
+        }
+
+        @Override
+        public ListIterator<String> listIterator(int indice) {
+            if (indice < 0 || indice > size()) {
+                throw new IndexOutOfBoundsException("ndice fora da lista: " + indice);
+            }
+            Percurso percurso = new Percurso();
+            for (int i = 0; i < indice; i++) percurso.next();
+            return percurso;
+        }
+
+        /**
+         * Percurso sobre as posies no removidas, nos dois sentidos
+         */
+        private final class Percurso implements ListIterator<String> {
+            private int posicao; // prxima posio a examinar para frente
+            private int indice;
+
+            @Override
+            public boolean hasNext() {
+                return indice < size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                while (removida(posicao)) posicao++;
+                indice++;
+                return membros[posicao++];
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return indice > 0;
+            }
+
+            @Override
+            public String previous() {
+                if (!hasPrevious()) throw new NoSuchElementException();
+                do posicao--; while (removida(posicao));
+                indice--;
+                return membros[posicao];
+            }
+
+            @Override
+            public int nextIndex() {
+                return indice;
+            }
+
+            @Override
+            public int previousIndex() {
+                return indice - 1;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void set(String login) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void add(String login) {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package br.ufal.ic.p2.jackut.models;
+
+import java.io.Serializable;
+
+/**
+ * Representa uma mensagem publicada no registro de uma comunidade.
+ * <p>
+ * A sequncia  global entre todas as comunidades e define a ordem em que
+ * as mensagens de comunidades distintas so entregues a um mesmo membro.
+ * </p>
+ *
+ * @author IuryNogueira
+ * @version 1.0
+ * @see Community
+ */
+public class Mensagem implements Serializable, Datado {
+    private static final long serialVersionUID = 1L;
+    private final long sequencia;
+    private final String texto;
+    private final long instante;
+
+    /**
+     * Constri uma nova mensagem de comunidade.
+     *
+     * @param sequencia Nmero de sequncia global da publicao
+     * @param texto Contedo textual da mensagem
+     * @param instante Instante de publicao, em milissegundos desde a poca Unix
+     */
+    public Mensagem(long sequencia, String texto, long instante) {
+        this.sequencia = sequencia;
+        this.texto = texto;
+        this.instante = instante;
+    }
+
+    /**
+     * @return Nmero de sequncia global da publicao
+     */
+    public long getSequencia() { return sequencia; }
+
+    /**
+     * @return Instante de publicao, em milissegundos desde a poca Unix
+     */
+    @Override
+    public long getInstante() { return instante; }
+
+    /**
+     * Retorna a representao textual da mensagem (apenas o contedo).
+     *
+     * @return String contendo o texto da mensagem
+     */
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
@@ -0,0 +1,61 @@
+package br.ufal.ic.p2.jackut.models;
+
+/**
+ * Representa um aviso entregue por push a um usurio inscrito, informando a
+ * chegada de um recado ou de uma mensagem de comunidade.
+ * <p>
+ * A notificao  uma cpia: o recado ou mensagem continua disponvel para
+ * leitura normal na caixa do usurio.
+ * </p>
+ *
+ * @author IuryNogueira
+ * @version 1.0
+ */
+public class Notificacao {
+    /**
+     * Tipo do contedo notificado
+     */
+    public enum Tipo {
+        /** Recado privado, inclusive os automticos do sistema */
+        RECADO,
+        /** Mensagem enviada a uma comunidade da qual o usurio  membro */
+        MENSAGEM
+    }
+
+    private final Tipo tipo;
+    private final String origem;
+    private final String texto;
+
+    /**
+     * Constri uma nova notificao.
+     *
+     * @param tipo Tipo do contedo
+     * @param origem Login do remetente (recado) ou nome da comunidade (mensagem)
+     * @param texto Contedo textual
+     */
+    public Notificacao(Tipo tipo, String origem, String texto) {
+        this.tipo = tipo;
+        this.origem = origem;
+        this.texto = texto;
+    }
+
+    /**
+     * @return Tipo do contedo notificado
+     */
+    public Tipo getTipo() { return tipo; }
+
+    /**
+     * @return Login do remetente ou nome da comunidade
+     */
+    public String getOrigem() { return origem; }
+
+    /**
+     * Retorna a representao textual da notificao (apenas o contedo).
+     *
+     * @return Texto do recado ou mensagem
+     */
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
@@ -2,6 +2,7 @@ package br.ufal.ic.p2.jackut.models;
 
 import br.ufal.ic.p2.jackut.exceptions.AtributoNaoPreenchidoException;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,9 +28,20 @@ public class Perfil implements Serializable {
      * @throws AtributoNaoPreenchidoException Se o atributo no existir
      */
     public String getAtributo(String chave) {
-        if (!atributos.containsKey(chave)) {
+        String valor = buscarAtributo(chave);
+        if (valor == null) {
             throw new AtributoNaoPreenchidoException();
         }
+        return valor;
+    }
+
+    /**
+     * Recupera o valor de um atributo do perfil sem lanar exceo.
+     *
+     * @param chave Nome do atributo a ser recuperado
+     * @return Valor associado  chave, ou null se o atributo no existir
+     */
+    public String buscarAtributo(String chave) {
         return atributos.get(chave);
     }
 
@@ -42,4 +54,20 @@ public class Perfil implements Serializable {
     public void setAtributo(String chave, String valor) {
         atributos.put(chave, valor);
     }
+
+    /**
+     * @return viso no modificvel dos atributos preenchidos
+     */
+    public Map<String, String> getAtributos() {
+        return Collections.unmodifiableMap(atributos);
+    }
+
+    /**
+     * Conta os atributos preenchidos.
+     *
+     * @return quantidade de atributos
+     */
+    public int contarAtributos() {
+        return atributos.size();
+    }
 }
\ No newline at end of file
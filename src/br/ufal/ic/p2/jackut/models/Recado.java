@@ -13,20 +13,28 @@ import java.io.Serializable;
  * @version 1.0
  * @see Serializable
  */
-public class Recado implements Serializable {
+public class Recado implements Serializable, Datado {
     private static final long serialVersionUID = 1L;
+    /** Identificador usado nos recados automticos do sistema */
+    public static final int ID_SISTEMA = 0;
+    private final int idRemetente;
     private final String remetente;
     private final String mensagem;
+    private final long instante;
 
     /**
      * Constri um novo recado com remetente e mensagem.
      *
+     * @param idRemetente Identificador numrico do remetente ({@link #ID_SISTEMA} para o sistema)
      * @param remetente Login do usurio que enviou o recado
      * @param mensagem Contedo textual do recado
+     * @param instante Instante de envio, em milissegundos desde a poca Unix
      */
-    public Recado(String remetente, String mensagem) {
+    public Recado(int idRemetente, String remetente, String mensagem, long instante) {
+        this.idRemetente = idRemetente;
         this.remetente = remetente;
         this.mensagem = mensagem;
+        this.instante = instante;
     }
 
     // Novo mtodo adicionado
@@ -34,6 +42,32 @@ public class Recado implements Serializable {
         return remetente;
     }
 
+    /**
+     * Retorna este recado com outra instncia do login do remetente
+     *
+     * @param remetente Login igual ao atual, possivelmente outra instncia
+     * @return Este recado, se a instncia for a mesma, ou uma cpia com a nova
+     */
+    public Recado comRemetente(String remetente) {
+        if (remetente == this.remetente) return this;
+        return new Recado(idRemetente, remetente, mensagem, instante);
+    }
+
+    /**
+     * @return Identificador numrico do remetente
+     */
+    public int getIdRemetente() {
+        return idRemetente;
+    }
+
+    /**
+     * @return Instante de envio, em milissegundos desde a poca Unix
+     */
+    @Override
+    public long getInstante() {
+        return instante;
+    }
+
     /**
      * Retorna a representao textual do recado (apenas o contedo da mensagem).
      *
@@ -0,0 +1,291 @@
+package br.ufal.ic.p2.jackut.models;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequncia de itens datados, apenas com acrscimos no fim, dividida em
+ * segmentos que correspondem a intervalos de tempo (baldes) de largura fixa.
+ * <p>
+ * Cada item ocupa uma posio absoluta que no muda quando o incio da
+ * sequncia  descartado, o que permite a leitores externos guardarem cursores.
+ * Por estarem agrupados por tempo, os itens podem ser consultados a partir de
+ * um instante com uma busca binria sobre os segmentos, e um segmento inteiro
+ * expirado  liberado de uma s vez, sem remover item por item.
+ * </p>
+ * <p>
+ * Os itens costumam chegar em ordem de instante. Um item mais antigo que o
+ * ltimo (por exemplo, depois de o relgio voltar) continua sendo acrescentado
+ * ao ltimo segmento, para no mudar as posies j entregues, e o registro
+ * passa a ser consultado segmento a segmento, pelo menor e maior instante de
+ * cada um, em vez da busca binria.
+ * </p>
+ *
+ * @param <T> tipo dos itens
+ * @author IuryNogueira
+ * @version 1.0
+ */
+public class RegistroTemporal<T extends Datado> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /** Largura padro dos baldes: uma hora */
+    public static final long LARGURA_PADRAO = 60 * 60 * 1000L;
+    private static final int CAPACIDADE_INICIAL = 4;
+
+    private final long largura;
+    private transient ArrayList<Segmento> segmentos = new ArrayList<>();
+    private transient int primeiro; // ndice do primeiro segmento vivo em segmentos
+    private transient long inicio;  // posio absoluta do primeiro item vivo
+    private transient long fim;     // posio absoluta aps o ltimo item
+    private transient long ultimoInstante = Long.MIN_VALUE;
+    private transient boolean desordenado; // algum item chegou com instante anterior ao de outro
+
+    /**
+     * Segmento com os itens de um mesmo balde de tempo
+     */
+    private static final class Segmento {
+        private final long balde;
+        private final long primeiraPosicao;
+        private Object[] itens = new Object[CAPACIDADE_INICIAL];
+        private int tamanho;
+        private long minimo = Long.MAX_VALUE;
+        private long maximo = Long.MIN_VALUE;
+
+        private Segmento(long balde, long primeiraPosicao) {
+            this.balde = balde;
+            this.primeiraPosicao = primeiraPosicao;
+        }
+
+        private long fim() {
+            return primeiraPosicao + tamanho;
+        }
+    }
+
+    /**
+     * Cria um registro vazio com baldes de largura {@link #LARGURA_PADRAO}.
+     */
+    public RegistroTemporal() {
+        this(LARGURA_PADRAO);
+    }
+
+    /**
+     * Cria um registro vazio.
+     *
+     * @param largura Largura de cada balde, em milissegundos
+     */
+    public RegistroTemporal(long largura) {
+        this.largura = largura;
+    }
+
+    /**
+     * @return Largura dos baldes, em milissegundos
+     */
+    public long getLargura() { return largura; }
+
+    /**
+     * @return Posio absoluta do primeiro item ainda guardado
+     */
+    public long inicio() { return inicio; }
+
+    /**
+     * @return Posio absoluta seguinte ao ltimo item
+     */
+    public long fim() { return fim; }
+
+    /**
+     * @return Quantidade de itens guardados
+     */
+    public int tamanho() { return (int) (fim - inicio); }
+
+    /**
+     * Acrescenta um item ao fim do registro
+     *
+     * @param item Item a acrescentar
+     */
+    public void adicionar(T item) {
+        long instante = item.getInstante();
+        if (instante < ultimoInstante) {
+            desordenado = true;
+        } else {
+            ultimoInstante = instante;
+        }
+        long balde = Math.floorDiv(instante, largura);
+        Segmento ultimo = segmentos.size() > primeiro ? segmentos.get(segmentos.size() - 1) : null;
+        if (ultimo == null || balde > ultimo.balde) {
+            ultimo = new Segmento(balde, fim);
+            segmentos.add(ultimo);
+        }
+        if (ultimo.tamanho == ultimo.itens.length) {
+            Object[] maior = new Object[ultimo.itens.length * 2];
+            System.arraycopy(ultimo.itens, 0, maior, 0, ultimo.tamanho);
+            ultimo.itens = maior;
+        }
+        ultimo.itens[ultimo.tamanho++] = item;
+        ultimo.minimo = Math.min(ultimo.minimo, instante);
+        ultimo.maximo = Math.max(ultimo.maximo, instante);
+        fim++;
+    }
+
+    /**
+     * Retorna o item de uma posio absoluta
+     *
+     * @param posicao Posio entre {@link #inicio()} e {@link #fim()}
+     * @return Item guardado na posio
+     * @throws IndexOutOfBoundsException se a posio no estiver guardada
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long posicao) {
+        if (posicao < inicio || posicao >= fim) {
+            throw new IndexOutOfBoundsException("Posio fora do registro: " + posicao);
+        }
+        Segmento s = segmentos.get(segmentoDe(posicao));
+        return (T) s.itens[(int) (posicao - s.primeiraPosicao)];
+    }
+
+    /**
+     * Remove e retorna o primeiro item guardado
+     *
+     * @return Item removido, ou null se o registro estiver vazio
+     */
+    @SuppressWarnings("unchecked")
+    public T removerPrimeiro() {
+        if (inicio == fim) return null;
+        Segmento s = segmentos.get(primeiro);
+        int indice = (int) (inicio - s.primeiraPosicao);
+        T item = (T) s.itens[indice];
+        s.itens[indice] = null;
+        inicio++;
+        if (inicio == s.fim()) descartarSegmentos(primeiro + 1);
+        return item;
+    }
+
+    /**
+     * Descarta os segmentos cujos itens esto todos antes de uma posio.
+     * Itens de um segmento parcialmente anterior  posio so mantidos.
+     *
+     * @param posicao Posio absoluta limite
+     */
+    public void descartarAte(long posicao) {
+        int i = primeiro;
+        while (i < segmentos.size() && segmentos.get(i).fim() <= posicao) i++;
+        if (i > primeiro) descartarSegmentos(i);
+    }
+
+    /**
+     * Descarta os baldes inteiramente anteriores a um instante de corte, em
+     * tempo constante por balde.
+     *
+     * @param corte Instante de corte, em milissegundos
+     */
+    public void descartarAnteriores(long corte) {
+        int i = primeiro;
+        while (i < segmentos.size() && (segmentos.get(i).balde + 1) * largura <= corte) i++;
+        if (i > primeiro) descartarSegmentos(i);
+    }
+
+    /**
+     * Localiza a primeira posio cujo item foi criado no instante informado
+     * ou depois dele
+     *
+     * @param instante Instante inicial, em milissegundos
+     * @return Posio absoluta encontrada, ou {@link #fim()} se no houver tal item
+     */
+    public long posicaoDesde(long instante) {
+        int baixo = primeiro;
+        if (!desordenado) {
+            long balde = Math.floorDiv(instante, largura);
+            int alto = segmentos.size();
+            while (baixo < alto) {
+                int meio = (baixo + alto) >>> 1;
+                if (segmentos.get(meio).balde < balde) baixo = meio + 1; else alto = meio;
+            }
+        }
+        for (int i = baixo; i < segmentos.size(); i++) {
+            Segmento s = segmentos.get(i);
+            if (s.maximo < instante) continue;
+            for (int j = (int) (Math.max(inicio, s.primeiraPosicao) - s.primeiraPosicao); j < s.tamanho; j++) {
+                if (((Datado) s.itens[j]).getInstante() >= instante) return s.primeiraPosicao + j;
+            }
+        }
+        return fim;
+    }
+
+    /**
+     * Lista os itens criados no intervalo [de, ate)
+     *
+     * @param de Instante inicial, inclusive
+     * @param ate Instante final, exclusive
+     * @return Itens do intervalo, em ordem de chegada
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> entre(long de, long ate) {
+        List<T> itens = new ArrayList<>();
+        if (desordenado) {
+            for (int i = primeiro; i < segmentos.size(); i++) {
+                Segmento s = segmentos.get(i);
+                if (s.maximo < de || s.minimo >= ate) continue;
+                for (int j = (int) (Math.max(inicio, s.primeiraPosicao) - s.primeiraPosicao); j < s.tamanho; j++) {
+                    T item = (T) s.itens[j];
+                    if (item.getInstante() >= de && item.getInstante() < ate) itens.add(item);
+                }
+            }
+            return itens;
+        }
+        for (long p = posicaoDesde(de); p < fim; p++) {
+            T item = get(p);
+            if (item.getInstante() >= ate) break;
+            itens.add(item);
+        }
+        return itens;
+    }
+
+    private int segmentoDe(long posicao) {
+        int baixo = primeiro, alto = segmentos.size() - 1;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (segmentos.get(meio).primeiraPosicao <= posicao) baixo = meio; else alto = meio - 1;
+        }
+        return baixo;
+    }
+
+    /**
+     * Descarta os segmentos anteriores ao ndice informado. A lista s 
+     * deslocada quando metade dela est descartada, mantendo o custo amortizado
+     * constante.
+     */
+    private void descartarSegmentos(int novoPrimeiro) {
+        for (int i = primeiro; i < novoPrimeiro; i++) segmentos.set(i, null);
+        primeiro = novoPrimeiro;
+        inicio = (primeiro < segmentos.size()) ? Math.max(inicio, segmentos.get(primeiro).primeiraPosicao) : fim;
+        if (primeiro == segmentos.size()) {
+            segmentos.clear();
+            primeiro = 0;
+        } else if (primeiro > segmentos.size() / 2) {
+            segmentos.subList(0, primeiro).clear();
+            primeiro = 0;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeLong(inicio);
+        oos.writeInt(tamanho());
+        for (long p = inicio; p < fim; p++) {
+            oos.writeObject(get(p));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        segmentos = new ArrayList<>();
+        inicio = fim = ois.readLong();
+        int tamanho = ois.readInt();
+        for (int i = 0; i < tamanho; i++) {
+            adicionar((T) ois.readObject());
+        }
+    }
+}
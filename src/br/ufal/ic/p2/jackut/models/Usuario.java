@@ -1,8 +1,12 @@
 package br.ufal.ic.p2.jackut.models;
 
 import br.ufal.ic.p2.jackut.exceptions.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
 import br.ufal.ic.p2.jackut.exceptions.RelacaoExistenteException;
 
 /**
@@ -11,6 +15,17 @@ import br.ufal.ic.p2.jackut.exceptions.RelacaoExistenteException;
  *
  * <p>Esta classe implementa {@link Serializable} para permitir persistncia dos dados.</p>
  *
+ * <p>As colees de relacionamento so alocadas sob demanda: comeam como o
+ * {@link ConjuntoCompacto#VAZIO} (ou o mapa vazio, para convites, e sem caixa de
+ * recados) e crescem conforme o uso, voltando ao vazio compartilhado quando
+ * esvaziam. Os campos so declarados como {@link Set} para que estados gravados
+ * com as colees antigas continuem carregando; so convertidos na leitura.</p>
+ *
+ * <p>Estados gravados pela primeira verso do sistema guardavam os recados em uma
+ * {@link LinkedList} e as mensagens de comunidade em uma fila por usurio. Na
+ * leitura, os recados passam para a {@link CaixaPostal} e as mensagens ainda no
+ * lidas ficam em uma fila prpria, lida antes das comunidades.</p>
+ *
  * @author IuryNogueira
  * @version 1.1
  * @see Perfil
@@ -18,12 +33,16 @@ import br.ufal.ic.p2.jackut.exceptions.RelacaoExistenteException;
  */
 public class Usuario implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final String login;
-    private final String senha;
-    private final Perfil perfil;
-    private final Set<String> amigos = new LinkedHashSet<>();
-    private final Map<String, ConviteStatus> convites = new HashMap<>();
-    private final Queue<Recado> recados = new LinkedList<>();
+    // no finais apenas para a leitura campo a campo de estados antigos
+    private int id;
+    private String login;
+    private String senha;
+    private Perfil perfil;
+    private Set<String> amigos = ConjuntoCompacto.VAZIO;
+    private Map<String, ConviteStatus> convites = Collections.emptyMap();
+    private CaixaPostal<Recado> recados; // null at o primeiro recado ou configurao
+    private int versaoLapides; // verso das lpides contra a qual a caixa foi compactada
+    private transient boolean alterado; // alterado desde a ltima gravao no armazm em disco
 
     /**
      * Enumerao que representa o status de um convite de amizade
@@ -38,17 +57,24 @@ public class Usuario implements Serializable {
     /**
      * Constri um novo usurio com informaes bsicas
      *
+     * @param id Identificador numrico, nunca reutilizado mesmo que o login seja
      * @param login Identificador nico do usurio
      * @param senha Senha de acesso
      * @param nome Nome completo do usurio (ser armazenado no perfil)
      */
-    public Usuario(String login, String senha, String nome) {
+    public Usuario(int id, String login, String senha, String nome) {
+        this.id = id;
         this.login = login;
         this.senha = senha;
         this.perfil = new Perfil();
         this.perfil.setAtributo("nome", nome);
     }
 
+    /**
+     * @return Identificador numrico do usurio (imutvel)
+     */
+    public int getId() { return id; }
+
     /**
      * @return Login do usurio (imutvel)
      */
@@ -64,13 +90,54 @@ public class Usuario implements Serializable {
      */
     public Perfil getPerfil() { return perfil; }
 
+    /**
+     * Completa um usurio gravado antes dos identificadores numricos: recebe o
+     * identificador, e cada recado herdado passa a guardar o identificador do
+     * remetente e o instante informado, j que no era datado
+     *
+     * @param id Identificador do usurio
+     * @param idDe Identificador de um remetente pelo login, ou {@link Recado#ID_SISTEMA}
+     * @param instante Instante atribudo aos recados herdados, em milissegundos
+     */
+    public void migrarIdentificadores(int id, ToIntFunction<String> idDe, long instante) {
+        this.id = id;
+        alterado = true;
+        if (recados != null) {
+            recados.substituir(r -> new Recado(idDe.applyAsInt(r.getRemetente()), r.getRemetente(), r.toString(), instante));
+        }
+    }
+
+    /**
+     * Altera um atributo do perfil
+     *
+     * @param atributo Nome do atributo
+     * @param valor Novo valor
+     */
+    public void editarAtributo(String atributo, String valor) {
+        alterado = true;
+        perfil.setAtributo(atributo, valor);
+    }
+
+    /**
+     * Indica se o usurio mudou desde {@link #marcarGravado()}; usurios novos
+     * ou recm-carregados comeam sem alteraes
+     *
+     * @return true se houve alterao
+     */
+    public boolean isAlterado() { return alterado; }
+
+    /**
+     * Registra que o estado atual do usurio foi gravado
+     */
+    public void marcarGravado() { alterado = false; }
+
     /**
      * Retorna uma viso imutvel da lista de amigos
      *
      * @return Conjunto no modificvel de logins de amigos
      */
     public Set<String> getAmigos() {
-        return Collections.unmodifiableSet(amigos);
+        return amigos;
     }
 
     /**
@@ -79,7 +146,8 @@ public class Usuario implements Serializable {
      * @param loginAmigo Login do usurio a ser adicionado como amigo
      */
     public void adicionarAmigo(String loginAmigo) {
-        amigos.add(loginAmigo);
+        alterado = true;
+        amigos = ConjuntoCompacto.com(amigos, loginAmigo);
     }
 
     /**
@@ -89,7 +157,7 @@ public class Usuario implements Serializable {
      * @return true se houver convite ativo enviado para este usurio
      */
     public boolean temConvitePara(String loginAmigo) {
-        return convites.containsKey(loginAmigo) && convites.get(loginAmigo) == ConviteStatus.ENVIADO;
+        return convites.get(loginAmigo) == ConviteStatus.ENVIADO;
     }
 
     /**
@@ -99,7 +167,7 @@ public class Usuario implements Serializable {
      * @return true se houver convite recebido deste usurio
      */
     public boolean temConviteDe(String loginAmigo) {
-        return convites.containsKey(loginAmigo) && convites.get(loginAmigo) == ConviteStatus.RECEBIDO;
+        return convites.get(loginAmigo) == ConviteStatus.RECEBIDO;
     }
 
     /**
@@ -109,6 +177,8 @@ public class Usuario implements Serializable {
      * @param status Status do convite ({@link ConviteStatus})
      */
     public void adicionarConvite(String loginAmigo, ConviteStatus status) {
+        alterado = true;
+        if (convites.isEmpty()) convites = new HashMap<>(4);
         convites.put(loginAmigo, status);
     }
 
@@ -118,30 +188,215 @@ public class Usuario implements Serializable {
      * @param loginAmigo Login do usurio relacionado ao convite
      */
     public void removerConvite(String loginAmigo) {
-        convites.remove(loginAmigo);
+        alterado = true;
+        if (convites.remove(loginAmigo) != null && convites.isEmpty()) {
+            convites = Collections.emptyMap();
+        }
     }
 
     /**
      * Adiciona um novo recado  fila de mensagens
      *
      * @param recado Recado a ser armazenado
+     * @throws CaixaRecadosCheiaException Se a caixa estiver cheia e a poltica for rejeitar
      */
     public void adicionarRecado(Recado recado) {
-        recados.add(recado);
+        alterado = true;
+        caixa().adicionar(recado);
+    }
+
+    /**
+     * Informa se a caixa de recados aceitaria um recado agora
+     *
+     * @return false se a caixa estiver cheia e a poltica for rejeitar
+     */
+    public boolean aceitaRecado() {
+        return recados == null || recados.aceita();
     }
 
     /**
-     * L e remove o prximo recado da fila
+     * Define o limite da caixa de recados e a poltica aplicada ao atingi-lo
      *
+     * @param limite Nmero mximo de recados guardados
+     * @param politica Poltica de transbordo da caixa
+     * @throws IllegalArgumentException Se o limite no for positivo
+     */
+    public void configurarCaixaRecados(int limite, CaixaPostal.PoliticaTransbordo politica) {
+        alterado = true;
+        caixa().configurar(limite, politica);
+    }
+
+    private CaixaPostal<Recado> caixa() {
+        if (recados == null) recados = new CaixaPostal<>();
+        return recados;
+    }
+
+    /**
+     * Solta a caixa de recados quando fica vazia e sem configurao prpria
+     */
+    private void liberarCaixaVazia() {
+        if (recados != null && recados.vazia() && recados.padrao()) recados = null;
+    }
+
+    /**
+     * L e remove o prximo recado da fila, descartando os enviados por usurios removidos
+     *
+     * @param lapides Registro de usurios removidos
      * @return Contedo do recado no formato "mensagem"
      * @throws SemRecadosException Se no houver recados disponveis
      */
-    public String lerRecado() {
-        Recado recado = recados.poll();
+    public String lerRecado(Lapides lapides) {
+        String recado = proximoRecado(lapides);
         if (recado == null) throw new SemRecadosException();
-        return recado.toString();
+        return recado;
     }
 
+    /**
+     * L e remove o prximo recado da fila sem lanar exceo quando ela est vazia
+     *
+     * @param lapides Registro de usurios removidos
+     * @return Contedo do recado no formato "mensagem", ou null se no houver recados
+     */
+    public String proximoRecado(Lapides lapides) {
+        if (recados == null) return null;
+        alterado = true;
+        Recado recado = recados.remover();
+        while (recado != null && lapides.contem(recado.getIdRemetente())) {
+            recado = recados.remover();
+        }
+        liberarCaixaVazia();
+        return (recado == null) ? null : recado.toString();
+    }
+
+    /**
+     * L e remove at {@code max} recados da fila, em ordem de chegada
+     *
+     * @param lapides Registro de usurios removidos
+     * @param max Quantidade mxima de recados lidos
+     * @return Contedos dos recados lidos, possivelmente vazia
+     */
+    public List<String> lerRecados(Lapides lapides, int max) {
+        compactarRecados(lapides);
+        if (recados == null) return new ArrayList<>();
+        alterado = true;
+        List<String> lidos = new ArrayList<>(Math.max(0, Math.min(max, recados.tamanho())));
+        while (lidos.size() < max && !recados.vazia()) {
+            lidos.add(recados.remover().toString());
+        }
+        liberarCaixaVazia();
+        return lidos;
+    }
+
+    /**
+     * Conta os recados pendentes, sem contar os de usurios removidos
+     *
+     * @param lapides Registro de usurios removidos
+     * @return Quantidade de recados na caixa
+     */
+    public int contarRecados(Lapides lapides) {
+        compactarRecados(lapides);
+        return getRecadosArmazenados();
+    }
+
+    /**
+     * Troca o prprio login e os logins guardados nos relacionamentos, convites
+     * e recados pelas instncias cannicas, preservando a ordem das colees
+     *
+     * @param canonico Funo que devolve a instncia cannica de um login
+     */
+    public void canonicalizarLogins(UnaryOperator<String> canonico) {
+        alterado = true;
+        login = canonico.apply(login);
+        amigos = canonicalizar(amigos, canonico);
+        idolos = canonicalizar(idolos, canonico);
+        fas = canonicalizar(fas, canonico);
+        paqueras = canonicalizar(paqueras, canonico);
+        inimigos = canonicalizar(inimigos, canonico);
+        pretendentes = canonicalizar(pretendentes, canonico);
+        if (!convites.isEmpty()) {
+            Map<String, ConviteStatus> copia = new HashMap<>(convites);
+            convites.clear();
+            copia.forEach((login, status) -> convites.put(canonico.apply(login), status));
+        }
+        if (recados != null) recados.substituir(r -> r.comRemetente(canonico.apply(r.getRemetente())));
+    }
+
+    private static Set<String> canonicalizar(Set<String> logins, UnaryOperator<String> canonico) {
+        Set<String> canonicos = ConjuntoCompacto.VAZIO;
+        for (String login : logins) {
+            canonicos = ConjuntoCompacto.com(canonicos, canonico.apply(login));
+        }
+        return canonicos;
+    }
+
+    /**
+     * Conta os elementos de todas as colees de relacionamento do usurio:
+     * amigos, convites, comunidades, dolos, fs, paqueras, inimigos e pretendentes
+     *
+     * @return Total de relacionamentos guardados
+     */
+    public int contarRelacionamentos() {
+        return amigos.size() + convites.size() + comunidades.size() + idolos.size()
+                + fas.size() + paqueras.size() + inimigos.size() + pretendentes.size();
+    }
+
+    /**
+     * Retorna quantos recados a caixa guarda no momento, sem compact-la
+     *
+     * @return Tamanho atual da caixa, incluindo recados de usurios j removidos
+     */
+    public int getRecadosArmazenados() {
+        return (recados == null) ? 0 : recados.tamanho();
+    }
+
+    /**
+     * Lista, sem remover, os recados pendentes recebidos a partir de um instante
+     *
+     * @param lapides Registro de usurios removidos
+     * @param instante Instante inicial, em milissegundos
+     * @return Recados encontrados, em ordem de chegada
+     */
+    public List<Recado> recadosDesde(Lapides lapides, long instante) {
+        compactarRecados(lapides);
+        return (recados == null) ? new ArrayList<>() : recados.desde(instante);
+    }
+
+    /**
+     * Descarta da caixa os baldes de recados inteiramente anteriores ao instante de corte
+     *
+     * @param corte Instante de corte, em milissegundos
+     */
+    public void aplicarRetencaoRecados(long corte) {
+        if (recados == null) return;
+        int antes = recados.tamanho();
+        recados.descartarAnteriores(corte);
+        alterado |= recados.tamanho() != antes;
+        liberarCaixaVazia();
+    }
+
+    /**
+     * Remove da caixa os recados de usurios removidos, caso ainda no tenha sido
+     * compactada contra a verso atual das lpides
+     *
+     * @param lapides Registro de usurios removidos
+     */
+    public void compactarRecados(Lapides lapides) {
+        if (versaoLapides == lapides.getVersao()) return;
+        alterado = true;
+        if (recados != null) {
+            recados.removerSe(r -> lapides.contem(r.getIdRemetente()));
+            liberarCaixaVazia();
+        }
+        versaoLapides = lapides.getVersao();
+    }
+
+    /**
+     * Retorna a verso das lpides contra a qual a caixa foi compactada pela ltima vez
+     *
+     * @return Verso das lpides, comparvel a {@link Lapides#getVersao()}
+     */
+    public int getVersaoLapides() { return versaoLapides; }
+
     /**
      * Retorna a lista de amigos em ordem de adio
      *
@@ -160,7 +415,8 @@ public class Usuario implements Serializable {
         return Collections.unmodifiableMap(convites);
     }
 
-    private LinkedHashSet<String> comunidades = new LinkedHashSet<>();
+    private Set<String> comunidades = ConjuntoCompacto.VAZIO;
+    private Queue<String> mensagens; // no lidas de estados antigos; null nos demais casos
 
     /**
      * Adiciona o usurio a uma comunidade
@@ -168,56 +424,58 @@ public class Usuario implements Serializable {
      * @param nomeComunidade Nome da comunidade a ser adicionada
      */
     public void adicionarComunidade(String nomeComunidade) {
-        comunidades.add(nomeComunidade);
+        alterado = true;
+        comunidades = ConjuntoCompacto.com(comunidades, nomeComunidade);
     }
 
     /**
-     * Retorna as comunidades do usurio
+     * Retira o usurio das comunidades informadas
      *
-     * @return Conjunto de nomes de comunidades
+     * @param nomes Nomes das comunidades
      */
-    public Set<String> getComunidades() {
-        return this.comunidades;
+    public void removerComunidades(Collection<String> nomes) {
+        alterado = true;
+        for (String nome : nomes) {
+            comunidades = ConjuntoCompacto.sem(comunidades, nome);
+        }
     }
 
-    private Queue<String> mensagens = new LinkedList<>();
-
     /**
-     * Recebe uma mensagem para o usurio
+     * Retorna as comunidades do usurio
      *
-     * @param mensagem Mensagem a ser armazenada
+     * @return Conjunto imutvel de nomes de comunidades, em ordem de adio
      */
-    public void receberMensagem(String mensagem) {
-        mensagens.add(mensagem);
+    public Set<String> getComunidades() {
+        return comunidades;
     }
 
     /**
-     * L e remove a prxima mensagem da fila
+     * L e remove a prxima mensagem de comunidade recebida antes de as
+     * comunidades guardarem as prprias mensagens
      *
-     * @return Contedo da mensagem
-     * @throws SemMensagensException Se no houver mensagens disponveis
+     * @return Texto da mensagem, ou null se no houver mensagens antigas
      */
-    public String lerMensagem() {
-        if (mensagens.isEmpty()) {
-            throw new SemMensagensException();
-        }
-        return mensagens.poll();
+    public String lerMensagemAntiga() {
+        if (mensagens == null) return null;
+        alterado = true;
+        String mensagem = mensagens.poll();
+        if (mensagens.isEmpty()) mensagens = null;
+        return mensagem;
     }
 
     /**
-     * Verifica se existem mensagens no lidas
-     *
-     * @return true se houver mensagens no lidas, false caso contrrio
+     * @return Quantidade de mensagens antigas ainda no lidas
      */
-    public boolean temMensagens() {
-        return !mensagens.isEmpty();
+    public int contarMensagensAntigas() {
+        return (mensagens == null) ? 0 : mensagens.size();
     }
 
     // Novos campos
-    private Set<String> idolos = new HashSet<>();
-    private Set<String> fas = new HashSet<>();
-    private Set<String> paqueras = new LinkedHashSet<>();
-    private Set<String> inimigos = new HashSet<>();
+    private Set<String> idolos = ConjuntoCompacto.VAZIO;
+    private Set<String> fas = ConjuntoCompacto.VAZIO;
+    private Set<String> paqueras = ConjuntoCompacto.VAZIO;
+    private Set<String> inimigos = ConjuntoCompacto.VAZIO;
+    private Set<String> pretendentes = ConjuntoCompacto.VAZIO; // quem tem este usurio como paquera
 
     /**
      * Adiciona um dolo ao usurio
@@ -229,7 +487,8 @@ public class Usuario implements Serializable {
         if (idolos.contains(idolo)) {
             throw new RelacaoExistenteException("Usurio j est adicionado como dolo.");
         }
-        idolos.add(idolo);
+        idolos = ConjuntoCompacto.com(idolos, idolo);
+        alterado = true;
     }
 
     /**
@@ -238,7 +497,8 @@ public class Usuario implements Serializable {
      * @param fa Login do usurio que  f deste usurio
      */
     public void adicionarFa(String fa) {
-        fas.add(fa);
+        alterado = true;
+        fas = ConjuntoCompacto.com(fas, fa);
     }
 
     /**
@@ -251,7 +511,20 @@ public class Usuario implements Serializable {
         if (paqueras.contains(paquera)) {
             throw new PaqueraExistenteException();
         }
-        paqueras.add(paquera);
+        paqueras = ConjuntoCompacto.com(paqueras, paquera);
+        alterado = true;
+    }
+
+    /**
+     * Registra um usurio que adicionou este como paquera. A paquera no 
+     * mtua, e s por este registro a remoo de uma conta alcana quem a
+     * tinha como paquera sem percorrer todos os usurios.
+     *
+     * @param pretendente Login de quem adicionou este usurio como paquera
+     */
+    public void adicionarPretendente(String pretendente) {
+        alterado = true;
+        pretendentes = ConjuntoCompacto.com(pretendentes, pretendente);
     }
 
     /**
@@ -260,7 +533,8 @@ public class Usuario implements Serializable {
      * @param inimigo Login do usurio a ser adicionado como inimigo
      */
     public void adicionarInimigo(String inimigo) {
-        inimigos.add(inimigo);
+        alterado = true;
+        inimigos = ConjuntoCompacto.com(inimigos, inimigo);
     }
 
     /**
@@ -268,48 +542,89 @@ public class Usuario implements Serializable {
      *
      * @return Conjunto imutvel de logins de dolos
      */
-    public Set<String> getIdolos() { return Collections.unmodifiableSet(idolos); }
+    public Set<String> getIdolos() { return idolos; }
 
     /**
      * Retorna os fs do usurio
      *
      * @return Conjunto imutvel de logins de fs
      */
-    public Set<String> getFas() { return Collections.unmodifiableSet(fas); }
+    public Set<String> getFas() { return fas; }
 
     /**
      * Retorna as paqueras do usurio
      *
      * @return Conjunto imutvel de logins de paqueras
      */
-    public Set<String> getPaqueras() { return Collections.unmodifiableSet(paqueras); }
+    public Set<String> getPaqueras() { return paqueras; }
 
     /**
      * Retorna os inimigos do usurio
      *
      * @return Conjunto imutvel de logins de inimigos
      */
-    public Set<String> getInimigos() { return Collections.unmodifiableSet(inimigos); }
+    public Set<String> getInimigos() { return inimigos; }
+
+    /**
+     * Retorna quem tem o usurio como paquera
+     *
+     * @return Conjunto imutvel de logins de pretendentes
+     */
+    public Set<String> getPretendentes() { return pretendentes; }
 
     /**
      * Remove todos os relacionamentos com um usurio especfico
      *
      * @param login Login do usurio a ter os relacionamentos removidos
+     * @return true se havia algum relacionamento com o usurio
      */
-    public void removerRelacionamentos(String login) {
-        amigos.remove(login);
-        fas.remove(login);
-        idolos.remove(login);
-        paqueras.remove(login);
-        inimigos.remove(login);
+    public boolean removerRelacionamentos(String login) {
+        int antes = amigos.size() + fas.size() + idolos.size() + paqueras.size() + inimigos.size()
+                + pretendentes.size();
+        amigos = ConjuntoCompacto.sem(amigos, login);
+        fas = ConjuntoCompacto.sem(fas, login);
+        idolos = ConjuntoCompacto.sem(idolos, login);
+        paqueras = ConjuntoCompacto.sem(paqueras, login);
+        inimigos = ConjuntoCompacto.sem(inimigos, login);
+        pretendentes = ConjuntoCompacto.sem(pretendentes, login);
+        boolean removido = amigos.size() + fas.size() + idolos.size() + paqueras.size() + inimigos.size()
+                + pretendentes.size() != antes;
+        alterado |= removido;
+        return removido;
     }
 
     /**
-     * Remove todos os recados enviados por um usurio especfico
-     *
-     * @param remetente Login do usurio remetente dos recados a serem removidos
+     * L os campos um a um, em vez da leitura padro, porque estados antigos
+     * gravaram com outro tipo os campos {@code recados} e {@code mensagens}.
+     * Converte as colees para a forma compacta e descarta as vazias.
      */
-    public void removerRecadosDoUsuario(String remetente) {
-        recados.removeIf(r -> r.getRemetente().equals(remetente));
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = ois.readFields();
+        id = campos.get("id", 0);
+        login = (String) campos.get("login", null);
+        senha = (String) campos.get("senha", null);
+        perfil = (Perfil) campos.get("perfil", null);
+        amigos = ConjuntoCompacto.de((Collection<String>) campos.get("amigos", null));
+        comunidades = ConjuntoCompacto.de((Collection<String>) campos.get("comunidades", null));
+        idolos = ConjuntoCompacto.de((Collection<String>) campos.get("idolos", null));
+        fas = ConjuntoCompacto.de((Collection<String>) campos.get("fas", null));
+        paqueras = ConjuntoCompacto.de((Collection<String>) campos.get("paqueras", null));
+        inimigos = ConjuntoCompacto.de((Collection<String>) campos.get("inimigos", null));
+        pretendentes = ConjuntoCompacto.de((Collection<String>) campos.get("pretendentes", null));
+        convites = (Map<String, ConviteStatus>) campos.get("convites", null);
+        if (convites == null || convites.isEmpty()) convites = Collections.emptyMap();
+        versaoLapides = campos.get("versaoLapides", 0);
+        Object caixa = campos.get("recados", null);
+        if (caixa instanceof CaixaPostal) {
+            recados = (CaixaPostal<Recado>) caixa;
+        } else if (caixa instanceof Collection) {
+            for (Recado recado : (Collection<Recado>) caixa) {
+                caixa().adicionar(recado);
+            }
+        }
+        Collection<String> antigas = (Collection<String>) campos.get("mensagens", null);
+        if (antigas != null && !antigas.isEmpty()) mensagens = new ArrayDeque<>(antigas);
+        liberarCaixaVazia();
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.exceptions.ErroRemotoException;
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cliente de rede do {@link ServidorJackut}.
+ * <p>
+ * Cada chamada envia um pedido e aguarda a resposta, de forma bloqueante, o que
+ * faz do cliente um substituto remoto da {@link br.ufal.ic.p2.jackut.Facade}:
+ * <code>executar("getAtributoUsuario", "jpsauve", "nome")</code> equivale a
+ * <code>facade.getAtributoUsuario("jpsauve", "nome")</code>. Uma instncia no
+ * deve ser compartilhada entre threads sem sincronizao externa.
+ * </p>
+ * <p>
+ * Para reduzir idas e voltas, vrios comandos podem seguir juntos em um
+ * {@link Lote}, seja em pipeline ou como um lote atmico.
+ * </p>
+ * <p>
+ * O cliente guarda a maior verso do estado que o servidor j lhe informou (ver
+ * {@link #getFicha()}). Passada a {@link #executarApos} de um cliente conectado
+ * a uma {@link Replica}, ela garante que a leitura veja as escritas j feitas no
+ * primrio.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.2
+ */
+public class ClienteJackut implements AutoCloseable {
+    private final Socket socket;
+    private final DataInputStream entrada;
+    private final OutputStream saida;
+    private long ficha;
+
+    /**
+     * Conecta-se a um servidor Jackut.
+     *
+     * @param host  endereo do servidor
+     * @param porta porta do servidor
+     * @throws IOException se a conexo falhar
+     */
+    public ClienteJackut(String host, int porta) throws IOException {
+        socket = new Socket(host, porta);
+        socket.setTcpNoDelay(true);
+        entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        saida = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Executa uma operao da fachada no servidor.
+     *
+     * @param operacao   nome do mtodo da fachada
+     * @param argumentos argumentos do mtodo; so enviados em texto
+     * @return valor retornado, em texto, ou null para operaes sem retorno
+     * @throws ErroRemotoException se a operao lanar exceo no servidor
+     * @throws IOException         se a comunicao falhar
+     */
+    public String executar(String operacao, Object... argumentos) throws IOException {
+        Lote comando = new Lote().adicionar(operacao, argumentos);
+        enviar(Protocolo.codificarPedido(comando.getComandos().get(0)));
+        return concluir();
+    }
+
+    /**
+     * Executa uma operao somente depois que o servidor alcanar uma verso do
+     * estado. Usado em rplicas para ler as prprias escritas feitas no primrio.
+     *
+     * @param ficha      verso mnima, normalmente {@link #getFicha()} do cliente do primrio
+     * @param operacao   nome do mtodo da fachada
+     * @param argumentos argumentos do mtodo; so enviados em texto
+     * @return valor retornado, em texto, ou null para operaes sem retorno
+     * @throws ErroRemotoException se a operao lanar exceo no servidor ou se
+     *                             a rplica no alcanar a verso a tempo
+     * @throws IOException         se a comunicao falhar
+     */
+    public String executarApos(long ficha, String operacao, Object... argumentos) throws IOException {
+        Lote comando = new Lote().adicionar(operacao, argumentos);
+        enviar(Protocolo.codificarPedidoApos(ficha, comando.getComandos().get(0)));
+        return concluir();
+    }
+
+    /**
+     * @return maior verso do estado do servidor informada nas respostas recebidas
+     */
+    public long getFicha() {
+        return ficha;
+    }
+
+    private String concluir() throws IOException {
+        saida.flush();
+        Resposta resposta = lerResposta();
+        if (!resposta.isSucesso()) {
+            throw new ErroRemotoException(resposta.getValor());
+        }
+        return resposta.getValor();
+    }
+
+    /**
+     * Executa um lote de forma atmica: o servidor executa os comandos em ordem,
+     * sem intercalar pedidos de outros clientes, e devolve todas as respostas em
+     * um nico quadro. Erros de comandos individuais vm nas respostas, sem
+     * exceo.
+     *
+     * @param lote comandos a executar
+     * @return uma resposta por comando, na ordem do lote
+     * @throws IOException se a comunicao falhar
+     */
+    public List<Resposta> executarLote(Lote lote) throws IOException {
+        enviar(Protocolo.codificarLote(lote));
+        saida.flush();
+        byte[] conteudo = lerQuadro();
+        try {
+            List<Resposta> respostas = Protocolo.decodificarRespostas(ByteBuffer.wrap(conteudo));
+            for (Resposta resposta : respostas) {
+                ficha = Math.max(ficha, resposta.getVersao());
+            }
+            return respostas;
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Envia os comandos de um lote como pedidos independentes, sem esperar a
+     * resposta de cada um antes de enviar o prximo, e ento l todas as
+     * respostas. Os comandos executam na ordem do lote, mas pedidos de outros
+     * clientes podem se intercalar entre eles. O servidor para de ler a conexo
+     * enquanto houver respostas demais por ler, ento um lote cujos pedidos no
+     * caibam nos buffers do sistema e cujas respostas passem de um megabyte deve
+     * ser dividido.
+     *
+     * @param lote comandos a executar
+     * @return uma resposta por comando, na ordem do lote
+     * @throws IOException se a comunicao falhar
+     */
+    public List<Resposta> executarEmPipeline(Lote lote) throws IOException {
+        for (List<String> comando : lote.getComandos()) {
+            enviar(Protocolo.codificarPedido(comando));
+        }
+        saida.flush();
+        List<Resposta> respostas = new ArrayList<>(lote.tamanho());
+        for (int i = 0; i < lote.tamanho(); i++) {
+            respostas.add(lerResposta());
+        }
+        return respostas;
+    }
+
+    private void enviar(ByteBuffer quadro) throws IOException {
+        saida.write(quadro.array(), quadro.arrayOffset(), quadro.limit());
+    }
+
+    private Resposta lerResposta() throws IOException {
+        byte[] conteudo = lerQuadro();
+        try {
+            Resposta resposta = Protocolo.decodificarResposta(ByteBuffer.wrap(conteudo));
+            ficha = Math.max(ficha, resposta.getVersao());
+            return resposta;
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private byte[] lerQuadro() throws IOException {
+        int tamanho = entrada.readInt();
+        if (tamanho < 0 || tamanho > Protocolo.TAMANHO_MAXIMO) {
+            throw new IOException("Quadro de resposta invlido.");
+        }
+        byte[] conteudo = new byte[tamanho];
+        entrada.readFully(conteudo);
+        return conteudo;
+    }
+
+    /**
+     * Encerra a conexo.
+     *
+     * @throws IOException se o fechamento falhar
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,165 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Estado de um cliente conectado ao {@link ServidorJackut}.
+ * <p>
+ * A leitura e a escrita no canal so feitas apenas pela thread do seletor. Os
+ * quadros completos recebidos entram em uma fila de pedidos e so executados um
+ * de cada vez, cada um em sua prpria tarefa do executor, para que as respostas
+ * saiam na ordem dos pedidos e um cliente veja sempre o efeito dos seus pedidos
+ * anteriores. Clientes diferentes so atendidos em paralelo.
+ * </p>
+ * <p>
+ * Um cliente que envia pedidos mais rpido do que so executados, ou que no l
+ * as respostas, deixa de ser lido: acima de {@value #LIMITE_PEDIDOS} pedidos no
+ * respondidos ou de {@value #LIMITE_SAIDA} bytes de respostas no escritas, o
+ * seletor retira o interesse de leitura da chave e s o devolve quando a conexo
+ * volta para baixo dos dois limites. Os pedidos seguintes esperam no buffer do
+ * sistema operacional e, cheio este, no prprio cliente.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+class Conexao {
+    /** Pedidos recebidos e ainda no respondidos a partir dos quais o canal deixa de ser lido */
+    static final int LIMITE_PEDIDOS = 64;
+    /** Bytes de respostas ainda no escritas a partir dos quais o canal deixa de ser lido */
+    static final int LIMITE_SAIDA = 1024 * 1024;
+    private static final int CAPACIDADE_INICIAL = 16 * 1024;
+
+    private final SocketChannel canal;
+    private final SelectionKey chave;
+    private ByteBuffer entrada = ByteBuffer.allocate(CAPACIDADE_INICIAL);
+    private final Queue<ByteBuffer> pedidos = new ConcurrentLinkedQueue<>();
+    private final Queue<ByteBuffer> saida = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean executando = new AtomicBoolean();
+    private final AtomicInteger pedidosPendentes = new AtomicInteger();
+    private final AtomicLong bytesPendentes = new AtomicLong();
+    private volatile boolean fechada;
+
+    Conexao(SocketChannel canal, SelectionKey chave) {
+        this.canal = canal;
+        this.chave = chave;
+    }
+
+    SelectionKey getChave() {
+        return chave;
+    }
+
+    boolean isFechada() {
+        return fechada;
+    }
+
+    /**
+     * L o que houver no canal e separa os quadros completos.
+     *
+     * @return quantidade de quadros completos recebidos, ou -1 se o cliente
+     *         encerrou a conexo ou enviou um quadro invlido
+     */
+    int ler() throws IOException {
+        if (canal.read(entrada) < 0) return -1;
+        entrada.flip();
+        int quadros = 0;
+        while (entrada.remaining() >= 4) {
+            int tamanho = entrada.getInt(entrada.position());
+            if (tamanho < 0 || tamanho > Protocolo.TAMANHO_MAXIMO) return -1;
+            if (entrada.remaining() < 4 + tamanho) {
+                if (entrada.capacity() < 4 + tamanho) {
+                    ByteBuffer maior = ByteBuffer.allocate(4 + tamanho);
+                    maior.put(entrada);
+                    entrada = maior;
+                    return quadros;
+                }
+                break;
+            }
+            entrada.getInt();
+            byte[] conteudo = new byte[tamanho];
+            entrada.get(conteudo);
+            pedidos.add(ByteBuffer.wrap(conteudo));
+            pedidosPendentes.incrementAndGet();
+            quadros++;
+        }
+        entrada.compact();
+        return quadros;
+    }
+
+    /**
+     * Agenda a execuo dos pedidos pendentes, caso nenhum esteja em execuo.
+     *
+     * @param executor   executor das tarefas
+     * @param tratador   converte o contedo de um pedido no quadro de resposta
+     * @param aoResponder chamado aps cada resposta enfileirada, para o seletor escrev-la
+     */
+    void agendar(Executor executor, Function<ByteBuffer, ByteBuffer> tratador, Runnable aoResponder) {
+        if (!pedidos.isEmpty() && executando.compareAndSet(false, true)) {
+            executor.execute(() -> executarProximo(executor, tratador, aoResponder));
+        }
+    }
+
+    private void executarProximo(Executor executor, Function<ByteBuffer, ByteBuffer> tratador, Runnable aoResponder) {
+        ByteBuffer pedido = pedidos.poll();
+        if (pedido != null && !fechada) {
+            ByteBuffer resposta = tratador.apply(pedido);
+            bytesPendentes.addAndGet(resposta.remaining());
+            saida.add(resposta);
+            pedidosPendentes.decrementAndGet();
+            aoResponder.run();
+        }
+        executando.set(false);
+        agendar(executor, tratador, aoResponder);
+    }
+
+    /**
+     * Escreve no canal as respostas pendentes, at o canal deixar de aceitar bytes.
+     *
+     * @return true se todas as respostas foram escritas
+     */
+    boolean escrever() throws IOException {
+        for (ByteBuffer b = saida.peek(); b != null; b = saida.peek()) {
+            bytesPendentes.addAndGet(-canal.write(b));
+            if (b.hasRemaining()) return false;
+            saida.poll();
+        }
+        return true;
+    }
+
+    /**
+     * Liga ou desliga o interesse de leitura conforme a conexo esteja abaixo ou
+     * acima dos limites de pedidos e de respostas acumulados. Chamado s pela
+     * thread do seletor, a nica que altera os interesses das chaves.
+     */
+    void ajustarLeitura() {
+        if (fechada || !chave.isValid()) return;
+        boolean ler = pedidosPendentes.get() < LIMITE_PEDIDOS && bytesPendentes.get() < LIMITE_SAIDA;
+        int atuais = chave.interestOps();
+        int novos = ler ? atuais | SelectionKey.OP_READ : atuais & ~SelectionKey.OP_READ;
+        if (novos != atuais) chave.interestOps(novos);
+    }
+
+    /**
+     * Fecha o canal e descarta os pedidos ainda no executados.
+     */
+    void fechar() {
+        fechada = true;
+        pedidos.clear();
+        chave.cancel();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // a conexo j est sendo descartada
+        }
+    }
+}
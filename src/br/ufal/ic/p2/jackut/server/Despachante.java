@@ -0,0 +1,516 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.eventos.Retrato;
+import br.ufal.ic.p2.jackut.metricas.MetricasOperacao;
+import br.ufal.ic.p2.jackut.metricas.RegistroMetricas;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.JMException;
+
+/**
+ * Traduz pedidos recebidos pela rede em chamadas  {@link Facade}.
+ * <p>
+ * As operaes so descobertas por reflexo: todo mtodo pblico da fachada
+ * cujos parmetros e retorno so textos, inteiros, longos, booleanos ou void
+ * fica disponvel pelo nome e nmero de argumentos. Mtodos que retornam
+ * objetos que no cabem em texto, como a inscrio de notificaes, ficam de fora.
+ * </p>
+ * <p>
+ * O ncleo do sistema no  thread-safe, por isso o despachante coordena o
+ * acesso com {@link TravasParticionadas}. Cada operao tem um {@link Escopo}:
+ * as que envolvem apenas usurios identificados pelos argumentos (login ou
+ * sesso) travam s as parties desses usurios, para leitura ou escrita; as
+ * consultas a dados compartilhados que s so alterados por operaes globais
+ * tomam apenas a trava global para leitura; e todas as demais, como criar
+ * usurios, comunidades e dolos, executam sozinhas. Um {@link Lote} adquire as
+ * travas uma nica vez para todos os seus comandos. Com limite de usurios em
+ * memria, o despejo dos excedentes  adiado para depois da operao que o
+ * pediu e executado sozinho, pois nenhuma operao em andamento pode estar
+ * segurando um usurio que sai da memria.
+ * </p>
+ * <p>
+ * As consultas que um {@link Retrato} sabe responder (perfis, amigos, fs,
+ * comunidades e seus membros, e a exportao de um usurio) no tomam trava
+ * alguma quando chegam sozinhas: cada uma abre um retrato da ltima poca
+ * publicada e o percorre enquanto as escritas continuam. Assim uma listagem
+ * longa, como os membros de uma comunidade enorme, no atrasa as escritas nos
+ * mesmos dados. Dentro de um {@link Lote} elas seguem o {@link Escopo} e leem o
+ * ncleo sob as travas do lote, para enxergar as escritas dos comandos anteriores.
+ * </p>
+ * <p>
+ * Com o {@link Diario} ativo, cada operao global ou de escrita  registrada,
+ * ainda sob as travas, com o instante do relgio e o ID de sesso que usou, e a
+ * sequncia recebida volta na resposta como verso. Um despachante de rplica
+ * recusa essas operaes e s as executa ao reaplicar as entradas recebidas do
+ * primrio (ver {@link Replica}).
+ * </p>
+ *
+ * @author Iury
+ * @version 1.4
+ */
+public class Despachante {
+    /** Mensagem das respostas de comandos pulados aps um erro em lote que para no erro */
+    public static final String NAO_EXECUTADO = "Comando no executado.";
+    /** Mensagem das respostas de escritas enviadas a uma rplica */
+    public static final String SOMENTE_LEITURA = "Rplica somente leitura.";
+    /** Mensagem das respostas de pedidos cuja verso a rplica no alcanou a tempo */
+    public static final String REPLICA_ATRASADA = "Rplica atrasada.";
+    /** Nmero de parties usado quando nenhum  informado */
+    public static final int PARTICOES_PADRAO = 64;
+    private static final long ESPERA_MAXIMA_MS = 5000;
+
+    /**
+     * Tipo de acesso de uma operao ao ncleo
+     */
+    private enum Acesso {
+        /** Exclusivo: nenhuma outra operao executa ao mesmo tempo */
+        GLOBAL,
+        /** L apenas dados alterados por operaes globais */
+        GLOBAL_LEITURA,
+        /** L dados dos usurios indicados pelos argumentos */
+        LEITURA,
+        /** Altera dados dos usurios indicados pelos argumentos */
+        ESCRITA
+    }
+
+    /**
+     * Acesso de uma operao e o papel de cada argumento: 'L' para login,
+     * 'S' para sesso e '-' para os demais.
+     */
+    private static final class Escopo {
+        private final Acesso acesso;
+        private final String argumentos;
+
+        private Escopo(Acesso acesso, String argumentos) {
+            this.acesso = acesso;
+            this.argumentos = argumentos;
+        }
+    }
+
+    private static final Escopo EXCLUSIVO = new Escopo(Acesso.GLOBAL, "");
+    // operaes ausentes deste mapa so exclusivas
+    private static final Map<String, Escopo> ESCOPOS = Map.ofEntries(
+            Map.entry("abrirSessao", new Escopo(Acesso.ESCRITA, "L-")),
+            Map.entry("getLoginSessao", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("getAtributoUsuario", new Escopo(Acesso.LEITURA, "L-")),
+            Map.entry("editarPerfil", new Escopo(Acesso.ESCRITA, "S--")),
+            Map.entry("adicionarAmigo", new Escopo(Acesso.ESCRITA, "SL")),
+            Map.entry("ehAmigo", new Escopo(Acesso.LEITURA, "LL")),
+            Map.entry("getAmigos", new Escopo(Acesso.LEITURA, "L")),
+            Map.entry("enviarRecado", new Escopo(Acesso.ESCRITA, "SL-")),
+            Map.entry("lerRecado", new Escopo(Acesso.ESCRITA, "S")),
+            Map.entry("lerRecados", new Escopo(Acesso.ESCRITA, "S-")),
+            Map.entry("contarRecados", new Escopo(Acesso.ESCRITA, "S")),
+            Map.entry("recadosDesde", new Escopo(Acesso.ESCRITA, "S-")),
+            Map.entry("configurarCaixaRecados", new Escopo(Acesso.ESCRITA, "S--")),
+            Map.entry("getComunidades", new Escopo(Acesso.LEITURA, "L")),
+            Map.entry("adicionarPaquera", new Escopo(Acesso.ESCRITA, "SL")),
+            Map.entry("adicionarInimigo", new Escopo(Acesso.ESCRITA, "SL")),
+            Map.entry("ehFa", new Escopo(Acesso.LEITURA, "LL")),
+            Map.entry("getFas", new Escopo(Acesso.LEITURA, "L")),
+            Map.entry("getAmigosEmComum", new Escopo(Acesso.LEITURA, "LL")),
+            Map.entry("contarFas", new Escopo(Acesso.LEITURA, "L")),
+            Map.entry("contarMembrosComunidade", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("contarEventos", new Escopo(Acesso.GLOBAL_LEITURA, "")),
+            Map.entry("contarUsuariosEmMemoria", new Escopo(Acesso.GLOBAL_LEITURA, "")),
+            Map.entry("ehPaquera", new Escopo(Acesso.LEITURA, "SL")),
+            Map.entry("getPaqueras", new Escopo(Acesso.LEITURA, "S")),
+            Map.entry("getMembrosComunidade", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("getDescricaoComunidade", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("getDonoComunidade", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("getAtrasoComunidade", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("getTopIdolos", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("getTopComunidades", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("autocompletarComunidades", new Escopo(Acesso.GLOBAL_LEITURA, "--")),
+            Map.entry("autocompletarUsuarios", new Escopo(Acesso.GLOBAL_LEITURA, "--")),
+            Map.entry("exportarUsuario", new Escopo(Acesso.LEITURA, "L")),
+            // mtricas so do processo: no entram no dirio e valem tambm nas rplicas
+            Map.entry("getMetricas", new Escopo(Acesso.GLOBAL_LEITURA, "")),
+            Map.entry("contarChamadas", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("contarFalhas", new Escopo(Acesso.GLOBAL_LEITURA, "-")),
+            Map.entry("zerarMetricas", new Escopo(Acesso.GLOBAL_LEITURA, "")));
+
+    // exclusivas, mas sem efeito no estado replicado
+    private static final Set<String> NAO_REGISTRADAS = Set.of("encerrarSistema", "analisarMemoria");
+
+    private final Facade facade;
+    private final Map<String, Method> operacoes = new HashMap<>(); // "nome/aridade" -> mtodo
+    private final Map<String, Method> consultas = new HashMap<>(); // operaes atendidas por retratos
+    private final TravasParticionadas travas;
+    private final FontesReplicaveis fontes = new FontesReplicaveis();
+    private final AtomicReference<Runnable> despejoPendente = new AtomicReference<>();
+    private volatile Diario diario;
+    private volatile boolean replica;
+    private long aplicada; // ltima entrada reaplicada, se rplica; protegida por this
+
+    /**
+     * Cria o despachante das operaes de uma fachada com
+     * {@value #PARTICOES_PADRAO} parties.
+     *
+     * @param facade fachada que executar as operaes
+     */
+    public Despachante(Facade facade) {
+        this(facade, PARTICOES_PADRAO);
+    }
+
+    /**
+     * Cria o despachante das operaes de uma fachada.
+     *
+     * @param facade    fachada que executar as operaes
+     * @param particoes nmero de parties de usurios
+     */
+    public Despachante(Facade facade, int particoes) {
+        this.facade = facade;
+        this.travas = new TravasParticionadas(particoes);
+        for (Method m : Facade.class.getDeclaredMethods()) {
+            if (Modifier.isPublic(m.getModifiers()) && !Modifier.isStatic(m.getModifiers()) && suportado(m)) {
+                operacoes.put(m.getName() + "/" + m.getParameterCount(), m);
+            }
+        }
+        for (Method m : Retrato.class.getDeclaredMethods()) {
+            String chave = m.getName() + "/" + m.getParameterCount();
+            if (Modifier.isPublic(m.getModifiers()) && operacoes.containsKey(chave) && suportado(m)) {
+                consultas.put(chave, m);
+            }
+        }
+        instalarFontes();
+        facade.setAgendadorDespejo(despejoPendente::set);
+    }
+
+    /**
+     * Passa a registrar as escritas em um dirio, se ainda no registrava.
+     *
+     * @return dirio das escritas
+     */
+    public synchronized Diario ativarDiario() {
+        if (diario == null) diario = new Diario();
+        return diario;
+    }
+
+    /**
+     * Marca o despachante como rplica: escritas de clientes passam a ser recusadas.
+     */
+    void setReplica() {
+        replica = true;
+    }
+
+    /**
+     * @return sequncia da ltima entrada do dirio reaplicada por esta rplica
+     */
+    public synchronized long getAplicada() {
+        return aplicada;
+    }
+
+    /**
+     * Executa uma operao da fachada.
+     *
+     * @param campos nome da operao seguido dos argumentos em texto
+     * @return valor retornado, em texto, ou a mensagem da exceo lanada
+     */
+    public Resposta executar(List<String> campos) {
+        Method consulta = consultas.get(campos.get(0) + "/" + (campos.size() - 1));
+        if (consulta != null) return consultar(consulta, campos).comVersao(versao());
+        Resposta resposta = selecionar(List.of(campos)).comTravas(() -> executarTravado(campos));
+        despejarPendentes();
+        return resposta;
+    }
+
+    /**
+     * Executa uma operao somente depois que este servidor alcanar uma verso,
+     * o que garante a uma rplica ler o que o cliente j escreveu no primrio.
+     *
+     * @param ficha  verso mnima, obtida de uma resposta anterior
+     * @param campos nome da operao seguido dos argumentos em texto
+     * @return valor retornado, ou erro {@value #REPLICA_ATRASADA} se a verso no
+     *         for alcanada em at cinco segundos
+     */
+    public Resposta executarApos(long ficha, List<String> campos) {
+        if (!aguardar(ficha)) return Resposta.erro(REPLICA_ATRASADA).comVersao(versao());
+        return executar(campos);
+    }
+
+    private synchronized boolean aguardar(long ficha) {
+        if (!replica) return diario == null || ficha <= diario.getSequencia();
+        long limite = System.currentTimeMillis() + ESPERA_MAXIMA_MS;
+        try {
+            for (long resta = ESPERA_MAXIMA_MS; aplicada < ficha && resta > 0;
+                 resta = limite - System.currentTimeMillis()) {
+                wait(resta);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return aplicada >= ficha;
+    }
+
+    /**
+     * Executa os comandos de um lote em ordem, sem que outros pedidos que
+     * envolvam os mesmos dados se intercalem entre eles. O lote trava de uma vez
+     * a unio das parties dos seus comandos, ou tudo, se algum comando for
+     * exclusivo. No h desfazer: comandos que terminaram antes de um erro
+     * mantm seus efeitos.
+     *
+     * @param lote comandos a executar
+     * @return uma resposta por comando, na ordem do lote
+     */
+    public List<Resposta> executarLote(Lote lote) {
+        List<Resposta> respostas = new ArrayList<>(lote.tamanho());
+        selecionar(lote.getComandos()).comTravas(() -> {
+            boolean interrompido = false;
+            for (List<String> comando : lote.getComandos()) {
+                Resposta resposta = interrompido ? Resposta.erro(NAO_EXECUTADO) : executarTravado(comando);
+                interrompido |= lote.isPararNoErro() && !resposta.isSucesso();
+                respostas.add(resposta);
+            }
+        });
+        despejarPendentes();
+        return respostas;
+    }
+
+    /**
+     * Reaplica uma entrada do dirio do primrio, com o mesmo instante e ID de sesso.
+     *
+     * @param entrada entrada recebida, na ordem do dirio
+     */
+    void aplicar(EntradaDiario entrada) {
+        selecionar(List.of(entrada.getComando())).comTravas(() -> {
+            fontes.fixar(entrada.getInstante(), entrada.getSessaoGerada());
+            try {
+                invocar(entrada.getComando());
+            } finally {
+                fontes.liberar();
+            }
+        });
+        despejarPendentes();
+        synchronized (this) {
+            aplicada = entrada.getSequencia();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Grava uma cpia do estado e passa a repassar as escritas seguintes a uma
+     * fila, sem que nenhuma escrita fique entre as duas coisas.
+     *
+     * @param saida destino da cpia
+     * @param fila  fila que receber as prximas entradas do dirio
+     * @return sequncia do dirio em que a cpia foi tirada
+     */
+    long instantanea(OutputStream saida, Queue<EntradaDiario> fila) {
+        Diario d = ativarDiario();
+        return travas.selecionarTudo().comTravas(() -> {
+            facade.exportarEstado(saida);
+            d.assinar(fila);
+            return d.getSequencia();
+        });
+    }
+
+    /**
+     * Publica as mtricas da fachada por JMX. Os medidores do estado passam a
+     * ser lidos com a trava global de leitura, como as demais consultas globais,
+     * para no percorrer usurios e comunidades durante um cadastro.
+     *
+     * @param nome nome JMX, por exemplo {@link RegistroMetricas#NOME_JMX}
+     * @throws JMException se o nome for invlido ou j estiver em uso
+     */
+    public void publicarMetricas(String nome) throws JMException {
+        RegistroMetricas registro = facade.getRegistroMetricas();
+        registro.setMedidores(() -> travas.selecionarParticoes(new int[0], false).comTravas(facade::getMedidores));
+        registro.registrarJmx(nome);
+    }
+
+    /**
+     * Substitui o estado por uma cpia recebida do primrio.
+     *
+     * @param entrada   cpia gravada por {@link #instantanea}
+     * @param sequencia sequncia do dirio em que a cpia foi tirada
+     */
+    void importar(InputStream entrada, long sequencia) {
+        travas.selecionarTudo().comTravas(() -> {
+            facade.importarEstado(entrada);
+            instalarFontes();
+            facade.setAgendadorDespejo(despejoPendente::set);
+        });
+        synchronized (this) {
+            aplicada = sequencia;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Executa o despejo de usurios pedido durante operaes j concludas,
+     * sozinho, para que nenhuma operao esteja segurando um usurio despejado.
+     */
+    private void despejarPendentes() {
+        Runnable despejo = despejoPendente.getAndSet(null);
+        if (despejo == null) return;
+        travas.selecionarTudo().comTravas(despejo);
+    }
+
+    private void instalarFontes() {
+        facade.setRelogio(fontes.relogio());
+        facade.setGeradorSessoes(fontes.geradorSessoes());
+    }
+
+    /**
+     * Executa uma operao, registrando-a no dirio se for uma escrita; quem
+     * chama deve deter a trava adequada.
+     */
+    private Resposta executarTravado(List<String> campos) {
+        Diario d = diario;
+        boolean escrita = registravel(campos);
+        if (escrita && replica) return Resposta.erro(SOMENTE_LEITURA).comVersao(versao());
+        if (!escrita || d == null) return invocar(campos).comVersao(versao());
+        long instante = System.currentTimeMillis();
+        fontes.fixar(instante, null);
+        Resposta resposta;
+        String sessao;
+        try {
+            resposta = invocar(campos);
+        } finally {
+            sessao = fontes.liberar();
+        }
+        return resposta.comVersao(d.registrar(instante, sessao, campos));
+    }
+
+    /**
+     * Indica se a operao altera o estado e deve ir ao dirio. Encerrar o
+     * sistema s grava o estado do prprio servidor em disco, e a anlise de
+     * memria, exclusiva para ver o estado parado, apenas o l.
+     */
+    private boolean registravel(List<String> campos) {
+        String nome = campos.get(0);
+        if (NAO_REGISTRADAS.contains(nome) || !operacoes.containsKey(nome + "/" + (campos.size() - 1))) {
+            return false;
+        }
+        Acesso acesso = ESCOPOS.getOrDefault(nome, EXCLUSIVO).acesso;
+        return acesso == Acesso.GLOBAL || acesso == Acesso.ESCRITA;
+    }
+
+    private long versao() {
+        Diario d = diario;
+        if (d != null) return d.getSequencia();
+        synchronized (this) {
+            return aplicada;
+        }
+    }
+
+    /**
+     * Seleciona as travas necessrias para um conjunto de comandos. Sesses so
+     * traduzidas para o login do seu usurio; sesses invlidas no travam
+     * partio alguma, pois a operao falhar antes de alterar qualquer dado.
+     */
+    private TravasParticionadas.Selecao selecionar(List<List<String>> comandos) {
+        int[] indices = new int[0];
+        int n = 0;
+        boolean escrita = false;
+        for (List<String> campos : comandos) {
+            Escopo escopo = ESCOPOS.getOrDefault(campos.get(0), EXCLUSIVO);
+            if (escopo.acesso == Acesso.GLOBAL || escopo.argumentos.length() != campos.size() - 1) {
+                return travas.selecionarTudo();
+            }
+            escrita |= escopo.acesso == Acesso.ESCRITA;
+            for (int i = 0; i < escopo.argumentos.length(); i++) {
+                String login = usuarioDoArgumento(escopo.argumentos.charAt(i), campos.get(i + 1));
+                if (login == null) continue;
+                if (n == indices.length) indices = Arrays.copyOf(indices, Math.max(4, n * 2));
+                indices[n++] = travas.particao(login);
+            }
+        }
+        return travas.selecionarParticoes(Arrays.copyOf(indices, n), escrita);
+    }
+
+    private String usuarioDoArgumento(char papel, String valor) {
+        if (valor == null) return null;
+        if (papel == 'L') return valor;
+        if (papel != 'S') return null;
+        try {
+            return facade.getLoginSessao(valor);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Invoca a operao; quem chama deve deter a trava adequada.
+     */
+    private Resposta invocar(List<String> campos) {
+        String nome = campos.get(0);
+        Method metodo = operacoes.get(nome + "/" + (campos.size() - 1));
+        if (metodo == null) {
+            return Resposta.erro("Operao desconhecida: " + nome + ".");
+        }
+        return invocar(facade, metodo, campos, null);
+    }
+
+    /**
+     * Responde uma consulta com um retrato, sem travas. A latncia e o resultado
+     * entram nas mtricas da fachada com o nome da operao, como se ela tivesse
+     * respondido.
+     */
+    private Resposta consultar(Method metodo, List<String> campos) {
+        MetricasOperacao metricas = facade.getRegistroMetricas().operacao(campos.get(0));
+        try (Retrato retrato = facade.abrirRetrato()) {
+            return invocar(retrato, metodo, campos, metricas);
+        }
+    }
+
+    /**
+     * Converte os argumentos e chama o mtodo no alvo.
+     *
+     * @param metricas onde registrar a chamada, ou null se o alvo j mede as suas
+     */
+    private Resposta invocar(Object alvo, Method metodo, List<String> campos, MetricasOperacao metricas) {
+        String nome = campos.get(0);
+        Class<?>[] tipos = metodo.getParameterTypes();
+        Object[] argumentos = new Object[tipos.length];
+        for (int i = 0; i < tipos.length; i++) {
+            try {
+                argumentos[i] = converter(campos.get(i + 1), tipos[i]);
+            } catch (IllegalArgumentException e) {
+                return Resposta.erro("Argumento invlido: " + campos.get(i + 1) + ".");
+            }
+        }
+        long inicio = System.nanoTime();
+        try {
+            Object retorno = metodo.invoke(alvo, argumentos);
+            if (metricas != null) metricas.registrarSucesso(System.nanoTime() - inicio);
+            return Resposta.ok(retorno == null ? null : String.valueOf(retorno));
+        } catch (InvocationTargetException e) {
+            if (metricas != null) metricas.registrarFalha(System.nanoTime() - inicio, e.getCause());
+            return Resposta.erro(e.getCause().getMessage());
+        } catch (IllegalAccessException e) {
+            return Resposta.erro("Operao desconhecida: " + nome + ".");
+        }
+    }
+
+    private static Object converter(String valor, Class<?> tipo) {
+        if (tipo == String.class) return valor;
+        if (valor == null) throw new IllegalArgumentException();
+        if (tipo == int.class) return Integer.parseInt(valor.trim());
+        if (tipo == long.class) return Long.parseLong(valor.trim());
+        if (tipo == boolean.class) {
+            if (!valor.equals("true") && !valor.equals("false")) throw new IllegalArgumentException();
+            return Boolean.parseBoolean(valor);
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static boolean suportado(Method m) {
+        if (!simples(m.getReturnType()) && m.getReturnType() != void.class) return false;
+        for (Class<?> tipo : m.getParameterTypes()) {
+            if (!simples(tipo)) return false;
+        }
+        return true;
+    }
+
+    private static boolean simples(Class<?> tipo) {
+        return tipo == String.class || tipo == int.class || tipo == long.class || tipo == boolean.class;
+    }
+}
@@ -0,0 +1,69 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dirio das operaes de escrita executadas pelo primrio.
+ * <p>
+ * Cada operao recebe uma sequncia crescente e  repassada s filas dos
+ * assinantes (as conexes de rplicas do {@link PublicadorDiario}). O dirio no
+ * guarda as entradas: uma rplica nova parte de uma cpia do estado tirada na
+ * mesma sequncia em que passa a assinar, e recebe apenas o que vem depois.
+ * </p>
+ * <p>
+ * O {@link Despachante} registra a entrada enquanto ainda detm as travas da
+ * operao, de modo que operaes que disputam os mesmos dados aparecem no
+ * dirio na ordem em que executaram. Operaes sobre parties diferentes
+ * podem aparecer em qualquer ordem, pois no interferem entre si.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Diario {
+    private final List<Queue<EntradaDiario>> assinantes = new CopyOnWriteArrayList<>();
+    private volatile long sequencia;
+
+    /**
+     * Registra uma operao e a repassa aos assinantes.
+     *
+     * @param instante     instante do relgio durante a operao
+     * @param sessaoGerada ID de sesso criado pela operao, ou null
+     * @param comando      nome da operao seguido dos argumentos
+     * @return sequncia atribuda  operao
+     */
+    public synchronized long registrar(long instante, String sessaoGerada, List<String> comando) {
+        EntradaDiario entrada = new EntradaDiario(++sequencia, instante, sessaoGerada, comando);
+        for (Queue<EntradaDiario> fila : assinantes) {
+            fila.add(entrada);
+        }
+        return sequencia;
+    }
+
+    /**
+     * @return sequncia da ltima operao registrada
+     */
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Passa a repassar as prximas entradas a uma fila.
+     *
+     * @param fila fila do assinante
+     */
+    void assinar(Queue<EntradaDiario> fila) {
+        assinantes.add(fila);
+    }
+
+    /**
+     * Deixa de repassar entradas a uma fila.
+     *
+     * @param fila fila do assinante
+     */
+    void cancelar(Queue<EntradaDiario> fila) {
+        assinantes.remove(fila);
+    }
+}
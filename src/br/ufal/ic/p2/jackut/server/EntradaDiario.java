@@ -0,0 +1,57 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.util.List;
+
+/**
+ * Operao de escrita registrada no {@link Diario} do primrio.
+ * <p>
+ * Alm do comando, a entrada guarda o que a operao obteve de fontes no
+ * determinsticas: o instante do relgio e o ID de sesso gerado, se houver.
+ * Uma rplica que reaplica as entradas em ordem, com os mesmos instantes e IDs,
+ * chega ao mesmo estado do primrio.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class EntradaDiario {
+    private final long sequencia;
+    private final long instante;
+    private final String sessaoGerada;
+    private final List<String> comando;
+
+    /**
+     * Cria uma entrada.
+     *
+     * @param sequencia    posio da entrada no dirio, a partir de 1
+     * @param instante     instante do relgio durante a operao, em milissegundos
+     * @param sessaoGerada ID de sesso criado pela operao, ou null
+     * @param comando      nome da operao seguido dos argumentos
+     */
+    public EntradaDiario(long sequencia, long instante, String sessaoGerada, List<String> comando) {
+        this.sequencia = sequencia;
+        this.instante = instante;
+        this.sessaoGerada = sessaoGerada;
+        this.comando = comando;
+    }
+
+    /**
+     * @return posio da entrada no dirio
+     */
+    public long getSequencia() { return sequencia; }
+
+    /**
+     * @return instante do relgio durante a operao, em milissegundos
+     */
+    public long getInstante() { return instante; }
+
+    /**
+     * @return ID de sesso criado pela operao, ou null
+     */
+    public String getSessaoGerada() { return sessaoGerada; }
+
+    /**
+     * @return nome da operao seguido dos argumentos
+     */
+    public List<String> getComando() { return comando; }
+}
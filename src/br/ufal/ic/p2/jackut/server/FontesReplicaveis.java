@@ -0,0 +1,96 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Relgio e gerador de IDs de sesso do ncleo que podem ser fixados por
+ * thread durante uma operao.
+ * <p>
+ * No primrio, o {@link Despachante} fixa o instante antes de cada escrita e
+ * recolhe o ID de sesso gerado, para registr-los no {@link Diario}. Na rplica,
+ * fixa os valores da entrada antes de reaplic-la. Fora de uma operao fixada,
+ * valem o relgio do sistema e UUIDs aleatrios.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+class FontesReplicaveis {
+    private final ThreadLocal<Long> instanteFixo = new ThreadLocal<>();
+    private final ThreadLocal<String> sessaoFixa = new ThreadLocal<>();
+    private final ThreadLocal<String> sessaoGerada = new ThreadLocal<>();
+
+    private final Clock relogio = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            return Clock.fixed(instant(), zona);
+        }
+
+        @Override
+        public long millis() {
+            Long fixo = instanteFixo.get();
+            return (fixo == null) ? System.currentTimeMillis() : fixo;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+    };
+
+    private final Supplier<String> geradorSessoes = () -> {
+        String fixa = sessaoFixa.get();
+        String id = (fixa == null) ? UUID.randomUUID().toString() : fixa;
+        sessaoGerada.set(id);
+        return id;
+    };
+
+    /**
+     * @return relgio a instalar no ncleo
+     */
+    Clock relogio() {
+        return relogio;
+    }
+
+    /**
+     * @return gerador de IDs de sesso a instalar no ncleo
+     */
+    Supplier<String> geradorSessoes() {
+        return geradorSessoes;
+    }
+
+    /**
+     * Fixa o instante e, opcionalmente, o prximo ID de sesso da thread atual.
+     *
+     * @param instante instante em milissegundos
+     * @param sessao   ID que a prxima sesso criada receber, ou null para gerar um
+     */
+    void fixar(long instante, String sessao) {
+        instanteFixo.set(instante);
+        sessaoFixa.set(sessao);
+        sessaoGerada.remove();
+    }
+
+    /**
+     * Desfaz a fixao da thread atual.
+     *
+     * @return ID de sesso gerado durante a operao, ou null se nenhum
+     */
+    String liberar() {
+        String gerada = sessaoGerada.get();
+        instanteFixo.remove();
+        sessaoFixa.remove();
+        sessaoGerada.remove();
+        return gerada;
+    }
+}
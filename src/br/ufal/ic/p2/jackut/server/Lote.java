@@ -0,0 +1,80 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequncia de comandos da {@link br.ufal.ic.p2.jackut.Facade} enviada ao
+ * servidor de uma s vez.
+ * <p>
+ * Enviado com {@link ClienteJackut#executarLote(Lote)}, o lote ocupa um nico
+ * quadro e  executado em ordem sem que pedidos de outros clientes se
+ * intercalem, com uma nica resposta. Enviado com
+ * {@link ClienteJackut#executarEmPipeline(Lote)}, cada comando segue como um
+ * pedido independente, sem esperar pelas respostas dos anteriores.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Lote {
+    private final List<List<String>> comandos = new ArrayList<>();
+    private boolean pararNoErro;
+
+    /**
+     * Acrescenta um comando ao lote.
+     *
+     * @param operacao   nome do mtodo da fachada
+     * @param argumentos argumentos do mtodo; so enviados em texto
+     * @return o prprio lote
+     */
+    public Lote adicionar(String operacao, Object... argumentos) {
+        List<String> campos = new ArrayList<>(argumentos.length + 1);
+        campos.add(operacao);
+        for (Object argumento : argumentos) {
+            campos.add(argumento == null ? null : String.valueOf(argumento));
+        }
+        return adicionar(campos);
+    }
+
+    /**
+     * Acrescenta um comando j convertido em campos de texto.
+     *
+     * @param campos nome da operao seguido dos argumentos
+     * @return o prprio lote
+     */
+    Lote adicionar(List<String> campos) {
+        comandos.add(campos);
+        return this;
+    }
+
+    /**
+     * Interrompe a execuo do lote no primeiro comando que falhar; os comandos
+     * seguintes no so executados. S tem efeito em lotes atmicos.
+     *
+     * @param pararNoErro true para interromper no primeiro erro
+     * @return o prprio lote
+     */
+    public Lote setPararNoErro(boolean pararNoErro) {
+        this.pararNoErro = pararNoErro;
+        return this;
+    }
+
+    /**
+     * @return true se a execuo para no primeiro erro
+     */
+    public boolean isPararNoErro() { return pararNoErro; }
+
+    /**
+     * @return comandos do lote, em ordem
+     */
+    public List<List<String>> getComandos() {
+        return Collections.unmodifiableList(comandos);
+    }
+
+    /**
+     * @return quantidade de comandos
+     */
+    public int tamanho() { return comandos.size(); }
+}
@@ -0,0 +1,394 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificao dos quadros trocados entre cliente e servidor.
+ * <p>
+ * Todo quadro comea com um inteiro de 4 bytes (big-endian) com o tamanho do
+ * contedo que o segue. Textos so codificados como um inteiro com o nmero de
+ * bytes, ou -1 para null, seguido dos bytes em UTF-8. Um comando  um inteiro
+ * com o nmero de campos e os campos em texto: o primeiro  o nome da operao
+ * da {@link br.ufal.ic.p2.jackut.Facade} e os demais so seus argumentos.
+ * </p>
+ * <ul>
+ *   <li>Pedido: o byte {@link #COMANDO} seguido de um comando.</li>
+ *   <li>Pedido aps ficha: o byte {@link #COMANDO_APOS}, a verso (long) que o
+ *       servidor precisa ter alcanado antes de executar e o comando.</li>
+ *   <li>Lote: o byte {@link #LOTE}, um byte indicando se a execuo para no
+ *       primeiro erro, o nmero de comandos e os comandos.</li>
+ *   <li>Resposta: um byte de estado ({@link #OK} ou {@link #ERRO}), a verso do
+ *       estado do servidor (long) e um texto com o valor retornado ou a mensagem
+ *       de erro.</li>
+ *   <li>Resposta de lote: o nmero de respostas seguido das respostas, na ordem
+ *       dos comandos.</li>
+ * </ul>
+ * <p>
+ * Na conexo de replicao, o primrio envia o byte {@link #INSTANTANEA} com a
+ * sequncia (long) e o estado serializado, e depois quadros {@link #ENTRADA}
+ * (sequncia, instante, ID de sesso gerado e comando) e {@link #PULSO} (a
+ * sequncia atual, quando no h entradas). A rplica responde confirmando,
+ * com um long sem quadro, a ltima sequncia aplicada.
+ * </p>
+ * <p>
+ * Os pedidos de uma conexo so respondidos na ordem em que chegam, por isso o
+ * cliente pode enviar vrios pedidos antes de ler as respostas (pipeline).
+ * </p>
+ *
+ * @author Iury
+ * @version 1.2
+ */
+public final class Protocolo {
+    /** Tipo de pedido com um nico comando */
+    public static final byte COMANDO = 0;
+    /** Tipo de pedido com um lote de comandos */
+    public static final byte LOTE = 1;
+    /** Tipo de pedido com um comando a executar aps o servidor alcanar uma verso */
+    public static final byte COMANDO_APOS = 2;
+    /** Tipo de quadro de replicao com a cpia inicial do estado */
+    public static final byte INSTANTANEA = 10;
+    /** Tipo de quadro de replicao com uma entrada do dirio */
+    public static final byte ENTRADA = 11;
+    /** Tipo de quadro de replicao com a sequncia atual do primrio */
+    public static final byte PULSO = 12;
+    /** Estado de resposta de uma operao bem-sucedida */
+    public static final byte OK = 0;
+    /** Estado de resposta de uma operao que lanou exceo */
+    public static final byte ERRO = 1;
+    /** Tamanho mximo do contedo de um quadro, em bytes */
+    public static final int TAMANHO_MAXIMO = 16 * 1024 * 1024;
+
+    private Protocolo() {
+    }
+
+    /**
+     * Codifica um pedido em um quadro completo, j com o prefixo de tamanho.
+     *
+     * @param campos nome da operao seguido dos argumentos
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarPedido(List<String> campos) {
+        Quadro quadro = new Quadro();
+        quadro.escreverByte(COMANDO);
+        quadro.escreverComando(campos);
+        return quadro.concluir();
+    }
+
+    /**
+     * Codifica um pedido a executar somente aps o servidor alcanar uma verso.
+     *
+     * @param ficha  verso mnima do estado do servidor
+     * @param campos nome da operao seguido dos argumentos
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarPedidoApos(long ficha, List<String> campos) {
+        Quadro quadro = new Quadro();
+        quadro.escreverByte(COMANDO_APOS);
+        quadro.escreverLong(ficha);
+        quadro.escreverComando(campos);
+        return quadro.concluir();
+    }
+
+    /**
+     * Codifica um lote em um nico quadro, j com o prefixo de tamanho.
+     *
+     * @param lote comandos a enviar
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarLote(Lote lote) {
+        Quadro quadro = new Quadro();
+        quadro.escreverByte(LOTE);
+        quadro.escreverByte(lote.isPararNoErro() ? 1 : 0);
+        quadro.escreverInt(lote.tamanho());
+        for (List<String> comando : lote.getComandos()) {
+            quadro.escreverComando(comando);
+        }
+        return quadro.concluir();
+    }
+
+    /**
+     * L o tipo de um pedido ({@link #COMANDO} ou {@link #LOTE}).
+     *
+     * @param conteudo contedo do quadro, sem o prefixo de tamanho
+     * @return tipo do pedido
+     * @throws IllegalArgumentException se o contedo estiver vazio
+     */
+    public static byte lerTipo(ByteBuffer conteudo) {
+        if (!conteudo.hasRemaining()) throw new IllegalArgumentException("Pedido malformado.");
+        return conteudo.get();
+    }
+
+    /**
+     * L um inteiro longo (ficha de um pedido ou sequncia de um quadro de replicao).
+     *
+     * @param conteudo contedo do quadro posicionado no valor
+     * @return valor lido
+     * @throws IllegalArgumentException se o contedo estiver malformado
+     */
+    public static long lerLong(ByteBuffer conteudo) {
+        if (conteudo.remaining() < 8) throw new IllegalArgumentException("Quadro malformado.");
+        return conteudo.getLong();
+    }
+
+    /**
+     * Decodifica um pedido de comando nico, aps o byte de tipo.
+     *
+     * @param conteudo contedo do quadro posicionado aps o tipo
+     * @return nome da operao seguido dos argumentos
+     * @throws IllegalArgumentException se o contedo estiver malformado
+     */
+    public static List<String> decodificarPedido(ByteBuffer conteudo) {
+        try {
+            return lerComando(conteudo);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Pedido malformado.");
+        }
+    }
+
+    /**
+     * Decodifica um pedido de lote, aps o byte de tipo.
+     *
+     * @param conteudo contedo do quadro posicionado aps o tipo
+     * @return lote recebido
+     * @throws IllegalArgumentException se o contedo estiver malformado
+     */
+    public static Lote decodificarLote(ByteBuffer conteudo) {
+        try {
+            Lote lote = new Lote().setPararNoErro(conteudo.get() != 0);
+            int n = conteudo.getInt();
+            if (n < 0 || n > conteudo.remaining() / 4) {
+                throw new IllegalArgumentException("Pedido malformado.");
+            }
+            for (int i = 0; i < n; i++) {
+                lote.adicionar(lerComando(conteudo));
+            }
+            return lote;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Pedido malformado.");
+        }
+    }
+
+    /**
+     * Codifica uma resposta em um quadro completo, j com o prefixo de tamanho.
+     *
+     * @param resposta resposta da operao
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarResposta(Resposta resposta) {
+        Quadro quadro = new Quadro();
+        quadro.escreverResposta(resposta);
+        return quadro.concluir();
+    }
+
+    /**
+     * Codifica as respostas de um lote em um nico quadro.
+     *
+     * @param respostas respostas na ordem dos comandos
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarRespostas(List<Resposta> respostas) {
+        Quadro quadro = new Quadro();
+        quadro.escreverInt(respostas.size());
+        for (Resposta resposta : respostas) {
+            quadro.escreverResposta(resposta);
+        }
+        return quadro.concluir();
+    }
+
+    /**
+     * Codifica a cpia inicial do estado enviada a uma rplica.
+     *
+     * @param sequencia sequncia do dirio em que a cpia foi tirada
+     * @param estado    estado serializado
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarInstantanea(long sequencia, byte[] estado) {
+        Quadro quadro = new Quadro();
+        quadro.escreverByte(INSTANTANEA);
+        quadro.escreverLong(sequencia);
+        quadro.write(estado, 0, estado.length);
+        return quadro.concluir();
+    }
+
+    /**
+     * Codifica uma entrada do dirio.
+     *
+     * @param entrada entrada a enviar
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarEntrada(EntradaDiario entrada) {
+        Quadro quadro = new Quadro();
+        quadro.escreverByte(ENTRADA);
+        quadro.escreverLong(entrada.getSequencia());
+        quadro.escreverLong(entrada.getInstante());
+        quadro.escreverTexto(entrada.getSessaoGerada());
+        quadro.escreverComando(entrada.getComando());
+        return quadro.concluir();
+    }
+
+    /**
+     * Codifica um pulso com a sequncia atual do primrio.
+     *
+     * @param sequencia sequncia atual do dirio
+     * @return quadro pronto para envio
+     */
+    public static ByteBuffer codificarPulso(long sequencia) {
+        Quadro quadro = new Quadro();
+        quadro.escreverByte(PULSO);
+        quadro.escreverLong(sequencia);
+        return quadro.concluir();
+    }
+
+    /**
+     * Decodifica uma entrada do dirio, aps o byte de tipo.
+     *
+     * @param conteudo contedo do quadro posicionado aps o tipo
+     * @return entrada recebida
+     * @throws IllegalArgumentException se o contedo estiver malformado
+     */
+    public static EntradaDiario decodificarEntrada(ByteBuffer conteudo) {
+        try {
+            long sequencia = conteudo.getLong();
+            long instante = conteudo.getLong();
+            String sessao = lerTexto(conteudo);
+            return new EntradaDiario(sequencia, instante, sessao, lerComando(conteudo));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Quadro malformado.");
+        }
+    }
+
+    /**
+     * Decodifica o contedo de um quadro de resposta.
+     *
+     * @param conteudo contedo do quadro, sem o prefixo de tamanho
+     * @return resposta recebida
+     * @throws IllegalArgumentException se o contedo estiver malformado
+     */
+    public static Resposta decodificarResposta(ByteBuffer conteudo) {
+        try {
+            return lerResposta(conteudo);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Resposta malformada.");
+        }
+    }
+
+    /**
+     * Decodifica o contedo de um quadro de resposta de lote.
+     *
+     * @param conteudo contedo do quadro, sem o prefixo de tamanho
+     * @return respostas na ordem dos comandos
+     * @throws IllegalArgumentException se o contedo estiver malformado
+     */
+    public static List<Resposta> decodificarRespostas(ByteBuffer conteudo) {
+        try {
+            int n = conteudo.getInt();
+            if (n < 0 || n > conteudo.remaining() / 13) {
+                throw new IllegalArgumentException("Resposta malformada.");
+            }
+            List<Resposta> respostas = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                respostas.add(lerResposta(conteudo));
+            }
+            return respostas;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Resposta malformada.");
+        }
+    }
+
+    private static List<String> lerComando(ByteBuffer origem) {
+        int n = origem.getInt();
+        if (n < 1 || n > origem.remaining() / 4) {
+            throw new IllegalArgumentException("Pedido malformado.");
+        }
+        List<String> campos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            campos.add(lerTexto(origem));
+        }
+        return campos;
+    }
+
+    private static Resposta lerResposta(ByteBuffer origem) {
+        byte estado = origem.get();
+        long versao = origem.getLong();
+        String valor = lerTexto(origem);
+        return ((estado == OK) ? Resposta.ok(valor) : Resposta.erro(valor)).comVersao(versao);
+    }
+
+    private static String lerTexto(ByteBuffer origem) {
+        int tamanho = origem.getInt();
+        if (tamanho < 0) return null;
+        if (tamanho > origem.remaining()) throw new BufferUnderflowException();
+        String texto = new String(origem.array(), origem.arrayOffset() + origem.position(), tamanho, StandardCharsets.UTF_8);
+        origem.position(origem.position() + tamanho);
+        return texto;
+    }
+
+    /**
+     * Quadro em construo; reserva os 4 bytes do prefixo e os preenche ao concluir.
+     */
+    private static final class Quadro extends ByteArrayOutputStream {
+        private final DataOutputStream dados = new DataOutputStream(this);
+
+        private Quadro() {
+            super(64);
+            escreverInt(0);
+        }
+
+        private void escreverByte(int b) {
+            write(b);
+        }
+
+        private void escreverInt(int v) {
+            try {
+                dados.writeInt(v);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void escreverLong(long v) {
+            try {
+                dados.writeLong(v);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void escreverTexto(String texto) {
+            if (texto == null) {
+                escreverInt(-1);
+            } else {
+                byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+                escreverInt(b.length);
+                write(b, 0, b.length);
+            }
+        }
+
+        private void escreverComando(List<String> campos) {
+            escreverInt(campos.size());
+            for (String campo : campos) {
+                escreverTexto(campo);
+            }
+        }
+
+        private void escreverResposta(Resposta resposta) {
+            escreverByte(resposta.isSucesso() ? OK : ERRO);
+            escreverLong(resposta.getVersao());
+            escreverTexto(resposta.getValor());
+        }
+
+        private ByteBuffer concluir() {
+            ByteBuffer quadro = ByteBuffer.wrap(buf, 0, count);
+            quadro.putInt(0, count - 4);
+            return quadro;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lado primrio da replicao: envia o {@link Diario} s rplicas conectadas.
+ * <p>
+ * Cada rplica que se conecta recebe uma cpia do estado tirada pelo
+ * {@link Despachante} e, a partir da mesma sequncia, todas as entradas do
+ * dirio, em ordem. Quando no h entradas por {@value #PULSO_MS} ms, segue um
+ * pulso com a sequncia atual, para a rplica saber o quanto est atrasada. A
+ * rplica confirma a ltima sequncia aplicada, o que permite medir o atraso de
+ * cada uma no primrio. O envio  assncrono: uma escrita no espera rplica alguma.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class PublicadorDiario implements AutoCloseable {
+    private static final long PULSO_MS = 100;
+
+    private final Despachante despachante;
+    private final Diario diario;
+    private final ServerSocket servidor;
+    private final List<Seguidor> seguidores = new CopyOnWriteArrayList<>();
+    private volatile boolean ativo = true;
+
+    /**
+     * Ativa o dirio do despachante e abre a porta de replicao.
+     *
+     * @param despachante despachante do primrio
+     * @param porta       porta TCP; zero escolhe uma porta livre
+     * @throws IOException se a porta no puder ser aberta
+     */
+    public PublicadorDiario(Despachante despachante, int porta) throws IOException {
+        this.despachante = despachante;
+        this.diario = despachante.ativarDiario();
+        this.servidor = new ServerSocket();
+        servidor.bind(new InetSocketAddress(porta));
+        iniciarThread("jackut-publicador", this::aceitar);
+    }
+
+    /**
+     * @return porta de replicao efetivamente usada
+     */
+    public int getPorta() {
+        return servidor.getLocalPort();
+    }
+
+    /**
+     * @return nmero de rplicas conectadas
+     */
+    public int getReplicas() {
+        return seguidores.size();
+    }
+
+    /**
+     * @return maior diferena entre a sequncia do dirio e a ltima confirmada
+     *         por uma rplica, ou zero sem rplicas
+     */
+    public long getAtrasoMaximo() {
+        long atual = diario.getSequencia();
+        long atraso = 0;
+        for (Seguidor s : seguidores) {
+            atraso = Math.max(atraso, atual - s.confirmada);
+        }
+        return atraso;
+    }
+
+    /**
+     * Fecha a porta de replicao e desconecta as rplicas.
+     */
+    @Override
+    public void close() {
+        ativo = false;
+        try {
+            servidor.close();
+        } catch (IOException e) {
+            // j encerrando
+        }
+        for (Seguidor s : seguidores) {
+            s.encerrar();
+        }
+    }
+
+    private void aceitar() {
+        while (ativo) {
+            try {
+                Seguidor seguidor = new Seguidor(servidor.accept());
+                seguidores.add(seguidor);
+                iniciarThread("jackut-replicacao", seguidor::enviar);
+                iniciarThread("jackut-confirmacoes", seguidor::receberConfirmacoes);
+            } catch (IOException e) {
+                if (ativo) System.err.println("Falha ao aceitar rplica: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void iniciarThread(String nome, Runnable tarefa) {
+        Thread t = new Thread(tarefa, nome);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Conexo com uma rplica.
+     */
+    private class Seguidor {
+        private final Socket socket;
+        private final BlockingQueue<EntradaDiario> fila = new LinkedBlockingQueue<>();
+        private volatile long confirmada;
+
+        Seguidor(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+        }
+
+        void enviar() {
+            try (OutputStream saida = new BufferedOutputStream(socket.getOutputStream())) {
+                ByteArrayOutputStream estado = new ByteArrayOutputStream();
+                long sequencia = despachante.instantanea(estado, fila);
+                confirmada = sequencia;
+                escrever(saida, Protocolo.codificarInstantanea(sequencia, estado.toByteArray()));
+                saida.flush();
+                while (ativo) {
+                    EntradaDiario entrada = fila.poll(PULSO_MS, TimeUnit.MILLISECONDS);
+                    if (entrada == null) {
+                        escrever(saida, Protocolo.codificarPulso(diario.getSequencia()));
+                    }
+                    for (; entrada != null; entrada = fila.poll()) {
+                        escrever(saida, Protocolo.codificarEntrada(entrada));
+                    }
+                    saida.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                // rplica desconectada
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                encerrar();
+            }
+        }
+
+        void receberConfirmacoes() {
+            try {
+                DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (ativo) {
+                    confirmada = entrada.readLong();
+                }
+            } catch (IOException e) {
+                encerrar();
+            }
+        }
+
+        void encerrar() {
+            diario.cancelar(fila);
+            seguidores.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // j desconectada
+            }
+        }
+
+        private void escrever(OutputStream saida, ByteBuffer quadro) throws IOException {
+            saida.write(quadro.array(), quadro.arrayOffset(), quadro.limit());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.Facade;
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Rplica somente leitura de um primrio que publica o seu {@link Diario}.
+ * <p>
+ * Ao se conectar, a rplica substitui o estado da sua fachada pela cpia
+ * enviada pelo {@link PublicadorDiario} e, em segundo plano, reaplica as
+ * entradas do dirio na ordem recebida, com os instantes e IDs de sesso
+ * registrados pelo primrio. O despachante da rplica atende consultas (por
+ * exemplo, por um {@link ServidorJackut} prprio) e recusa escritas, que devem ir
+ * ao primrio.
+ * </p>
+ * <p>
+ * A rplica fica um pouco atrs do primrio. Um cliente que precisa ler o que
+ * acabou de escrever passa a verso da resposta da escrita a
+ * {@link ClienteJackut#executarApos}, e a rplica s responde aps aplic-la.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Replica implements AutoCloseable {
+    private final Despachante despachante;
+    private final Socket socket;
+    private final DataInputStream entrada;
+    private final DataOutputStream confirmacoes;
+    private volatile long conhecida;
+    private volatile boolean ativa = true;
+
+    /**
+     * Conecta-se ao publicador do primrio, carrega a cpia do estado e comea a
+     * aplicar o dirio em segundo plano.
+     *
+     * @param facade fachada da rplica; o estado atual dela  descartado
+     * @param host   endereo do primrio
+     * @param porta  porta de replicao do primrio
+     * @throws IOException se a conexo falhar ou a cpia do estado for invlida
+     */
+    public Replica(Facade facade, String host, int porta) throws IOException {
+        despachante = new Despachante(facade);
+        despachante.setReplica();
+        socket = new Socket(host, porta);
+        socket.setTcpNoDelay(true);
+        entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        confirmacoes = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        ByteBuffer copia = ByteBuffer.wrap(lerQuadro());
+        try {
+            if (Protocolo.lerTipo(copia) != Protocolo.INSTANTANEA) {
+                throw new IOException("Cpia do estado no recebida.");
+            }
+            conhecida = Protocolo.lerLong(copia);
+            despachante.importar(new ByteArrayInputStream(copia.array(), copia.position(), copia.remaining()),
+                    conhecida);
+        } catch (RuntimeException e) {
+            socket.close();
+            throw new IOException("Cpia do estado invlida: " + e.getMessage());
+        }
+        Thread aplicador = new Thread(this::aplicar, "jackut-replica");
+        aplicador.setDaemon(true);
+        aplicador.start();
+    }
+
+    /**
+     * @return despachante que atende as consultas da rplica
+     */
+    public Despachante getDespachante() {
+        return despachante;
+    }
+
+    /**
+     * @return quantas entradas do dirio conhecidas ainda no foram aplicadas
+     */
+    public long getAtraso() {
+        return Math.max(0, conhecida - despachante.getAplicada());
+    }
+
+    /**
+     * @return true enquanto a conexo com o primrio estiver aberta
+     */
+    public boolean isAtiva() {
+        return ativa;
+    }
+
+    /**
+     * Desconecta-se do primrio; o estado j aplicado continua disponvel.
+     */
+    @Override
+    public void close() {
+        ativa = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // j desconectada
+        }
+    }
+
+    private void aplicar() {
+        try {
+            while (ativa) {
+                ByteBuffer quadro = ByteBuffer.wrap(lerQuadro());
+                byte tipo = Protocolo.lerTipo(quadro);
+                if (tipo == Protocolo.ENTRADA) {
+                    EntradaDiario e = Protocolo.decodificarEntrada(quadro);
+                    conhecida = Math.max(conhecida, e.getSequencia());
+                    despachante.aplicar(e);
+                } else if (tipo == Protocolo.PULSO) {
+                    conhecida = Math.max(conhecida, Protocolo.lerLong(quadro));
+                }
+                if (entrada.available() == 0) {
+                    confirmacoes.writeLong(despachante.getAplicada());
+                    confirmacoes.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (ativa) System.err.println("Replicao interrompida: " + e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    private byte[] lerQuadro() throws IOException {
+        int tamanho = entrada.readInt();
+        if (tamanho < 0) throw new IOException("Quadro de replicao invlido.");
+        byte[] conteudo = new byte[tamanho];
+        entrada.readFully(conteudo);
+        return conteudo;
+    }
+}
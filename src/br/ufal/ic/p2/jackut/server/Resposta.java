@@ -0,0 +1,71 @@
+package br.ufal.ic.p2.jackut.server;
+
+/**
+ * Resultado de uma operao executada pelo servidor: um valor, em caso de
+ * sucesso, ou a mensagem da exceo lanada.
+ * <p>
+ * A resposta tambm informa a verso do estado do servidor aps a operao,
+ * isto , a sequncia do {@link Diario} do primrio ou a ltima entrada aplicada
+ * por uma rplica. A verso de uma escrita no primrio serve como ficha para
+ * ler o prprio dado em uma rplica (ver {@link ClienteJackut#executarApos}).
+ * </p>
+ *
+ * @author Iury
+ * @version 1.1
+ */
+public class Resposta {
+    private final boolean sucesso;
+    private final String valor;
+    private final long versao;
+
+    private Resposta(boolean sucesso, String valor, long versao) {
+        this.sucesso = sucesso;
+        this.valor = valor;
+        this.versao = versao;
+    }
+
+    /**
+     * Cria uma resposta de sucesso.
+     *
+     * @param valor valor retornado, em texto, ou null para operaes sem retorno
+     * @return resposta de sucesso
+     */
+    public static Resposta ok(String valor) {
+        return new Resposta(true, valor, 0);
+    }
+
+    /**
+     * Cria uma resposta de erro.
+     *
+     * @param mensagem mensagem da exceo
+     * @return resposta de erro
+     */
+    public static Resposta erro(String mensagem) {
+        return new Resposta(false, mensagem, 0);
+    }
+
+    /**
+     * Retorna uma cpia desta resposta com a verso do estado informada.
+     *
+     * @param versao verso do estado do servidor
+     * @return nova resposta
+     */
+    public Resposta comVersao(long versao) {
+        return new Resposta(sucesso, valor, versao);
+    }
+
+    /**
+     * @return true se a operao terminou sem exceo
+     */
+    public boolean isSucesso() { return sucesso; }
+
+    /**
+     * @return valor retornado ou mensagem de erro
+     */
+    public String getValor() { return valor; }
+
+    /**
+     * @return verso do estado do servidor aps a operao
+     */
+    public long getVersao() { return versao; }
+}
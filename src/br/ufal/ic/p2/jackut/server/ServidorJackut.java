@@ -0,0 +1,263 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.metricas.RegistroMetricas;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+/**
+ * Servidor de rede do Jackut.
+ * <p>
+ * Uma nica thread atende todos os canais com um {@link Selector} no
+ * bloqueante: aceita conexes, l os quadros do {@link Protocolo} e escreve as
+ * respostas. Cada pedido  executado em sua prpria thread virtual, quando a JVM
+ * as oferece, ou em um pool de threads comum nas verses anteriores. Pedidos de
+ * uma mesma conexo executam em ordem (ver {@link Conexao}), o que permite ao
+ * cliente envi-los em pipeline, e o acesso ao ncleo  coordenado pelo
+ * {@link Despachante}, que divide os usurios em parties com travas
+ * prprias. Um {@link Lote} chega em um nico quadro e recebe uma nica resposta.
+ * Uma conexo com pedidos ou respostas demais acumulados deixa de ser lida at
+ * esvaziar, para que um cliente rpido no cresa as filas sem limite.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class ServidorJackut implements AutoCloseable {
+    /** Porta usada quando nenhuma  informada na linha de comando */
+    public static final int PORTA_PADRAO = 7070;
+
+    private final Despachante despachante;
+    private final ExecutorService executor = criarExecutor();
+    private final Queue<Conexao> prontasParaEscrita = new ConcurrentLinkedQueue<>();
+    private Selector seletor;
+    private ServerSocketChannel servidor;
+    private Thread threadSeletor;
+    private volatile boolean ativo;
+
+    /**
+     * Cria um servidor para as operaes de uma fachada.
+     *
+     * @param facade fachada que executar as operaes
+     */
+    public ServidorJackut(Facade facade) {
+        this(facade, Despachante.PARTICOES_PADRAO);
+    }
+
+    /**
+     * Cria um servidor para as operaes de uma fachada.
+     *
+     * @param facade    fachada que executar as operaes
+     * @param particoes nmero de parties de usurios do {@link Despachante}
+     */
+    public ServidorJackut(Facade facade, int particoes) {
+        this(new Despachante(facade, particoes));
+    }
+
+    /**
+     * Cria um servidor que atende pelas operaes de um despachante j criado,
+     * como o de um primrio com dirio ativo ou o de uma {@link Replica}.
+     *
+     * @param despachante despachante que executar as operaes
+     */
+    public ServidorJackut(Despachante despachante) {
+        this.despachante = despachante;
+    }
+
+    /**
+     * Abre a porta e comea a atender clientes em segundo plano.
+     *
+     * @param porta porta TCP; zero escolhe uma porta livre
+     * @return porta efetivamente usada
+     * @throws IOException se a porta no puder ser aberta
+     */
+    public synchronized int iniciar(int porta) throws IOException {
+        seletor = Selector.open();
+        servidor = ServerSocketChannel.open();
+        servidor.bind(new InetSocketAddress(porta));
+        servidor.configureBlocking(false);
+        servidor.register(seletor, SelectionKey.OP_ACCEPT);
+        ativo = true;
+        threadSeletor = new Thread(this::atender, "jackut-seletor");
+        threadSeletor.start();
+        return ((InetSocketAddress) servidor.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Para de aceitar clientes, fecha as conexes abertas e aguarda os pedidos em execuo.
+     */
+    @Override
+    public synchronized void close() {
+        if (!ativo) return;
+        ativo = false;
+        seletor.wakeup();
+        try {
+            threadSeletor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void atender() {
+        try {
+            while (ativo) {
+                seletor.select();
+                registrarEscritas();
+                Iterator<SelectionKey> it = seletor.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey chave = it.next();
+                    it.remove();
+                    if (!chave.isValid()) continue;
+                    if (chave.isAcceptable()) {
+                        aceitar();
+                    } else {
+                        tratar(chave);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Servidor Jackut interrompido: " + e.getMessage());
+        } finally {
+            for (SelectionKey chave : seletor.keys()) {
+                if (chave.attachment() instanceof Conexao) ((Conexao) chave.attachment()).fechar();
+            }
+            try {
+                servidor.close();
+                seletor.close();
+            } catch (IOException e) {
+                // j encerrando
+            }
+        }
+    }
+
+    private void aceitar() throws IOException {
+        SocketChannel canal = servidor.accept();
+        if (canal == null) return;
+        canal.configureBlocking(false);
+        canal.socket().setTcpNoDelay(true);
+        SelectionKey chave = canal.register(seletor, SelectionKey.OP_READ);
+        chave.attach(new Conexao(canal, chave));
+    }
+
+    private void tratar(SelectionKey chave) {
+        Conexao conexao = (Conexao) chave.attachment();
+        try {
+            if (chave.isReadable()) {
+                int quadros = conexao.ler();
+                if (quadros < 0) {
+                    conexao.fechar();
+                    return;
+                }
+                if (quadros > 0) {
+                    conexao.agendar(executor, this::responder, () -> solicitarEscrita(conexao));
+                }
+            }
+            if (chave.isValid() && chave.isWritable() && conexao.escrever()) {
+                chave.interestOps(chave.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            conexao.ajustarLeitura();
+        } catch (IOException | CancelledKeyException e) {
+            conexao.fechar();
+        }
+    }
+
+    /**
+     * Executa um pedido ou lote e produz o quadro de resposta. Roda fora da
+     * thread do seletor.
+     */
+    private ByteBuffer responder(ByteBuffer pedido) {
+        boolean lote = false;
+        try {
+            byte tipo = Protocolo.lerTipo(pedido);
+            lote = tipo == Protocolo.LOTE;
+            if (lote) {
+                return Protocolo.codificarRespostas(despachante.executarLote(Protocolo.decodificarLote(pedido)));
+            }
+            if (tipo == Protocolo.COMANDO_APOS) {
+                long ficha = Protocolo.lerLong(pedido);
+                return Protocolo.codificarResposta(despachante.executarApos(ficha, Protocolo.decodificarPedido(pedido)));
+            }
+            return Protocolo.codificarResposta(despachante.executar(Protocolo.decodificarPedido(pedido)));
+        } catch (RuntimeException e) {
+            Resposta erro = Resposta.erro(e.getMessage());
+            return lote ? Protocolo.codificarRespostas(List.of(erro)) : Protocolo.codificarResposta(erro);
+        }
+    }
+
+    private void solicitarEscrita(Conexao conexao) {
+        prontasParaEscrita.add(conexao);
+        seletor.wakeup();
+    }
+
+    /**
+     * Ativa o interesse de escrita das conexes com respostas pendentes e
+     * reavalia a leitura delas, que pode ter sido suspensa enquanto havia
+     * pedidos demais na fila. Roda na thread do seletor, a nica que altera os
+     * interesses das chaves.
+     */
+    private void registrarEscritas() {
+        for (Conexao c = prontasParaEscrita.poll(); c != null; c = prontasParaEscrita.poll()) {
+            SelectionKey chave = c.getChave();
+            if (!c.isFechada() && chave.isValid()) {
+                chave.interestOps(chave.interestOps() | SelectionKey.OP_WRITE);
+                c.ajustarLeitura();
+            }
+        }
+    }
+
+    /**
+     * Cria um executor com uma thread virtual por tarefa quando disponvel
+     * (Java 21 ou superior); caso contrrio, usa um pool de threads comum.
+     */
+    private static ExecutorService criarExecutor() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(tarefa -> {
+                Thread t = new Thread(tarefa, "jackut-pedido");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Inicia um servidor sobre a fachada padro, que carrega o estado salvo em disco, e
+     * publica as suas mtricas por JMX em {@value RegistroMetricas#NOME_JMX}.
+     *
+     * @param args porta opcional (padro {@value #PORTA_PADRAO}) e nmero de
+     *             parties opcional (padro {@value Despachante#PARTICOES_PADRAO})
+     * @throws IOException se a porta no puder ser aberta
+     */
+    public static void main(String[] args) throws IOException {
+        int porta = (args.length > 0) ? Integer.parseInt(args[0]) : PORTA_PADRAO;
+        int particoes = (args.length > 1) ? Integer.parseInt(args[1]) : Despachante.PARTICOES_PADRAO;
+        Despachante despachante = new Despachante(new Facade(), particoes);
+        try {
+            despachante.publicarMetricas(RegistroMetricas.NOME_JMX);
+        } catch (JMException e) {
+            System.err.println("Mtricas no publicadas por JMX: " + e.getMessage());
+        }
+        ServidorJackut servidor = new ServidorJackut(despachante);
+        Runtime.getRuntime().addShutdownHook(new Thread(servidor::close));
+        System.out.println("Servidor Jackut na porta " + servidor.iniciar(porta));
+    }
+}
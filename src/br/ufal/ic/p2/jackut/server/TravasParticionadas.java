@@ -0,0 +1,145 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Domnio de travas do ncleo dividido em parties por login.
+ * <p>
+ * Cada login pertence a uma partio, escolhida pelo hash do login, e cada
+ * partio tem sua prpria trava de leitura e escrita. Operaes que envolvem
+ * apenas alguns usurios travam s as parties deles, e assim operaes sobre
+ * usurios de parties diferentes executam em paralelo. Uma trava global
+ * protege o que  compartilhado por todos (mapas de usurios e comunidades,
+ * rankings, ndices): as operaes por partio a tomam para leitura e as
+ * operaes globais a tomam para escrita, excluindo todas as demais.
+ * </p>
+ * <p>
+ * Para evitar impasses, a trava global  sempre adquirida primeiro e as
+ * parties em ordem crescente de ndice. Uma operao que envolve usurios de
+ * duas parties, como uma amizade, trava ambas antes de comear e por isso 
+ * atmica sem precisar de um protocolo de confirmao em duas fases.
+ * </p>
+ * <p>
+ * As travas so escolhidas por {@link #selecionarTudo()} ou
+ * {@link #selecionarParticoes(int[], boolean)} e s ficam adquiridas durante
+ * {@link Selecao#comTravas(Supplier)}, que as libera ao final mesmo em caso de
+ * exceo.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+class TravasParticionadas {
+    private final ReentrantReadWriteLock global = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock[] particoes;
+
+    /**
+     * Cria o domnio de travas.
+     *
+     * @param quantidade nmero de parties (maior que zero)
+     */
+    TravasParticionadas(int quantidade) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Nmero de parties deve ser positivo.");
+        }
+        particoes = new ReentrantReadWriteLock[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            particoes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * @return nmero de parties
+     */
+    int quantidade() {
+        return particoes.length;
+    }
+
+    /**
+     * Retorna a partio de um login.
+     *
+     * @param login login do usurio
+     * @return ndice da partio
+     */
+    int particao(String login) {
+        int h = login.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), particoes.length);
+    }
+
+    /**
+     * Seleciona a trava global para escrita, que exclui todas as outras operaes.
+     *
+     * @return travas selecionadas, adquiridas por {@link Selecao#comTravas(Supplier)}
+     */
+    Selecao selecionarTudo() {
+        return new Selecao(new Lock[]{global.writeLock()});
+    }
+
+    /**
+     * Seleciona a trava global para leitura e as parties indicadas.
+     *
+     * @param indices parties a travar, em qualquer ordem; repeties so ignoradas
+     * @param escrita true para travar as parties para escrita
+     * @return travas selecionadas, adquiridas por {@link Selecao#comTravas(Supplier)}
+     */
+    Selecao selecionarParticoes(int[] indices, boolean escrita) {
+        Arrays.sort(indices);
+        Lock[] travas = new Lock[indices.length + 1];
+        travas[0] = global.readLock();
+        int n = 1;
+        for (int i = 0; i < indices.length; i++) {
+            if (i > 0 && indices[i] == indices[i - 1]) continue;
+            ReentrantReadWriteLock trava = particoes[indices[i]];
+            travas[n++] = escrita ? trava.writeLock() : trava.readLock();
+        }
+        return new Selecao(Arrays.copyOf(travas, n));
+    }
+
+    /**
+     * Conjunto de travas em ordem de aquisio, adquiridas apenas durante uma ao.
+     */
+    static final class Selecao {
+        private final Lock[] travas;
+
+        private Selecao(Lock[] travas) {
+            this.travas = travas;
+        }
+
+        /**
+         * Adquire as travas em ordem, executa a ao e as libera em ordem inversa.
+         *
+         * @param acao ao a executar com as travas
+         * @param <T>  tipo do resultado
+         * @return resultado da ao
+         */
+        <T> T comTravas(Supplier<T> acao) {
+            int adquiridas = 0;
+            try {
+                for (Lock trava : travas) {
+                    trava.lock();
+                    adquiridas++;
+                }
+                return acao.get();
+            } finally {
+                for (int i = adquiridas - 1; i >= 0; i--) {
+                    travas[i].unlock();
+                }
+            }
+        }
+
+        /**
+         * Adquire as travas em ordem, executa a ao e as libera em ordem inversa.
+         *
+         * @param acao ao a executar com as travas
+         */
+        void comTravas(Runnable acao) {
+            comTravas(() -> {
+                acao.run();
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Servidor de rede do Jackut, que expe as operaes da {@link br.ufal.ic.p2.jackut.Facade}
+ * a clientes remotos por um protocolo binrio com quadros prefixados pelo tamanho.
+ *
+ * <p>Inclui o servidor NIO, o despachante das operaes, o cliente de loopback, a replicao
+ * por dirio de escritas e os testes de carga e de replicao.</p>
+ */
+package br.ufal.ic.p2.jackut.server;
@@ -0,0 +1,239 @@
+package br.ufal.ic.p2.jackut.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Armazm em disco dos usurios que no cabem na memria, indexado por login.
+ * <p>
+ * Os registros so bytes opacos (o usurio serializado) acrescentados ao fim de
+ * um arquivo temporrio; s o ndice, com a posio e o tamanho de cada
+ * registro, fica em memria. Regravar um login deixa o registro anterior como
+ * espao perdido, e o arquivo  reescrito s com os registros vivos quando o
+ * espao perdido passa da metade. O arquivo  apenas uma extenso da memria:
+ *  apagado ao fechar o armazm ou ao encerrar a JVM, e o estado durvel
+ * continua sendo o gravado pelo sistema.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ * @see GerenciadorUsuarios
+ */
+public class ArmazemUsuarios implements Closeable {
+    private static final long COMPACTACAO_MINIMA = 1 << 20; // bytes perdidos antes de considerar reescrever
+
+    private Path arquivo;
+    private FileChannel canal;
+    private final Map<String, Registro> indice = new HashMap<>();
+    private long fim;
+    private long perdido;
+
+    /**
+     * Posio de um registro no arquivo, quantos recados o usurio guardava ao ser
+     * gravado e a verso das lpides contra a qual sua caixa estava compactada
+     */
+    private static final class Registro {
+        private final String login;
+        private final long posicao;
+        private final int tamanho;
+        private final int recados;
+        private final int versaoLapides;
+
+        private Registro(String login, long posicao, int tamanho, int recados, int versaoLapides) {
+            this.login = login;
+            this.posicao = posicao;
+            this.tamanho = tamanho;
+            this.recados = recados;
+            this.versaoLapides = versaoLapides;
+        }
+    }
+
+    /**
+     * Cria um armazm vazio em um arquivo temporrio.
+     *
+     * @throws IOException se o arquivo no puder ser criado
+     */
+    public ArmazemUsuarios() throws IOException {
+        abrir();
+    }
+
+    private void abrir() throws IOException {
+        arquivo = Files.createTempFile("jackut-usuarios", ".dat");
+        arquivo.toFile().deleteOnExit();
+        canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Grava (ou regrava) o registro de um usurio.
+     *
+     * @param login   login do usurio
+     * @param bytes   usurio serializado
+     * @param recados quantos recados o usurio guarda, para os medidores
+     * @param versaoLapides verso das lpides contra a qual a caixa do usurio est compactada
+     * @throws IOException se a escrita falhar
+     */
+    public void gravar(String login, byte[] bytes, int recados, int versaoLapides) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long posicao = fim;
+        while (buffer.hasRemaining()) {
+            canal.write(buffer, posicao + buffer.position());
+        }
+        fim += bytes.length;
+        descontar(indice.put(login, new Registro(login, posicao, bytes.length, recados, versaoLapides)));
+        if (perdido > COMPACTACAO_MINIMA && perdido > fim / 2) {
+            compactar();
+        }
+    }
+
+    /**
+     * L o registro de um usurio.
+     *
+     * @param login login do usurio
+     * @return usurio serializado, ou null se no houver registro
+     * @throws IOException se a leitura falhar
+     */
+    public byte[] ler(String login) throws IOException {
+        Registro r = indice.get(login);
+        return (r == null) ? null : ler(canal, r);
+    }
+
+    /**
+     * Descarta o registro de um usurio.
+     *
+     * @param login login do usurio
+     * @return true se havia registro
+     */
+    public boolean remover(String login) {
+        Registro r = indice.remove(login);
+        descontar(r);
+        return r != null;
+    }
+
+    private void descontar(Registro anterior) {
+        if (anterior != null) perdido += anterior.tamanho;
+    }
+
+    /**
+     * @param login login do usurio
+     * @return true se houver registro do usurio
+     */
+    public boolean contem(String login) {
+        return indice.containsKey(login);
+    }
+
+    /**
+     * @return logins com registro, em uma cpia que pode ser percorrida enquanto o armazm muda
+     */
+    public List<String> getLogins() {
+        return new ArrayList<>(indice.keySet());
+    }
+
+    /**
+     * Lista os registros gravados com a caixa compactada contra outra verso das
+     * lpides, os nicos que uma compactao precisa ler.
+     *
+     * @param versaoLapides verso atual das lpides
+     * @return logins desses registros, em uma cpia
+     */
+    public List<String> getLoginsDesatualizados(int versaoLapides) {
+        List<String> logins = new ArrayList<>();
+        for (Registro r : indice.values()) {
+            if (r.versaoLapides != versaoLapides) logins.add(r.login);
+        }
+        return logins;
+    }
+
+    /**
+     * @return quantidade de registros
+     */
+    public int tamanho() {
+        return indice.size();
+    }
+
+    /**
+     * @param login login do usurio
+     * @return quantos recados o usurio guardava ao ser gravado, ou zero se no houver registro
+     */
+    public int getRecados(String login) {
+        Registro r = indice.get(login);
+        return (r == null) ? 0 : r.recados;
+    }
+
+    /**
+     * @param login login do usurio
+     * @return tamanho em bytes do registro do usurio, ou zero se no houver registro
+     */
+    public int getTamanho(String login) {
+        Registro r = indice.get(login);
+        return (r == null) ? 0 : r.tamanho;
+    }
+
+    /**
+     * @return tamanho atual do arquivo, incluindo registros substitudos
+     */
+    public long getBytes() {
+        return fim;
+    }
+
+    /**
+     * Descarta todos os registros.
+     *
+     * @throws IOException se o arquivo no puder ser truncado
+     */
+    public void limpar() throws IOException {
+        indice.clear();
+        canal.truncate(0);
+        fim = 0;
+        perdido = 0;
+    }
+
+    /**
+     * Reescreve o arquivo s com os registros vivos.
+     */
+    private void compactar() throws IOException {
+        FileChannel antigo = canal;
+        Path caminhoAntigo = arquivo;
+        List<Registro> vivos = new ArrayList<>(indice.values());
+        abrir();
+        fim = 0;
+        perdido = 0;
+        for (Registro r : vivos) {
+            ByteBuffer buffer = ByteBuffer.wrap(ler(antigo, r));
+            while (buffer.hasRemaining()) {
+                canal.write(buffer, fim + buffer.position());
+            }
+            indice.put(r.login, new Registro(r.login, fim, r.tamanho, r.recados, r.versaoLapides));
+            fim += r.tamanho;
+        }
+        antigo.close();
+        Files.deleteIfExists(caminhoAntigo);
+    }
+
+    private static byte[] ler(FileChannel canal, Registro r) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(r.tamanho);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, r.posicao + buffer.position()) < 0) {
+                throw new IOException("Registro truncado: " + r.login);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Fecha e apaga o arquivo.
+     *
+     * @throws IOException se o arquivo no puder ser apagado
+     */
+    @Override
+    public void close() throws IOException {
+        indice.clear();
+        canal.close();
+        Files.deleteIfExists(arquivo);
+    }
+}
@@ -0,0 +1,289 @@
+package br.ufal.ic.p2.jackut.services;
+
+import br.ufal.ic.p2.jackut.models.Community;
+import br.ufal.ic.p2.jackut.models.Notificacao;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gerencia as inscries de push de recados e mensagens de comunidade.
+ * <p>
+ * Cada sesso inscrita tem um canal com um {@link SubmissionPublisher}, que
+ * entrega as notificaes de forma assncrona e respeita a demanda e o buffer de
+ * cada assinante. Os canais ficam indexados pelo login do usurio da sesso, de
+ * modo que uma notificao chega a todas as sesses inscritas do destinatrio.
+ * A publicao nunca bloqueia quem envia: se o buffer de um assinante lento
+ * estiver cheio, a notificao  descartada para ele, j que o contedo continua
+ * disponvel na caixa do usurio.
+ * </p>
+ * <p>
+ * Um canal  descartado e fechado quando seu ltimo assinante cancela ou termina,
+ * ou quando as sesses do usurio so encerradas. Depois disso, novos assinantes
+ * do mesmo publicador recebem {@code onComplete} imediatamente e devem pedir outro
+ * com uma nova inscrio.
+ * </p>
+ * <p>
+ * As inscries existem apenas em memria e no fazem parte do estado persistido.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class GerenciadorAssinaturas {
+    private final Map<String, Map<String, Canal>> canais = new ConcurrentHashMap<>();
+    private final int capacidadeBuffer;
+
+    /**
+     * Cria o gerenciador com o buffer padro por assinante.
+     */
+    public GerenciadorAssinaturas() {
+        this(Flow.defaultBufferSize());
+    }
+
+    /**
+     * Cria o gerenciador com um buffer especfico por assinante.
+     *
+     * @param capacidadeBuffer mximo de notificaes pendentes por assinante
+     */
+    public GerenciadorAssinaturas(int capacidadeBuffer) {
+        this.capacidadeBuffer = capacidadeBuffer;
+    }
+
+    /**
+     * Retorna o publicador de notificaes de uma sesso, criando-o se necessrio.
+     *
+     * @param login  login do usurio da sesso
+     * @param sessao ID da sesso
+     * @return publicador ao qual os clientes podem se inscrever
+     */
+    public Flow.Publisher<Notificacao> assinar(String login, String sessao) {
+        Canal[] canal = new Canal[1];
+        canais.compute(login, (l, porSessao) -> {
+            if (porSessao == null) porSessao = new ConcurrentHashMap<>();
+            canal[0] = porSessao.computeIfAbsent(sessao, s -> new Canal(l, s));
+            return porSessao;
+        });
+        return canal[0];
+    }
+
+    /**
+     * Notifica a chegada de um recado ao destinatrio, se ele tiver assinantes.
+     *
+     * @param destinatario login do destinatrio
+     * @param remetente    login do remetente
+     * @param texto        contedo do recado
+     */
+    public void publicarRecado(String destinatario, String remetente, String texto) {
+        Map<String, Canal> porSessao = canais.get(destinatario);
+        if (porSessao != null) {
+            oferecer(porSessao, new Notificacao(Notificacao.Tipo.RECADO, remetente, texto));
+        }
+    }
+
+    /**
+     * Notifica os membros inscritos de uma comunidade sobre uma nova mensagem.
+     * Percorre o menor entre os membros e os usurios inscritos.
+     *
+     * @param comunidade comunidade que recebeu a mensagem
+     * @param texto      contedo da mensagem
+     * @return quantos membros inscritos receberam a notificao em ao menos um assinante
+     */
+    public int publicarMensagem(Community comunidade, String texto) {
+        if (canais.isEmpty()) return 0;
+        Notificacao notificacao = new Notificacao(Notificacao.Tipo.MENSAGEM, comunidade.getName(), texto);
+        List<String> membros = comunidade.getMembros();
+        int notificados = 0;
+        if (canais.size() <= membros.size()) {
+            for (Map.Entry<String, Map<String, Canal>> e : canais.entrySet()) {
+                if (comunidade.hasMember(e.getKey()) && oferecer(e.getValue(), notificacao)) {
+                    notificados++;
+                }
+            }
+        } else {
+            for (String membro : membros) {
+                Map<String, Canal> porSessao = canais.get(membro);
+                if (porSessao != null && oferecer(porSessao, notificacao)) {
+                    notificados++;
+                }
+            }
+        }
+        return notificados;
+    }
+
+    /**
+     * Encerra as inscries de todas as sesses de um usurio, sinalizando
+     * trmino aos assinantes.
+     *
+     * @param login login do usurio
+     */
+    public void encerrar(String login) {
+        Map<String, Canal> porSessao = canais.remove(login);
+        if (porSessao != null) porSessao.values().forEach(Canal::fechar);
+    }
+
+    /**
+     * Encerra todas as inscries.
+     */
+    public void zerar() {
+        for (String login : canais.keySet()) {
+            encerrar(login);
+        }
+    }
+
+    /**
+     * Retorna quantas sesses tm um canal aberto.
+     *
+     * @return nmero de canais
+     */
+    public int contarCanais() {
+        int total = 0;
+        for (Map<String, Canal> porSessao : canais.values()) {
+            total += porSessao.size();
+        }
+        return total;
+    }
+
+    /**
+     * Oferece a notificao aos canais das sesses de um usurio.
+     *
+     * @return true se ao menos um assinante a recebeu
+     */
+    private boolean oferecer(Map<String, Canal> porSessao, Notificacao notificacao) {
+        boolean entregue = false;
+        for (Canal canal : porSessao.values()) {
+            entregue |= canal.oferecer(notificacao);
+        }
+        return entregue;
+    }
+
+    /**
+     * Descarta o canal se o assinante que saiu era o ltimo. Roda dentro do
+     * {@code compute} do login para no concorrer com {@link #assinar}.
+     */
+    private void liberar(Canal canal) {
+        boolean[] vazio = new boolean[1];
+        canais.computeIfPresent(canal.login, (l, porSessao) -> {
+            if (canal.liberar()) {
+                porSessao.remove(canal.sessao, canal);
+                vazio[0] = true;
+            }
+            return porSessao.isEmpty() ? null : porSessao;
+        });
+        if (vazio[0]) canal.publicador.close();
+    }
+
+    /**
+     * Publicador de uma sesso, que conta os prprios assinantes.
+     */
+    private final class Canal implements Flow.Publisher<Notificacao> {
+        private final String login;
+        private final String sessao;
+        private final SubmissionPublisher<Notificacao> publicador =
+                new SubmissionPublisher<>(ForkJoinPool.commonPool(), capacidadeBuffer);
+        private int assinantes;
+        private boolean fechado;
+
+        private Canal(String login, String sessao) {
+            this.login = login;
+            this.sessao = sessao;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Notificacao> assinante) {
+            boolean contado;
+            synchronized (this) {
+                contado = !fechado;
+                if (contado) assinantes++;
+            }
+            publicador.subscribe(new Assinante(this, assinante, contado));
+        }
+
+        private boolean oferecer(Notificacao notificacao) {
+            int total = publicador.getNumberOfSubscribers();
+            if (total == 0) return false;
+            try {
+                int resultado = publicador.offer(notificacao, (assinante, descartada) -> false);
+                return resultado >= 0 || -resultado < total;
+            } catch (IllegalStateException e) {
+                return false; // fechado enquanto a notificao era distribuda
+            }
+        }
+
+        /**
+         * Conta a sada de um assinante.
+         *
+         * @return true se era o ltimo e o canal passou a estar fechado
+         */
+        private synchronized boolean liberar() {
+            assinantes--;
+            if (assinantes > 0 || fechado) return false;
+            fechado = true;
+            return true;
+        }
+
+        private void fechar() {
+            synchronized (this) {
+                fechado = true;
+            }
+            publicador.close();
+        }
+    }
+
+    /**
+     * Repassa os sinais ao assinante do cliente e avisa o canal, uma nica vez,
+     * quando ele cancela ou termina.
+     */
+    private final class Assinante implements Flow.Subscriber<Notificacao> {
+        private final Canal canal;
+        private final Flow.Subscriber<? super Notificacao> destino;
+        private final AtomicBoolean ativo;
+
+        private Assinante(Canal canal, Flow.Subscriber<? super Notificacao> destino, boolean contado) {
+            this.canal = canal;
+            this.destino = destino;
+            this.ativo = new AtomicBoolean(contado);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription assinatura) {
+            destino.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    assinatura.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    assinatura.cancel();
+                    sair();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(Notificacao notificacao) {
+            destino.onNext(notificacao);
+        }
+
+        @Override
+        public void onError(Throwable erro) {
+            sair();
+            destino.onError(erro);
+        }
+
+        @Override
+        public void onComplete() {
+            sair();
+            destino.onComplete();
+        }
+
+        private void sair() {
+            if (ativo.compareAndSet(true, false)) liberar(canal);
+        }
+    }
+}
@@ -3,9 +3,15 @@ package br.ufal.ic.p2.jackut.services;
 import br.ufal.ic.p2.jackut.services.GerenciadorUsuarios;
 import br.ufal.ic.p2.jackut.models.Usuario;
 import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.metricas.DistribuicaoMensagemJfr;
 import br.ufal.ic.p2.jackut.models.Community;
+import br.ufal.ic.p2.jackut.models.Mensagem;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.Clock;
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 /**
  * Controla a criao e gerenciamento de comunidades no sistema,
@@ -21,6 +27,12 @@ public class GerenciadorComunidades implements Serializable {
     private static final long serialVersionUID = 1L;
     private final Map<String, Community> comunidades = new HashMap<>();
     private final GerenciadorUsuarios usuarios; // Referncia ao gerenciador de usurios
+    private Ranking rankingComunidades = new Ranking(); // no final apenas para estados antigos
+    private IndicePrefixos indiceNomes = new IndicePrefixos(); // no final apenas para estados antigos
+    private long proximaSequencia; // ordem global das mensagens entre comunidades
+    private long retencao; // em milissegundos; zero desativa a reteno
+    private transient GerenciadorAssinaturas assinaturas;
+    private transient Clock relogio;
 
     /**
      * Constri o gerenciador de comunidades usando o gerenciador de usurios fornecido.
@@ -44,6 +56,8 @@ public class GerenciadorComunidades implements Serializable {
             throw new ComunidadeJaExisteException();
         }
         comunidades.put(nome, new Community(nome, descricao, dono));
+        indiceNomes.adicionar(nome);
+        rankingComunidades.incrementar(nome);
     }
 
     /**
@@ -56,6 +70,29 @@ public class GerenciadorComunidades implements Serializable {
     public void adicionarMembro(String nomeComunidade, String login) {
         Community comunidade = getComunidade(nomeComunidade);
         comunidade.addMember(login);
+        rankingComunidades.incrementar(nomeComunidade);
+    }
+
+    /**
+     * Lista as comunidades com mais membros, mantidas incrementalmente em {@link Ranking}.
+     *
+     * @param k quantidade mxima de comunidades
+     * @return string no formato "{comun1,comun2,...}" em ordem decrescente de membros
+     */
+    public String getTopComunidades(int k) {
+        return "{" + String.join(",", rankingComunidades.getTop(k)) + "}";
+    }
+
+    /**
+     * Sugere nomes de comunidades que comeam com um prefixo, usando o
+     * {@link IndicePrefixos} mantido na criao e remoo de comunidades.
+     *
+     * @param prefixo incio do nome, sem diferenciar maisculas
+     * @param k       quantidade mxima de sugestes
+     * @return string no formato "{comun1,comun2,...}" em ordem alfabtica
+     */
+    public String autocompletar(String prefixo, int k) {
+        return "{" + String.join(",", indiceNomes.buscar(prefixo, k)) + "}";
     }
 
     /**
@@ -71,6 +108,13 @@ public class GerenciadorComunidades implements Serializable {
         return c;
     }
 
+    /**
+     * @return viso no modificvel de todas as comunidades
+     */
+    public Collection<Community> getComunidades() {
+        return Collections.unmodifiableCollection(comunidades.values());
+    }
+
     /**
      * Obtm a descrio de uma comunidade.
      *
@@ -106,39 +150,226 @@ public class GerenciadorComunidades implements Serializable {
     }
 
     /**
-     * Envia uma mensagem textual a todos os membros de uma comunidade.
+     * Publica uma mensagem textual no registro de uma comunidade; cada membro
+     * atual a ler a partir do seu prprio cursor.
      *
      * @param nomeComunidade nome da comunidade
      * @param mensagem       texto da mensagem a ser entregue
      * @throws ComunidadeNaoEncontradaException se a comunidade no existir
      */
     public void enviarMensagem(String nomeComunidade, String mensagem) {
+        DistribuicaoMensagemJfr evento = new DistribuicaoMensagemJfr();
+        evento.begin();
         Community comunidade = getComunidade(nomeComunidade);
-        for (String membro : comunidade.getMembers()) {
-            Usuario usuario = usuarios.getUsuario(membro);
-            usuario.receberMensagem(mensagem);
+        aplicarRetencao(comunidade);
+        comunidade.publicar(new Mensagem(proximaSequencia++, mensagem, agora()));
+        int notificados = 0;
+        if (assinaturas != null) {
+            notificados = assinaturas.publicarMensagem(comunidade, mensagem);
+        }
+        if (evento.shouldCommit()) {
+            evento.comunidade = nomeComunidade;
+            evento.membros = comunidade.getMembros().size();
+            evento.notificados = notificados;
+            evento.retidas = comunidade.getMensagensRetidas();
+            evento.commit();
+        }
+    }
+
+    /**
+     * Lista as mensagens de uma comunidade publicadas em uma janela de tempo.
+     * A busca vai direto ao balde de tempo do incio da janela.
+     *
+     * @param nome nome da comunidade
+     * @param de   instante inicial, inclusive, em milissegundos
+     * @param ate  instante final, exclusive, em milissegundos
+     * @return string no formato "{msg1,msg2,...}"
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public String getHistorico(String nome, long de, long ate) {
+        Community comunidade = getComunidade(nome);
+        aplicarRetencao(comunidade);
+        List<String> textos = new ArrayList<>();
+        for (Mensagem m : comunidade.getHistorico(de, ate)) {
+            textos.add(m.toString());
+        }
+        return "{" + String.join(",", textos) + "}";
+    }
+
+    /**
+     * Define por quanto tempo as mensagens so guardadas. Com reteno ativa, o
+     * registro de cada comunidade mantm todo o histrico da janela, mesmo o j
+     * lido, e descarta de uma vez os baldes de tempo que expiram. Sem reteno,
+     * os baldes so descartados assim que lidos por todos os membros.
+     *
+     * @param retencao durao em milissegundos; zero desativa a reteno
+     */
+    public void setRetencao(long retencao) {
+        this.retencao = retencao;
+    }
+
+    /**
+     * Define o relgio usado para datar mensagens e aplicar a reteno.
+     *
+     * @param relogio relgio do sistema
+     */
+    public void setRelogio(Clock relogio) {
+        this.relogio = relogio;
+    }
+
+    private long agora() {
+        return (relogio == null) ? System.currentTimeMillis() : relogio.millis();
+    }
+
+    private void aplicarRetencao(Community comunidade) {
+        if (retencao > 0) {
+            comunidade.aplicarRetencao(agora() - retencao);
+        }
+    }
+
+    /**
+     * Define o gerenciador que recebe os avisos de mensagens publicadas.
+     *
+     * @param assinaturas gerenciador de inscries de push
+     */
+    public void setAssinaturas(GerenciadorAssinaturas assinaturas) {
+        this.assinaturas = assinaturas;
+    }
+
+    /**
+     * L a prxima mensagem de um usurio, intercalando os registros de todas
+     * as suas comunidades pela ordem global de publicao. Mensagens recebidas
+     * em estados antigos, antes dos registros por comunidade, vm primeiro.
+     *
+     * @param usuario usurio leitor
+     * @return texto da mensagem mais antiga ainda no lida
+     * @throws SemMensagensException se no houver mensagens em nenhuma comunidade
+     */
+    public String lerMensagem(Usuario usuario) {
+        String antiga = usuario.lerMensagemAntiga();
+        if (antiga != null) {
+            return antiga;
+        }
+        Mensagem proxima = consumirProxima(usuario);
+        if (proxima == null) {
+            throw new SemMensagensException();
+        }
+        return proxima.toString();
+    }
+
+    /**
+     * L de uma s vez at {@code max} mensagens de um usurio, na mesma ordem
+     * de {@link #lerMensagem(Usuario)}.
+     *
+     * @param usuario usurio leitor
+     * @param max     quantidade mxima de mensagens
+     * @return string no formato "{msg1,msg2,...}", vazia se no houver mensagens
+     */
+    public String lerMensagens(Usuario usuario, int max) {
+        List<String> lidas = new ArrayList<>();
+        String antiga;
+        while (lidas.size() < max && (antiga = usuario.lerMensagemAntiga()) != null) {
+            lidas.add(antiga);
+        }
+        Mensagem proxima;
+        while (lidas.size() < max && (proxima = consumirProxima(usuario)) != null) {
+            lidas.add(proxima.toString());
+        }
+        return "{" + String.join(",", lidas) + "}";
+    }
+
+    /**
+     * Conta as mensagens pendentes de um usurio em todas as suas comunidades.
+     *
+     * @param usuario usurio consultado
+     * @return quantidade de mensagens que ainda podem ser lidas
+     */
+    public long contarMensagens(Usuario usuario) {
+        long total = usuario.contarMensagensAntigas();
+        for (String nome : usuario.getComunidades()) {
+            Community c = comunidades.get(nome);
+            if (c == null) continue;
+            aplicarRetencao(c);
+            total += c.contarPendentes(usuario.getLogin());
+        }
+        return total;
+    }
+
+    /**
+     * Consome a mensagem mais antiga ainda no lida entre as comunidades do usurio.
+     *
+     * @param usuario usurio leitor
+     * @return mensagem consumida, ou null se no houver nenhuma
+     */
+    private Mensagem consumirProxima(Usuario usuario) {
+        Community origem = null;
+        Mensagem proxima = null;
+        for (String nome : usuario.getComunidades()) {
+            Community c = comunidades.get(nome);
+            if (c == null) continue;
+            aplicarRetencao(c);
+            Mensagem m = c.proximaMensagem(usuario.getLogin());
+            if (m != null && (proxima == null || m.getSequencia() < proxima.getSequencia())) {
+                origem = c;
+                proxima = m;
+            }
+        }
+        if (origem != null) {
+            origem.avancarCursor(usuario.getLogin(), retencao == 0);
         }
+        return proxima;
+    }
+
+    /**
+     * Obtm o atraso de entrega de uma comunidade, isto , o nmero de mensagens
+     * ainda no lidas pelo membro mais atrasado.
+     *
+     * @param nome nome da comunidade
+     * @return maior nmero de mensagens pendentes entre os membros
+     * @throws ComunidadeNaoEncontradaException se a comunidade no existir
+     */
+    public long getAtrasoEntrega(String nome) {
+        return getComunidade(nome).getAtrasoMaximo();
     }
 
     /**
      * Remove todas as comunidades pertencentes a um usurio e limpa sua participao nas demais.
      *
      * @param login login do usurio cujas comunidades devem ser removidas ou limpas
+     * @return quantas comunidades foram apagadas ou perderam o membro
      */
-    public void removerUsuarioDeTodasComunidades(String login) {
-        List<String> comunidadesParaDeletar = new ArrayList<>();
-        for (Map.Entry<String, Community> entry : comunidades.entrySet()) {
-            if (entry.getValue().getOwner().equals(login)) {
-                comunidadesParaDeletar.add(entry.getKey());
+    public int removerUsuarioDeTodasComunidades(String login) {
+        List<Community> comunidadesParaDeletar = new ArrayList<>();
+        for (Community c : comunidades.values()) {
+            if (c.getOwner().equals(login)) {
+                comunidadesParaDeletar.add(c);
             }
         }
-        for (String nomeComunidade : comunidadesParaDeletar) {
-            comunidades.remove(nomeComunidade);
+        for (Community c : comunidadesParaDeletar) {
+            comunidades.remove(c.getName());
+            rankingComunidades.remover(c.getName());
+            indiceNomes.remover(c.getName());
         }
+        int afetadas = comunidadesParaDeletar.size();
         for (Community c : comunidades.values()) {
-            c.getMembers().remove(login);
+            if (c.removeMember(login)) {
+                rankingComunidades.decrementar(c.getName());
+                afetadas++;
+            }
+        }
+        usuarios.removerComunidadesDosMembros(comunidadesParaDeletar);
+        return afetadas;
+    }
+
+    /**
+     * Troca os logins guardados pelas comunidades pelas instncias cannicas.
+     *
+     * @param canonico funo que devolve a instncia cannica de um login
+     */
+    public void canonicalizarLogins(UnaryOperator<String> canonico) {
+        for (Community c : comunidades.values()) {
+            c.canonicalizarLogins(canonico);
         }
-        usuarios.removerComunidadeDeTodosUsuarios(comunidadesParaDeletar);
     }
 
     /**
@@ -146,5 +377,30 @@ public class GerenciadorComunidades implements Serializable {
      */
     public void zerar() {
         comunidades.clear();
+        rankingComunidades.zerar();
+        indiceNomes.zerar();
+        proximaSequencia = 0;
+        retencao = 0;
+    }
+
+    /**
+     * Reconstri o ndice de nomes e o ranking de comunidades ao carregar um
+     * estado gravado antes deles. O ranking  refeito pelo nmero de membros de
+     * cada comunidade, com os empates em ordem de nome.
+     */
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        if (indiceNomes == null) {
+            indiceNomes = new IndicePrefixos();
+            comunidades.keySet().forEach(indiceNomes::adicionar);
+        }
+        if (rankingComunidades == null) {
+            rankingComunidades = new Ranking();
+            for (String nome : new TreeSet<>(comunidades.keySet())) {
+                for (int i = comunidades.get(nome).getMembros().size(); i > 0; i--) {
+                    rankingComunidades.incrementar(nome);
+                }
+            }
+        }
     }
 }
@@ -1,15 +1,19 @@
 package br.ufal.ic.p2.jackut.services;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * Gerencia as sesses de usurios no sistema, incluindo criao, consulta e encerramento.
  * <p>
  * Mantm o mapeamento entre identificadores de sesso (UUID) e logins de usurios
- * autenticados, permitindo validao de operaes restritas.
+ * autenticados, permitindo validao de operaes restritas. O mapa 
+ * concorrente, pois sesses de usurios diferentes podem ser abertas em paralelo
+ * pelo servidor de rede.
  * </p>
  *
  * @author Iury
@@ -18,7 +22,8 @@ import java.util.UUID;
  */
 public class GerenciadorSessoes implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final Map<String, String> sessoes = new HashMap<>();
+    private final Map<String, String> sessoes = new ConcurrentHashMap<>();
+    private transient Supplier<String> geradorIds; // null usa UUIDs aleatrios
 
     /**
      * Cria uma nova sesso para um usurio autenticado.
@@ -31,11 +36,30 @@ public class GerenciadorSessoes implements Serializable {
         if (login == null || login.isBlank()) {
             throw new IllegalArgumentException("Login invlido para criao de sesso");
         }
-        String id = UUID.randomUUID().toString();
+        String id = (geradorIds == null) ? UUID.randomUUID().toString() : geradorIds.get();
         sessoes.put(id, login);
         return id;
     }
 
+    /**
+     * Define a fonte dos IDs de novas sesses, permitindo reproduzir os mesmos
+     * IDs ao reaplicar operaes em outra instncia.
+     *
+     * @param geradorIds fornecedor de IDs nicos, ou null para UUIDs aleatrios
+     */
+    public void setGeradorIds(Supplier<String> geradorIds) {
+        this.geradorIds = geradorIds;
+    }
+
+    /**
+     * Troca os logins das sesses pelas instncias cannicas.
+     *
+     * @param canonico funo que devolve a instncia cannica de um login
+     */
+    public void canonicalizarLogins(UnaryOperator<String> canonico) {
+        sessoes.replaceAll((id, login) -> canonico.apply(login));
+    }
+
     /**
      * Recupera o login associado a uma sesso.
      *
@@ -46,6 +70,13 @@ public class GerenciadorSessoes implements Serializable {
         return sessoes.get(idSessao);
     }
 
+    /**
+     * @return nmero de sesses abertas
+     */
+    public int contarSessoes() {
+        return sessoes.size();
+    }
+
     /**
      * Encerra todas as sesses ativas, removendo todos os registros.
      */
@@ -1,9 +1,13 @@
 package br.ufal.ic.p2.jackut.services;
 
 import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.metricas.RelatorioMemoria;
 import br.ufal.ic.p2.jackut.models.*;
-import java.io.Serializable;
+import java.io.*;
+import java.time.Clock;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import br.ufal.ic.p2.jackut.models.Recado;
 
 /**
@@ -13,6 +17,26 @@ import br.ufal.ic.p2.jackut.models.Recado;
  * Responsvel por manter a integridade das relaes de amizade e convites entre usurios,
  * bem como novos tipos de relacionamento (f, paquera, inimigo).
  * </p>
+ * <p>
+ * Por padro todos os usurios ficam em memria. Com um limite definido por
+ * {@link #setLimiteEmMemoria(int)}, s os usurios usados mais recentemente
+ * ficam em memria; os demais vo para um {@link ArmazemUsuarios} em disco e so
+ * carregados de volta por {@link #getUsuario(String)} quando acessados. Ao sair
+ * da memria, um usurio s  regravado se mudou desde a ltima gravao. O
+ * despejo dos excedentes  entregue a um {@link Executor}: por padro executa na
+ * hora, o que basta para uso em uma thread; quem executa operaes em paralelo
+ * deve adi-lo para quando nenhuma operao estiver segurando usurios. Na
+ * gravao do estado, os usurios em disco so copiados para o mesmo fluxo, e
+ * na carga voltam para um armazm novo sem passar pela memria.
+ * </p>
+ * <p>
+ * O limite vale s para os objetos {@link Usuario}: perfil, relacionamentos e
+ * caixa de recados. O ndice de logins, o ranking de dolos, as lpides e o
+ * ndice do armazm continuam com uma entrada por usurio cadastrado, assim
+ * como, fora deste gerenciador, o fluxo de eventos e as projees de leitura.
+ * O heap, portanto, ainda cresce com o nmero de usurios; o que deixa de
+ * crescer  a parte de cada um que fica no objeto.
+ * </p>
  *
  * @author IuryNogueira
  * @version 1.0
@@ -20,7 +44,21 @@ import br.ufal.ic.p2.jackut.models.Recado;
  */
 public class GerenciadorUsuarios implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final Map<String, Usuario> usuarios = new HashMap<>();
+    /** Menor limite de usurios em memria: uma operao usa at dois usurios ao mesmo tempo */
+    public static final int MINIMO_EM_MEMORIA = 2;
+    private Map<String, Usuario> usuarios = new HashMap<>(); // com limite, em ordem do menos recente
+    private Ranking rankingIdolos = new Ranking(); // no final apenas para estados antigos
+    private IndicePrefixos indiceLogins = new IndicePrefixos(); // no final apenas para estados antigos
+    private Lapides lapides = new Lapides(); // no final apenas para estados antigos, gravados sem lpides
+    private int proximoId = Recado.ID_SISTEMA + 1;
+    private long retencao; // em milissegundos; zero desativa a reteno
+    private int limiteEmMemoria; // zero: todos os usurios ficam em memria
+    private boolean pretendentesRegistrados = true; // falso em estados gravados antes dos pretendentes
+    private transient ArmazemUsuarios armazem; // usurios fora da memria, se houver limite
+    private transient Executor agendadorDespejo;
+    private transient boolean despejoAgendado;
+    private transient GerenciadorAssinaturas assinaturas;
+    private transient Clock relogio;
 
     /**
      * Cria e armazena um novo usurio no sistema.
@@ -31,10 +69,43 @@ public class GerenciadorUsuarios implements Serializable {
      * @throws UsuarioJaExisteException se o login j estiver em uso
      */
     public void criarUsuario(String login, String senha, String nome) {
-        if (usuarios.containsKey(login)) {
+        if (usuarios.containsKey(login) || (armazem != null && armazem.contem(login))) {
             throw new UsuarioJaExisteException();
         }
-        usuarios.put(login, new Usuario(login, senha, nome));
+        admitir(new Usuario(proximoId++, login, senha, nome));
+        indiceLogins.adicionar(login);
+    }
+
+    /**
+     * Retorna a instncia cannica de um login: a guardada pelo prprio usurio.
+     * Todas as colees que guardam logins usam essa instncia, para que cada
+     * login exista uma nica vez na memria.
+     *
+     * @param login login em qualquer instncia
+     * @return a instncia cannica, ou o prprio login se no houver usurio com ele
+     */
+    public String canonico(String login) {
+        if (login == null) return null;
+        if (armazem != null) return canonicoNoIndice(login);
+        Usuario usuario = usuarios.get(login);
+        return (usuario == null) ? login : usuario.getLogin();
+    }
+
+    // com armazm, o ndice de logins responde sem mexer na ordem de uso dos usurios em memria
+    private synchronized String canonicoNoIndice(String login) {
+        String guardado = indiceLogins.instancia(login);
+        return (guardado == null) ? login : guardado;
+    }
+
+    /**
+     * Troca por instncias cannicas os logins guardados pelos usurios, por
+     * exemplo aps carregar um estado gravado antes da canonicalizao. Os
+     * usurios em disco j so canonicalizados ao serem carregados.
+     */
+    public void canonicalizarLogins() {
+        for (Usuario usuario : new ArrayList<>(usuarios.values())) {
+            usuario.canonicalizarLogins(this::canonico);
+        }
     }
 
     /**
@@ -45,11 +116,422 @@ public class GerenciadorUsuarios implements Serializable {
      * @throws UsuarioNaoEncontradoException se o usurio no existir
      */
     public Usuario getUsuario(String login) {
-        Usuario usuario = usuarios.get(login);
+        Usuario usuario = buscarUsuario(login);
         if (usuario == null) throw new UsuarioNaoEncontradoException();
         return usuario;
     }
 
+    /**
+     * Recupera um usurio pelo seu login sem lanar exceo, para os caminhos
+     * em que a ausncia  um resultado esperado (como um login recusado).
+     *
+     * @param login identificador do usurio
+     * @return instncia do usurio correspondente, ou null se no existir
+     */
+    public Usuario buscarUsuario(String login) {
+        return (armazem == null) ? usuarios.get(login) : buscar(login);
+    }
+
+    /**
+     * Busca um usurio na memria, marcando-o como o mais recente, ou o carrega do disco.
+     */
+    private synchronized Usuario buscar(String login) {
+        Usuario usuario = usuarios.get(login);
+        if (usuario == null && login != null && armazem.contem(login)) {
+            usuario = carregar(login);
+            admitir(usuario);
+        }
+        return usuario;
+    }
+
+    /**
+     * @return viso no modificvel dos usurios em memria; todos, se no houver limite
+     */
+    public Collection<Usuario> getUsuarios() {
+        return Collections.unmodifiableCollection(usuarios.values());
+    }
+
+    /**
+     * @return quantidade de usurios cadastrados, em memria ou em disco
+     */
+    public synchronized int contarUsuarios() {
+        int total = usuarios.size();
+        if (armazem != null) {
+            for (String login : armazem.getLogins()) {
+                if (!usuarios.containsKey(login)) total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return quantidade de usurios em memria
+     */
+    public synchronized int contarUsuariosEmMemoria() {
+        return usuarios.size();
+    }
+
+    /**
+     * Descreve os usurios que esto s em disco pelo tamanho do registro e pelos
+     * recados guardados quando foram gravados, sem carreg-los.
+     *
+     * @return um item por usurio fora da memria
+     */
+    public synchronized List<RelatorioMemoria.UsuarioEmDisco> getUsuariosEmDisco() {
+        List<RelatorioMemoria.UsuarioEmDisco> emDisco = new ArrayList<>();
+        if (armazem == null) return emDisco;
+        for (String login : armazem.getLogins()) {
+            if (!usuarios.containsKey(login)) {
+                emDisco.add(new RelatorioMemoria.UsuarioEmDisco(login, armazem.getTamanho(login),
+                        armazem.getRecados(login)));
+            }
+        }
+        return emDisco;
+    }
+
+    /**
+     * Conta os recados guardados nas caixas de todos os usurios, sem compact-las.
+     * Para os usurios em disco vale a contagem do momento em que foram gravados.
+     *
+     * @return total de recados guardados
+     */
+    public synchronized long contarRecadosArmazenados() {
+        long total = 0;
+        for (Usuario u : usuarios.values()) {
+            total += u.getRecadosArmazenados();
+        }
+        if (armazem != null) {
+            for (String login : armazem.getLogins()) {
+                if (!usuarios.containsKey(login)) total += armazem.getRecados(login);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Aplica uma ao a todos os usurios. Os que esto em disco so carregados
+     * um de cada vez, sem entrar na memria, e regravados se a ao os alterar.
+     * Deve ser chamado sem outras operaes em andamento.
+     *
+     * @param acao ao aplicada a cada usurio
+     */
+    public synchronized void paraCadaUsuario(Consumer<Usuario> acao) {
+        for (Usuario u : new ArrayList<>(usuarios.values())) {
+            acao.accept(u);
+        }
+        if (armazem == null) return;
+        for (String login : armazem.getLogins()) {
+            if (!usuarios.containsKey(login)) alterarEmDisco(login, acao);
+        }
+    }
+
+    /**
+     * Aplica uma ao a um nico usurio, em memria ou em disco; o que est em
+     * disco  tratado como em {@link #paraCadaUsuario(Consumer)}.
+     *
+     * @param login login do usurio
+     * @param acao  ao aplicada ao usurio, se ele existir
+     */
+    private synchronized void alterarUsuario(String login, Consumer<Usuario> acao) {
+        Usuario u = usuarios.get(login);
+        if (u != null) {
+            acao.accept(u);
+        } else if (armazem != null && armazem.contem(login)) {
+            alterarEmDisco(login, acao);
+        }
+    }
+
+    private void alterarEmDisco(String login, Consumer<Usuario> acao) {
+        Usuario u = carregar(login);
+        acao.accept(u);
+        if (u.isAlterado()) guardar(u);
+    }
+
+    /**
+     * Limita quantos objetos {@link Usuario} ficam em memria. Os excedentes,
+     * comeando pelos usados h mais tempo, vo para um arquivo temporrio em
+     * disco. Os ndices por login continuam em memria. O limite  gravado com
+     * o estado.
+     *
+     * @param limite nmero mximo de usurios em memria, ou zero para manter todos
+     * @throws IllegalArgumentException se o limite for negativo ou menor que {@value #MINIMO_EM_MEMORIA}
+     * @throws PersistenciaException    se o armazm em disco falhar
+     */
+    public synchronized void setLimiteEmMemoria(int limite) {
+        if (limite < 0 || (limite > 0 && limite < MINIMO_EM_MEMORIA)) {
+            throw new IllegalArgumentException("Limite de usurios em memria invlido.");
+        }
+        limiteEmMemoria = limite;
+        if (limite == 0) {
+            trazerTodosParaMemoria();
+            return;
+        }
+        if (armazem == null) {
+            armazem = abrirArmazem();
+            Map<String, Usuario> recentes = new LinkedHashMap<>(16, 0.75f, true);
+            recentes.putAll(usuarios);
+            usuarios = recentes;
+        }
+        despejarExcedentes();
+    }
+
+    /**
+     * @return limite de usurios em memria, ou zero se todos ficam em memria
+     */
+    public int getLimiteEmMemoria() {
+        return limiteEmMemoria;
+    }
+
+    /**
+     * Define quem executa o despejo dos usurios excedentes. Quando o limite 
+     * ultrapassado, o despejo  entregue uma nica vez a este executor at ser feito.
+     *
+     * @param agendador executor do despejo, ou null para despejar na hora
+     */
+    public void setAgendadorDespejo(Executor agendador) {
+        this.agendadorDespejo = agendador;
+    }
+
+    /**
+     * Grava em disco e tira da memria os usurios usados h mais tempo at
+     * ficar um oitavo abaixo do limite, para que o despejo no precise acontecer
+     * a cada usurio carregado. Usurios sem alteraes desde a ltima gravao
+     * s saem da memria. Deve ser chamado sem outras operaes em andamento.
+     *
+     * @return quantos usurios saram da memria
+     * @throws PersistenciaException se o armazm em disco falhar
+     */
+    public synchronized int despejarExcedentes() {
+        despejoAgendado = false;
+        if (armazem == null) return 0;
+        int alvo = limiteEmMemoria - limiteEmMemoria / 8;
+        int despejados = 0;
+        Iterator<Usuario> menosRecentes = usuarios.values().iterator();
+        while (usuarios.size() > alvo && menosRecentes.hasNext()) {
+            Usuario u = menosRecentes.next();
+            if (u.isAlterado() || !armazem.contem(u.getLogin())) guardar(u);
+            menosRecentes.remove();
+            despejados++;
+        }
+        return despejados;
+    }
+
+    private void admitir(Usuario usuario) {
+        usuarios.put(usuario.getLogin(), usuario);
+        if (armazem == null || usuarios.size() <= limiteEmMemoria || despejoAgendado) return;
+        despejoAgendado = true;
+        if (agendadorDespejo == null) {
+            despejarExcedentes();
+        } else {
+            agendadorDespejo.execute(this::despejarExcedentes);
+        }
+    }
+
+    private void trazerTodosParaMemoria() {
+        if (armazem == null) return;
+        Map<String, Usuario> todos = new HashMap<>(usuarios);
+        for (String login : armazem.getLogins()) {
+            if (!todos.containsKey(login)) {
+                Usuario u = carregar(login);
+                todos.put(u.getLogin(), u);
+            }
+        }
+        usuarios = todos;
+        fecharArmazem();
+    }
+
+    private static ArmazemUsuarios abrirArmazem() {
+        try {
+            return new ArmazemUsuarios();
+        } catch (IOException e) {
+            throw new PersistenciaException();
+        }
+    }
+
+    private void fecharArmazem() {
+        if (armazem == null) return;
+        try {
+            armazem.close();
+        } catch (IOException e) {
+            // o arquivo temporrio tambm  apagado ao encerrar a JVM
+        }
+        armazem = null;
+    }
+
+    private void guardar(Usuario usuario) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(usuario);
+        } catch (IOException e) {
+            throw new PersistenciaException();
+        }
+        try {
+            armazem.gravar(usuario.getLogin(), bytes.toByteArray(), usuario.getRecadosArmazenados(),
+                    usuario.getVersaoLapides());
+        } catch (IOException e) {
+            throw new PersistenciaException();
+        }
+        usuario.marcarGravado();
+    }
+
+    private Usuario carregar(String login) {
+        try {
+            return desserializar(armazem.ler(login));
+        } catch (IOException | ClassNotFoundException e) {
+            throw new PersistenciaException();
+        }
+    }
+
+    /**
+     * L um usurio gravado no armazm e troca os logins que ele guarda pelas
+     * instncias do ndice de logins, como se ele nunca tivesse sado da memria.
+     * A consulta ao ndice no mexe na ordem de uso dos usurios em memria.
+     */
+    private Usuario desserializar(byte[] registro) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(registro)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                try {
+                    return Class.forName(desc.getName(), false, GerenciadorUsuarios.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc); // tipos primitivos
+                }
+            }
+
+        }) {
+            Usuario usuario = (Usuario) ois.readObject();
+            usuario.canonicalizarLogins(this::canonicoNoIndice);
+            usuario.marcarGravado();
+            return usuario;
+        }
+    }
+
+    /**
+     * Entrega um recado na caixa do destinatrio, compactando-a antes caso
+     * existam lpides novas desde a ltima compactao.
+     *
+     * @param destinatario usurio que recebe o recado
+     * @param recado       recado a entregar
+     * @throws CaixaRecadosCheiaException se a caixa recusar o recado
+     */
+    public void entregarRecado(Usuario destinatario, Recado recado) {
+        aplicarRetencao(destinatario);
+        destinatario.compactarRecados(lapides);
+        destinatario.adicionarRecado(recado);
+        if (assinaturas != null) {
+            assinaturas.publicarRecado(destinatario.getLogin(), recado.getRemetente(), recado.toString());
+        }
+    }
+
+    /**
+     * Define o gerenciador que recebe os avisos de recados entregues.
+     *
+     * @param assinaturas gerenciador de inscries de push
+     */
+    public void setAssinaturas(GerenciadorAssinaturas assinaturas) {
+        this.assinaturas = assinaturas;
+    }
+
+    /**
+     * L o prximo recado de um usurio, ignorando os de remetentes removidos.
+     *
+     * @param usuario usurio leitor
+     * @return texto do recado
+     * @throws SemRecadosException se no houver recados
+     */
+    public String lerRecado(Usuario usuario) {
+        aplicarRetencao(usuario);
+        return usuario.lerRecado(lapides);
+    }
+
+    /**
+     * L de uma s vez at {@code max} recados de um usurio.
+     *
+     * @param usuario usurio leitor
+     * @param max     quantidade mxima de recados
+     * @return string no formato "{recado1,recado2,...}", vazia se no houver recados
+     */
+    public String lerRecados(Usuario usuario, int max) {
+        aplicarRetencao(usuario);
+        return "{" + String.join(",", usuario.lerRecados(lapides, max)) + "}";
+    }
+
+    /**
+     * Conta os recados pendentes de um usurio.
+     *
+     * @param usuario usurio consultado
+     * @return quantidade de recados que ainda podem ser lidos
+     */
+    public int contarRecados(Usuario usuario) {
+        aplicarRetencao(usuario);
+        return usuario.contarRecados(lapides);
+    }
+
+    /**
+     * Lista, sem consumir, os recados pendentes de um usurio recebidos a partir
+     * de um instante. A busca vai direto ao balde de tempo do instante.
+     *
+     * @param usuario  usurio consultado
+     * @param instante instante inicial, em milissegundos
+     * @return string no formato "{recado1,recado2,...}"
+     */
+    public String recadosDesde(Usuario usuario, long instante) {
+        aplicarRetencao(usuario);
+        List<String> textos = new ArrayList<>();
+        for (Recado r : usuario.recadosDesde(lapides, instante)) {
+            textos.add(r.toString());
+        }
+        return "{" + String.join(",", textos) + "}";
+    }
+
+    /**
+     * Define por quanto tempo os recados so guardados. Baldes de tempo
+     * inteiramente mais antigos que a reteno so descartados de uma vez
+     * quando a caixa  acessada.
+     *
+     * @param retencao durao em milissegundos; zero desativa a reteno
+     */
+    public void setRetencao(long retencao) {
+        this.retencao = retencao;
+    }
+
+    /**
+     * Define o relgio usado para datar recados e aplicar a reteno.
+     *
+     * @param relogio relgio do sistema
+     */
+    public void setRelogio(Clock relogio) {
+        this.relogio = relogio;
+    }
+
+    /**
+     * @return instante atual segundo o relgio configurado, em milissegundos
+     */
+    public long agora() {
+        return (relogio == null) ? System.currentTimeMillis() : relogio.millis();
+    }
+
+    private void aplicarRetencao(Usuario usuario) {
+        if (retencao > 0) {
+            usuario.aplicarRetencaoRecados(agora() - retencao);
+        }
+    }
+
+    /**
+     * Compacta as caixas de recados de todos os usurios, descartando os recados
+     * de remetentes removidos. Caixas j compactadas contra as lpides atuais
+     * so ignoradas; em disco, nem chegam a ser lidas.
+     */
+    public synchronized void compactarRecados() {
+        for (Usuario u : new ArrayList<>(usuarios.values())) {
+            u.compactarRecados(lapides);
+        }
+        if (armazem == null) return;
+        for (String login : armazem.getLoginsDesatualizados(lapides.getVersao())) {
+            if (!usuarios.containsKey(login)) alterarEmDisco(login, u -> u.compactarRecados(lapides));
+        }
+    }
+
     /**
      * Estabelece ou confirma uma relao de amizade entre dois usurios.
      *
@@ -78,13 +560,13 @@ public class GerenciadorUsuarios implements Serializable {
             throw new AmigoJaAdicionadoException("Usurio j est adicionado como amigo, esperando aceitao do convite.");
         }
         if (usuario.temConviteDe(loginAmigo)) {
-            usuario.adicionarAmigo(loginAmigo);
-            amigo.adicionarAmigo(loginUsuario);
+            usuario.adicionarAmigo(amigo.getLogin());
+            amigo.adicionarAmigo(usuario.getLogin());
             usuario.removerConvite(loginAmigo);
             amigo.removerConvite(loginUsuario);
         } else {
-            usuario.adicionarConvite(loginAmigo, Usuario.ConviteStatus.ENVIADO);
-            amigo.adicionarConvite(loginUsuario, Usuario.ConviteStatus.RECEBIDO);
+            usuario.adicionarConvite(amigo.getLogin(), Usuario.ConviteStatus.ENVIADO);
+            amigo.adicionarConvite(usuario.getLogin(), Usuario.ConviteStatus.RECEBIDO);
         }
     }
 
@@ -118,7 +600,14 @@ public class GerenciadorUsuarios implements Serializable {
      * Reinicia o gerenciador removendo todos os usurios.
      */
     public void zerar() {
-        usuarios.clear();
+        fecharArmazem();
+        usuarios = new HashMap<>();
+        limiteEmMemoria = 0;
+        rankingIdolos.zerar();
+        indiceLogins.zerar();
+        lapides.zerar();
+        proximoId = Recado.ID_SISTEMA + 1;
+        retencao = 0;
     }
 
     /**
@@ -140,18 +629,44 @@ public class GerenciadorUsuarios implements Serializable {
             String nomeInimigo = usuarioIdolo.getPerfil().getAtributo("nome");
             throw new InimigoException(nomeInimigo);
         }
-        usuarioFa.adicionarIdolo(idolo);
-        usuarioIdolo.adicionarFa(fa);
+        usuarioFa.adicionarIdolo(usuarioIdolo.getLogin());
+        usuarioIdolo.adicionarFa(usuarioFa.getLogin());
+        rankingIdolos.incrementar(usuarioIdolo.getLogin());
+    }
+
+    /**
+     * Lista os usurios com mais fs, mantidos incrementalmente em {@link Ranking}.
+     *
+     * @param k quantidade mxima de dolos
+     * @return string no formato "{idolo1,idolo2,...}" em ordem decrescente de fs
+     */
+    public String getTopIdolos(int k) {
+        return "{" + String.join(",", rankingIdolos.getTop(k)) + "}";
+    }
+
+    /**
+     * Sugere logins que comeam com um prefixo, usando o {@link IndicePrefixos}
+     * mantido na criao e remoo de usurios.
+     *
+     * @param prefixo incio do login, sem diferenciar maisculas
+     * @param k       quantidade mxima de sugestes
+     * @return string no formato "{login1,login2,...}" em ordem alfabtica
+     */
+    public String autocompletar(String prefixo, int k) {
+        return "{" + String.join(",", indiceLogins.buscar(prefixo, k)) + "}";
     }
 
     /**
      * Adiciona uma paquera de forma privada; notifica em caso de reciprocidade.
+     * Na reciprocidade, a inimizade e o espao nas duas caixas de recados so
+     * verificados antes de qualquer alterao.
      *
      * @param usuario login do usurio que paquera
      * @param paquera login da paquera
      * @throws AutoRelacaoException    se usurio paquerar a si mesmo
      * @throws UsuarioNaoEncontradoException se algum usurio no existir
      * @throws InimigoException        se for inimigo
+     * @throws CaixaRecadosCheiaException se a paquera for mtua e uma das caixas recusar o aviso
      */
     public void adicionarPaquera(String usuario, String paquera) {
         if (usuario.equals(paquera)) {
@@ -162,29 +677,52 @@ public class GerenciadorUsuarios implements Serializable {
         if (u.getInimigos().contains(paquera)) {
             throw new InimigoException(p.getPerfil().getAtributo("nome"));
         }
-        u.adicionarPaquera(paquera);
-        if (p.getPaqueras().contains(usuario)) {
-            enviarRecadoSistema(usuario, paquera);
+        if (u.getPaqueras().contains(paquera)) {
+            throw new PaqueraExistenteException(); // antes de mexer nas caixas
+        }
+        boolean mutua = p.getPaqueras().contains(usuario);
+        if (mutua) {
+            if (p.getInimigos().contains(usuario)) {
+                throw new InimigoException(p.getPerfil().getAtributo("nome"));
+            }
+            verificarEspaco(u);
+            verificarEspaco(p);
+        }
+        u.adicionarPaquera(p.getLogin());
+        p.adicionarPretendente(u.getLogin());
+        if (mutua) {
+            enviarRecadoSistema(u, p);
         }
     }
 
     /**
-     * Envia recados automticos do sistema em caso de paquera mtua.
+     * Garante que a caixa de recados aceita mais um recado, depois de descartar
+     * os expirados e os de usurios removidos, como faria a entrega.
      *
-     * @param usuario1 login do primeiro usurio
-     * @param usuario2 login do segundo usurio
-     * @throws InimigoException se houver inimizade entre eles
+     * @param destinatario usurio que receberia o recado
+     * @throws CaixaRecadosCheiaException se a caixa estiver cheia e a poltica for rejeitar
      */
-    private void enviarRecadoSistema(String usuario1, String usuario2) {
-        Usuario u1 = getUsuario(usuario1);
-        Usuario u2 = getUsuario(usuario2);
-        if (u1.getInimigos().contains(usuario2) || u2.getInimigos().contains(usuario1)) {
-            throw new InimigoException(u2.getPerfil().getAtributo("nome"));
+    private void verificarEspaco(Usuario destinatario) {
+        aplicarRetencao(destinatario);
+        destinatario.compactarRecados(lapides);
+        if (!destinatario.aceitaRecado()) {
+            throw new CaixaRecadosCheiaException();
         }
+    }
+
+    /**
+     * Envia recados automticos do sistema em caso de paquera mtua. Quem chama
+     * j verificou a inimizade e o espao nas caixas.
+     *
+     * @param u1 primeiro usurio
+     * @param u2 segundo usurio
+     */
+    private void enviarRecadoSistema(Usuario u1, Usuario u2) {
         String nome1 = u1.getPerfil().getAtributo("nome");
         String nome2 = u2.getPerfil().getAtributo("nome");
-        u1.adicionarRecado(new Recado("Sistema", nome2 + "  seu paquera - Recado do Jackut."));
-        u2.adicionarRecado(new Recado("Sistema", nome1 + "  seu paquera - Recado do Jackut."));
+        long instante = agora();
+        entregarRecado(u1, new Recado(Recado.ID_SISTEMA, "Sistema", nome2 + "  seu paquera - Recado do Jackut.", instante));
+        entregarRecado(u2, new Recado(Recado.ID_SISTEMA, "Sistema", nome1 + "  seu paquera - Recado do Jackut.", instante));
     }
 
     /**
@@ -205,8 +743,8 @@ public class GerenciadorUsuarios implements Serializable {
         if (u.getInimigos().contains(inimigo)) {
             throw new RelacaoExistenteException("Usurio j est adicionado como inimigo.");
         }
-        u.adicionarInimigo(inimigo);
-        i.adicionarInimigo(usuario);
+        u.adicionarInimigo(i.getLogin());
+        i.adicionarInimigo(u.getLogin());
     }
 
     /**
@@ -256,34 +794,175 @@ public class GerenciadorUsuarios implements Serializable {
     }
 
     /**
-     * Remove um usurio do sistema.
+     * Remove um usurio do sistema, descontando-o da contagem de fs de seus dolos.
+     * Seus recados pendentes em outras caixas ficam marcados por uma lpide e so
+     * descartados na leitura ou compactao de cada caixa.
      *
      * @param login login do usurio a remover
      */
     public void removerUsuario(String login) {
-        usuarios.remove(login);
+        Usuario removido;
+        synchronized (this) {
+            removido = usuarios.remove(login);
+            if (armazem != null && armazem.contem(login)) {
+                if (removido == null) removido = carregar(login);
+                armazem.remover(login);
+            }
+        }
+        if (removido != null) {
+            indiceLogins.remover(login);
+            lapides.marcar(removido.getId());
+            for (String idolo : removido.getIdolos()) {
+                rankingIdolos.decrementar(idolo);
+            }
+        }
+        rankingIdolos.remover(login);
     }
 
     /**
-     * Remove todas as relaes e recados associados a um usurio.
+     * Remove todas as relaes associadas a um usurio. S so visitados os
+     * usurios que aparecem nos relacionamentos do prprio alvo: as relaes
+     * so registradas dos dois lados (amigos, fs e dolos, inimigos, paqueras
+     * e pretendentes).
      *
      * @param loginAlvo login do usurio cujas referncias devem ser limpas
+     * @return quantos usurios tinham alguma relao com o alvo
      */
-    public void removerUsuarioDeRelacionamentos(String loginAlvo) {
-        for (Usuario usuario : usuarios.values()) {
-            usuario.removerRelacionamentos(loginAlvo);
-            usuario.removerRecadosDoUsuario(loginAlvo);
+    public int removerUsuarioDeRelacionamentos(String loginAlvo) {
+        int[] afetados = {0};
+        for (String login : relacionados(loginAlvo)) {
+            alterarUsuario(login, usuario -> {
+                if (usuario.removerRelacionamentos(loginAlvo)) afetados[0]++;
+            });
         }
+        return afetados[0];
+    }
+
+    /**
+     * @param login login do usurio
+     * @return quantos usurios a remoo do usurio visitaria para desfazer relacionamentos
+     */
+    public int contarRelacionados(String login) {
+        return relacionados(login).size();
+    }
+
+    private Set<String> relacionados(String login) {
+        Usuario usuario = buscarUsuario(login);
+        if (usuario == null) return Collections.emptySet();
+        Set<String> relacionados = new LinkedHashSet<>(usuario.getAmigos());
+        relacionados.addAll(usuario.getFas());
+        relacionados.addAll(usuario.getIdolos());
+        relacionados.addAll(usuario.getInimigos());
+        relacionados.addAll(usuario.getPaqueras());
+        relacionados.addAll(usuario.getPretendentes());
+        return relacionados;
     }
 
     /**
-     * Remove referncias de comunidades de todos os usurios.
+     * Remove comunidades apagadas das listas dos seus membros.
      *
-     * @param comunidades lista de nomes de comunidades a remover
+     * @param comunidades comunidades apagadas, ainda com seus membros
+     */
+    public void removerComunidadesDosMembros(Collection<Community> comunidades) {
+        for (Community comunidade : comunidades) {
+            List<String> nome = List.of(comunidade.getName());
+            for (String membro : comunidade.getMembers()) {
+                alterarUsuario(membro, usuario -> usuario.removerComunidades(nome));
+            }
+        }
+    }
+
+    /**
+     * Grava os usurios em disco logo aps os demais campos: login, recados e o
+     * registro j serializado, copiado do armazm sem passar pela memria.
+     */
+    private synchronized void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        List<String> frios = new ArrayList<>();
+        if (armazem != null) {
+            for (String login : armazem.getLogins()) {
+                if (!usuarios.containsKey(login)) frios.add(login);
+            }
+        }
+        oos.writeInt(frios.size());
+        for (String login : frios) {
+            byte[] registro = armazem.ler(login);
+            oos.writeObject(login);
+            oos.writeInt(armazem.getRecados(login));
+            oos.writeInt(registro.length);
+            oos.write(registro);
+        }
+    }
+
+    /**
+     * Reabre o armazm em disco se o estado foi gravado com limite de usurios
+     * em memria. Estados anteriores ao limite no tm a seo de usurios em disco.
+     * Estados gravados antes do ranking de dolos, do ndice de logins ou dos
+     * identificadores numricos so completados aqui; neles, todos os usurios
+     * esto em memria. O ranking  refeito pelos fs de cada usurio, com os
+     * empates em ordem de login. Os pretendentes de estados anteriores a eles so
+     * refeitos pelas paqueras de cada usurio, tambm dos que esto em disco.
+     */
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        int frios;
+        try {
+            frios = ois.readInt();
+        } catch (EOFException | OptionalDataException e) {
+            frios = 0;
+        }
+        if (limiteEmMemoria > 0) {
+            armazem = new ArmazemUsuarios();
+        }
+        for (int i = 0; i < frios; i++) {
+            String login = (String) ois.readObject();
+            int recados = ois.readInt();
+            byte[] registro = new byte[ois.readInt()];
+            ois.readFully(registro);
+            armazem.gravar(login, registro, recados, -1); // verso desconhecida: a prxima compactao o rel
+        }
+        if (lapides == null) {
+            lapides = new Lapides();
+        }
+        if (indiceLogins == null) {
+            indiceLogins = new IndicePrefixos();
+            usuarios.keySet().forEach(indiceLogins::adicionar);
+        }
+        if (rankingIdolos == null) {
+            rankingIdolos = new Ranking();
+            for (String login : new TreeSet<>(usuarios.keySet())) {
+                for (int i = usuarios.get(login).getFas().size(); i > 0; i--) {
+                    rankingIdolos.incrementar(login);
+                }
+            }
+        }
+        if (proximoId == Recado.ID_SISTEMA) {
+            numerarUsuarios();
+        }
+        if (!pretendentesRegistrados) {
+            paraCadaUsuario(u -> {
+                for (String paquera : u.getPaqueras()) {
+                    alterarUsuario(paquera, p -> p.adicionarPretendente(u.getLogin()));
+                }
+            });
+            pretendentesRegistrados = true;
+        }
+    }
+
+    /**
+     * D identificadores aos usurios de um estado gravado antes deles, em ordem
+     * de login, e liga os recados j recebidos aos identificadores dos remetentes.
+     * Esses estados so anteriores ao armazm em disco: todos esto em memria.
      */
-    public void removerComunidadeDeTodosUsuarios(List<String> comunidades) {
-        for (Usuario usuario : usuarios.values()) {
-            usuario.getComunidades().removeAll(comunidades);
+    private void numerarUsuarios() {
+        proximoId = Recado.ID_SISTEMA + 1;
+        Map<String, Integer> ids = new HashMap<>();
+        for (String login : new TreeSet<>(usuarios.keySet())) {
+            ids.put(login, proximoId++);
+        }
+        long instante = agora();
+        for (Usuario u : usuarios.values()) {
+            u.migrarIdentificadores(ids.get(u.getLogin()), l -> ids.getOrDefault(l, Recado.ID_SISTEMA), instante);
         }
     }
 }
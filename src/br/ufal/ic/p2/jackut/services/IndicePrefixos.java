@@ -0,0 +1,92 @@
+package br.ufal.ic.p2.jackut.services;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * ndice ordenado de nomes (logins ou nomes de comunidades) para buscas por
+ * prefixo, como o autocompletar de uma caixa de pesquisa.
+ * <p>
+ * Os nomes ficam em uma rvore ordenada pela forma minscula, o que torna a
+ * busca indiferente a maisculas. Os nomes com um prefixo formam um intervalo
+ * contguo da rvore: a busca desce at o incio desse intervalo em O(log n) e
+ * percorre apenas os K primeiros resultados, sem varrer o restante do ndice.
+ * Inseres e remoes tambm custam O(log n).
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class IndicePrefixos implements Serializable {
+    private static final long serialVersionUID = 1L;
+    // forma minscula -> nomes originais com essa forma
+    private final TreeMap<String, TreeSet<String>> nomes = new TreeMap<>();
+
+    /**
+     * Adiciona um nome ao ndice.
+     *
+     * @param nome nome a indexar
+     */
+    public void adicionar(String nome) {
+        nomes.computeIfAbsent(normalizar(nome), n -> new TreeSet<>()).add(nome);
+    }
+
+    /**
+     * Remove um nome do ndice, se presente.
+     *
+     * @param nome nome a remover
+     */
+    public void remover(String nome) {
+        String chave = normalizar(nome);
+        TreeSet<String> originais = nomes.get(chave);
+        if (originais != null && originais.remove(nome) && originais.isEmpty()) {
+            nomes.remove(chave);
+        }
+    }
+
+    /**
+     * Devolve a instncia do nome guardada no ndice, sem alterar nada.
+     *
+     * @param nome nome em qualquer instncia
+     * @return a instncia indexada, ou null se o nome no estiver no ndice
+     */
+    public String instancia(String nome) {
+        TreeSet<String> originais = nomes.get(normalizar(nome));
+        if (originais == null) return null;
+        String guardado = originais.ceiling(nome);
+        return nome.equals(guardado) ? guardado : null;
+    }
+
+    /**
+     * Lista at K nomes que comeam com o prefixo, sem diferenciar maisculas,
+     * em ordem alfabtica.
+     *
+     * @param prefixo prefixo procurado; vazio lista os primeiros nomes do ndice
+     * @param k       quantidade mxima de nomes
+     * @return nomes encontrados
+     */
+    public List<String> buscar(String prefixo, int k) {
+        List<String> encontrados = new ArrayList<>(Math.max(0, Math.min(k, 16)));
+        if (k <= 0) return encontrados;
+        String chave = normalizar(prefixo);
+        for (Map.Entry<String, TreeSet<String>> e : nomes.tailMap(chave, true).entrySet()) {
+            if (!e.getKey().startsWith(chave)) break;
+            for (String nome : e.getValue()) {
+                encontrados.add(nome);
+                if (encontrados.size() == k) return encontrados;
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Remove todos os nomes do ndice.
+     */
+    public void zerar() {
+        nomes.clear();
+    }
+
+    private static String normalizar(String nome) {
+        return (nome == null) ? "" : nome.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,190 @@
+package br.ufal.ic.p2.jackut.services;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Mantm um ranking incremental de chaves (logins ou nomes de comunidades)
+ * ordenadas por uma contagem inteira.
+ * <p>
+ * As chaves ficam agrupadas em baldes, um por contagem distinta, encadeados em
+ * ordem crescente. Incrementar ou decrementar uma chave apenas a move para o
+ * balde vizinho, em O(1), e a consulta dos K primeiros percorre os baldes a
+ * partir do maior, em O(K). Dentro de um mesmo balde, as chaves seguem a ordem
+ * em que alcanaram aquela contagem.
+ * </p>
+ * <p>
+ * Apenas o mapa de contagens  serializado; os baldes so reconstrudos na
+ * desserializao.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class Ranking implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Map<String, Integer> contagens = new LinkedHashMap<>(); // ordem da ltima alterao
+    private transient Map<String, Balde> baldePorChave = new HashMap<>();
+    private transient Balde menor;
+    private transient Balde maior;
+
+    /**
+     * Balde com todas as chaves que possuem a mesma contagem.
+     */
+    private static final class Balde {
+        private final int contagem;
+        private final LinkedHashSet<String> chaves = new LinkedHashSet<>();
+        private Balde anterior;
+        private Balde proximo;
+
+        private Balde(int contagem) {
+            this.contagem = contagem;
+        }
+    }
+
+    /**
+     * Registra uma chave com contagem zero, caso ainda no exista.
+     *
+     * @param chave chave a registrar
+     */
+    public void registrar(String chave) {
+        if (contagens.containsKey(chave)) return;
+        contagens.put(chave, 0);
+        Balde zero = (menor != null && menor.contagem == 0) ? menor : inserirApos(null, 0);
+        zero.chaves.add(chave);
+        baldePorChave.put(chave, zero);
+    }
+
+    /**
+     * Incrementa em uma unidade a contagem da chave, registrando-a se necessrio.
+     *
+     * @param chave chave a incrementar
+     */
+    public void incrementar(String chave) {
+        registrar(chave);
+        Balde atual = baldePorChave.get(chave);
+        int nova = atual.contagem + 1;
+        Balde destino = (atual.proximo != null && atual.proximo.contagem == nova)
+                ? atual.proximo : inserirApos(atual, nova);
+        mover(chave, atual, destino);
+    }
+
+    /**
+     * Decrementa em uma unidade a contagem da chave. Chaves inexistentes ou
+     * com contagem zero so ignoradas.
+     *
+     * @param chave chave a decrementar
+     */
+    public void decrementar(String chave) {
+        Balde atual = baldePorChave.get(chave);
+        if (atual == null || atual.contagem == 0) return;
+        int nova = atual.contagem - 1;
+        Balde destino = (atual.anterior != null && atual.anterior.contagem == nova)
+                ? atual.anterior : inserirApos(atual.anterior, nova);
+        mover(chave, atual, destino);
+    }
+
+    /**
+     * Remove completamente uma chave do ranking.
+     *
+     * @param chave chave a remover
+     */
+    public void remover(String chave) {
+        Balde atual = baldePorChave.remove(chave);
+        if (atual == null) return;
+        contagens.remove(chave);
+        atual.chaves.remove(chave);
+        if (atual.chaves.isEmpty()) desencadear(atual);
+    }
+
+    /**
+     * Retorna a contagem atual de uma chave.
+     *
+     * @param chave chave consultada
+     * @return contagem da chave, ou zero se no registrada
+     */
+    public int getContagem(String chave) {
+        return contagens.getOrDefault(chave, 0);
+    }
+
+    /**
+     * Retorna as K chaves de maior contagem, em ordem decrescente.
+     * Chaves com contagem zero no entram no ranking.
+     *
+     * @param k quantidade mxima de chaves
+     * @return lista com at K chaves
+     */
+    public List<String> getTop(int k) {
+        List<String> top = new ArrayList<>(Math.max(0, Math.min(k, contagens.size())));
+        for (Balde b = maior; b != null && b.contagem > 0 && top.size() < k; b = b.anterior) {
+            for (String chave : b.chaves) {
+                if (top.size() == k) break;
+                top.add(chave);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Remove todas as chaves do ranking.
+     */
+    public void zerar() {
+        contagens.clear();
+        baldePorChave.clear();
+        menor = null;
+        maior = null;
+    }
+
+    private void mover(String chave, Balde origem, Balde destino) {
+        origem.chaves.remove(chave);
+        destino.chaves.add(chave);
+        baldePorChave.put(chave, destino);
+        contagens.remove(chave);
+        contagens.put(chave, destino.contagem);
+        if (origem.chaves.isEmpty()) desencadear(origem);
+    }
+
+    /**
+     * Cria um balde logo aps {@code anterior} (ou no incio, se nulo).
+     */
+    private Balde inserirApos(Balde anterior, int contagem) {
+        Balde novo = new Balde(contagem);
+        novo.anterior = anterior;
+        novo.proximo = (anterior == null) ? menor : anterior.proximo;
+        if (novo.anterior == null) menor = novo; else novo.anterior.proximo = novo;
+        if (novo.proximo == null) maior = novo; else novo.proximo.anterior = novo;
+        return novo;
+    }
+
+    private void desencadear(Balde balde) {
+        if (balde.anterior == null) menor = balde.proximo; else balde.anterior.proximo = balde.proximo;
+        if (balde.proximo == null) maior = balde.anterior; else balde.proximo.anterior = balde.anterior;
+    }
+
+    /**
+     * Reconstri os baldes a partir do mapa de contagens desserializado.
+     *
+     * @param ois fluxo de entrada de objetos
+     * @throws IOException            se falha de I/O
+     * @throws ClassNotFoundException se classe no for encontrada
+     */
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        baldePorChave = new HashMap<>();
+        TreeMap<Integer, Balde> porContagem = new TreeMap<>();
+        for (Map.Entry<String, Integer> e : contagens.entrySet()) {
+            Balde b = porContagem.computeIfAbsent(e.getValue(), Balde::new);
+            b.chaves.add(e.getKey());
+            baldePorChave.put(e.getKey(), b);
+        }
+        Balde anterior = null;
+        for (Balde b : porContagem.values()) {
+            b.anterior = anterior;
+            if (anterior == null) menor = b; else anterior.proximo = b;
+            anterior = b;
+        }
+        maior = anterior;
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Classe principal do sistema Jackut, responsvel pela execuo dos testes de aceitao
+ * definidos pelas user stories US1 a US9, incluindo validaes de persistncia.
+ * <p>
+ * Utiliza o framework EasyAccept para carregar e executar os roteiros de teste
+ * localizados na pasta <code>tests/</code>. Em seguida executa as verificaes
+ * de <code>tests/java/</code> que no cabem em um roteiro, como as concorrentes;
+ * uma verificao que falha interrompe a execuo com {@link AssertionError}.
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+import br.ufal.ic.p2.jackut.eventos.TesteReconstrucao;
+import br.ufal.ic.p2.jackut.server.TesteCarga;
+import br.ufal.ic.p2.jackut.server.TesteReplicacao;
+import br.ufal.ic.p2.jackut.server.TesteRetratos;
+import br.ufal.ic.p2.jackut.services.TesteAssinaturas;
+import easyaccept.EasyAccept;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class Main {
+    /**
+     * Ponto de entrada da aplicao. Executa sequencialmente todos os roteiros de teste
+     * de aceitao fornecidos, agrupados por user story e fase (funcionalidade bsica e
+     * persistncia).
+     *
+     * @param args argumentos de linha de comando (no utilizados)
+     * @throws Exception se no for possvel copiar o estado gravado pela verso
+     *                   original ou se uma verificao no puder ser executada
+     */
+    public static void main(String[] args) throws Exception {
+        // Testes US1 - Criao de conta e persistncia
+        String[] argsUS1_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us1_1.txt"};
+        String[] argsUS1_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us1_2.txt"};
+
+        // Testes US2 - Edio de perfil e persistncia
+        String[] argsUS2_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us2_1.txt"};
+        String[] argsUS2_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us2_2.txt"};
+
+        // Testes US3 - Sistema de amizades e persistncia
+        String[] argsUS3_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us3_1.txt"};
+        String[] argsUS3_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us3_2.txt"};
+
+        // Testes US4 - Troca de recados e persistncia
+        String[] argsUS4_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us4_1.txt"};
+        String[] argsUS4_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us4_2.txt"};
+
+        // Testes US5 a US9 - Criao de comunidades, adio, mensagens,
+        // novos relacionamentos e remoo de conta, ambos fases bsica e persistncia
+        String[] argsUS5_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us5_1.txt"};
+        String[] argsUS5_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us5_2.txt"};
+
+        String[] argsUS6_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us6_1.txt"};
+        String[] argsUS6_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us6_2.txt"};
+
+        String[] argsUS7_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us7_1.txt"};
+        String[] argsUS7_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us7_2.txt"};
+
+        String[] argsUS8_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us8_1.txt"};
+        String[] argsUS8_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us8_2.txt"};
+
+        String[] argsUS9_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us9_1.txt"};
+        String[] argsUS9_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us9_2.txt"};
+
+        // Testes US10 - Rankings de dolos e comunidades e persistncia
+        String[] argsUS10_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us10_1.txt"};
+        String[] argsUS10_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us10_2.txt"};
+
+        // Testes US11 - Limite da caixa de recados e persistncia
+        String[] argsUS11_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us11_1.txt"};
+        String[] argsUS11_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us11_2.txt"};
+
+        // Testes US12 - Leitura em lote de recados e mensagens e persistncia
+        String[] argsUS12_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us12_1.txt"};
+        String[] argsUS12_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us12_2.txt"};
+
+        // Testes US13 - Consultas por tempo, reteno e persistncia
+        String[] argsUS13_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us13_1.txt"};
+        String[] argsUS13_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us13_2.txt"};
+
+        // Testes US14 - Autocompletar usurios e comunidades e persistncia
+        String[] argsUS14_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us14_1.txt"};
+        String[] argsUS14_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us14_2.txt"};
+
+        // Testes US15 - Eventos, projees de leitura e persistncia
+        String[] argsUS15_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us15_1.txt"};
+        String[] argsUS15_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us15_2.txt"};
+
+        // Testes US16 - Mtricas das operaes e persistncia
+        String[] argsUS16_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us16_1.txt"};
+        String[] argsUS16_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us16_2.txt"};
+
+        // Testes US17 - Usurios em disco e persistncia
+        String[] argsUS17_1 = {"br.ufal.ic.p2.jackut.Facade", "tests/us17_1.txt"};
+        String[] argsUS17_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us17_2.txt"};
+
+        // Testes US18 - Carga de um estado gravado pela verso original (s persistncia)
+        String[] argsUS18_2 = {"br.ufal.ic.p2.jackut.Facade", "tests/us18_2.txt"};
+
+        // Execuo principal de todos os testes
+        EasyAccept.main(argsUS1_1);
+        EasyAccept.main(argsUS1_2);
+
+        EasyAccept.main(argsUS2_1);
+        EasyAccept.main(argsUS2_2);
+
+        EasyAccept.main(argsUS3_1);
+        EasyAccept.main(argsUS3_2);
+
+        EasyAccept.main(argsUS4_1);
+        EasyAccept.main(argsUS4_2);
+
+        EasyAccept.main(argsUS5_1);
+        EasyAccept.main(argsUS5_2);
+
+        EasyAccept.main(argsUS6_1);
+        EasyAccept.main(argsUS6_2);
+
+        EasyAccept.main(argsUS7_1);
+        EasyAccept.main(argsUS7_2);
+
+        EasyAccept.main(argsUS8_1);
+        EasyAccept.main(argsUS8_2);
+
+        EasyAccept.main(argsUS9_1);
+        EasyAccept.main(argsUS9_2);
+
+        EasyAccept.main(argsUS10_1);
+        EasyAccept.main(argsUS10_2);
+
+        EasyAccept.main(argsUS11_1);
+        EasyAccept.main(argsUS11_2);
+
+        EasyAccept.main(argsUS12_1);
+        EasyAccept.main(argsUS12_2);
+
+        EasyAccept.main(argsUS13_1);
+        EasyAccept.main(argsUS13_2);
+
+        EasyAccept.main(argsUS14_1);
+        EasyAccept.main(argsUS14_2);
+
+        EasyAccept.main(argsUS15_1);
+        EasyAccept.main(argsUS15_2);
+
+        EasyAccept.main(argsUS16_1);
+        EasyAccept.main(argsUS16_2);
+
+        EasyAccept.main(argsUS17_1);
+        EasyAccept.main(argsUS17_2);
+
+        Files.copy(Path.of("tests/legado/dados_jackut.dat"), Path.of("dados_jackut.dat"),
+                StandardCopyOption.REPLACE_EXISTING);
+        EasyAccept.main(argsUS18_2);
+
+        // Verificaes em Java
+        verificar("TesteReconstrucao", TesteReconstrucao::verificar);
+        verificar("TesteAssinaturas", TesteAssinaturas::verificar);
+        verificar("TesteCarga", TesteCarga::verificar);
+        verificar("TesteReplicacao", TesteReplicacao::verificar);
+        verificar("TesteRetratos", TesteRetratos::verificar);
+    }
+
+    private static void verificar(String nome, Verificacao verificacao) throws Exception {
+        verificacao.executar();
+        System.out.println("Verificao " + nome + ": OK");
+    }
+
+    /**
+     * Verificao executada aps os roteiros.
+     */
+    @FunctionalInterface
+    private interface Verificacao {
+        void executar() throws Exception;
+    }
+}
@@ -0,0 +1,43 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Objects;
+
+/**
+ * Asseres usadas pelas verificaes executadas junto com os roteiros de
+ * aceitao. No dependem da opo <code>-ea</code> da JVM: uma condio falsa
+ * sempre interrompe a sute com {@link AssertionError}.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public final class Verificacao {
+    private Verificacao() {
+    }
+
+    /**
+     * Exige que uma condio seja verdadeira.
+     *
+     * @param condicao condio verificada
+     * @param mensagem descrio da falha
+     * @throws AssertionError se a condio for falsa
+     */
+    public static void exigir(boolean condicao, String mensagem) {
+        if (!condicao) {
+            throw new AssertionError(mensagem);
+        }
+    }
+
+    /**
+     * Exige que dois valores sejam iguais.
+     *
+     * @param esperado valor esperado
+     * @param obtido   valor obtido
+     * @param contexto o que foi comparado
+     * @throws AssertionError se os valores forem diferentes
+     */
+    public static void exigirIgual(Object esperado, Object obtido, String contexto) {
+        if (!Objects.equals(esperado, obtido)) {
+            throw new AssertionError(contexto + ": esperado <" + esperado + ">, obtido <" + obtido + ">");
+        }
+    }
+}
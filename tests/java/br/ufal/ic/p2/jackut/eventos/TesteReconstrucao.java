@@ -0,0 +1,141 @@
+package br.ufal.ic.p2.jackut.eventos;
+
+import br.ufal.ic.p2.jackut.Jackute;
+import br.ufal.ic.p2.jackut.Verificacao;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mede a vazo da reconstruo das projees a partir do fluxo de eventos.
+ * <p>
+ * Popula um ncleo em memria com usurios, amizades, dolos, comunidades e
+ * recados sorteados, e ento reconstri as projees com 1, 2, 4 e 8 parties,
+ * informando eventos reaplicados por segundo (melhor de trs rodadas). Nada 
+ * gravado em disco.
+ * </p>
+ * <p>
+ * {@link #verificar()} executa uma verso curta, com asseres, junto com os
+ * roteiros de aceitao.
+ * </p>
+ * <p>
+ * Uso: <code>java br.ufal.ic.p2.jackut.eventos.TesteReconstrucao [usuarios] [relacoesPorUsuario]</code>
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class TesteReconstrucao {
+    private static final int[] PARTICOES = {1, 2, 4, 8};
+    private static final int RODADAS = 3;
+
+    /**
+     * Executa a medio.
+     *
+     * @param args nmero de usurios (padro 20000) e de relaes sorteadas por
+     *             usurio (padro 10)
+     */
+    public static void main(String[] args) {
+        int usuarios = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+        int relacoes = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        Jackute sistema = new Jackute();
+        long t0 = System.nanoTime();
+        popular(sistema, usuarios, relacoes);
+        System.out.printf("usuarios=%d eventos=%d carga=%.0fms processadores=%d%n", usuarios,
+                sistema.contarEventos(), (System.nanoTime() - t0) / 1e6, Runtime.getRuntime().availableProcessors());
+
+        for (int particoes : PARTICOES) {
+            long melhor = Long.MAX_VALUE;
+            int eventos = 0;
+            for (int r = 0; r < RODADAS; r++) {
+                long inicio = System.nanoTime();
+                eventos = sistema.reconstruirProjecoes(particoes);
+                melhor = Math.min(melhor, System.nanoTime() - inicio);
+            }
+            System.out.printf("particoes=%d reconstrucao=%.1fms vazao=%.0f eventos/s%n",
+                    particoes, melhor / 1e6, eventos / (melhor / 1e9));
+        }
+    }
+
+    /**
+     * Verso curta da medio: 100 usurios com 20 relaes cada. Exige que a
+     * reconstruo com cada nmero de parties reaplique todos os eventos e que
+     * amigos em comum, fs e membros continuem com as respostas das projees
+     * mantidas durante a carga.
+     *
+     * @throws AssertionError se alguma exigncia no for cumprida
+     */
+    public static void verificar() {
+        int usuarios = 100;
+        Jackute sistema = new Jackute();
+        popular(sistema, usuarios, 20);
+        int comunidades = Math.max(1, usuarios / 100);
+        List<String> esperadas = consultar(sistema, usuarios, comunidades);
+        for (int particoes : PARTICOES) {
+            Verificacao.exigirIgual(sistema.contarEventos(), sistema.reconstruirProjecoes(particoes),
+                    "eventos reaplicados com " + particoes + " parties");
+            Verificacao.exigirIgual(esperadas, consultar(sistema, usuarios, comunidades),
+                    "consultas aps reconstruir com " + particoes + " parties");
+        }
+    }
+
+    /**
+     * Respostas das projees para todos os usurios, pares de usurios e comunidades.
+     */
+    private static List<String> consultar(Jackute sistema, int usuarios, int comunidades) {
+        List<String> respostas = new ArrayList<>();
+        for (int i = 0; i < usuarios; i++) {
+            respostas.add(String.valueOf(sistema.contarFas(login(i))));
+            for (int j = i + 1; j < usuarios; j++) {
+                respostas.add(sistema.getAmigosEmComum(login(i), login(j)));
+            }
+        }
+        for (int c = 0; c < comunidades; c++) {
+            respostas.add(String.valueOf(sistema.contarMembrosComunidade("comunidade" + c)));
+        }
+        return respostas;
+    }
+
+    private static void popular(Jackute sistema, int usuarios, int relacoes) {
+        Random aleatorio = new Random(42);
+        String[] sessoes = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            sistema.criarUsuario(login(i), "senha", "Usuario " + i);
+            sessoes[i] = sistema.abrirSessao(login(i), "senha");
+        }
+        int comunidades = Math.max(1, usuarios / 100);
+        for (int c = 0; c < comunidades; c++) {
+            sistema.criarComunidade(sessoes[c], "comunidade" + c, "teste");
+        }
+        for (int i = 0; i < usuarios; i++) {
+            for (int r = 0; r < relacoes; r++) {
+                int outro = aleatorio.nextInt(usuarios);
+                if (outro == i) continue;
+                try {
+                    switch (aleatorio.nextInt(4)) {
+                        case 0:
+                            sistema.adicionarAmigo(sessoes[i], login(outro));
+                            sistema.adicionarAmigo(sessoes[outro], login(i));
+                            break;
+                        case 1:
+                            sistema.adicionarIdolo(sessoes[i], login(outro));
+                            break;
+                        case 2:
+                            sistema.adicionarComunidade(sessoes[i], "comunidade" + aleatorio.nextInt(comunidades));
+                            break;
+                        default:
+                            sistema.enviarRecado(sessoes[i], login(outro), "oi");
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    // relao repetida
+                }
+            }
+        }
+    }
+
+    private static String login(int i) {
+        return "e" + i;
+    }
+}
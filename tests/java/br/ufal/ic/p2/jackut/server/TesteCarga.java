@@ -0,0 +1,278 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Verificacao;
+import br.ufal.ic.p2.jackut.exceptions.ErroRemotoException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de carga do servidor em localhost.
+ * <p>
+ * Sobe um {@link ServidorJackut} em uma porta livre, cria usurios, amizades e
+ * uma comunidade, e dispara vrios {@link ClienteJackut} em paralelo com uma
+ * mistura de consultas (cerca de 80%) e alteraes (cerca de 20%). Ao final
+ * informa a vazo e os percentis de latncia das operaes. Em seguida compara
+ * o tempo de {@value #OPERACOES_LOTE} consultas enviadas uma a uma, em pipeline
+ * e em um lote atmico, que devem dar as mesmas respostas. O estado  apenas
+ * zerado em memria; nada  gravado em disco.
+ * </p>
+ * <p>
+ * {@link #verificar()} executa uma verso curta, com asseres, junto com os
+ * roteiros de aceitao, e um pipeline cujas respostas passam do limite de
+ * sada de uma {@link Conexao}, que o servidor precisa suspender e retomar.
+ * </p>
+ * <p>
+ * Uso: <code>java br.ufal.ic.p2.jackut.server.TesteCarga [clientes] [segundos] [usuarios]</code>
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class TesteCarga {
+    private static final String COMUNIDADE = "carga";
+    private static final int OPERACOES_LOTE = 10_000;
+    private static final long ESPERA_MS = 10_000;
+
+    /**
+     * Executa o teste de carga.
+     *
+     * @param args nmero de clientes (padro 16), durao em segundos (padro 5)
+     *             e nmero de usurios (padro 1000)
+     * @throws Exception se o servidor no puder ser iniciado
+     */
+    public static void main(String[] args) throws Exception {
+        int clientes = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+        int segundos = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        int usuarios = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+        executar(clientes, segundos, usuarios, OPERACOES_LOTE);
+    }
+
+    /**
+     * Verso curta do teste: 4 clientes por um segundo sobre 50 usurios. Exige
+     * que nenhum cliente falhe, que todos executem operaes e que as consultas
+     * individuais, em pipeline e em lote deem as mesmas respostas.
+     *
+     * @throws Exception se o servidor no puder ser iniciado
+     * @throws AssertionError se alguma exigncia no for cumprida
+     */
+    public static void verificar() throws Exception {
+        Resultado resultado = executar(4, 1, 50, 200);
+        Verificacao.exigirIgual(0L, resultado.falhas, "clientes com falha");
+        Verificacao.exigir(resultado.operacoes > 0, "nenhuma operao executada");
+        Verificacao.exigir(resultado.lotesIguais, "respostas diferentes entre individual, pipeline e lote");
+        verificarContencao();
+    }
+
+    /**
+     * Envia em pipeline mais de {@link Conexao#LIMITE_PEDIDOS} consultas cujas
+     * respostas somam bem mais que {@link Conexao#LIMITE_SAIDA} e os buffers do
+     * sistema, e demora a comear a l-las: o servidor deixa de ler a conexo
+     * pelos dois limites e precisa voltar a l-la  medida que as respostas
+     * saem, sem perder nem reordenar pedidos.
+     */
+    private static void verificarContencao() throws Exception {
+        String descricao = "x".repeat(64 * 1024);
+        int consultas = 32 * Conexao.LIMITE_SAIDA / descricao.length() + Conexao.LIMITE_PEDIDOS;
+        try (ServidorJackut servidor = new ServidorJackut(new Facade())) {
+            int porta = servidor.iniciar(0);
+            try (ClienteJackut cliente = new ClienteJackut("localhost", porta)) {
+                cliente.executar("zerarSistema");
+                cliente.executar("criarUsuario", "u0", "senha", "Usuario 0");
+                String sessao = cliente.executar("abrirSessao", "u0", "senha");
+                cliente.executar("editarPerfil", sessao, "descricao", descricao);
+            }
+            try (Socket socket = new Socket("localhost", porta)) {
+                socket.setSoTimeout((int) ESPERA_MS);
+                DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                for (int i = 0; i < consultas; i++) {
+                    ByteBuffer quadro = Protocolo.codificarPedido(
+                            List.of("getAtributoUsuario", "u0", i % 2 == 0 ? "descricao" : "nome"));
+                    saida.write(quadro.array(), quadro.arrayOffset(), quadro.limit());
+                }
+                saida.flush();
+                Thread.sleep(200); // as respostas se acumulam no servidor
+                DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                for (int i = 0; i < consultas; i++) {
+                    byte[] conteudo = new byte[entrada.readInt()];
+                    entrada.readFully(conteudo);
+                    Resposta resposta = Protocolo.decodificarResposta(ByteBuffer.wrap(conteudo));
+                    Verificacao.exigirIgual(i % 2 == 0 ? descricao : "Usuario 0", resposta.getValor(),
+                            "resposta " + i + " do pipeline");
+                }
+            }
+        }
+    }
+
+    private static Resultado executar(int clientes, int segundos, int usuarios, int operacoesLote) throws Exception {
+        try (ServidorJackut servidor = new ServidorJackut(new Facade())) {
+            int porta = servidor.iniciar(0);
+            preparar(porta, usuarios);
+
+            long[][] latencias = new long[clientes][];
+            AtomicLong errosNegocio = new AtomicLong();
+            AtomicLong falhas = new AtomicLong();
+            CountDownLatch largada = new CountDownLatch(1);
+            Thread[] threads = new Thread[clientes];
+            long fim = System.nanoTime() + segundos * 1_000_000_000L;
+            for (int c = 0; c < clientes; c++) {
+                final int id = c;
+                threads[c] = new Thread(() -> {
+                    try {
+                        largada.await();
+                        latencias[id] = rodarCliente(porta, id, usuarios, fim, errosNegocio);
+                    } catch (Exception e) {
+                        falhas.incrementAndGet();
+                        latencias[id] = new long[0];
+                    }
+                });
+                threads[c].start();
+            }
+            long inicio = System.nanoTime();
+            largada.countDown();
+            for (Thread t : threads) t.join();
+            double duracao = (System.nanoTime() - inicio) / 1e9;
+
+            long[] todas = Arrays.stream(latencias).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("clientes=%d usuarios=%d duracao=%.1fs%n", clientes, usuarios, duracao);
+            System.out.printf("operacoes=%d vazao=%.0f op/s errosNegocio=%d falhas=%d%n",
+                    todas.length, todas.length / duracao, errosNegocio.get(), falhas.get());
+            System.out.printf("latencia(us) p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentil(todas, 0.50), percentil(todas, 0.90), percentil(todas, 0.99),
+                    percentil(todas, 0.999), percentil(todas, 1.0));
+
+            boolean lotesIguais = compararLotes(porta, usuarios, operacoesLote);
+            return new Resultado(todas.length, falhas.get(), lotesIguais);
+        }
+    }
+
+    /**
+     * Mede as mesmas consultas enviadas uma a uma, em pipeline e em lote.
+     *
+     * @return true se as trs formas deram as mesmas respostas
+     */
+    private static boolean compararLotes(int porta, int usuarios, int operacoes) throws IOException {
+        Lote lote = new Lote();
+        for (int i = 0; i < operacoes; i++) {
+            lote.adicionar("getAtributoUsuario", login(i % usuarios), "nome");
+        }
+        try (ClienteJackut cliente = new ClienteJackut("localhost", porta)) {
+            List<String> individuais = new ArrayList<>(operacoes);
+            long t0 = System.nanoTime();
+            for (List<String> comando : lote.getComandos()) {
+                individuais.add(cliente.executar(comando.get(0), comando.get(1), comando.get(2)));
+            }
+            long t1 = System.nanoTime();
+            List<Resposta> pipeline = cliente.executarEmPipeline(lote);
+            long t2 = System.nanoTime();
+            List<Resposta> atomico = cliente.executarLote(lote);
+            long t3 = System.nanoTime();
+            System.out.printf("%d consultas(ms) individuais=%.1f pipeline=%.1f lote=%.1f%n", operacoes,
+                    (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6);
+            return individuais.equals(valores(pipeline)) && individuais.equals(valores(atomico));
+        }
+    }
+
+    private static List<String> valores(List<Resposta> respostas) {
+        List<String> valores = new ArrayList<>(respostas.size());
+        for (Resposta resposta : respostas) {
+            valores.add(resposta.isSucesso() ? resposta.getValor() : null);
+        }
+        return valores;
+    }
+
+    private static void preparar(int porta, int usuarios) throws IOException {
+        try (ClienteJackut cliente = new ClienteJackut("localhost", porta)) {
+            cliente.executar("zerarSistema");
+            for (int i = 0; i < usuarios; i++) {
+                cliente.executar("criarUsuario", login(i), "senha", "Usuario " + i);
+            }
+            String dono = cliente.executar("abrirSessao", login(0), "senha");
+            cliente.executar("criarComunidade", dono, COMUNIDADE, "teste de carga");
+            for (int i = 1; i < usuarios; i++) {
+                String sessao = cliente.executar("abrirSessao", login(i), "senha");
+                String anterior = cliente.executar("abrirSessao", login(i - 1), "senha");
+                cliente.executar("adicionarAmigo", sessao, login(i - 1));
+                cliente.executar("adicionarAmigo", anterior, login(i));
+                if (i % 10 == 0) cliente.executar("adicionarComunidade", sessao, COMUNIDADE);
+            }
+        }
+    }
+
+    private static long[] rodarCliente(int porta, int id, int usuarios, long fim, AtomicLong errosNegocio)
+            throws IOException {
+        Random aleatorio = new Random(id);
+        long[] latencias = new long[1 << 16];
+        int n = 0;
+        try (ClienteJackut cliente = new ClienteJackut("localhost", porta)) {
+            String eu = login(id % usuarios);
+            String sessao = cliente.executar("abrirSessao", eu, "senha");
+            if (id % usuarios != 0 && (id % usuarios) % 10 != 0) {
+                cliente.executar("adicionarComunidade", sessao, COMUNIDADE);
+            }
+            while (System.nanoTime() < fim) {
+                String outro = login(aleatorio.nextInt(usuarios));
+                int sorteio = aleatorio.nextInt(100);
+                long t0 = System.nanoTime();
+                try {
+                    if (sorteio < 40) {
+                        cliente.executar("getAtributoUsuario", outro, "nome");
+                    } else if (sorteio < 60) {
+                        cliente.executar("ehAmigo", eu, outro);
+                    } else if (sorteio < 70) {
+                        cliente.executar("getAmigos", outro);
+                    } else if (sorteio < 80) {
+                        cliente.executar("getMembrosComunidade", COMUNIDADE);
+                    } else if (sorteio < 90) {
+                        if (!outro.equals(eu)) cliente.executar("enviarRecado", sessao, outro, "oi");
+                    } else if (sorteio < 95) {
+                        cliente.executar("lerRecado", sessao);
+                    } else {
+                        cliente.executar("enviarMensagem", sessao, COMUNIDADE, "ola");
+                    }
+                } catch (ErroRemotoException e) {
+                    errosNegocio.incrementAndGet();
+                }
+                if (n == latencias.length) latencias = Arrays.copyOf(latencias, n * 2);
+                latencias[n++] = System.nanoTime() - t0;
+            }
+        }
+        return Arrays.copyOf(latencias, n);
+    }
+
+    private static String login(int i) {
+        return "u" + i;
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) return 0;
+        int i = (int) Math.min(ordenadas.length - 1, Math.ceil(p * ordenadas.length) - 1);
+        return ordenadas[Math.max(0, i)] / 1000.0;
+    }
+
+    /**
+     * Totais de uma execuo do teste.
+     */
+    private static final class Resultado {
+        private final long operacoes;
+        private final long falhas;
+        private final boolean lotesIguais;
+
+        private Resultado(long operacoes, long falhas, boolean lotesIguais) {
+            this.operacoes = operacoes;
+            this.falhas = falhas;
+            this.lotesIguais = lotesIguais;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Verificacao;
+import br.ufal.ic.p2.jackut.exceptions.ErroRemotoException;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste da replicao em localhost.
+ * <p>
+ * Sobe um primrio com {@link PublicadorDiario} e duas {@link Replica}s, cada
+ * uma com seu {@link ServidorJackut}. Verifica que escritas enviadas a uma
+ * rplica so recusadas, que leituras com a ficha da ltima escrita sempre veem
+ * o valor escrito no primrio, mede a vazo de leituras nas rplicas com um
+ * escritor ativo no primrio e o atraso mximo observado, e ao final compara
+ * os dados de todos os usurios nas trs cpias. Nada  gravado em disco.
+ * </p>
+ * <p>
+ * {@link #verificar()} executa uma verso curta, com asseres, junto com os
+ * roteiros de aceitao.
+ * </p>
+ * <p>
+ * Uso: <code>java br.ufal.ic.p2.jackut.server.TesteReplicacao [leitores] [segundos] [usuarios]</code>
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class TesteReplicacao {
+    private static final String COMUNIDADE = "replicada";
+    private static final int ESCRITAS_VERIFICADAS = 2000;
+
+    /**
+     * Executa o teste.
+     *
+     * @param args nmero de leitores (padro 8), durao da medio em segundos
+     *             (padro 5) e nmero de usurios (padro 500)
+     * @throws Exception se algum servidor no puder ser iniciado
+     */
+    public static void main(String[] args) throws Exception {
+        int leitores = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        int segundos = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        int usuarios = (args.length > 2) ? Integer.parseInt(args[2]) : 500;
+        executar(leitores, segundos, usuarios, ESCRITAS_VERIFICADAS);
+    }
+
+    /**
+     * Verso curta do teste: 2 leitores por um segundo sobre 50 usurios, com
+     * 200 escritas verificadas. Exige que a rplica recuse escritas, que toda
+     * leitura com ficha veja a prpria escrita e que as rplicas terminem iguais
+     * ao primrio.
+     *
+     * @throws Exception se algum servidor no puder ser iniciado
+     * @throws AssertionError se alguma exigncia no for cumprida
+     */
+    public static void verificar() throws Exception {
+        Resultado resultado = executar(2, 1, 50, 200);
+        Verificacao.exigir(resultado.escritaRecusada, "rplica aceitou uma escrita");
+        Verificacao.exigirIgual(0, resultado.violacoes, "leituras antigas com ficha");
+        Verificacao.exigirIgual(0, resultado.divergencias, "usurios divergentes nas rplicas");
+    }
+
+    private static Resultado executar(int leitores, int segundos, int usuarios, int escritasVerificadas)
+            throws Exception {
+        Despachante primario = new Despachante(new Facade());
+        try (ServidorJackut servidor = new ServidorJackut(primario);
+             PublicadorDiario publicador = new PublicadorDiario(primario, 0)) {
+            int porta = servidor.iniciar(0);
+            preparar(porta, usuarios);
+
+            try (Replica r1 = new Replica(new Facade(), "localhost", publicador.getPorta());
+                 Replica r2 = new Replica(new Facade(), "localhost", publicador.getPorta());
+                 ServidorJackut s1 = new ServidorJackut(r1.getDespachante());
+                 ServidorJackut s2 = new ServidorJackut(r2.getDespachante())) {
+                int[] portasReplicas = {s1.iniciar(0), s2.iniciar(0)};
+
+                Resultado resultado = verificarLeituraDasEscritas(porta, portasReplicas[0], escritasVerificadas);
+                medirLeituras(porta, portasReplicas, publicador, leitores, segundos, usuarios);
+
+                while (publicador.getAtrasoMaximo() > 0 || r1.getAtraso() > 0 || r2.getAtraso() > 0) {
+                    Thread.sleep(10);
+                }
+                int divergencias1 = comparar(porta, portasReplicas[0], usuarios);
+                int divergencias2 = comparar(porta, portasReplicas[1], usuarios);
+                System.out.printf("divergencias: replica1=%d replica2=%d%n", divergencias1, divergencias2);
+                resultado.divergencias = divergencias1 + divergencias2;
+                return resultado;
+            }
+        }
+    }
+
+    private static void preparar(int porta, int usuarios) throws IOException {
+        try (ClienteJackut cliente = new ClienteJackut("localhost", porta)) {
+            cliente.executar("zerarSistema");
+            for (int i = 0; i < usuarios; i++) {
+                cliente.executar("criarUsuario", login(i), "senha", "Usuario " + i);
+            }
+            cliente.executar("criarComunidade", cliente.executar("abrirSessao", login(0), "senha"),
+                    COMUNIDADE, "teste de replicao");
+        }
+    }
+
+    private static Resultado verificarLeituraDasEscritas(int porta, int portaReplica, int escritas)
+            throws IOException {
+        Resultado resultado = new Resultado();
+        try (ClienteJackut escritor = new ClienteJackut("localhost", porta);
+             ClienteJackut leitor = new ClienteJackut("localhost", portaReplica)) {
+            try {
+                leitor.executar("criarUsuario", "intruso", "senha", "Intruso");
+                System.out.println("ERRO: rplica aceitou uma escrita");
+            } catch (ErroRemotoException e) {
+                System.out.println("escrita na rplica: " + e.getMessage());
+                resultado.escritaRecusada = true;
+            }
+            String sessao = escritor.executar("abrirSessao", login(1), "senha");
+            int antigas = 0;
+            int violacoes = 0;
+            for (int i = 0; i < escritas; i++) {
+                String valor = "cidade" + i;
+                escritor.executar("editarPerfil", sessao, "cidade", valor);
+                if (!valor.equals(ler(leitor, login(1)))) antigas++;
+                if (!valor.equals(leitor.executarApos(escritor.getFicha(), "getAtributoUsuario", login(1), "cidade"))) {
+                    violacoes++;
+                }
+            }
+            System.out.printf("%d escritas: leituras antigas sem ficha=%d, com ficha=%d%n",
+                    escritas, antigas, violacoes);
+            resultado.violacoes = violacoes;
+        }
+        return resultado;
+    }
+
+    private static String ler(ClienteJackut cliente, String login) throws IOException {
+        try {
+            return cliente.executar("getAtributoUsuario", login, "cidade");
+        } catch (ErroRemotoException e) {
+            return null;
+        }
+    }
+
+    private static void medirLeituras(int porta, int[] portasReplicas, PublicadorDiario publicador,
+                                      int leitores, int segundos, int usuarios) throws Exception {
+        AtomicBoolean ativo = new AtomicBoolean(true);
+        AtomicLong leituras = new AtomicLong();
+        AtomicLong escritas = new AtomicLong();
+        Thread[] threads = new Thread[leitores + 1];
+        threads[leitores] = new Thread(() -> {
+            Random aleatorio = new Random(-1);
+            try (ClienteJackut cliente = new ClienteJackut("localhost", porta)) {
+                while (ativo.get()) {
+                    int i = aleatorio.nextInt(usuarios);
+                    String sessao = cliente.executar("abrirSessao", login(i), "senha");
+                    int outro = aleatorio.nextInt(usuarios);
+                    try {
+                        if (outro != i) cliente.executar("adicionarAmigo", sessao, login(outro));
+                    } catch (ErroRemotoException e) {
+                        // amizade j solicitada
+                    }
+                    cliente.executar("editarPerfil", sessao, "cidade", "c" + aleatorio.nextInt(100));
+                    escritas.addAndGet(3);
+                }
+            } catch (IOException e) {
+                System.err.println("Escritor interrompido: " + e.getMessage());
+            }
+        });
+        for (int c = 0; c < leitores; c++) {
+            final int id = c;
+            threads[c] = new Thread(() -> {
+                Random aleatorio = new Random(id);
+                try (ClienteJackut cliente = new ClienteJackut("localhost", portasReplicas[id % portasReplicas.length])) {
+                    while (ativo.get()) {
+                        String login = login(aleatorio.nextInt(usuarios));
+                        if (aleatorio.nextBoolean()) {
+                            cliente.executar("getAmigos", login);
+                        } else {
+                            cliente.executar("getAtributoUsuario", login, "nome");
+                        }
+                        leituras.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Leitor interrompido: " + e.getMessage());
+                }
+            });
+        }
+        long inicio = System.nanoTime();
+        for (Thread t : threads) t.start();
+        long atrasoMaximo = 0;
+        long fim = inicio + segundos * 1_000_000_000L;
+        while (System.nanoTime() < fim) {
+            Thread.sleep(20);
+            atrasoMaximo = Math.max(atrasoMaximo, publicador.getAtrasoMaximo());
+        }
+        ativo.set(false);
+        for (Thread t : threads) t.join();
+        double duracao = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("leitores=%d duracao=%.1fs leituras nas replicas=%.0f op/s escritas no primario=%.0f op/s%n",
+                leitores, duracao, leituras.get() / duracao, escritas.get() / duracao);
+        System.out.printf("atraso maximo observado=%d entradas%n", atrasoMaximo);
+    }
+
+    private static int comparar(int porta, int portaReplica, int usuarios) throws IOException {
+        int divergencias = 0;
+        try (ClienteJackut primario = new ClienteJackut("localhost", porta);
+             ClienteJackut replica = new ClienteJackut("localhost", portaReplica)) {
+            for (int i = 0; i < usuarios; i++) {
+                if (!Objects.equals(primario.executar("getAmigos", login(i)), replica.executar("getAmigos", login(i)))
+                        || !Objects.equals(ler(primario, login(i)), ler(replica, login(i)))
+                        || !Objects.equals(primario.executar("getComunidades", login(i)),
+                                replica.executar("getComunidades", login(i)))) {
+                    divergencias++;
+                }
+            }
+            if (!Objects.equals(primario.executar("getMembrosComunidade", COMUNIDADE),
+                    replica.executar("getMembrosComunidade", COMUNIDADE))) {
+                divergencias++;
+            }
+        }
+        return divergencias;
+    }
+
+    private static String login(int i) {
+        return "r" + i;
+    }
+
+    /**
+     * Exigncias conferidas em uma execuo do teste.
+     */
+    private static final class Resultado {
+        private boolean escritaRecusada;
+        private int violacoes;
+        private int divergencias;
+    }
+}
@@ -0,0 +1,353 @@
+package br.ufal.ic.p2.jackut.server;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Verificacao;
+import br.ufal.ic.p2.jackut.eventos.Evento;
+import br.ufal.ic.p2.jackut.eventos.ProjecaoVersionada;
+import br.ufal.ic.p2.jackut.eventos.Retrato;
+import br.ufal.ic.p2.jackut.eventos.TipoEvento;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste das leituras em {@link Retrato}s, sem rede.
+ * <p>
+ * Cria uma comunidade grande e mede, com leitores listando os membros sem parar,
+ * a vazo e a latncia dos escritores que alteram os mesmos dados: primeiro com
+ * as listagens em lotes de um comando, que leem o ncleo sob as travas, e depois
+ * enviadas sozinhas, respondidas por retratos sem travas. Em seguida verifica
+ * que nenhum retrato enxerga uma amizade de um lado s enquanto amizades so
+ * confirmadas, que a contagem e a listagem de membros de um mesmo retrato
+ * concordam enquanto membros removem a conta, e que as verses antigas retidas
+ * por um retrato aberto so descartadas quando ele  fechado, sem esperar a
+ * prxima escrita. Nada  gravado em disco.
+ * </p>
+ * <p>
+ * {@link #verificar()} executa as verificaes, com asseres e sem as
+ * medies, junto com os roteiros de aceitao.
+ * </p>
+ * <p>
+ * Uso: <code>java br.ufal.ic.p2.jackut.server.TesteRetratos [membros] [leitores] [segundos]</code>
+ * </p>
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class TesteRetratos {
+    private static final String COMUNIDADE = "enorme";
+    private static final int ESCRITORES = 2;
+    private static final int PARES = 2000;
+    private static final int REMOCOES = 500;
+
+    /**
+     * Executa o teste.
+     *
+     * @param args nmero de membros da comunidade (padro 100000), de leitores
+     *             (padro 4) e durao de cada medio em segundos (padro 3)
+     * @throws InterruptedException se for interrompido aguardando as threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int membros = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        int leitores = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        int segundos = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+
+        Facade facade = new Facade();
+        Despachante despachante = new Despachante(facade);
+        preparar(despachante, membros);
+
+        medirEscritas(despachante, membros, leitores, segundos, true);
+        medirEscritas(despachante, membros, leitores, segundos, false);
+        verificarAmizades(despachante, facade, leitores);
+        verificarRemocoes(despachante, facade, membros, leitores);
+        verificarRecolhimento(despachante, facade);
+    }
+
+    /**
+     * Verso curta do teste, sem as medies: 2000 membros e 2 leitores. Exige
+     * que nenhuma amizade seja vista pela metade, que contagem e listagem de
+     * membros concordem em cada retrato, que fechar o ltimo retrato descarte
+     * as verses que ele retinha e que o recolhimento de um fechamento termine
+     * mesmo com um evento aplicado e ainda no concludo.
+     *
+     * @throws InterruptedException se for interrompido aguardando as threads
+     * @throws AssertionError se alguma exigncia no for cumprida
+     */
+    public static void verificar() throws InterruptedException {
+        int membros = 2000;
+        Facade facade = new Facade();
+        Despachante despachante = new Despachante(facade);
+        preparar(despachante, membros);
+
+        Verificacao.exigirIgual(0L, verificarAmizades(despachante, facade, 2), "amizades vistas pela metade");
+        Verificacao.exigirIgual(0L, verificarRemocoes(despachante, facade, membros, 2),
+                "retratos com contagem e listagem de membros diferentes");
+        Verificacao.exigirIgual(facade.contarMembrosComunidade(COMUNIDADE), contarMembrosEmRetrato(facade),
+                "membros no retrato aps as remoes");
+
+        Recolhimento recolhimento = verificarRecolhimento(despachante, facade);
+        Verificacao.exigirIgual("antes", recolhimento.vista, "cidade vista pelo retrato aberto");
+        Verificacao.exigir(recolhimento.retidas >= 1000, "verses retidas com o retrato aberto: " + recolhimento.retidas);
+        Verificacao.exigirIgual(0L, recolhimento.aposFechar, "verses retidas aps fechar o retrato");
+        executar(despachante, "zerarSistema");
+        verificarCompactacaoAdiada();
+    }
+
+    /**
+     * Fecha um retrato entre a aplicao e a concluso de um evento, com uma
+     * compactao vencida em uma lista que tambm tem itens removidos pelo
+     * evento ainda no concludo (uma reordenao de estado antigo). O
+     * recolhimento do fechamento deve terminar e deixar esses itens para depois.
+     */
+    private static void verificarCompactacaoAdiada() throws InterruptedException {
+        ProjecaoVersionada projecao = new ProjecaoVersionada();
+        long[] sequencia = {0};
+        Thread fechamento = new Thread(() -> {
+            aplicar(projecao, sequencia, TipoEvento.USUARIO_CRIADO, "a", null, "A", true);
+            aplicar(projecao, sequencia, TipoEvento.USUARIO_CRIADO, "b", null, "B", true);
+            aplicar(projecao, sequencia, TipoEvento.USUARIO_CRIADO, "c", null, "C", true);
+            aplicar(projecao, sequencia, TipoEvento.USUARIO_CRIADO, "d", null, "D", true);
+            aplicar(projecao, sequencia, TipoEvento.AMIZADE_CONFIRMADA, "a", "b", null, true);
+            aplicar(projecao, sequencia, TipoEvento.AMIZADE_CONFIRMADA, "a", "c", null, true);
+            aplicar(projecao, sequencia, TipoEvento.AMIZADE_CONFIRMADA, "a", "d", null, true);
+            Retrato retrato = projecao.abrirRetrato();
+            aplicar(projecao, sequencia, TipoEvento.USUARIO_REMOVIDO, "b", null, null, true);
+            aplicar(projecao, sequencia, TipoEvento.LISTA_ORDENADA, "a", "amigos", "d" + TipoEvento.SEPARADOR + "c", false);
+            retrato.close();
+            projecao.concluir(sequencia[0]);
+        });
+        fechamento.setDaemon(true);
+        fechamento.start();
+        fechamento.join(5000);
+        Verificacao.exigir(!fechamento.isAlive(), "recolhimento ao fechar o retrato no terminou");
+        try (Retrato retrato = projecao.abrirRetrato()) {
+            Verificacao.exigirIgual("{d,c}", retrato.getAmigos("a"), "amigos aps a remoo e a reordenao");
+        }
+        Verificacao.exigirIgual(0, projecao.contarPendencias(), "compactaes pendentes aps concluir");
+    }
+
+    private static void aplicar(ProjecaoVersionada projecao, long[] sequencia, TipoEvento tipo,
+                                String autor, String alvo, String valor, boolean concluir) {
+        Evento evento = new Evento(++sequencia[0], 0, tipo, autor, alvo, valor);
+        projecao.aplicar(evento, chave -> true);
+        if (concluir) projecao.concluir(evento.getSequencia());
+    }
+
+    private static void preparar(Despachante despachante, int membros) {
+        executar(despachante, "zerarSistema");
+        for (int i = 0; i < membros; i++) {
+            executar(despachante, "criarUsuario", login(i), "senha", "Membro " + i);
+        }
+        executar(despachante, "criarComunidade", sessao(despachante, 0), COMUNIDADE, "comunidade grande");
+        for (int i = 1; i < membros; i++) {
+            executar(despachante, "adicionarComunidade", sessao(despachante, i), COMUNIDADE);
+        }
+        for (int i = 0; i < 2 * PARES; i++) {
+            executar(despachante, "criarUsuario", par(i), "senha", "Par " + i);
+        }
+    }
+
+    /**
+     * Mede os escritores enquanto os leitores listam a comunidade, com ou sem travas.
+     */
+    private static void medirEscritas(Despachante despachante, int membros, int leitores, int segundos,
+                                      boolean travadas) throws InterruptedException {
+        AtomicBoolean ativo = new AtomicBoolean(true);
+        AtomicLong listagens = new AtomicLong();
+        long[][] latencias = new long[ESCRITORES][];
+        Thread[] threads = new Thread[leitores + ESCRITORES];
+        for (int c = 0; c < leitores; c++) {
+            threads[c] = new Thread(() -> {
+                Lote lote = new Lote().adicionar("getMembrosComunidade", COMUNIDADE);
+                while (ativo.get()) {
+                    if (travadas) {
+                        despachante.executarLote(lote);
+                    } else {
+                        despachante.executar(List.of("getMembrosComunidade", COMUNIDADE));
+                    }
+                    listagens.incrementAndGet();
+                }
+            });
+        }
+        for (int w = 0; w < ESCRITORES; w++) {
+            final int id = w;
+            threads[leitores + w] = new Thread(() -> {
+                Random aleatorio = new Random(id);
+                long[] medidas = new long[1 << 16];
+                int n = 0;
+                while (ativo.get()) {
+                    int i = aleatorio.nextInt(membros);
+                    long t0 = System.nanoTime();
+                    executar(despachante, "editarPerfil", sessao(despachante, i), "cidade", "c" + n);
+                    if (n == medidas.length) medidas = Arrays.copyOf(medidas, n * 2);
+                    medidas[n++] = System.nanoTime() - t0;
+                }
+                latencias[id] = Arrays.copyOf(medidas, n);
+            });
+        }
+        long inicio = System.nanoTime();
+        for (Thread t : threads) t.start();
+        Thread.sleep(segundos * 1000L);
+        ativo.set(false);
+        for (Thread t : threads) t.join();
+        double duracao = (System.nanoTime() - inicio) / 1e9;
+
+        long[] todas = Arrays.stream(latencias).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%s: membros=%d listagens=%.1f/s escritas=%.0f op/s latencia escrita(us) p50=%.1f p99=%.1f max=%.1f%n",
+                travadas ? "com travas" : "retratos  ", membros, listagens.get() / duracao, todas.length / duracao,
+                percentil(todas, 0.50), percentil(todas, 0.99), percentil(todas, 1.0));
+    }
+
+    /**
+     * Confirma amizades entre pares enquanto leitores conferem, em retratos,
+     * que cada amizade aparece dos dois lados ou de nenhum.
+     *
+     * @return quantas amizades foram vistas de um lado s
+     */
+    private static long verificarAmizades(Despachante despachante, Facade facade, int leitores)
+            throws InterruptedException {
+        AtomicBoolean ativo = new AtomicBoolean(true);
+        AtomicLong conferidas = new AtomicLong();
+        AtomicLong pelaMetade = new AtomicLong();
+        Thread escritor = new Thread(() -> {
+            for (int p = 0; p < PARES && ativo.get(); p++) {
+                String a = par(2 * p);
+                String b = par(2 * p + 1);
+                executar(despachante, "adicionarAmigo", despachante.executar(List.of("abrirSessao", a, "senha")).getValor(), b);
+                executar(despachante, "adicionarAmigo", despachante.executar(List.of("abrirSessao", b, "senha")).getValor(), a);
+            }
+        });
+        Thread[] threads = new Thread[leitores];
+        for (int c = 0; c < leitores; c++) {
+            final int id = c;
+            threads[c] = new Thread(() -> {
+                Random aleatorio = new Random(id);
+                while (ativo.get()) {
+                    try (Retrato retrato = facade.abrirRetrato()) {
+                        for (int k = 0; k < 100; k++) {
+                            int p = aleatorio.nextInt(PARES);
+                            boolean ida = retrato.getAmigos(par(2 * p)).contains(par(2 * p + 1));
+                            boolean volta = retrato.getAmigos(par(2 * p + 1)).contains(par(2 * p));
+                            if (ida != volta) pelaMetade.incrementAndGet();
+                            conferidas.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[c].start();
+        }
+        escritor.start();
+        escritor.join();
+        ativo.set(false);
+        for (Thread t : threads) t.join();
+        System.out.printf("amizades: confirmadas=%d conferidas=%d vistas pela metade=%d%n",
+                PARES, conferidas.get(), pelaMetade.get());
+        return pelaMetade.get();
+    }
+
+    /**
+     * Remove as contas dos ltimos membros enquanto leitores abrem e fecham
+     * retratos, descartando os membros removidos, e conferem que a contagem de
+     * membros bate com a listagem e nunca cresce.
+     *
+     * @return quantos retratos deram contagens incoerentes
+     */
+    private static long verificarRemocoes(Despachante despachante, Facade facade, int membros, int leitores)
+            throws InterruptedException {
+        AtomicBoolean ativo = new AtomicBoolean(true);
+        AtomicLong conferidos = new AtomicLong();
+        AtomicLong incoerentes = new AtomicLong();
+        Thread escritor = new Thread(() -> {
+            for (int i = membros - 1; i >= membros - REMOCOES; i--) {
+                executar(despachante, "removerUsuario", sessao(despachante, i));
+            }
+        });
+        Thread[] threads = new Thread[leitores];
+        for (int c = 0; c < leitores; c++) {
+            threads[c] = new Thread(() -> {
+                int anterior = Integer.MAX_VALUE;
+                while (ativo.get()) {
+                    try (Retrato retrato = facade.abrirRetrato()) {
+                        int contados = retrato.contarMembrosComunidade(COMUNIDADE);
+                        int listados = retrato.getMembrosComunidade(COMUNIDADE).split(",").length;
+                        if (contados != listados || contados > anterior) incoerentes.incrementAndGet();
+                        anterior = contados;
+                        conferidos.incrementAndGet();
+                    }
+                }
+            });
+            threads[c].start();
+        }
+        escritor.start();
+        escritor.join();
+        ativo.set(false);
+        for (Thread t : threads) t.join();
+        System.out.printf("remocoes: removidos=%d retratos conferidos=%d incoerentes=%d%n",
+                REMOCOES, conferidos.get(), incoerentes.get());
+        return incoerentes.get();
+    }
+
+    private static int contarMembrosEmRetrato(Facade facade) {
+        try (Retrato retrato = facade.abrirRetrato()) {
+            return retrato.contarMembrosComunidade(COMUNIDADE);
+        }
+    }
+
+    /**
+     * Mantm um retrato aberto durante vrias edies do mesmo perfil e mostra
+     * as verses retidas antes e depois de fech-lo, sem novas escritas.
+     */
+    private static Recolhimento verificarRecolhimento(Despachante despachante, Facade facade) {
+        String sessao = sessao(despachante, 0);
+        executar(despachante, "editarPerfil", sessao, "cidade", "antes");
+        Retrato retrato = facade.abrirRetrato();
+        for (int i = 0; i < 1000; i++) {
+            executar(despachante, "editarPerfil", sessao, "cidade", "depois" + i);
+        }
+        long retidas = facade.getMedidores().get("versoesPendentes");
+        String vista = retrato.getAtributoUsuario(login(0), "cidade");
+        retrato.close();
+        Recolhimento recolhimento = new Recolhimento();
+        recolhimento.vista = vista;
+        recolhimento.retidas = retidas;
+        recolhimento.aposFechar = facade.getMedidores().get("versoesPendentes");
+        System.out.printf("recolhimento: retrato aberto viu cidade=%s com %d versoes retidas; apos fechar=%d%n",
+                vista, retidas, recolhimento.aposFechar);
+        return recolhimento;
+    }
+
+    private static String sessao(Despachante despachante, int i) {
+        return executar(despachante, "abrirSessao", login(i), "senha");
+    }
+
+    private static String executar(Despachante despachante, String... campos) {
+        Resposta resposta = despachante.executar(List.of(campos));
+        if (!resposta.isSucesso()) throw new IllegalStateException(resposta.getValor());
+        return resposta.getValor();
+    }
+
+    private static String login(int i) {
+        return "m" + i;
+    }
+
+    private static String par(int i) {
+        return "p" + i;
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) return 0;
+        int i = (int) Math.min(ordenadas.length - 1, Math.ceil(p * ordenadas.length) - 1);
+        return ordenadas[Math.max(0, i)] / 1000.0;
+    }
+
+    /**
+     * O que o retrato viu e as verses retidas com ele aberto e aps fech-lo.
+     */
+    private static final class Recolhimento {
+        private String vista;
+        private long retidas;
+        private long aposFechar;
+    }
+}
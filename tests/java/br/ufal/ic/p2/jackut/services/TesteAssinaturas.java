@@ -0,0 +1,174 @@
+package br.ufal.ic.p2.jackut.services;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.Verificacao;
+import br.ufal.ic.p2.jackut.models.Community;
+import br.ufal.ic.p2.jackut.models.Notificacao;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifica as inscries de push de {@link GerenciadorAssinaturas}: entrega a
+ * todas as sesses inscritas do destinatrio, contagem de membros notificados,
+ * fechamento do canal quando o ltimo assinante cancela e quando a conta 
+ * removida.
+ *
+ * @author Iury
+ * @version 1.0
+ */
+public class TesteAssinaturas {
+    private static final long ESPERA_MS = 5000;
+
+    /**
+     * Executa as verificaes.
+     *
+     * @throws InterruptedException se for interrompido aguardando as entregas
+     * @throws AssertionError se alguma exigncia no for cumprida
+     */
+    public static void verificar() throws InterruptedException {
+        verificarContagem();
+        verificarFacade();
+    }
+
+    /**
+     * Publicadores sem assinantes no contam como notificados, e a contagem  a
+     * mesma percorrendo os membros ou os inscritos.
+     */
+    private static void verificarContagem() throws InterruptedException {
+        GerenciadorAssinaturas assinaturas = new GerenciadorAssinaturas();
+        Community pequena = new Community("pequena", "", "ana");
+        pequena.addMember("bia");
+        Community grande = new Community("grande", "", "ana");
+        for (int i = 0; i < 10; i++) {
+            grande.addMember("m" + i);
+        }
+
+        assinaturas.assinar("ana", "s1");
+        Verificacao.exigirIgual(0, assinaturas.publicarMensagem(pequena, "oi"), "notificados sem assinantes");
+
+        Coletor ana = Coletor.inscrever(assinaturas.assinar("ana", "s1"));
+        Coletor bia = Coletor.inscrever(assinaturas.assinar("bia", "s2"));
+        assinaturas.assinar("carlos", "s3");
+        assinaturas.assinar("davi", "s4");
+        Verificacao.exigirIgual(2, assinaturas.publicarMensagem(pequena, "pelos membros"),
+                "notificados percorrendo os membros");
+        Verificacao.exigirIgual(1, assinaturas.publicarMensagem(grande, "pelos inscritos"),
+                "notificados percorrendo os inscritos");
+        ana.aguardar(2);
+        bia.aguardar(1);
+        Verificacao.exigirIgual(List.of("pelos membros", "pelos inscritos"), ana.textos(), "mensagens de ana");
+    }
+
+    /**
+     * Passa pela {@link Facade}: duas sesses do mesmo usurio, cancelamento e
+     * remoo da conta.
+     */
+    private static void verificarFacade() throws InterruptedException {
+        Facade facade = new Facade();
+        facade.zerarSistema();
+        facade.criarUsuario("ana", "senha", "Ana");
+        facade.criarUsuario("bia", "senha", "Bia");
+        String ana1 = facade.abrirSessao("ana", "senha");
+        String ana2 = facade.abrirSessao("ana", "senha");
+        String bia = facade.abrirSessao("bia", "senha");
+        facade.criarComunidade(ana1, "clube", "teste");
+        facade.adicionarComunidade(bia, "clube");
+
+        Coletor primeira = Coletor.inscrever(facade.assinarNotificacoes(ana1));
+        Coletor segunda = Coletor.inscrever(facade.assinarNotificacoes(ana2));
+        Coletor deBia = Coletor.inscrever(facade.assinarNotificacoes(bia));
+        Verificacao.exigirIgual(3L, canais(facade), "canais abertos");
+
+        facade.enviarRecado(bia, "ana", "recado");
+        facade.enviarMensagem(bia, "clube", "mensagem");
+        primeira.aguardar(2);
+        segunda.aguardar(2);
+        deBia.aguardar(1);
+        Verificacao.exigirIgual(List.of("recado", "mensagem"), segunda.textos(), "notificaes da segunda sesso");
+
+        primeira.cancelar();
+        Verificacao.exigirIgual(2L, canais(facade), "canais aps cancelar o nico assinante");
+        Coletor tardio = Coletor.inscrever(primeira.publicador);
+        Verificacao.exigir(tardio.terminou(), "publicador cancelado aceitou um novo assinante");
+
+        facade.removerUsuario(ana2);
+        Verificacao.exigir(segunda.terminou(), "assinante no foi encerrado com a remoo da conta");
+        Verificacao.exigirIgual(1L, canais(facade), "canais aps remover a conta");
+
+        deBia.cancelar();
+        Verificacao.exigirIgual(0L, canais(facade), "canais aps o ltimo cancelamento");
+        facade.zerarSistema();
+    }
+
+    private static long canais(Facade facade) {
+        return facade.getMedidores().get("canaisNotificacao");
+    }
+
+    /**
+     * Assinante que guarda o texto das notificaes recebidas.
+     */
+    private static final class Coletor implements Flow.Subscriber<Notificacao> {
+        private final Flow.Publisher<Notificacao> publicador;
+        private final List<String> textos = new CopyOnWriteArrayList<>();
+        private final CountDownLatch inscrito = new CountDownLatch(1);
+        private final CountDownLatch terminado = new CountDownLatch(1);
+        private volatile Flow.Subscription assinatura;
+
+        private Coletor(Flow.Publisher<Notificacao> publicador) {
+            this.publicador = publicador;
+        }
+
+        static Coletor inscrever(Flow.Publisher<Notificacao> publicador) throws InterruptedException {
+            Coletor coletor = new Coletor(publicador);
+            publicador.subscribe(coletor);
+            Verificacao.exigir(coletor.inscrito.await(ESPERA_MS, TimeUnit.MILLISECONDS)
+                    || coletor.terminado.getCount() == 0, "inscrio no confirmada");
+            return coletor;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription assinatura) {
+            this.assinatura = assinatura;
+            assinatura.request(Long.MAX_VALUE);
+            inscrito.countDown();
+        }
+
+        @Override
+        public void onNext(Notificacao notificacao) {
+            textos.add(notificacao.toString());
+        }
+
+        @Override
+        public void onError(Throwable erro) {
+            terminado.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminado.countDown();
+        }
+
+        void aguardar(int quantidade) throws InterruptedException {
+            long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_MS);
+            while (textos.size() < quantidade && System.nanoTime() < limite) {
+                Thread.sleep(5);
+            }
+            Verificacao.exigirIgual(quantidade, textos.size(), "notificaes recebidas");
+        }
+
+        List<String> textos() {
+            return List.copyOf(textos);
+        }
+
+        void cancelar() {
+            assinatura.cancel();
+        }
+
+        boolean terminou() throws InterruptedException {
+            return terminado.await(ESPERA_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}